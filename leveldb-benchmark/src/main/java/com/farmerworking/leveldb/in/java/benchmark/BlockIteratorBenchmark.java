@@ -0,0 +1,54 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.data.structure.block.BlockBuilder;
+import com.farmerworking.leveldb.in.java.data.structure.block.BlockReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Seeking in and scanning one data block
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockIteratorBenchmark {
+    @Param("1000")
+    public int entries;
+
+    private Options options;
+    private BlockReader blockReader;
+
+    @Setup
+    public void setUp() {
+        this.options = new Options();
+        BlockBuilder builder = new BlockBuilder(this.options);
+        ValueGenerator values = new ValueGenerator();
+        for (int i = 0; i < entries; i++) {
+            builder.add(DBBenchmarkBase.key(i), values.generate(100));
+        }
+        this.blockReader = new BlockReader(builder.finish());
+    }
+
+    @Benchmark
+    public void seek(Blackhole blackhole) {
+        Iterator<String, String> iterator = this.blockReader.iterator(this.options.getComparator());
+        iterator.seek(DBBenchmarkBase.key(ThreadLocalRandom.current().nextInt(entries)));
+        blackhole.consume(iterator.value());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void scan(Blackhole blackhole) {
+        Iterator<String, String> iterator = this.blockReader.iterator(this.options.getComparator());
+        for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+            blackhole.consume(iterator.key());
+            blackhole.consume(iterator.value());
+        }
+    }
+}
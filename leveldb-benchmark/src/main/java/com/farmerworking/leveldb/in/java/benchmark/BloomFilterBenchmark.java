@@ -0,0 +1,53 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.data.structure.filter.BloomFilterPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Building a filter for one table block worth of keys and probing it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BloomFilterBenchmark {
+    @Param("10")
+    public int bitsPerKey;
+
+    @Param("1000")
+    public int keys;
+
+    private BloomFilterPolicy policy;
+    private List<String> keyList;
+    private String filter;
+
+    @Setup
+    public void setUp() {
+        this.policy = new BloomFilterPolicy(bitsPerKey);
+        this.keyList = new ArrayList<>();
+        for (int i = 0; i < keys; i++) {
+            this.keyList.add(DBBenchmarkBase.key(i));
+        }
+        this.filter = this.policy.createFilter(this.keyList);
+    }
+
+    @Benchmark
+    public String createFilter() {
+        return this.policy.createFilter(this.keyList);
+    }
+
+    @Benchmark
+    public boolean keyMayMatchHit() {
+        return this.policy.keyMayMatch(this.keyList.get(ThreadLocalRandom.current().nextInt(keys)), this.filter);
+    }
+
+    @Benchmark
+    public boolean keyMayMatchMiss() {
+        return this.policy.keyMayMatch(DBBenchmarkBase.key(keys + ThreadLocalRandom.current().nextInt(keys)), this.filter);
+    }
+}
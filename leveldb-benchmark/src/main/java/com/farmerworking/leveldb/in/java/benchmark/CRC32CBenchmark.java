@@ -0,0 +1,40 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.common.ICRC32C;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// db_bench crc32c: checksums of block sized buffers
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CRC32CBenchmark {
+    @Param({"4096", "65536"})
+    public int size;
+
+    private ICRC32C crc32C;
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        this.crc32C = ICRC32C.getInstance();
+        this.data = new byte[size];
+        new Random(301).nextBytes(this.data);
+    }
+
+    @Benchmark
+    public int value() {
+        return this.crc32C.value(this.data, 0, this.data.length);
+    }
+
+    @Benchmark
+    public int extend() {
+        int crc = this.crc32C.value(this.data, 0, this.data.length / 2);
+        return this.crc32C.extend(crc, this.data, this.data.length / 2, this.data.length - this.data.length / 2);
+    }
+}
@@ -0,0 +1,58 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.common.ICoding;
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Fixed and varint encoding of the integers every key and block carries
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodingBenchmark {
+    private ICoding coding;
+    private char[] buffer;
+    private int value;
+    private long value64;
+
+    @Setup
+    public void setUp() {
+        this.coding = ICoding.getInstance();
+        this.buffer = new char[this.coding.getMaxVarint64Length()];
+        this.value = 0x1234567;
+        this.value64 = 0x123456789abcdefL;
+    }
+
+    @Benchmark
+    public int encodeVarint32() {
+        return this.coding.encodeVarint32(this.buffer, 0, this.value);
+    }
+
+    @Benchmark
+    public Pair<Integer, Integer> decodeVarint32() {
+        this.coding.encodeVarint32(this.buffer, 0, this.value);
+        return this.coding.decodeVarint32(this.buffer, 0);
+    }
+
+    @Benchmark
+    public Pair<Long, Integer> decodeVarint64() {
+        this.coding.encodeVarint64(this.buffer, 0, this.value64);
+        return this.coding.decodeVarint64(this.buffer, 0);
+    }
+
+    @Benchmark
+    public long fixed64() {
+        this.coding.encodeFixed64(this.buffer, 0, this.value64);
+        return this.coding.decodeFixed64(this.buffer, 0);
+    }
+
+    @Benchmark
+    public int fixed32() {
+        this.coding.encodeFixed32(this.buffer, 0, this.value);
+        return this.coding.decodeFixed32(this.buffer, 0);
+    }
+}
@@ -0,0 +1,31 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// db_bench compact: one full manual compaction of a database filled with
+// "num" random keys.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompactBenchmark extends DBBenchmarkBase {
+    @Setup(Level.Iteration)
+    public void setUp() {
+        open();
+        fillRandom();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        close();
+    }
+
+    @Benchmark
+    public void compact() {
+        this.db.compactRange(null, null);
+    }
+}
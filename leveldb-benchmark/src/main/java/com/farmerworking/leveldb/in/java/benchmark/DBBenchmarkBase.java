@@ -0,0 +1,78 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteOptions;
+import com.farmerworking.leveldb.in.java.data.structure.db.DB;
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// A db in the test directory plus the keys and values db_bench works with:
+// 16 byte decimal keys out of [0, num) and "valueSize" byte values.
+public abstract class DBBenchmarkBase {
+    // Number of key/values to place in the database
+    @Param("100000")
+    public int num;
+
+    // Size of each value
+    @Param("100")
+    public int valueSize;
+
+    protected Options options;
+    protected String dbname;
+    protected DB db;
+    protected ValueGenerator values;
+
+    // Open a fresh database
+    protected void open() {
+        this.options = new Options();
+        this.options.setCreateIfMissing(true);
+        this.dbname = this.options.getEnv().getTestDirectory().getValue() + "/dbbench";
+        DB.destroyDB(this.dbname, this.options);
+
+        Pair<Status, DB> pair = DB.open(this.options, this.dbname);
+        check(pair.getKey());
+        this.db = pair.getValue();
+        this.values = new ValueGenerator();
+    }
+
+    protected void close() {
+        if (this.db != null) {
+            this.db.close();
+            this.db = null;
+            DB.destroyDB(this.dbname, this.options);
+        }
+    }
+
+    // Write all "num" keys in order
+    protected void fillSequential() {
+        WriteOptions writeOptions = new WriteOptions();
+        for (int i = 0; i < num; i++) {
+            check(this.db.put(writeOptions, key(i), this.values.generate(valueSize)));
+        }
+    }
+
+    // Write "num" random keys
+    protected void fillRandom() {
+        WriteOptions writeOptions = new WriteOptions();
+        for (int i = 0; i < num; i++) {
+            check(this.db.put(writeOptions, randomKey(), this.values.generate(valueSize)));
+        }
+    }
+
+    protected String randomKey() {
+        return key(ThreadLocalRandom.current().nextInt(num));
+    }
+
+    static String key(long k) {
+        return String.format("%016d", k);
+    }
+
+    static void check(Status status) {
+        if (status.isNotOk()) {
+            throw new IllegalStateException(status.toString());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.data.structure.block.BlockBuilder;
+import com.farmerworking.leveldb.in.java.data.structure.block.BlockReader;
+import com.farmerworking.leveldb.in.java.data.structure.version.MergingIterator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Merging "children" interleaved sorted runs, the way reads merge the
+// memtables and the level-0 tables
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergingIteratorBenchmark {
+    @Param({"2", "8"})
+    public int children;
+
+    @Param("1000")
+    public int entriesPerChild;
+
+    private Options options;
+    private List<BlockReader> blockReaders;
+
+    @Setup
+    public void setUp() {
+        this.options = new Options();
+        this.blockReaders = new ArrayList<>();
+        ValueGenerator values = new ValueGenerator();
+        for (int child = 0; child < children; child++) {
+            BlockBuilder builder = new BlockBuilder(this.options);
+            for (int i = 0; i < entriesPerChild; i++) {
+                builder.add(DBBenchmarkBase.key((long) i * children + child), values.generate(100));
+            }
+            this.blockReaders.add(new BlockReader(builder.finish()));
+        }
+    }
+
+    private Iterator<String, String> newIterator() {
+        List<Iterator<String, String>> iterators = new ArrayList<>();
+        for (BlockReader blockReader : this.blockReaders) {
+            iterators.add(blockReader.iterator(this.options.getComparator()));
+        }
+        return MergingIterator.newMergingIterator(this.options.getComparator(), iterators);
+    }
+
+    @Benchmark
+    public void seek(Blackhole blackhole) {
+        Iterator<String, String> iterator = newIterator();
+        iterator.seek(DBBenchmarkBase.key(ThreadLocalRandom.current().nextInt(children * entriesPerChild)));
+        blackhole.consume(iterator.key());
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        Iterator<String, String> iterator = newIterator();
+        for (iterator.seekToFirst(); iterator.valid(); iterator.next()) {
+            blackhole.consume(iterator.key());
+        }
+    }
+}
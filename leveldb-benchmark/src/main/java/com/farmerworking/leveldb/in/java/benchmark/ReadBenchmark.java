@@ -0,0 +1,98 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.ReadOptions;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteOptions;
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// db_bench readrandom, readseq, readreverse, seekrandom and overwrite on a
+// database filled with "num" sequential keys and compacted once.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadBenchmark extends DBBenchmarkBase {
+    private ReadOptions readOptions;
+    private WriteOptions writeOptions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        open();
+        fillSequential();
+        this.db.compactRange(null, null);
+        this.readOptions = new ReadOptions();
+        this.writeOptions = new WriteOptions();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        close();
+    }
+
+    // Iterator of one benchmark thread, wraps around at the end of the db
+    @State(Scope.Thread)
+    public static class Cursor {
+        Iterator<String, String> iterator;
+
+        @Setup(Level.Iteration)
+        public void setUp(ReadBenchmark benchmark) {
+            this.iterator = benchmark.db.iterator(benchmark.readOptions);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            this.iterator.close();
+        }
+    }
+
+    @Benchmark
+    public Pair<Status, String> readrandom() {
+        return this.db.get(this.readOptions, randomKey());
+    }
+
+    @Benchmark
+    public void seekrandom(Cursor cursor, Blackhole blackhole) {
+        cursor.iterator.seek(randomKey());
+        if (cursor.iterator.valid()) {
+            blackhole.consume(cursor.iterator.key());
+        }
+    }
+
+    @Benchmark
+    public void readseq(Cursor cursor, Blackhole blackhole) {
+        if (!cursor.iterator.valid()) {
+            cursor.iterator.seekToFirst();
+        } else {
+            cursor.iterator.next();
+        }
+        if (cursor.iterator.valid()) {
+            blackhole.consume(cursor.iterator.key());
+            blackhole.consume(cursor.iterator.value());
+        }
+    }
+
+    @Benchmark
+    public void readreverse(Cursor cursor, Blackhole blackhole) {
+        if (!cursor.iterator.valid()) {
+            cursor.iterator.seekToLast();
+        } else {
+            cursor.iterator.prev();
+        }
+        if (cursor.iterator.valid()) {
+            blackhole.consume(cursor.iterator.key());
+            blackhole.consume(cursor.iterator.value());
+        }
+    }
+
+    @Benchmark
+    public Status overwrite() {
+        return this.db.put(this.writeOptions, randomKey(), this.values.generate(valueSize));
+    }
+}
@@ -0,0 +1,50 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.ReadOptions;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteOptions;
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// db_bench readwhilewriting: readers doing random reads while one thread
+// keeps overwriting random keys.  Reader and writer latencies are reported
+// separately.
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadWhileWritingBenchmark extends DBBenchmarkBase {
+    private ReadOptions readOptions;
+    private WriteOptions writeOptions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        open();
+        fillSequential();
+        this.readOptions = new ReadOptions();
+        this.writeOptions = new WriteOptions();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        close();
+    }
+
+    @Benchmark
+    @Group("readwhilewriting")
+    @GroupThreads(3)
+    public Pair<Status, String> read() {
+        return this.db.get(this.readOptions, randomKey());
+    }
+
+    @Benchmark
+    @Group("readwhilewriting")
+    @GroupThreads(1)
+    public Status write() {
+        return this.db.put(this.writeOptions, randomKey(), this.values.generate(valueSize));
+    }
+}
@@ -0,0 +1,48 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.CacheHandle;
+import com.farmerworking.leveldb.in.java.data.structure.cache.ShardedLRUCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Block cache lookups and inserts from several threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ShardedLRUCacheBenchmark {
+    @Param("10000")
+    public int entries;
+
+    private ShardedLRUCache<String> cache;
+
+    @Setup
+    public void setUp() {
+        // room for every entry, so lookups hit
+        this.cache = new ShardedLRUCache<>(entries);
+        for (int i = 0; i < entries; i++) {
+            String key = DBBenchmarkBase.key(i);
+            this.cache.release(this.cache.insert(key, key, 1, null));
+        }
+    }
+
+    @Benchmark
+    public String lookup() {
+        CacheHandle<String> handle = this.cache.lookup(DBBenchmarkBase.key(ThreadLocalRandom.current().nextInt(entries)));
+        String value = this.cache.value(handle);
+        this.cache.release(handle);
+        return value;
+    }
+
+    @Benchmark
+    public void insert() {
+        // half of the inserts replace an entry
+        String key = DBBenchmarkBase.key(ThreadLocalRandom.current().nextInt(entries * 2));
+        this.cache.release(this.cache.insert(key, key, 1, null));
+    }
+}
@@ -0,0 +1,41 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import java.util.Random;
+
+// Hands out values that compress to about half their size, the same way
+// db_bench does, so that compression costs what it would with real data.
+public class ValueGenerator {
+    private static final int kDataSize = 1 << 20;
+    private static final double kCompressionRatio = 0.5;
+
+    private final String data;
+    private int position;
+
+    public ValueGenerator() {
+        Random random = new Random(301);
+        StringBuilder builder = new StringBuilder(kDataSize);
+        while (builder.length() < kDataSize) {
+            // 100 bytes of which only the first half is random
+            int randomLength = (int) (100 * kCompressionRatio);
+            StringBuilder piece = new StringBuilder(100);
+            for (int i = 0; i < randomLength; i++) {
+                piece.append((char) (' ' + random.nextInt(95)));
+            }
+            while (piece.length() < 100) {
+                piece.append(piece, 0, Math.min(randomLength, 100 - piece.length()));
+            }
+            builder.append(piece);
+        }
+        this.data = builder.toString();
+        this.position = 0;
+    }
+
+    public String generate(int length) {
+        if (this.position + length > this.data.length()) {
+            this.position = 0;
+            assert length < this.data.length();
+        }
+        this.position += length;
+        return this.data.substring(this.position - length, this.position);
+    }
+}
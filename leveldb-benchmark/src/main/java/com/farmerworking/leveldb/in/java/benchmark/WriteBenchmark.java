@@ -0,0 +1,50 @@
+package com.farmerworking.leveldb.in.java.benchmark;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// db_bench fillseq, fillrandom and fillsync: every iteration starts from an
+// empty database.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteBenchmark extends DBBenchmarkBase {
+    private WriteOptions writeOptions;
+    private WriteOptions syncWriteOptions;
+    private long sequence;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        open();
+        this.writeOptions = new WriteOptions();
+        this.syncWriteOptions = new WriteOptions();
+        this.syncWriteOptions.setSync(true);
+        this.sequence = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        close();
+    }
+
+    @Benchmark
+    public Status fillseq() {
+        return this.db.put(this.writeOptions, key(this.sequence++), this.values.generate(valueSize));
+    }
+
+    @Benchmark
+    public Status fillrandom() {
+        return this.db.put(this.writeOptions, randomKey(), this.values.generate(valueSize));
+    }
+
+    @Benchmark
+    public Status fillsync() {
+        return this.db.put(this.syncWriteOptions, randomKey(), this.values.generate(valueSize));
+    }
+}
@@ -22,6 +22,17 @@ public class BytewiseComparator implements Comparator {
         return o1.length - o2.length;
     }
 
+    @Override
+    public int compare(char[] a, int aOffset, int aLength, char[] b, int bOffset, int bLength) {
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int cmp = compare(a[aOffset + i], b[bOffset + i]);
+            if (cmp != 0)
+                return cmp;
+        }
+        return aLength - bLength;
+    }
+
     @Override
     public char[] findShortestSeparator(char[] a, char[] b) {
         int minLength = Math.min(a.length, b.length);
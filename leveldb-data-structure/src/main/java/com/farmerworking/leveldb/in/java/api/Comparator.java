@@ -1,10 +1,19 @@
 package com.farmerworking.leveldb.in.java.api;
 
+import java.util.Arrays;
+
 public interface Comparator {
     String name();
 
     int compare(char[] a, char[] b);
 
+    // Same as compare() on a[aOffset, aOffset + aLength) and
+    // b[bOffset, bOffset + bLength).  Comparators that can compare in place
+    // should override it, it is used on every step of a memtable search.
+    default int compare(char[] a, int aOffset, int aLength, char[] b, int bOffset, int bLength) {
+        return compare(Arrays.copyOfRange(a, aOffset, aOffset + aLength), Arrays.copyOfRange(b, bOffset, bOffset + bLength));
+    }
+
     char[] findShortestSeparator(char[] a, char[] b);
 
     char[] findShortSuccessor(char[] a);
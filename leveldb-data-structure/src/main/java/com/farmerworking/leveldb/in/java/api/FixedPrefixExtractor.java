@@ -0,0 +1,22 @@
+package com.farmerworking.leveldb.in.java.api;
+
+// The first "length" chars of a key are its prefix, shorter keys are their
+// own prefix.
+public class FixedPrefixExtractor implements PrefixExtractor {
+    private final int length;
+
+    public FixedPrefixExtractor(int length) {
+        assert length > 0;
+        this.length = length;
+    }
+
+    @Override
+    public String name() {
+        return "leveldb.FixedPrefix." + length;
+    }
+
+    @Override
+    public String transform(String key) {
+        return key.length() <= length ? key : key.substring(0, length);
+    }
+}
@@ -1,5 +1,7 @@
 package com.farmerworking.leveldb.in.java.api;
 
+import com.farmerworking.leveldb.in.java.data.structure.memory.MemtableFactory;
+import com.farmerworking.leveldb.in.java.data.structure.memory.SkipListMemtableFactory;
 import com.farmerworking.leveldb.in.java.file.Env;
 import com.farmerworking.leveldb.in.java.file.impl.DefaultEnv;
 import lombok.Data;
@@ -101,14 +103,32 @@ public class Options {
     // on disk) before converting to a sorted on-disk file.
     //
     // Larger values increase performance, especially during bulk loads.
-    // Up to two write buffers may be held in memory at the same time,
-    // so you may wish to adjust this parameter to control memory usage.
+    // Up to maxWriteBufferNumber write buffers may be held in memory at
+    // the same time, so you may wish to adjust this parameter to control
+    // memory usage.
     // Also, a larger write buffer will result in a longer recovery time
     // the next time the database is opened.
     //
     // Default: 4MB
     int writeBufferSize = 4 << 20;
 
+    // Maximum number of write buffers held in memory: the one being
+    // written to and those waiting to be flushed.  Once they are all full,
+    // writes wait for a flush.  More buffers absorb a flush that falls
+    // behind for a while without stalling writes; a flush writes all the
+    // buffers waiting at the time into one level-0 file.
+    //
+    // Default: 2, the minimum
+    private int maxWriteBufferNumber = 2;
+
+    // If non-null, the memtables of every db these options are used for
+    // stay within the budget of this manager together, and may count
+    // against a cache too.  A db is made to switch its memtable before it
+    // is full when that frees the most memory.
+    //
+    // Default: nullptr
+    private WriteBufferManager writeBufferManager;
+
     // Number of open files that can be used by the DB.  You may need to
     // increase this if your database has a large working set (budget
     // one open file per 2MB of working set).
@@ -124,6 +144,124 @@ public class Options {
     // Default: false
     boolean errorIfExists;
 
+    // If true, once the leader of a write group has appended the merged
+    // batch to the log, every writer of the group inserts its own batch into
+    // the memtable from its own thread.  Sequence numbers are assigned up
+    // front, so readers observe the same result as a serial insert.
+    //
+    // Default: false
+    private boolean allowConcurrentMemtableWrite;
+
+    // If true, appending to the log and inserting into the memtable run as
+    // two separate stages, so the next write group can be logged (and
+    // synced) while the previous one is still being applied.  Sequence
+    // numbers become visible only after both stages are done.
+    //
+    // Default: false
+    private boolean enablePipelinedWrite;
+
+    // Creates the memtables.  VectorMemtableFactory suits bulk loads that
+    // read nothing until the flush, HashPrefixMemtableFactory suits point
+    // lookups.  Only the default skiplist memtable supports concurrent
+    // memtable writes without a lock.
+    //
+    // Default: SkipListMemtableFactory
+    private MemtableFactory memtableFactory = new SkipListMemtableFactory();
+
+    // If positive, every memtable keeps a bloom filter of its user keys, of
+    // memtableBloomSizeRatio * writeBufferSize bytes, and a get() of a key
+    // the filter rules out does not search that memtable.  Worth it for
+    // reads of keys that are mostly not in the memtables.  The filter
+    // counts towards the memory usage of its memtable.
+    //
+    // Default: 0 (no filter).  Values above 0.25 are taken as 0.25.
+    private double memtableBloomSizeRatio = 0;
+
+    // Maximum number of compactions that may run at the same time.  Every
+    // compaction works on a set of files and a key range no other running
+    // compaction touches.
+    //
+    // Default: 1
+    private int maxBackgroundCompactions = 1;
+
+    // Maximum number of memtable flushes that may run at the same time on
+    // the high priority thread pool, so a flush never waits behind a long
+    // compaction.  With 0 the memtable is flushed by the compaction threads.
+    //
+    // Default: 0
+    private int maxBackgroundFlushes = 0;
+
+    // A level-0 or manual compaction is split at input file boundaries into
+    // up to this many key ranges that are compacted by their own threads.
+    // All the outputs are installed together.
+    //
+    // Default: 1
+    private int maxSubcompactions = 1;
+
+    // Once level-0 reaches the slowdown trigger or the pending compaction
+    // bytes pass the soft limit, writes are throttled to at most this many
+    // bytes per second.  The rate drops further the closer the db gets to
+    // stopping writes altogether.
+    //
+    // Default: 16MB/s
+    private long delayedWriteRate = 16 * 1024 * 1024;
+
+    // Writes are slowed down once compactions are estimated to be this many
+    // bytes behind.  0 disables the limit.
+    //
+    // Default: 64GB
+    private long softPendingCompactionBytesLimit = 64L * 1024 * 1024 * 1024;
+
+    // Writes are stopped once compactions are estimated to be this many
+    // bytes behind.  0 disables the limit.
+    //
+    // Default: 256GB
+    private long hardPendingCompactionBytesLimit = 256L * 1024 * 1024 * 1024;
+
+    // Compactions read their input tables this many bytes ahead, see
+    // ReadOptions.readaheadSize.  0 uses the automatic readahead of regular
+    // iterators.
+    //
+    // Default: 2MB
+    private long compactionReadaheadSize = 2 * 1024 * 1024;
+
+    // If true, memtable flushes and compactions write their tables, and
+    // compactions read their inputs, with Env.newDirectWritableFile and
+    // Env.newDirectRandomAccessFile, keeping the page cache for user reads.
+    // Compactions then open their input tables on their own rather than
+    // through the table cache, and do not fill the block cache.
+    //
+    // Default: false
+    private boolean useDirectIOForFlushAndCompaction = false;
+
+    // If non-null, memtable flushes and compactions write their tables no
+    // faster than this limiter allows.  An auto-tuned limiter is given more
+    // room as level-0 fills up towards the slowdown trigger.
+    //
+    // Default: nullptr
+    private RateLimiter rateLimiter;
+
+    // With either of these set, the log is synced in the background every
+    // walSyncPeriodMillis or once walBytesPerSync bytes were logged since
+    // the last sync, whichever comes first.  A crash loses at most that
+    // many of the most recent non-sync writes.  Sync writes no longer sync
+    // the log themselves but wait for the next sync, so any number of them
+    // share one.  See DB.waitForDurable and DB.syncWAL.
+    //
+    // Default: 0, every sync write syncs the log
+    private long walSyncPeriodMillis = 0;
+    private long walBytesPerSync = 0;
+
+    // Up to this many obsolete log files are kept and written over as new
+    // logs instead of creating and deleting a file for every log.  When
+    // there is none to recycle, one is preallocated in the background to a
+    // bit more than writeBufferSize, so syncs of a recycled log do not have
+    // to persist a growing file size.  Logs are then written in the
+    // recyclable record format.
+    //
+    // Default: 0, no recycling
+    private int recycleLogFileNum = 0;
+
     public interface Logger {
         public static void log(Logger logger, String msg, String ... args) {
             if (logger != null) {
@@ -147,11 +285,29 @@ public class Options {
         this.maxFileSize = options.maxFileSize;
         this.infoLog = options.infoLog;
         this.writeBufferSize = options.writeBufferSize;
+        this.maxWriteBufferNumber = options.maxWriteBufferNumber;
+        this.writeBufferManager = options.writeBufferManager;
         this.maxOpenFiles = options.maxOpenFiles;
         this.reuseLogs = options.reuseLogs;
         this.paranoidChecks = options.paranoidChecks;
         this.blockCache = options.blockCache;
         this.createIfMissing = options.createIfMissing;
         this.errorIfExists = options.errorIfExists;
+        this.allowConcurrentMemtableWrite = options.allowConcurrentMemtableWrite;
+        this.enablePipelinedWrite = options.enablePipelinedWrite;
+        this.memtableFactory = options.memtableFactory;
+        this.memtableBloomSizeRatio = options.memtableBloomSizeRatio;
+        this.maxBackgroundCompactions = options.maxBackgroundCompactions;
+        this.maxBackgroundFlushes = options.maxBackgroundFlushes;
+        this.maxSubcompactions = options.maxSubcompactions;
+        this.delayedWriteRate = options.delayedWriteRate;
+        this.softPendingCompactionBytesLimit = options.softPendingCompactionBytesLimit;
+        this.hardPendingCompactionBytesLimit = options.hardPendingCompactionBytesLimit;
+        this.compactionReadaheadSize = options.compactionReadaheadSize;
+        this.useDirectIOForFlushAndCompaction = options.useDirectIOForFlushAndCompaction;
+        this.rateLimiter = options.rateLimiter;
+        this.walSyncPeriodMillis = options.walSyncPeriodMillis;
+        this.walBytesPerSync = options.walBytesPerSync;
+        this.recycleLogFileNum = options.recycleLogFileNum;
     }
 }
@@ -0,0 +1,12 @@
+package com.farmerworking.leveldb.in.java.api;
+
+// Maps a user key to its prefix, for structures that group keys sharing a
+// prefix, such as the hash-prefix memtable.
+public interface PrefixExtractor {
+    // Return the name of this extractor.
+    String name();
+
+    // The prefix of "key".  Keys with different prefixes may still be
+    // grouped together, keys with the same prefix always are.
+    String transform(String key);
+}
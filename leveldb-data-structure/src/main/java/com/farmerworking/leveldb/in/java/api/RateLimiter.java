@@ -0,0 +1,169 @@
+package com.farmerworking.leveldb.in.java.api;
+
+// Caps the bytes per second background jobs write, so flushes and
+// compactions can not take all of the disk away from reads.  Shared by every
+// db the options are used for.
+//
+// A writer is charged right away and then sleeps until the rate has paid for
+// its bytes, so writers that come later wait behind the ones before them.
+//
+// This class is thread safe.
+public class RateLimiter {
+    static final long kMicrosPerSecond = 1000000;
+
+    // Bytes are handed out in pieces of what the rate allows in this many
+    // micros, which is also the most credit an idle limiter builds up.
+    static final long kRefillPeriodMicros = 100 * 1000;
+
+    // An auto-tuned limiter never goes below this fraction of its maximum
+    static final int kAutoTuneRatio = 20;
+
+    private final long maxBytesPerSecond;
+    private final boolean autoTuned;
+
+    private long bytesPerSecond;
+    // Bytes that can be written without waiting.  Negative while writers
+    // are sleeping off what they were charged.
+    private long availableBytes;
+    private long lastRefillMicros;
+
+    // Statistics
+    private long totalBytes;
+    private long totalRequests;
+    private long throttledBytes;
+    private long throttledMicros;
+
+    public RateLimiter(long bytesPerSecond) {
+        this(bytesPerSecond, false);
+    }
+
+    // With "autoTuned" the limit starts low and moves between
+    // bytesPerSecond / kAutoTuneRatio and bytesPerSecond with the pressure
+    // reported by setPressure().
+    public RateLimiter(long bytesPerSecond, boolean autoTuned) {
+        assert bytesPerSecond > 0;
+        this.maxBytesPerSecond = bytesPerSecond;
+        this.autoTuned = autoTuned;
+        this.bytesPerSecond = autoTuned ? minBytesPerSecond() : bytesPerSecond;
+        this.availableBytes = 0;
+        this.lastRefillMicros = nowMicros();
+    }
+
+    // Block until "bytes" may be written
+    public void request(long bytes) {
+        while (bytes > 0) {
+            long n;
+            long waitMicros;
+            synchronized (this) {
+                n = Math.min(bytes, refillBytes());
+                refill();
+                totalBytes += n;
+                totalRequests++;
+
+                waitMicros = 0;
+                if (availableBytes < n) {
+                    waitMicros = (n - availableBytes) * kMicrosPerSecond / bytesPerSecond;
+                    throttledBytes += n;
+                    throttledMicros += waitMicros;
+                }
+                availableBytes -= n;
+            }
+
+            if (waitMicros > 0) {
+                sleepMicros(waitMicros);
+            }
+            bytes -= n;
+        }
+    }
+
+    // Report how far background work has fallen behind, from 0 (not at all)
+    // to 1 (writes are about to be slowed down).  Only moves the limit of an
+    // auto-tuned limiter.
+    public synchronized void setPressure(double pressure) {
+        if (!autoTuned) {
+            return;
+        }
+        pressure = Math.min(1, Math.max(0, pressure));
+        long min = minBytesPerSecond();
+        setRate(min + (long) ((maxBytesPerSecond - min) * pressure));
+    }
+
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        assert bytesPerSecond > 0;
+        setRate(bytesPerSecond);
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    public boolean isAutoTuned() {
+        return autoTuned;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getTotalRequests() {
+        return totalRequests;
+    }
+
+    // Bytes whose writers had to wait
+    public synchronized long getThrottledBytes() {
+        return throttledBytes;
+    }
+
+    public synchronized long getThrottledMicros() {
+        return throttledMicros;
+    }
+
+    long nowMicros() {
+        return System.nanoTime() / 1000;
+    }
+
+    void sleepMicros(long micros) {
+        try {
+            Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void setRate(long rate) {
+        // settle the credit at the old rate first
+        refill();
+        bytesPerSecond = rate;
+    }
+
+    private long minBytesPerSecond() {
+        return Math.max(1, maxBytesPerSecond / kAutoTuneRatio);
+    }
+
+    private long refillBytes() {
+        return Math.max(1, bytesPerSecond * kRefillPeriodMicros / kMicrosPerSecond);
+    }
+
+    private void refill() {
+        long now = nowMicros();
+        long elapsed = now - lastRefillMicros;
+        if (elapsed <= 0) {
+            return;
+        }
+        long earned = Math.min(elapsed, kMicrosPerSecond) * bytesPerSecond / kMicrosPerSecond;
+        if (availableBytes + earned >= refillBytes()) {
+            // credit earned while idle is capped by one refill period
+            availableBytes = refillBytes();
+            lastRefillMicros = now;
+        } else {
+            // only move on by the time paid for, so that calls closer
+            // together than a byte's worth of time still add up
+            availableBytes += earned;
+            lastRefillMicros += earned * kMicrosPerSecond / bytesPerSecond;
+        }
+    }
+}
@@ -11,4 +11,11 @@ public class ReadOptions {
     boolean verifyChecksums = false;
 
     Snapshot snapshot = null;
+
+    // Iterators read this many bytes of the data blocks ahead of the one
+    // they are on, in the background and with one large read per table.
+    // With 0 readahead starts small once an iterator reads blocks one after
+    // the other and grows while it keeps doing so.
+    // Default: 0
+    long readaheadSize = 0;
 }
@@ -0,0 +1,178 @@
+package com.farmerworking.leveldb.in.java.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Keeps the memtables of every db the options are used for within one
+// memory budget.  Each db reports the memory of its memtables.  Once they
+// use more than bufferSize bytes together, and enough of that is in mutable
+// memtables for a flush to help, the db with the largest mutable memtable
+// is made to switch it, so the flush that follows frees its memory.
+//
+// With a cache, the memory is also charged against that cache in dummy
+// entries of kDummyEntrySize bytes.  Given the block cache, memtables and
+// cached blocks share one budget: the cache evicts blocks to make room for
+// memtables.
+//
+// This class is thread safe.
+public class WriteBufferManager {
+    static final int kDummyEntrySize = 256 * 1024;
+
+    private final long bufferSize;
+    private final Cache<Object> cache;
+    private final String cacheKeyPrefix;
+
+    private final List<Client> clients;
+    // Handles of the dummy entries, the last one has key prefix + (size - 1)
+    private final Deque<CacheHandle<Object>> dummyEntries;
+    private long memoryUsage;
+    private long mutableMemoryUsage;
+
+    public WriteBufferManager(long bufferSize) {
+        this(bufferSize, null);
+    }
+
+    // A "bufferSize" of 0 does not limit the memory, it is only charged
+    // against "cache".
+    @SuppressWarnings("unchecked")
+    public WriteBufferManager(long bufferSize, Cache cache) {
+        assert bufferSize >= 0;
+        this.bufferSize = bufferSize;
+        this.cache = cache;
+        this.cacheKeyPrefix = cache == null ? null : "write-buffer-manager-" + cache.newId() + "-";
+        this.clients = new ArrayList<>();
+        this.dummyEntries = new ArrayDeque<>();
+        this.memoryUsage = 0;
+        this.mutableMemoryUsage = 0;
+    }
+
+    // "switchMemtable" makes the db switch its memtable even though it may
+    // not be writing anything.  It is called without any lock of the
+    // manager held and must not block.
+    public synchronized Client register(Runnable switchMemtable) {
+        Client client = new Client(switchMemtable);
+        this.clients.add(client);
+        return client;
+    }
+
+    public long getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public synchronized long memoryUsage() {
+        return this.memoryUsage;
+    }
+
+    public synchronized long mutableMemoryUsage() {
+        return this.mutableMemoryUsage;
+    }
+
+    synchronized int dummyEntryCount() {
+        return this.dummyEntries.size();
+    }
+
+    // Over budget, with at least half of the budget in mutable memtables.
+    // Mutable memtables alone may take 7/8 of it, so that they can be
+    // switched before the immutable ones being flushed run out the rest.
+    private boolean shouldSwitch() {
+        if (this.bufferSize == 0) {
+            return false;
+        }
+        return this.mutableMemoryUsage > this.bufferSize / 8 * 7 ||
+                (this.memoryUsage >= this.bufferSize && this.mutableMemoryUsage >= this.bufferSize / 2);
+    }
+
+    private Client largest() {
+        Client result = null;
+        for (Client client : this.clients) {
+            if (client.mutableMemoryUsage > 0 &&
+                    (result == null || client.mutableMemoryUsage > result.mutableMemoryUsage)) {
+                result = client;
+            }
+        }
+        return result;
+    }
+
+    // Hold dummy entries for the memory usage rounded up to whole entries,
+    // and one more at most, so that usage going back and forth around an
+    // entry boundary does not insert and erase an entry every time.  None
+    // once no memory is used.
+    private void updateCacheCharge() {
+        if (this.cache == null) {
+            return;
+        }
+
+        long needed = (this.memoryUsage + kDummyEntrySize - 1) / kDummyEntrySize;
+        while (this.dummyEntries.size() < needed) {
+            String key = this.cacheKeyPrefix + this.dummyEntries.size();
+            this.dummyEntries.addLast(this.cache.insert(key, null, kDummyEntrySize, null));
+        }
+        long keep = this.memoryUsage == 0 ? 0 : needed + 1;
+        while (this.dummyEntries.size() > keep) {
+            this.cache.release(this.dummyEntries.removeLast());
+            this.cache.erase(this.cacheKeyPrefix + this.dummyEntries.size());
+        }
+    }
+
+    // The share of one db
+    public class Client {
+        private final Runnable switchMemtable;
+        private long memoryUsage;
+        private long mutableMemoryUsage;
+        private boolean closed;
+
+        private Client(Runnable switchMemtable) {
+            this.switchMemtable = switchMemtable;
+            this.memoryUsage = 0;
+            this.mutableMemoryUsage = 0;
+            this.closed = false;
+        }
+
+        // The memtables of the db use "memoryUsage" bytes, "mutableMemoryUsage"
+        // of them in its mutable memtable.  Returns true if the db is to
+        // switch its memtable now.  If another db is, it is switched through
+        // its callback instead.
+        public boolean reportUsage(long mutableMemoryUsage, long memoryUsage) {
+            assert mutableMemoryUsage <= memoryUsage;
+            Client picked = null;
+            synchronized (WriteBufferManager.this) {
+                if (this.closed) {
+                    return false;
+                }
+
+                update(mutableMemoryUsage, memoryUsage);
+                if (shouldSwitch()) {
+                    picked = largest();
+                }
+            }
+
+            if (picked != null && picked != this) {
+                picked.switchMemtable.run();
+            }
+            return picked == this;
+        }
+
+        // The db is closed, its memtables no longer count
+        public void close() {
+            synchronized (WriteBufferManager.this) {
+                if (this.closed) {
+                    return;
+                }
+
+                update(0, 0);
+                this.closed = true;
+                clients.remove(this);
+            }
+        }
+
+        private void update(long mutableMemoryUsage, long memoryUsage) {
+            WriteBufferManager.this.mutableMemoryUsage += mutableMemoryUsage - this.mutableMemoryUsage;
+            WriteBufferManager.this.memoryUsage += memoryUsage - this.memoryUsage;
+            this.mutableMemoryUsage = mutableMemoryUsage;
+            this.memoryUsage = memoryUsage;
+            updateCacheCharge();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.farmerworking.leveldb.in.java.common;
 
+import java.nio.ByteBuffer;
+
 // c++ use 1 byte to represent char
 public class ByteUtils {
     public static byte[] toByteArray(char[] chars) {
@@ -18,11 +20,13 @@ public class ByteUtils {
         return toByteArray(s, 0, s.length());
     }
 
+    // String.getBytes(int, int, byte[], int) keeps exactly the low 8 bits of
+    // every char, which is the same narrowing as the loop above but is done by
+    // an intrinsic copy instead of a charAt() per byte
+    @SuppressWarnings("deprecation")
     public static byte[] toByteArray(String s, int offset, int length) {
         byte[] bytes = new byte[length];
-        for (int i = offset, j = 0; i < offset + length; i++, j++) {
-            bytes[j] = (byte) s.charAt(i);
-        }
+        s.getBytes(offset, offset + length, bytes, 0);
         return bytes;
     }
 
@@ -37,4 +41,25 @@ public class ByteUtils {
         }
         return chars;
     }
+
+    public static String toString(byte[] bytes) {
+        return toString(bytes, 0, bytes.length);
+    }
+
+    // build the one-byte-per-char string directly from bytes, skipping the
+    // intermediate char[]. high byte 0 maps every byte to its unsigned value
+    @SuppressWarnings("deprecation")
+    public static String toString(byte[] bytes, int offset, int length) {
+        return new String(bytes, 0, offset, length);
+    }
+
+    // the remaining bytes of buffer, its position is left untouched
+    public static String toString(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return toString(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return toString(bytes);
+    }
 }
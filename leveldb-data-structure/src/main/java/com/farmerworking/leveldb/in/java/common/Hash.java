@@ -2,15 +2,20 @@ package com.farmerworking.leveldb.in.java.common;
 
 public class Hash implements IHash{
     public int hash(char[] data, int seed) {
+        return hash(data, 0, data.length, seed);
+    }
+
+    public int hash(char[] data, int start, int length, int seed) {
         // Similar to murmur hash
         int m = 0xc6a4a793;
         int r = 24;
-        int h = seed ^ (data.length * m);
+        int h = seed ^ (length * m);
 
 
         // Pick up four bytes at a time
-        int offset = 0;
-        while (offset + ICoding.getInstance().getFixed32Length() <= data.length) {
+        int offset = start;
+        int end = start + length;
+        while (offset + ICoding.getInstance().getFixed32Length() <= end) {
             int w = ICoding.getInstance().decodeFixed32(data, offset);
             offset += ICoding.getInstance().getFixed32Length();
             h += w;
@@ -19,7 +24,7 @@ public class Hash implements IHash{
         }
 
         // Pick up remaining bytes
-        int left = data.length - offset;
+        int left = end - offset;
         while(left > 0) {
             left--;
 
@@ -0,0 +1,195 @@
+package com.farmerworking.leveldb.in.java.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Distribution of a series of non-negative values, such as latencies, in
+// buckets that grow exponentially.  Thread safe.
+public class Histogram {
+    // Upper bounds of the buckets: 1, 2 and then each about 1.5 times the
+    // one before, rounded to two significant digits, up to 1e12.  That is
+    // more than ten days in micros.
+    private static final double[] kBucketLimit = bucketLimits();
+    private static final int kNumBuckets = kBucketLimit.length;
+
+    private double min;
+    private double max;
+    private double num;
+    private double sum;
+    private double sumSquares;
+    private final double[] buckets;
+
+    public Histogram() {
+        this.buckets = new double[kNumBuckets];
+        clear();
+    }
+
+    public synchronized void clear() {
+        this.min = kBucketLimit[kNumBuckets - 1];
+        this.max = 0;
+        this.num = 0;
+        this.sum = 0;
+        this.sumSquares = 0;
+        for (int i = 0; i < kNumBuckets; i++) {
+            this.buckets[i] = 0;
+        }
+    }
+
+    public synchronized void add(double value) {
+        // First bucket whose limit is above value, this is on the path of
+        // every instrumented I/O, so no linear search
+        int b = Arrays.binarySearch(kBucketLimit, value);
+        b = b >= 0 ? b + 1 : -(b + 1);
+        b = Math.min(b, kNumBuckets - 1);
+        this.buckets[b] += 1.0;
+        if (this.min > value) {
+            this.min = value;
+        }
+        if (this.max < value) {
+            this.max = value;
+        }
+        this.num++;
+        this.sum += value;
+        this.sumSquares += (value * value);
+    }
+
+    public void merge(Histogram other) {
+        Histogram copy = other.copy();
+        synchronized (this) {
+            if (copy.min < this.min) {
+                this.min = copy.min;
+            }
+            if (copy.max > this.max) {
+                this.max = copy.max;
+            }
+            this.num += copy.num;
+            this.sum += copy.sum;
+            this.sumSquares += copy.sumSquares;
+            for (int b = 0; b < kNumBuckets; b++) {
+                this.buckets[b] += copy.buckets[b];
+            }
+        }
+    }
+
+    public synchronized Histogram copy() {
+        Histogram result = new Histogram();
+        result.min = this.min;
+        result.max = this.max;
+        result.num = this.num;
+        result.sum = this.sum;
+        result.sumSquares = this.sumSquares;
+        System.arraycopy(this.buckets, 0, result.buckets, 0, kNumBuckets);
+        return result;
+    }
+
+    public synchronized long count() {
+        return (long) this.num;
+    }
+
+    public synchronized double min() {
+        return this.num == 0 ? 0 : this.min;
+    }
+
+    public synchronized double max() {
+        return this.max;
+    }
+
+    public synchronized double median() {
+        return percentile(50.0);
+    }
+
+    public synchronized double percentile(double p) {
+        double threshold = this.num * (p / 100.0);
+        double sum = 0;
+        for (int b = 0; b < kNumBuckets; b++) {
+            sum += this.buckets[b];
+            if (sum >= threshold) {
+                // Scale linearly within this bucket
+                double leftPoint = (b == 0) ? 0 : kBucketLimit[b - 1];
+                double rightPoint = kBucketLimit[b];
+                double leftSum = sum - this.buckets[b];
+                double rightSum = sum;
+                double pos = (threshold - leftSum) / (rightSum - leftSum);
+                double r = leftPoint + (rightPoint - leftPoint) * pos;
+                if (r < this.min) {
+                    r = this.min;
+                }
+                if (r > this.max) {
+                    r = this.max;
+                }
+                return r;
+            }
+        }
+        return this.max;
+    }
+
+    public synchronized double average() {
+        if (this.num == 0.0) {
+            return 0;
+        }
+        return this.sum / this.num;
+    }
+
+    public synchronized double standardDeviation() {
+        if (this.num == 0.0) {
+            return 0;
+        }
+        double variance = (this.sumSquares * this.num - this.sum * this.sum) / (this.num * this.num);
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder r = new StringBuilder();
+        r.append(String.format("Count: %.0f  Average: %.4f  StdDev: %.2f\n", this.num, average(), standardDeviation()));
+        r.append(String.format("Min: %.4f  Median: %.4f  Max: %.4f\n", min(), median(), this.max));
+        r.append("------------------------------------------------------\n");
+        double mult = this.num == 0 ? 0 : 100.0 / this.num;
+        double sum = 0;
+        for (int b = 0; b < kNumBuckets; b++) {
+            if (this.buckets[b] <= 0.0) {
+                continue;
+            }
+            sum += this.buckets[b];
+            r.append(String.format("[ %7.0f, %7.0f ) %7.0f %7.3f%% %7.3f%% ",
+                    ((b == 0) ? 0.0 : kBucketLimit[b - 1]), // left
+                    kBucketLimit[b],                         // right
+                    this.buckets[b],                         // count
+                    mult * this.buckets[b],                  // percentage
+                    mult * sum));                            // cumulative percentage
+
+            // Add hash marks based on percentage; 20 marks for 100%.
+            int marks = (int) (20 * (this.buckets[b] / this.num) + 0.5);
+            for (int i = 0; i < marks; i++) {
+                r.append('#');
+            }
+            r.append('\n');
+        }
+        return r.toString();
+    }
+
+    private static double[] bucketLimits() {
+        List<Long> limits = new ArrayList<>();
+        limits.add(1L);
+        limits.add(2L);
+        long last = 2;
+        while (last < 1_000_000_000_000L) {
+            long next = last * 3 / 2;
+            // keep the two most significant digits
+            long pow = 1;
+            while (next / pow >= 100) {
+                pow *= 10;
+            }
+            next = Math.max(last + 1, next / pow * pow);
+            limits.add(next);
+            last = next;
+        }
+
+        double[] result = new double[limits.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = limits.get(i);
+        }
+        return result;
+    }
+}
@@ -5,6 +5,9 @@ public interface IHash {
 
     int hash(char[] data, int seed);
 
+    // Hash of data[offset, offset + length), same as hash() of a copy of it
+    int hash(char[] data, int offset, int length, int seed);
+
     static IHash getDefaultImpl() {
         return new Hash();
     }
@@ -6,10 +6,13 @@ import com.farmerworking.leveldb.in.java.data.structure.block.EmptyIterator;
 import com.farmerworking.leveldb.in.java.data.structure.table.CacheHandleReleaser;
 import com.farmerworking.leveldb.in.java.data.structure.table.GetSaver;
 import com.farmerworking.leveldb.in.java.data.structure.table.ITableReader;
+import com.farmerworking.leveldb.in.java.file.Env;
 import com.farmerworking.leveldb.in.java.file.FileName;
 import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
 import javafx.util.Pair;
 
+import java.util.List;
+
 public class TableCache {
     final Options options;
     private final String dbname;
@@ -40,6 +43,20 @@ public class TableCache {
         return pair.getKey();
     }
 
+    // Look up sorted "internalKeys" in one table, opening it only once
+    public Status multiGet(ReadOptions readOptions, long fileNumber, long fileSize, List<String> internalKeys, List<GetSaver> savers) {
+        Pair<Status, CacheHandle<Pair<RandomAccessFile, ITableReader>>> pair = findTable(fileNumber, fileSize);
+
+        if (pair.getKey().isOk()) {
+            ITableReader tableReader = cache.value(pair.getValue()).getValue();
+            Status status = tableReader.multiGet(readOptions, internalKeys, savers);
+            cache.release(pair.getValue());
+            return status;
+        }
+
+        return pair.getKey();
+    }
+
     public void evict(long fileNumber) {
         String cacheKey = cacheKey(fileNumber);
         cache.erase(cacheKey);
@@ -67,6 +84,27 @@ public class TableCache {
         return builder.toString();
     }
 
+    // Iterator over a table for a compaction.  With direct I/O the table is
+    // opened just for the compaction and without block cache, so what it
+    // reads stays out of the page cache, the table cache and the block cache.
+    public Iterator<String, String> compactionIterator(ReadOptions readOptions, long fileNumber, long fileSize) {
+        if (!this.options.isUseDirectIOForFlushAndCompaction()) {
+            return iterator(readOptions, fileNumber, fileSize).getKey();
+        }
+
+        Options tableOptions = new Options(this.options);
+        tableOptions.setBlockCache(null);
+        Pair<Status, Pair<RandomAccessFile, ITableReader>> pair = openTable(tableOptions, fileNumber, fileSize, true);
+        if (pair.getKey().isNotOk()) {
+            return new EmptyIterator(pair.getKey());
+        }
+
+        RandomAccessFile file = pair.getValue().getKey();
+        Iterator<String, String> iter = pair.getValue().getValue().iterator(readOptions);
+        iter.registerCleanup(file::close);
+        return iter;
+    }
+
     Pair<Status, CacheHandle<Pair<RandomAccessFile, ITableReader>>> findTable(long fileNumber, long fileSize) {
         String cacheKey = cacheKey(fileNumber);
         CacheHandle<Pair<RandomAccessFile, ITableReader>> handle = cache.lookup(cacheKey);
@@ -76,34 +114,54 @@ public class TableCache {
             return new Pair<>(Status.OK(), handle);
         } else {
             miss ++;
-            String tableFileName = FileName.tableFileName(dbname, fileNumber);
-            Pair<Status, RandomAccessFile> pair = this.options.getEnv().newRandomAccessFile(tableFileName);
+            Pair<Status, Pair<RandomAccessFile, ITableReader>> pair = openTable(this.options, fileNumber, fileSize, false);
+            if (pair.getKey().isNotOk()) {
+                // We do not cache error results so that if the error is transient,
+                // or somebody repairs the file, we recover automatically.
+                return new Pair<>(pair.getKey(), null);
+            } else {
+                handle = cache.insert(cacheKey, pair.getValue(), 1, TableCache::deleteEntry);
+                return new Pair<>(pair.getKey(), handle);
+            }
+        }
+    }
 
-            Status status = pair.getKey();
-            if (status.isNotOk()) {
-                tableFileName = FileName.SSTTableFileName(dbname, fileNumber);
-                pair = this.options.getEnv().newRandomAccessFile(tableFileName);
+    private Pair<Status, Pair<RandomAccessFile, ITableReader>> openTable(Options options, long fileNumber, long fileSize, boolean direct) {
+        String tableFileName = FileName.tableFileName(dbname, fileNumber);
+        Pair<Status, RandomAccessFile> pair = newRandomAccessFile(tableFileName, direct);
 
-                if (pair.getKey().isOk()) {
-                    status = pair.getKey();
-                }
-            }
+        Status status = pair.getKey();
+        if (status.isNotOk()) {
+            tableFileName = FileName.SSTTableFileName(dbname, fileNumber);
+            pair = newRandomAccessFile(tableFileName, direct);
 
-            ITableReader tableReader = null;
-            if (status.isOk()) {
-                tableReader = newTableReader();
-                status = tableReader.open(this.options, pair.getValue(), fileSize);
+            if (pair.getKey().isOk()) {
+                status = pair.getKey();
             }
+        }
 
-            if (status.isNotOk()) {
-                // We do not cache error results so that if the error is transient,
-                // or somebody repairs the file, we recover automatically.
-                return new Pair<>(status, null);
-            } else {
-                handle = cache.insert(cacheKey, new Pair<>(pair.getValue(), tableReader), 1, null);
-                return new Pair<>(status, handle);
+        ITableReader tableReader = null;
+        if (status.isOk()) {
+            tableReader = newTableReader();
+            status = tableReader.open(options, pair.getValue(), fileSize);
+        }
+
+        if (status.isNotOk()) {
+            if (pair.getValue() != null) {
+                pair.getValue().close();
             }
+            return new Pair<>(status, null);
         }
+        return new Pair<>(status, new Pair<>(pair.getValue(), tableReader));
+    }
+
+    private Pair<Status, RandomAccessFile> newRandomAccessFile(String filename, boolean direct) {
+        Env env = this.options.getEnv();
+        return direct ? env.newDirectRandomAccessFile(filename) : env.newRandomAccessFile(filename);
+    }
+
+    private static void deleteEntry(String key, Pair<RandomAccessFile, ITableReader> value) {
+        value.getKey().close();
     }
 
     ITableReader newTableReader() {
@@ -0,0 +1,61 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.ByteUtils;
+
+import java.nio.ByteBuffer;
+
+// byte[] view over a db iterator. keys and values are stored one byte per char
+// internally, so key() and value() return a narrowed copy of the current entry
+public class BinaryIterator {
+    private final Iterator<String, String> iter;
+
+    public BinaryIterator(Iterator<String, String> iter) {
+        this.iter = iter;
+    }
+
+    public boolean valid() {
+        return iter.valid();
+    }
+
+    public void seekToFirst() {
+        iter.seekToFirst();
+    }
+
+    public void seekToLast() {
+        iter.seekToLast();
+    }
+
+    public void seek(byte[] target) {
+        iter.seek(ByteUtils.toString(target));
+    }
+
+    public void seek(ByteBuffer target) {
+        iter.seek(ByteUtils.toString(target));
+    }
+
+    public void next() {
+        iter.next();
+    }
+
+    public void prev() {
+        iter.prev();
+    }
+
+    public byte[] key() {
+        return ByteUtils.toByteArray(iter.key());
+    }
+
+    public byte[] value() {
+        return ByteUtils.toByteArray(iter.value());
+    }
+
+    public Status status() {
+        return iter.status();
+    }
+
+    public void close() {
+        iter.close();
+    }
+}
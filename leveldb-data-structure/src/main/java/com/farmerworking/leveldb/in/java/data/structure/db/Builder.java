@@ -11,6 +11,7 @@ import com.farmerworking.leveldb.in.java.data.structure.version.FileMetaData;
 import com.farmerworking.leveldb.in.java.file.Env;
 import com.farmerworking.leveldb.in.java.file.FileName;
 import com.farmerworking.leveldb.in.java.file.WritableFile;
+import com.farmerworking.leveldb.in.java.file.impl.RateLimitedWritableFile;
 import javafx.util.Pair;
 
 public class Builder {
@@ -31,13 +32,15 @@ public class Builder {
         Status status = Status.OK();
         String filename = FileName.tableFileName(dbname, metaData.getFileNumber());
         if (iter.valid()) {
-            Pair<Status, WritableFile> pair = env.newWritableFile(filename);
+            Pair<Status, WritableFile> pair = options.isUseDirectIOForFlushAndCompaction() ?
+                    env.newDirectWritableFile(filename) : env.newWritableFile(filename);
             status = pair.getKey();
             if (status.isNotOk()) {
                 return status;
             }
 
-            TableBuilder builder = new TableBuilder(options, pair.getValue());
+            WritableFile file = RateLimitedWritableFile.wrap(pair.getValue(), options.getRateLimiter());
+            TableBuilder builder = new TableBuilder(options, file);
             metaData.getSmallest().decodeFrom(iter.key());
             for (; iter.valid(); iter.next()) {
                 metaData.getLargest().decodeFrom(iter.key());
@@ -55,11 +58,11 @@ public class Builder {
             }
 
             if (status.isOk()) {
-                status = sync(pair.getValue());
+                status = sync(file);
             }
 
             if (status.isOk()) {
-                status = close(pair.getValue());
+                status = close(file);
             }
 
             if (status.isOk()) {
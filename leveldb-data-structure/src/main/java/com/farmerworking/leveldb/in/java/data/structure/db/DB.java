@@ -1,8 +1,7 @@
 package com.farmerworking.leveldb.in.java.data.structure.db;
 
 import com.farmerworking.leveldb.in.java.api.*;
-import com.farmerworking.leveldb.in.java.data.structure.log.LogWriter;
-import com.farmerworking.leveldb.in.java.data.structure.memory.Memtable;
+import com.farmerworking.leveldb.in.java.common.ByteUtils;
 import com.farmerworking.leveldb.in.java.data.structure.version.VersionEdit;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.WriteBatch;
 import com.farmerworking.leveldb.in.java.file.Env;
@@ -11,7 +10,9 @@ import com.farmerworking.leveldb.in.java.file.FileType;
 import com.farmerworking.leveldb.in.java.file.WritableFile;
 import javafx.util.Pair;
 
+import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
+import java.util.ArrayList;
 import java.util.List;
 
 public interface DB {
@@ -25,8 +26,65 @@ public interface DB {
 
     Status delete(WriteOptions writeOptions, String key);
 
+    // binary flavour of the api above, for callers that hold bytes. the
+    // engine keeps every byte as one char, so these convert at the boundary:
+    // writes widen the bytes once as they go into the write batch, reads
+    // narrow the String they get into a new byte[].  they are a convenience,
+    // not a faster path
+    default Status put(WriteOptions writeOptions, byte[] key, byte[] value) {
+        WriteBatch batch = new WriteBatch();
+        batch.put(key, value);
+        return write(writeOptions, batch);
+    }
+
+    default Status put(WriteOptions writeOptions, ByteBuffer key, ByteBuffer value) {
+        WriteBatch batch = new WriteBatch();
+        batch.put(key, value);
+        return write(writeOptions, batch);
+    }
+
+    default Status delete(WriteOptions writeOptions, byte[] key) {
+        WriteBatch batch = new WriteBatch();
+        batch.delete(key);
+        return write(writeOptions, batch);
+    }
+
+    default Pair<Status, byte[]> get(ReadOptions readOptions, byte[] key) {
+        Pair<Status, String> pair = get(readOptions, ByteUtils.toString(key));
+        return new Pair<>(pair.getKey(), pair.getValue() == null ? null : ByteUtils.toByteArray(pair.getValue()));
+    }
+
+    default Pair<Status, byte[]> get(ReadOptions readOptions, ByteBuffer key) {
+        Pair<Status, String> pair = get(readOptions, ByteUtils.toString(key));
+        return new Pair<>(pair.getKey(), pair.getValue() == null ? null : ByteUtils.toByteArray(pair.getValue()));
+    }
+
+    // Look up every key of "keys", the results are in the same order.
+    default List<Pair<Status, String>> multiGet(ReadOptions readOptions, List<String> keys) {
+        List<Pair<Status, String>> result = new ArrayList<>();
+        for (String key : keys) {
+            result.add(get(readOptions, key));
+        }
+        return result;
+    }
+
+    default BinaryIterator binaryIterator(ReadOptions readOptions) {
+        return new BinaryIterator(iterator(readOptions));
+    }
+
     Pair<Boolean, String> getProperty(String property);
 
+    // Sync everything written so far to the log
+    Status syncWAL();
+
+    // Block until the writes up to "sequence" survive a machine crash,
+    // syncing the log if nobody else is about to.  See
+    // Options.walSyncPeriodMillis.
+    Status waitForDurable(long sequence);
+
+    // Sequence number of the most recent write
+    long getLatestSequenceNumber();
+
     int numLevelFiles(int level);
 
     Snapshot getSnapshot();
@@ -58,7 +116,7 @@ public interface DB {
 
         if (status.isOk() && db.getMemtable() == null) {
             long newLogNumber = db.getVersions().newFileNumber();
-            Pair<Status, WritableFile> filePair = options.getEnv().newWritableFile(FileName.logFileName(dbname, newLogNumber));
+            Pair<Status, WritableFile> filePair = db.newLogFile(newLogNumber);
             status = filePair.getKey();
             WritableFile logFile = filePair.getValue();
 
@@ -66,8 +124,8 @@ public interface DB {
                 edit.setLogNumber(newLogNumber);
                 db.setLogFile(logFile);
                 db.setLogFileNumber(newLogNumber);
-                db.setLog(new LogWriter(logFile));
-                db.setMemtable(new Memtable(db.getInternalKeyComparator()));
+                db.setLog(db.newLogWriter(logFile, newLogNumber));
+                db.setMemtable(db.newMemtable());
             }
         }
 
@@ -78,6 +136,8 @@ public interface DB {
         }
 
         if (status.isOk()) {
+            db.getWalSyncer().start();
+            db.installSuperVersion();
             db.deleteObsoleteFiles();
             db.maybeScheduleCompaction();
         }
@@ -1,6 +1,7 @@
 package com.farmerworking.leveldb.in.java.data.structure.db;
 
 import com.farmerworking.leveldb.in.java.api.*;
+import com.farmerworking.leveldb.in.java.api.Comparator;
 import com.farmerworking.leveldb.in.java.api.Iterator;
 import com.farmerworking.leveldb.in.java.data.structure.cache.ShardedLRUCache;
 import com.farmerworking.leveldb.in.java.data.structure.cache.TableCache;
@@ -11,13 +12,22 @@ import com.farmerworking.leveldb.in.java.data.structure.version.*;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.MemTableInserter;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.WriteBatch;
 import com.farmerworking.leveldb.in.java.file.*;
+import com.farmerworking.leveldb.in.java.file.impl.InstrumentedEnv;
+import com.farmerworking.leveldb.in.java.file.impl.RateLimitedWritableFile;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import javafx.util.Pair;
 import lombok.Data;
 
 import java.lang.reflect.Field;
 import java.nio.channels.FileLock;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -47,24 +57,58 @@ public class DBImpl implements DB {
     private AtomicBoolean shuttingDown;
     private Condition bgCondition; // Signalled when background work finishes
     private IMemtable memtable;
-    private IMemtable immutableMemtable; // Memtable being compacted
-    private AtomicBoolean hasImmutableMemtable; // So bg thread can detect non-NULL immutableMemtable
+    private MemtableList immutableMemtables; // Memtables waiting to be compacted, oldest first
+    private AtomicBoolean hasImmutableMemtable; // So bg thread can detect non-empty immutableMemtables
     private WritableFile logFile;
     private long logFileNumber;
     private ILogWriter log;
+    // Syncs the log for writers that wait for durability
+    private WalSyncer walSyncer;
+    // Obsolete logs kept to be written over as new logs, oldest first.
+    // Only logs this instance wrote in the recyclable format, numbered
+    // from minRecyclableLogNumber on, qualify.
+    private Deque<Long> logsToRecycle;
+    private long minRecyclableLogNumber;
+    // A log being preallocated in the background, to be recycled by a later
+    // switch, 0 if there is none
+    private long preallocatingLogNumber;
     private long seed; // For sampling
 
     private Deque<Writer> writerList;
     private WriteBatch tmpBatch;
 
+    // pipelined write: groups that are logged but not yet in the memtable,
+    // and the last sequence handed out to a logged group
+    private Deque<WriteGroup> memtableWriterList;
+    private Condition memtableWriterCondition; // Signalled when memtableWriterList drains
+    private long lastAllocatedSequence;
+
+    // What get() reads from, see installSuperVersion
+    private final AtomicReference<SuperVersion> superVersion = new AtomicReference<>();
+    // Seek stats of reads that did not get the mutex right away
+    private final Queue<GetStats> pendingSeekStats = new ConcurrentLinkedQueue<>();
+
     private LinkedList<Long> snapshots = new LinkedList<>();
     // Set of table files to protect from deletion because they are
     // part of ongoing compactions.
     Set<Long> pendingOutputs = new HashSet<>();
 
-    // Has a background compaction been scheduled or is running?
-    private boolean bgCompactionScheduled;
+    // Number of background compactions scheduled or running
+    private int bgCompactionScheduled;
+    // Has a memtable flush been scheduled on the flush threads or is running?
+    private boolean bgFlushScheduled;
+    // Is the immutable memtable being written out right now?
+    private boolean flushInProgress;
+    // Is some background job applying a version edit right now?
+    private boolean manifestWriting;
     private ManualCompaction manualCompaction;
+    // Throttles writes while compactions fall behind
+    private WriteController writeController;
+
+    // Our share of options.writeBufferManager, registered on the first write
+    private WriteBufferManager.Client writeBufferManagerClient;
+    // A switch of the memtable asked for by the write buffer manager is on its way
+    private AtomicBoolean memtableSwitchScheduled;
 
     private VersionSet versions;
 
@@ -85,21 +129,45 @@ public class DBImpl implements DB {
         this.shuttingDown = new AtomicBoolean(false);
         this.bgCondition = mutex.newCondition();
         this.memtable = null;
-        this.immutableMemtable = null;
+        this.immutableMemtables = new MemtableList();
         this.logFile = null;
         this.logFileNumber = 0;
         this.log = null;
+        this.logsToRecycle = new ArrayDeque<>();
+        this.minRecyclableLogNumber = Long.MAX_VALUE;
+        this.preallocatingLogNumber = 0;
         this.seed = 0;
-        this.bgCompactionScheduled = false;
+        this.bgCompactionScheduled = 0;
+        this.bgFlushScheduled = false;
+        this.flushInProgress = false;
+        this.manifestWriting = false;
         this.manualCompaction = null;
         this.writerList = new ArrayDeque<>();
         this.tmpBatch = new WriteBatch();
+        this.memtableWriterList = new ArrayDeque<>();
+        this.memtableWriterCondition = mutex.newCondition();
+        this.lastAllocatedSequence = 0;
+        this.writeController = new WriteController(this.options.getDelayedWriteRate());
+        this.writeBufferManagerClient = null;
+        this.memtableSwitchScheduled = new AtomicBoolean(false);
+        this.walSyncer = new WalSyncer(this.options.getWalSyncPeriodMillis(), this.options.getWalBytesPerSync(), status -> {
+            this.mutex.lock();
+            try {
+                recordBackgroundError(status);
+            } finally {
+                this.mutex.unlock();
+            }
+        });
 
         this.hasImmutableMemtable = new AtomicBoolean(false);
         int tableCacheSize = this.options.getMaxFileSize() - kNumNonTableCacheFiles;
         this.tableCache = new TableCache(dbname, this.options, tableCacheSize);
 
         this.versions = new VersionSet(this.dbname, this.options, this.tableCache, this.internalKeyComparator);
+        // room for the subcompactions of every compaction running at once
+        this.env.incBackgroundThreadsIfNeeded(
+                this.options.getMaxBackgroundCompactions() * Math.max(1, this.options.getMaxSubcompactions()), Env.Priority.kLow);
+        this.env.incBackgroundThreadsIfNeeded(this.options.getMaxBackgroundFlushes(), Env.Priority.kHigh);
 
         for (int i = 0; i < Config.kNumLevels; i++) {
             this.stats[i] = new CompactionStats();
@@ -141,75 +209,197 @@ public class DBImpl implements DB {
     }
 
     public Pair<Status, String> get(ReadOptions readOptions, String key) {
-        Status status = Status.OK();
-        String result = null;
+        SuperVersion superVersion = acquireSuperVersion();
+        long sequence = readSequence(readOptions);
+        Pair<Status, String> result;
+        GetStats getStats = new GetStats();
         try {
-            this.mutex.lock();
-            SnapshotImpl snapshot;
-            if (readOptions.getSnapshot() != null) {
-                snapshot = (SnapshotImpl)readOptions.getSnapshot();
+            Pair<Boolean, Pair<Status, String>> memtableGet = getFromMemtables(superVersion, new LookupKey(key, sequence));
+            if (memtableGet.getKey()) {
+                result = memtableGet.getValue();
             } else {
-                snapshot = new SnapshotImpl(this.versions.getLastSequence());
+                result = superVersion.getVersion().get(readOptions, new InternalKey(key, sequence), getStats);
             }
+        } finally {
+            releaseSuperVersion(superVersion);
+        }
 
-            IMemtable localMemtable = this.memtable;
-            IMemtable localImmutable = this.immutableMemtable;
-            Version localCurrentVersion = this.versions.getCurrent();
-            localCurrentVersion.ref();
-
-            boolean haveStatUpdate = false;
-            GetStats getStats = new GetStats();
+        recordSeekStats(Collections.singletonList(getStats));
+        return result;
+    }
 
-            // Unlock while reading from files and memtables
-            try {
-                this.mutex.unlock();
-                Pair<Boolean, Pair<Status, String>> memtableGet = localMemtable.get(key, snapshot.getSequence());
+    @Override
+    public List<Pair<Status, String>> multiGet(ReadOptions readOptions, List<String> keys) {
+        // Look the keys up in sorted order, so the ones in the same table
+        // and block are next to each other
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            order.add(i);
+        }
+        Comparator userComparator = this.internalKeyComparator.getUserComparator();
+        order.sort((a, b) -> userComparator.compare(keys.get(a).toCharArray(), keys.get(b).toCharArray()));
+
+        List<Pair<Status, String>> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<GetStats> stats = new ArrayList<>();
+        SuperVersion superVersion = acquireSuperVersion();
+        long sequence = readSequence(readOptions);
+        try {
+            List<Integer> missing = new ArrayList<>();
+            List<InternalKey> internalKeys = new ArrayList<>();
+            LookupKey lookupKey = null;
+            for (Integer i : order) {
+                // one lookup key for all of them
+                if (lookupKey == null) {
+                    lookupKey = new LookupKey(keys.get(i), sequence);
+                } else {
+                    lookupKey.set(keys.get(i), sequence);
+                }
+                Pair<Boolean, Pair<Status, String>> memtableGet = getFromMemtables(superVersion, lookupKey);
                 if (memtableGet.getKey()) {
-                    status = memtableGet.getValue().getKey();
-                    result = memtableGet.getValue().getValue();
-                } else if (localImmutable != null) {
-                    Pair<Boolean, Pair<Status, String>> immutableMemtableGet = localImmutable.get(key, snapshot.getSequence());
-
-                    if (immutableMemtableGet.getKey()) {
-                        status = immutableMemtableGet.getValue().getKey();
-                        result = immutableMemtableGet.getValue().getValue();
-                    } else {
-                        Pair<Status, String> versionGet = localCurrentVersion.get(readOptions, new InternalKey(key, snapshot.getSequence()), getStats);
-                        status = versionGet.getKey();
-                        result = versionGet.getValue();
-                        haveStatUpdate = true;
-                    }
+                    result.set(i, memtableGet.getValue());
                 } else {
-                    Pair<Status, String> versionGet = localCurrentVersion.get(readOptions, new InternalKey(key, snapshot.getSequence()), getStats);
-                    status = versionGet.getKey();
-                    result = versionGet.getValue();
-                    haveStatUpdate = true;
+                    missing.add(i);
+                    internalKeys.add(new InternalKey(keys.get(i), sequence));
                 }
-            } finally {
-                this.mutex.lock();
             }
 
-            if (haveStatUpdate && localCurrentVersion.updateStats(getStats)) {
-                maybeScheduleCompaction();
+            if (!missing.isEmpty()) {
+                List<Pair<Status, String>> versionGet = superVersion.getVersion().multiGet(readOptions, internalKeys, stats);
+                for (int j = 0; j < missing.size(); j++) {
+                    result.set(missing.get(j), versionGet.get(j));
+                }
             }
-            localCurrentVersion.unref();
-            return new Pair<>(status, result);
         } finally {
-            this.mutex.unlock();
+            releaseSuperVersion(superVersion);
+        }
+
+        recordSeekStats(stats);
+        return result;
+    }
+
+    // Take the sequence after pinning the super version.  Taken before, a
+    // newer write could be flushed and compacted into a super version
+    // installed in between, dropping the entries visible at the sequence
+    // when no snapshot holds them.  Taken after, the pinned memtables and
+    // files still have everything the sequence sees, short of writes made
+    // since, which are simply not seen yet.
+    private long readSequence(ReadOptions readOptions) {
+        if (readOptions.getSnapshot() != null) {
+            return ((SnapshotImpl)readOptions.getSnapshot()).getSequence();
+        } else {
+            return this.versions.getLastSequence();
+        }
+    }
+
+    private Pair<Boolean, Pair<Status, String>> getFromMemtables(SuperVersion superVersion, LookupKey key) {
+        Pair<Boolean, Pair<Status, String>> memtableGet = superVersion.getMemtable().get(key);
+        // newest first, the first one that knows the key has its latest state
+        for (int i = 0; !memtableGet.getKey() && i < superVersion.getImmutableMemtables().size(); i++) {
+            memtableGet = superVersion.getImmutableMemtables().get(i).get(key);
+        }
+        return memtableGet;
+    }
+
+    private void recordSeekStats(List<GetStats> stats) {
+        boolean added = false;
+        for (GetStats getStats : stats) {
+            if (getStats.getSeekFile() != null) {
+                this.pendingSeekStats.add(getStats);
+                added = true;
+            }
+        }
+
+        // Whoever holds the mutex next applies the stats, a read never
+        // waits for it
+        if (added && this.mutex.tryLock()) {
+            try {
+                maybeScheduleCompaction();
+            } finally {
+                this.mutex.unlock();
+            }
+        }
+    }
+
+    // Pin the installed super version.  Never blocks.
+    SuperVersion acquireSuperVersion() {
+        while (true) {
+            SuperVersion superVersion = this.superVersion.get();
+            if (superVersion.tryRef()) {
+                return superVersion;
+            }
+        }
+    }
+
+    void releaseSuperVersion(SuperVersion superVersion) {
+        if (superVersion.unref()) {
+            // Only after the super version has been replaced
+            this.mutex.lock();
+            try {
+                superVersion.cleanup();
+            } finally {
+                this.mutex.unlock();
+            }
+        }
+    }
+
+    // Publish the current memtables and version to readers.  Called after
+    // any of them changes.
+    void installSuperVersion() {
+        assert this.mutex.isHeldByCurrentThread();
+        SuperVersion previous = this.superVersion.getAndSet(
+                new SuperVersion(this.memtable, this.immutableMemtables.newestFirst(), this.versions.getCurrent()));
+        if (previous != null) {
+            releaseSuperVersion(previous);
+        }
+        tuneRateLimiter();
+    }
+
+    // Give background writes more room the closer level-0 gets to slowing
+    // down writes, so compactions catch up before writers notice.
+    void tuneRateLimiter() {
+        RateLimiter rateLimiter = this.options.getRateLimiter();
+        if (rateLimiter == null || !rateLimiter.isAutoTuned()) {
+            return;
+        }
+
+        int level0Files = this.versions.numLevelFiles(0);
+        rateLimiter.setPressure((double) (level0Files - Config.kL0_CompactionTrigger) /
+                (Config.kL0_SlowdownWritesTrigger - Config.kL0_CompactionTrigger));
+    }
+
+    // Apply the seek stats left behind by reads.  Returns true if a new
+    // compaction may need to be triggered.
+    boolean applySeekStats() {
+        assert this.mutex.isHeldByCurrentThread();
+        boolean result = false;
+        GetStats stats;
+        while ((stats = this.pendingSeekStats.poll()) != null) {
+            result |= this.versions.updateStats(stats);
         }
+        return result;
     }
 
     @Override
     public void close() {
+        this.walSyncer.close();
         try {
             this.mutex.lock();
             this.shuttingDown.set(true);
-            while(this.bgCompactionScheduled) {
+            if (this.writeBufferManagerClient != null) {
+                this.writeBufferManagerClient.close();
+            }
+            while(this.bgCompactionScheduled > 0 || this.bgFlushScheduled || this.memtableSwitchScheduled.get() ||
+                    this.preallocatingLogNumber != 0) {
                 try {
                     this.bgCondition.await();
                 } catch (Exception e){
                 }
             }
+
+            SuperVersion superVersion = this.superVersion.getAndSet(null);
+            if (superVersion != null) {
+                releaseSuperVersion(superVersion);
+            }
         } finally {
             this.mutex.unlock();
         }
@@ -247,13 +437,15 @@ public class DBImpl implements DB {
                     totalUsage += this.memtable.approximateMemoryUsage();
                 }
 
-                if (this.immutableMemtable != null) {
-                    totalUsage += this.immutableMemtable.approximateMemoryUsage();
-                }
+                totalUsage += this.immutableMemtables.approximateMemoryUsage();
 
                 return new Pair<>(true, String.valueOf(totalUsage));
             }
 
+            if (suffix.equals("num-immutable-mem-table")) {
+                return new Pair<>(true, String.valueOf(this.immutableMemtables.size()));
+            }
+
             if (suffix.startsWith("num-files-at-level")) {
                 suffix = suffix.substring("num-files-at-level".length(), suffix.length());
                 boolean ok = true;
@@ -271,6 +463,53 @@ public class DBImpl implements DB {
                 }
             }
 
+            if (suffix.equals("estimate-pending-compaction-bytes")) {
+                return new Pair<>(true, String.valueOf(this.versions.estimatedPendingCompactionBytes()));
+            }
+
+            if (suffix.equals("delayed-write-rate")) {
+                return new Pair<>(true, String.valueOf(this.writeController.getDelayedWriteRate()));
+            }
+
+            if (suffix.equals("write-delay-count")) {
+                return new Pair<>(true, String.valueOf(this.writeController.getDelayCount()));
+            }
+
+            if (suffix.equals("write-delay-micros")) {
+                return new Pair<>(true, String.valueOf(this.writeController.getDelayMicros()));
+            }
+
+            if (suffix.equals("write-stall-count")) {
+                return new Pair<>(true, String.valueOf(this.writeController.getStallCount()));
+            }
+
+            if (suffix.equals("write-stall-micros")) {
+                return new Pair<>(true, String.valueOf(this.writeController.getStallMicros()));
+            }
+
+            if (suffix.equals("wal-sync-count")) {
+                return new Pair<>(true, String.valueOf(this.walSyncer.getSyncCount()));
+            }
+
+            if (suffix.equals("io-stats") && this.env instanceof InstrumentedEnv) {
+                return new Pair<>(true, ((InstrumentedEnv) this.env).report());
+            }
+
+            RateLimiter rateLimiter = this.options.getRateLimiter();
+            if (rateLimiter != null) {
+                if (suffix.equals("rate-limit-bytes-per-second")) {
+                    return new Pair<>(true, String.valueOf(rateLimiter.getBytesPerSecond()));
+                }
+
+                if (suffix.equals("rate-limit-throttled-bytes")) {
+                    return new Pair<>(true, String.valueOf(rateLimiter.getThrottledBytes()));
+                }
+
+                if (suffix.equals("rate-limit-throttled-micros")) {
+                    return new Pair<>(true, String.valueOf(rateLimiter.getThrottledMicros()));
+                }
+            }
+
             return new Pair<>(false, null);
         } finally {
             this.mutex.unlock();
@@ -283,18 +522,23 @@ public class DBImpl implements DB {
         writer.setSync(writeOptions.isSync());
         writer.setDone(false);
 
+        Status status = this.options.isEnablePipelinedWrite() ? pipelinedWrite(writer) : groupCommitWrite(writer);
+        if (status.isOk() && batch != null && writer.isSync() && this.walSyncer.isDeferred()) {
+            // the batch is in the log, share a sync with the other writers
+            status = this.walSyncer.waitForDurable(this.versions.getLastSequence());
+        }
+        return status;
+    }
+
+    // Writers take turns at the front of writerList.  The front writer logs
+    // the batches of the writers behind it together with its own and
+    // inserts them into the memtable.
+    Status groupCommitWrite(Writer writer) {
+        WriteBatch batch = writer.getBatch();
         try {
             this.mutex.lock();
             this.writerList.add(writer);
-            while(writer.isNotDone() && writer != this.writerList.peekFirst()) {
-                try {
-                    writer.getCondition().await();
-                } catch (InterruptedException e) {
-                    writer.setDone(true);
-                    writer.setStatus(Status.IOError("interrupted"));
-                    break;
-                }
-            }
+            awaitWriterTurn(writer);
 
             if (writer.isDone()) {
                 return writer.getStatus();
@@ -310,6 +554,7 @@ public class DBImpl implements DB {
                 lastWriter = pair.getValue();
                 updates.setSequence(lastSequence + 1);
                 lastSequence += updates.getCount();
+                WriteGroup group = buildWriteGroup(lastWriter, updates.getSequence());
 
                 // Add to log and apply to memtable.  We can release the lock
                 // during this phase since &w is currently responsible for logging
@@ -317,16 +562,26 @@ public class DBImpl implements DB {
                 // into mem_.
                 {
                     this.mutex.unlock();
-                    status = this.log.addRecord(new String(updates.encode()));
+                    String record = new String(updates.encode());
+                    status = this.log.addRecord(record);
                     boolean syncError = false;
-                    if (status.isOk() && writeOptions.isSync()) {
+                    if (status.isOk()) {
+                        this.walSyncer.logged(lastSequence, record.length());
+                    }
+                    if (status.isOk() && writer.isSync() && !this.walSyncer.isDeferred()) {
                        status = this.logFile.sync();
                        if (status.isNotOk()) {
                            syncError = true;
+                       } else {
+                           this.walSyncer.synced(lastSequence);
                        }
                     }
                     if (status.isOk()) {
-                        status = updates.iterate(new MemTableInserter(updates.getSequence(), this.memtable));
+                        if (group != null) {
+                            status = insertWriteGroup(writer, group);
+                        } else {
+                            status = updates.iterate(new MemTableInserter(updates.getSequence(), this.memtable));
+                        }
                     }
                     this.mutex.lock();
                     if (syncError) {
@@ -368,6 +623,26 @@ public class DBImpl implements DB {
         }
     }
 
+    @Override
+    public Status syncWAL() {
+        return this.walSyncer.waitForDurable(Long.MAX_VALUE);
+    }
+
+    @Override
+    public Status waitForDurable(long sequence) {
+        return this.walSyncer.waitForDurable(sequence);
+    }
+
+    @Override
+    public long getLatestSequenceNumber() {
+        return this.versions.getLastSequence();
+    }
+
+    void setLogFile(WritableFile logFile) {
+        this.logFile = logFile;
+        this.walSyncer.switchFile(logFile);
+    }
+
     public Snapshot getSnapshot() {
         try {
             this.mutex.lock();
@@ -420,7 +695,7 @@ public class DBImpl implements DB {
         private ReentrantLock mutex;
         private Version version;
         private IMemtable memtable;
-        private IMemtable immutableMemtable;
+        private List<IMemtable> immutableMemtables;
     }
 
     private Pair<Iterator<String, String>, Pair<Long, Long>> internalIterator(ReadOptions readOptions) {
@@ -431,8 +706,9 @@ public class DBImpl implements DB {
         // Collect together all needed child iterators
         Vector<Iterator<String, String>> list = new Vector<>();
         list.add(this.memtable.iterator());
-        if (this.immutableMemtable != null) {
-            list.add(this.immutableMemtable.iterator());
+        List<IMemtable> immutableMemtables = this.immutableMemtables.newestFirst();
+        for (IMemtable immutableMemtable : immutableMemtables) {
+            list.add(immutableMemtable.iterator());
         }
         list.addAll(this.versions.getCurrent().iterators(readOptions));
         MergingIterator internalIterator = new MergingIterator(this.internalKeyComparator, list);
@@ -440,7 +716,7 @@ public class DBImpl implements DB {
 
         iterState.setMutex(this.mutex);
         iterState.setMemtable(this.memtable);
-        iterState.setImmutableMemtable(this.immutableMemtable);
+        iterState.setImmutableMemtables(immutableMemtables);
         iterState.setVersion(this.versions.getCurrent());
         internalIterator.registerCleanup(new Runnable() {
             @Override
@@ -456,6 +732,247 @@ public class DBImpl implements DB {
         return new Pair<>(internalIterator, new Pair<>(latestSnapshot, returnSeed));
     }
 
+    // Wait until writer is at the front of the log queue or has been completed
+    // by a leader. Meanwhile insert our own batch if a leader hands it back.
+    //
+    // REQUIRES: mutex held
+    void awaitWriterTurn(Writer writer) {
+        while(writer.isNotDone() && writer != this.writerList.peekFirst()) {
+            if (writer.getWriteGroup() != null) {
+                // our batch is logged, the leader wants us to insert it
+                WriteGroup group = writer.getWriteGroup();
+                writer.setWriteGroup(null);
+                this.mutex.unlock();
+                group.insert(writer);
+                this.mutex.lock();
+                continue;
+            }
+
+            try {
+                writer.getCondition().await();
+            } catch (InterruptedException e) {
+                if (writer.isLogged()) {
+                    // too late to back out, the batch is already in the log
+                    continue;
+                }
+                writer.setDone(true);
+                writer.setStatus(Status.IOError("interrupted"));
+                break;
+            }
+        }
+    }
+
+    // Pipelined flavour of write(). Logging and memtable insertion are two
+    // queues: once a group is in the log its leader leaves writerList, so the
+    // next group can be logged while this one is inserted. Groups go through
+    // memtableWriterList in log order and only then publish their sequence
+    // numbers, so readers never observe a sequence whose data is missing.
+    Status pipelinedWrite(Writer writer) {
+        WriteBatch batch = writer.getBatch();
+        try {
+            this.mutex.lock();
+            this.writerList.add(writer);
+            awaitWriterTurn(writer);
+
+            if (writer.isDone()) {
+                return writer.getStatus();
+            }
+
+            // May temporarily unlock and wait.
+            Status status = makeRoomForWrite(batch == null);
+            Writer lastWriter = writer;
+            WriteGroup group = null;
+            if (status.isOk() && batch != null) { // NULL batch is for compactions
+                Pair<WriteBatch, Writer> pair = buildBatchGroup();
+                WriteBatch updates = pair.getKey();
+                lastWriter = pair.getValue();
+
+                // versions.lastSequence lags behind while groups sit in the
+                // memtable stage, sequences are handed out from lastAllocatedSequence
+                long lastSequence = Math.max(this.lastAllocatedSequence, this.versions.getLastSequence());
+                updates.setSequence(lastSequence + 1);
+                List<Writer> writers = assignSequences(lastWriter, updates.getSequence());
+                this.lastAllocatedSequence = lastSequence + updates.getCount();
+
+                {
+                    this.mutex.unlock();
+                    String record = new String(updates.encode());
+                    status = this.log.addRecord(record);
+                    boolean syncError = false;
+                    if (status.isOk()) {
+                        this.walSyncer.logged(lastSequence + updates.getCount(), record.length());
+                    }
+                    if (status.isOk() && writer.isSync() && !this.walSyncer.isDeferred()) {
+                        status = this.logFile.sync();
+                        if (status.isNotOk()) {
+                            syncError = true;
+                        } else {
+                            this.walSyncer.synced(lastSequence + updates.getCount());
+                        }
+                    }
+                    this.mutex.lock();
+                    if (syncError) {
+                        // The state of the log file is indeterminate: the log record we
+                        // just added may or may not show up when the DB is re-opened.
+                        // So we force the DB into a mode where all future writes fail.
+                        recordBackgroundError(status);
+                    }
+                }
+
+                if (status.isOk()) {
+                    group = new WriteGroup(writers, this.memtable, this.mutex);
+                    group.setLastSequence(this.lastAllocatedSequence);
+                    for (Writer member : writers) {
+                        member.setLogged(true);
+                    }
+                } else {
+                    // nobody else allocated in between, we still own the log stage
+                    this.lastAllocatedSequence = lastSequence;
+                }
+
+                if (updates == tmpBatch) {
+                    tmpBatch.clear();
+                }
+            }
+
+            // Leave the log stage. Writers of a logged group are completed by
+            // the memtable stage below, everyone else right away.
+            while(true) {
+                Writer ready = this.writerList.pop();
+                if (ready != writer && (group == null || !ready.isLogged())) {
+                    ready.setStatus(status);
+                    ready.setDone(true);
+                    ready.getCondition().signal();
+                }
+
+                if (ready == lastWriter) {
+                    break;
+                }
+            }
+
+            if (!this.writerList.isEmpty()) {
+                this.writerList.peekFirst().getCondition().signal();
+            }
+
+            if (group == null) {
+                return status;
+            }
+
+            this.memtableWriterList.add(group);
+            while (this.memtableWriterList.peekFirst() != group) {
+                writer.getCondition().awaitUninterruptibly();
+            }
+
+            this.mutex.unlock();
+            status = insertMemtableGroup(writer, group);
+            this.mutex.lock();
+
+            this.versions.setLastSequence(group.getLastSequence());
+            this.memtableWriterList.pop();
+            for (Writer member : group.getWriters()) {
+                if (member != writer) {
+                    member.setStatus(status);
+                    member.setDone(true);
+                    member.getCondition().signal();
+                }
+            }
+
+            if (!this.memtableWriterList.isEmpty()) {
+                this.memtableWriterList.peekFirst().getWriters().get(0).getCondition().signal();
+            } else {
+                this.memtableWriterCondition.signalAll();
+            }
+            return status;
+        } finally {
+            this.mutex.unlock();
+        }
+    }
+
+    // REQUIRES: mutex not held, leader is the first writer of group
+    Status insertMemtableGroup(Writer leader, WriteGroup group) {
+        if (this.options.isAllowConcurrentMemtableWrite() && group.getWriters().size() > 1) {
+            return insertWriteGroup(leader, group);
+        }
+
+        for (Writer writer : group.getWriters()) {
+            group.insert(writer);
+        }
+
+        this.mutex.lock();
+        try {
+            return group.await();
+        } finally {
+            this.mutex.unlock();
+        }
+    }
+
+    // With allowConcurrentMemtableWrite, collect the writers covered by the
+    // batch group [front, lastWriter] and hand out their sequence ranges in
+    // the same order buildBatchGroup() appended them to the logged batch.
+    // Returns null when there is nothing to gain from a parallel insert.
+    //
+    // REQUIRES: mutex held, front writer is the caller
+    WriteGroup buildWriteGroup(Writer lastWriter, long sequence) {
+        assert this.mutex.isHeldByCurrentThread();
+        if (!this.options.isAllowConcurrentMemtableWrite() || this.writerList.peekFirst() == lastWriter) {
+            return null;
+        }
+
+        List<Writer> writers = assignSequences(lastWriter, sequence);
+        return writers.size() > 1 ? new WriteGroup(writers, this.memtable, this.mutex) : null;
+    }
+
+    // Hand out the sequence ranges of the writers in [front, lastWriter] in the
+    // order buildBatchGroup() appended their batches, and return those writers.
+    //
+    // REQUIRES: mutex held
+    List<Writer> assignSequences(Writer lastWriter, long sequence) {
+        assert this.mutex.isHeldByCurrentThread();
+        List<Writer> writers = new ArrayList<>();
+        for (Writer writer : this.writerList) {
+            if (writer.isNotDone() && writer.getBatch() != null) {
+                writer.setSequence(sequence);
+                sequence += writer.getBatch().getCount();
+                writers.add(writer);
+            }
+
+            if (writer == lastWriter) {
+                break;
+            }
+        }
+        return writers;
+    }
+
+    // Insert the logged group into the memtable: wake the followers so each
+    // applies its own batch, insert the leader's batch, pick up any batch
+    // whose owner has not started yet and wait for the rest.
+    //
+    // REQUIRES: mutex not held, leader is the front writer
+    Status insertWriteGroup(Writer leader, WriteGroup group) {
+        this.mutex.lock();
+        try {
+            for (Writer writer : group.getWriters()) {
+                if (writer != leader) {
+                    writer.setWriteGroup(group);
+                    writer.getCondition().signal();
+                }
+            }
+        } finally {
+            this.mutex.unlock();
+        }
+
+        for (Writer writer : group.getWriters()) {
+            group.insert(writer);
+        }
+
+        this.mutex.lock();
+        try {
+            return group.await();
+        } finally {
+            this.mutex.unlock();
+        }
+    }
+
     Pair<WriteBatch, Writer> buildBatchGroup() {
         assert !this.writerList.isEmpty();
         Writer first = this.writerList.peekFirst();
@@ -522,14 +1039,14 @@ public class DBImpl implements DB {
        if (s.isOk()) {
            try {
                this.mutex.lock();
-               while(this.immutableMemtable != null && bgError.isOk()) {
+               while(!this.immutableMemtables.isEmpty() && bgError.isOk()) {
                    try {
                        bgCondition.await();
                    } catch (InterruptedException e) {
                    }
                }
 
-               if (this.immutableMemtable != null) {
+               if (!this.immutableMemtables.isEmpty()) {
                    s = bgError;
                }
            } finally {
@@ -543,6 +1060,11 @@ public class DBImpl implements DB {
     public Status makeRoomForWrite(boolean force) {
         assert this.mutex.isHeldByCurrentThread();
         assert !this.writerList.isEmpty();
+        if (!force && reportMemtableUsage()) {
+            // Over the budget of the write buffer manager, and ours is the
+            // largest memtable: switch it early, its flush frees the most
+            force = true;
+        }
         boolean allowDelay = !force;
         Status status = Status.OK();
 
@@ -550,61 +1072,83 @@ public class DBImpl implements DB {
             if (this.bgError.isNotOk()) {
                 status = this.bgError;
                 break;
-            } else if (allowDelay && this.versions.numLevelFiles(0) >= Config.kL0_SlowdownWritesTrigger) {
+            } else if (allowDelay && updateWriteController()) {
                 // We are getting close to hitting a hard limit on the number of
-                // L0 files.  Rather than delaying a single write by several
-                // seconds when we hit the hard limit, start delaying each
-                // individual write by 1ms to reduce latency variance.  Also,
-                // this delay hands over some CPU to the compaction thread in
-                // case it is sharing the same core as the writer.
-                this.mutex.unlock();
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    status = Status.IOError("thread sleep interrupted");
-                    break;
-                }
+                // L0 files or on the compaction debt.  Rather than delaying a
+                // single write by several seconds when we hit the hard limit,
+                // throttle every write to a rate that drops as the limit comes
+                // closer, so latency goes up gradually.  Also, this delay hands
+                // over some CPU to the compaction thread in case it is sharing
+                // the same core as the writer.
+                Writer front = this.writerList.peekFirst();
+                long bytes = front.getBatch() == null ? 0 : front.getBatch().approximateSize();
+                long delayMicros = this.writeController.getDelay(nowMicros(), bytes);
                 allowDelay = false; // Do not delay a single write more than once
-                this.mutex.lock();
+                if (delayMicros > 0) {
+                    long start = nowMicros();
+                    this.mutex.unlock();
+                    try {
+                        TimeUnit.MICROSECONDS.sleep(delayMicros);
+                    } catch (InterruptedException e) {
+                        status = Status.IOError("thread sleep interrupted");
+                    } finally {
+                        this.mutex.lock();
+                    }
+                    this.writeController.recordDelay(nowMicros() - start);
+                    if (status.isNotOk()) {
+                        break;
+                    }
+                }
             } else if (!force && this.memtable.approximateMemoryUsage() <= this.options.getWriteBufferSize()) {
                 // There is room in current memtable
                 break;
-            } else if (this.immutableMemtable != null) {
-                // We have filled up the current memtable, but the previous
-                // one is still being compacted, so we wait.
+            } else if (this.immutableMemtables.size() >= this.options.getMaxWriteBufferNumber() - 1) {
+                // We have filled up the current memtable, but as many
+                // previous ones as we may keep are still being compacted,
+                // so we wait.
                 Options.Logger.log(this.options.getInfoLog(), "Current memtable full; waiting...\n");
-                try {
-                    this.bgCondition.await();
-                } catch (InterruptedException e) {
-                    status = Status.IOError("bgCondition await interrupted");
+                status = stallWrite();
+                if (status.isNotOk()) {
                     break;
                 }
             } else if (this.versions.numLevelFiles(0) >= Config.kL0_StopWritesTrigger) {
                 // There are too many level-0 files.
                 Options.Logger.log(this.options.getInfoLog(), "Too many L0 files; waiting...\n");
-                try {
-                    this.bgCondition.await();
-                } catch (InterruptedException e) {
-                    status = Status.IOError("bgCondition await interrupted");
+                status = stallWrite();
+                if (status.isNotOk()) {
                     break;
                 }
+            } else if (hardPendingCompactionBytesLimitReached()) {
+                // Compactions are too far behind.
+                Options.Logger.log(this.options.getInfoLog(), "Too many pending compaction bytes; waiting...\n");
+                status = stallWrite();
+                if (status.isNotOk()) {
+                    break;
+                }
+            } else if (!this.memtableWriterList.isEmpty()) {
+                // Pipelined write: groups that are already in the current log
+                // must reach the current memtable before both are switched.
+                this.memtableWriterCondition.awaitUninterruptibly();
             } else {
                 // Attempt to switch to a new memtable and trigger compaction of old
                 assert this.versions.getPrevLogNumber() == 0;
                 long newLogNumber = this.versions.newFileNumber();
-                Pair<Status, WritableFile> writable = this.env.newWritableFile(FileName.logFileName(this.dbname, newLogNumber));
+                Pair<Status, WritableFile> writable = newLogFile(newLogNumber);
                 status = writable.getKey();
                 if (status.isNotOk()) {
                     // Avoid chewing through file number space in a tight loop.
                     this.versions.reuseFileNumber(newLogNumber);
                     break;
                 }
-                this.logFile = writable.getValue();
+                setLogFile(writable.getValue());
                 this.logFileNumber = newLogNumber;
-                this.log = new LogWriter(this.logFile);
-                this.immutableMemtable = this.memtable;
+                this.log = newLogWriter(this.logFile, newLogNumber);
+                this.memtable.markImmutable();
+                this.immutableMemtables.add(this.memtable, newLogNumber, this.walSyncer.getLoggedSequence());
                 this.hasImmutableMemtable.set(true);
-                this.memtable = new Memtable(this.internalKeyComparator);
+                this.memtable = newMemtable();
+                installSuperVersion();
+                reportMemtableUsage();
                 force = false; // Do not force another compaction if have room
                 this.maybeScheduleCompaction();
             }
@@ -613,6 +1157,105 @@ public class DBImpl implements DB {
         return status;
     }
 
+    // Tell the write buffer manager how much memory our memtables use.
+    // Returns true if we are to switch our memtable to stay within its
+    // budget.
+    boolean reportMemtableUsage() {
+        assert this.mutex.isHeldByCurrentThread();
+        if (this.options.getWriteBufferManager() == null || this.shuttingDown.get()) {
+            return false;
+        }
+
+        if (this.writeBufferManagerClient == null) {
+            this.writeBufferManagerClient = this.options.getWriteBufferManager().register(new Runnable() {
+                @Override
+                public void run() {
+                    scheduleMemtableSwitch();
+                }
+            });
+        }
+        long mutableUsage = this.memtable.approximateMemoryUsage();
+        return this.writeBufferManagerClient.reportUsage(
+                mutableUsage, mutableUsage + this.immutableMemtables.approximateMemoryUsage());
+    }
+
+    // Switch the memtable for the write buffer manager, which may ask while
+    // we are not writing at all.  Like every forced switch this may have to
+    // wait for a flush, so it runs in the kUser pool rather than in the one
+    // of the flush.
+    void scheduleMemtableSwitch() {
+        if (this.shuttingDown.get() || !this.memtableSwitchScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.env.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!shuttingDown.get()) {
+                    write(new WriteOptions(), null);
+                }
+
+                mutex.lock();
+                try {
+                    memtableSwitchScheduled.set(false);
+                    bgCondition.signalAll();
+                } finally {
+                    mutex.unlock();
+                }
+            }
+        }, Env.Priority.kUser);
+    }
+
+    // Wait for background work to make room, counting the time as a stall
+    private Status stallWrite() {
+        long start = nowMicros();
+        try {
+            this.bgCondition.await();
+        } catch (InterruptedException e) {
+            return Status.IOError("bgCondition await interrupted");
+        } finally {
+            this.writeController.recordStall(nowMicros() - start);
+        }
+        return Status.OK();
+    }
+
+    // Set the delayed write rate from the number of level-0 files and the
+    // compaction debt.  Returns true if writes should be delayed.
+    boolean updateWriteController() {
+        assert this.mutex.isHeldByCurrentThread();
+        double pressure = -1;
+
+        int level0Files = this.versions.numLevelFiles(0);
+        if (level0Files >= Config.kL0_SlowdownWritesTrigger) {
+            pressure = Math.max(pressure, (double) (level0Files - Config.kL0_SlowdownWritesTrigger) /
+                    (Config.kL0_StopWritesTrigger - Config.kL0_SlowdownWritesTrigger));
+        }
+
+        long soft = this.options.getSoftPendingCompactionBytesLimit();
+        long hard = this.options.getHardPendingCompactionBytesLimit();
+        long pendingBytes = this.versions.estimatedPendingCompactionBytes();
+        if (soft > 0 && pendingBytes >= soft) {
+            double range = hard > soft ? hard - soft : soft;
+            pressure = Math.max(pressure, (pendingBytes - soft) / range);
+        }
+
+        if (pressure < 0) {
+            this.writeController.clearDelay();
+        } else {
+            this.writeController.delay(pressure);
+        }
+        return this.writeController.isDelayed();
+    }
+
+    private boolean hardPendingCompactionBytesLimitReached() {
+        long hard = this.options.getHardPendingCompactionBytesLimit();
+        return hard > 0 && this.versions.estimatedPendingCompactionBytes() >= hard;
+    }
+
+    long nowMicros() {
+        return System.nanoTime() / 1000;
+    }
+
     LogWriter newDBGetLogWriter(WritableFile file) {
         return new LogWriter(file);
     }
@@ -763,11 +1406,19 @@ public class DBImpl implements DB {
         Options result = new Options(src);
         result.setComparator(icmp);
         result.setFilterPolicy(src.getFilterPolicy() != null ? ipolicy : null);
+        if (result.getMemtableFactory() == null) {
+            result.setMemtableFactory(new SkipListMemtableFactory());
+        }
+        result.setMemtableBloomSizeRatio(Math.max(0, Math.min(0.25, result.getMemtableBloomSizeRatio())));
 
         clipToRange(result, "maxOpenFiles",    64 + kNumNonTableCacheFiles, 50000);
         clipToRange(result, "writeBufferSize", 64<<10,                      1<<30);
         clipToRange(result, "maxFileSize",     1<<20,                       1<<30);
         clipToRange(result, "blockSize",        1<<10,                       4<<20);
+        clipToRange(result, "maxBackgroundCompactions", 1,                  64);
+        clipToRange(result, "maxBackgroundFlushes",     0,                  64);
+        clipToRange(result, "maxSubcompactions",        1,                  64);
+        clipToRange(result, "maxWriteBufferNumber",     2,                  64);
 
         if (result.getInfoLog() == null) {
 //             Open a log file in the same directory as the db
@@ -818,28 +1469,28 @@ public class DBImpl implements DB {
         }
 
         Options.Logger.log(this.options.getInfoLog(), String.format("Recovering log %d", logFileNumber));
-        Log2MemtableReader log2MemtableReader = getLog2MemtableReader(edit, filename, pair.getValue()).invoke();
+        Log2MemtableReader log2MemtableReader = getLog2MemtableReader(edit, filename, pair.getValue(), logFileNumber).invoke();
 
         status = log2MemtableReader.getStatus();
         Long maxSequence = log2MemtableReader.getMaxSequence();
         boolean saveManifest = log2MemtableReader.isSaveManifest();
         int compactions = log2MemtableReader.getCompactions();
-        Memtable memtable = log2MemtableReader.getMemtable();
+        IMemtable memtable = log2MemtableReader.getMemtable();
 
-        if (shouldReuseLog(status, lastLog, compactions)) {
+        if (shouldReuseLog(status, lastLog, compactions) && log2MemtableReader.isAppendable()) {
             memtable = reuseLog(logFileNumber, filename, memtable);
         }
 
         // mem did not get reused; compact it.
         if (status.isOk() && memtable != null) {
             saveManifest = true;
-            status = writeLevel0Table(memtable, edit, null);
+            status = writeLevel0Table(Collections.singletonList(memtable), edit, null);
         }
 
         return new RecoverLogFileResult(status, saveManifest, maxSequence);
     }
 
-    Memtable reuseLog(long logFileNumber, String filename, Memtable memtable) {
+    IMemtable reuseLog(long logFileNumber, String filename, IMemtable memtable) {
         assert this.mutex.isHeldByCurrentThread();
 
         assert this.logFile == null;
@@ -849,7 +1500,7 @@ public class DBImpl implements DB {
         Pair<Status, Long> fileSize = getFileSize(filename);
         Pair<Status, WritableFile> append = getAppendableFile(filename);
         if (fileSize.getKey().isOk() && append.getKey().isOk()) {
-            this.logFile = append.getValue();
+            setLogFile(append.getValue());
             Long logFileSize = fileSize.getValue();
 
             Options.Logger.log(this.options.getInfoLog(), String.format("Reusing old log %s", filename));
@@ -861,7 +1512,7 @@ public class DBImpl implements DB {
                 memtable = null;
             } else {
                 // mem can be NULL if lognum exists but was empty.
-                this.memtable = new Memtable(this.internalKeyComparator);
+                this.memtable = newMemtable();
             }
         }
         return memtable;
@@ -869,7 +1520,9 @@ public class DBImpl implements DB {
 
     boolean shouldReuseLog(Status status, boolean lastLog, int compactions) {
         assert this.mutex.isHeldByCurrentThread();
-        return status.isOk() && this.options.isReuseLogs() && lastLog && compactions == 0;
+        // With recycling, new logs are preallocated or written over old ones
+        return status.isOk() && this.options.isReuseLogs() && this.options.getRecycleLogFileNum() == 0 &&
+                lastLog && compactions == 0;
     }
 
     Pair<Status, WritableFile> getAppendableFile(String filename) {
@@ -881,15 +1534,25 @@ public class DBImpl implements DB {
     }
 
 
-    Status writeLevel0Table(IMemtable memtable, VersionEdit edit, Version base) {
+    // Write "memtables", oldest first, into one table
+    Status writeLevel0Table(List<IMemtable> memtables, VersionEdit edit, Version base) {
         assert this.mutex.isHeldByCurrentThread();
         long start = System.currentTimeMillis();
         FileMetaData metaData = new FileMetaData();
         metaData.setFileNumber(this.versions.newFileNumber());
 
         this.pendingOutputs.add(metaData.getFileNumber());
-        Iterator<String, String> iter = memtable.iterator();
-        Options.Logger.log(this.options.getInfoLog(), String.format("Level-0 table %d: started", metaData.getFileNumber()));
+        Iterator<String, String> iter;
+        if (memtables.size() == 1) {
+            iter = memtables.get(0).iterator();
+        } else {
+            List<Iterator<String, String>> list = new ArrayList<>();
+            for (IMemtable memtable : memtables) {
+                list.add(memtable.iterator());
+            }
+            iter = new MergingIterator(this.internalKeyComparator, list);
+        }
+        Options.Logger.log(this.options.getInfoLog(), String.format("Level-0 table %d: started from %d memtables", metaData.getFileNumber(), memtables.size()));
         Status status;
         {
             unlock();
@@ -898,20 +1561,33 @@ public class DBImpl implements DB {
         }
 
         Options.Logger.log(this.options.getInfoLog(), String.format("Level-0 table %d: %d bytes %s", metaData.getFileNumber(), metaData.getFileSize(), status.toString()));
-        this.pendingOutputs.remove(metaData.getFileNumber());
 
         // Note that if file_size is zero, the file has been deleted and
         // should not be added to the manifest.
         int level = 0;
+        boolean added = false;
         if (status.isOk() && metaData.getFileSize() > 0) {
             String minUserKey = metaData.getSmallest().userKey();
             String maxUserKey = metaData.getLargest().userKey();
 
             if (base != null) {
                 level = base.pickLevelForMemTableOutput(minUserKey, maxUserKey);
+                if (this.versions.rangeOverlapsRunningCompaction(level, minUserKey, maxUserKey)) {
+                    // a running compaction is going to write this range above "level"
+                    level = 0;
+                }
             }
 
             edit.addFile(level, metaData.getFileNumber(), metaData.getFileSize(), metaData.getSmallest(), metaData.getLargest());
+            added = true;
+        }
+
+        // A flushed table stays pending until compactMemtable() applied the
+        // edit, logAndApply() releases the mutex and another background thread
+        // might take the table for an obsolete file meanwhile.  Recovery
+        // applies its edits with nothing running in the background.
+        if (base == null || !added) {
+            this.pendingOutputs.remove(metaData.getFileNumber());
         }
 
         CompactionStats stats = new CompactionStats();
@@ -938,8 +1614,98 @@ public class DBImpl implements DB {
         this.mutex.unlock();
     }
 
-    Log2MemtableReader getLog2MemtableReader(VersionEdit edit, String filename, SequentialFile file) {
-        return new Log2MemtableReader(this, edit, filename, file);
+    IMemtable newMemtable() {
+        IMemtable memtable = this.options.getMemtableFactory().newMemtable(this.internalKeyComparator);
+        double bloomSizeRatio = this.options.getMemtableBloomSizeRatio();
+        if (bloomSizeRatio > 0) {
+            memtable = new BloomFilterMemtable(memtable, (int) (this.options.getWriteBufferSize() * bloomSizeRatio));
+        }
+        return memtable;
+    }
+
+    Log2MemtableReader getLog2MemtableReader(VersionEdit edit, String filename, SequentialFile file, long logNumber) {
+        return new Log2MemtableReader(this, edit, filename, file, logNumber);
+    }
+
+    // Create the file of log "number", written over an obsolete log if one
+    // was kept for that
+    Pair<Status, WritableFile> newLogFile(long number) {
+        assert this.mutex.isHeldByCurrentThread();
+        String filename = FileName.logFileName(this.dbname, number);
+        if (this.options.getRecycleLogFileNum() == 0) {
+            return this.env.newWritableFile(filename);
+        }
+        this.minRecyclableLogNumber = Math.min(this.minRecyclableLogNumber, number);
+
+        Pair<Status, WritableFile> pair = null;
+        if (!this.logsToRecycle.isEmpty()) {
+            long oldNumber = this.logsToRecycle.pollFirst();
+            pair = this.env.reuseWritableFile(filename, FileName.logFileName(this.dbname, oldNumber));
+            Options.Logger.log(this.options.getInfoLog(), String.format("Recycling log %d as %d: %s", oldNumber, number, pair.getKey().toString()));
+        }
+        if (pair == null || pair.getKey().isNotOk()) {
+            pair = this.env.newWritableFile(filename);
+        }
+        maybePreallocateLog();
+        return pair;
+    }
+
+    // Make sure the next switch has a log to recycle.  The log is created
+    // and filled with zeros in the background: written here, its megabytes
+    // and the sync after them would stall every write behind the mutex.
+    void maybePreallocateLog() {
+        assert this.mutex.isHeldByCurrentThread();
+        if (!this.logsToRecycle.isEmpty() || this.preallocatingLogNumber != 0 || this.shuttingDown.get()) {
+            return;
+        }
+
+        long number = this.versions.newFileNumber();
+        this.preallocatingLogNumber = number;
+        this.env.schedule(new Runnable() {
+            @Override
+            public void run() {
+                preallocateLog(number);
+            }
+        }, Env.Priority.kHigh);
+    }
+
+    void preallocateLog(long number) {
+        String filename = FileName.logFileName(this.dbname, number);
+        Pair<Status, WritableFile> pair = this.env.newWritableFile(filename);
+        Status status = pair.getKey();
+        if (status.isOk()) {
+            status = pair.getValue().preallocate(logPreallocateSize());
+            Status closeStatus = pair.getValue().close();
+            if (status.isOk()) {
+                status = closeStatus;
+            }
+        }
+
+        this.mutex.lock();
+        try {
+            Options.Logger.log(this.options.getInfoLog(), String.format("Preallocated log %d: %s", number, status.toString()));
+            this.preallocatingLogNumber = 0;
+            if (status.isOk() && this.logsToRecycle.size() < this.options.getRecycleLogFileNum()) {
+                this.logsToRecycle.addLast(number);
+            } else {
+                // Ignoring errors on purpose, the next log is created as usual
+                this.env.delete(filename);
+            }
+            this.bgCondition.signalAll();
+        } finally {
+            this.mutex.unlock();
+        }
+    }
+
+    // A log holds about a memtable worth of writes, a little more for the
+    // record headers
+    long logPreallocateSize() {
+        long size = this.options.getWriteBufferSize() + this.options.getWriteBufferSize() / 10;
+        return (size + RecordType.kBlockSize - 1) / RecordType.kBlockSize * RecordType.kBlockSize;
+    }
+
+    LogWriter newLogWriter(WritableFile file, long number) {
+        return new LogWriter(file, number, this.options.getRecycleLogFileNum() > 0);
     }
 
     public void deleteObsoleteFiles() {
@@ -967,7 +1733,16 @@ public class DBImpl implements DB {
 
                 switch (fileType) {
                     case kLogFile:
-                        keep = isLogValid(number, this.versions.getLogNumber(), this.versions.getPrevLogNumber());
+                        keep = isLogValid(number, this.versions.getLogNumber(), this.versions.getPrevLogNumber()) ||
+                                number == this.preallocatingLogNumber;
+                        if (!keep && this.logsToRecycle.contains(number)) {
+                            keep = true;
+                        } else if (!keep && number >= this.minRecyclableLogNumber &&
+                                this.logsToRecycle.size() < this.options.getRecycleLogFileNum()) {
+                            Options.Logger.log(this.options.getInfoLog(), String.format("Keeping log %d for recycling", number));
+                            this.logsToRecycle.addLast(number);
+                            keep = true;
+                        }
                         break;
                     case kDescriptorFile:
                         // Keep my manifest file, and any newer incarnations'
@@ -1003,29 +1778,55 @@ public class DBImpl implements DB {
     public boolean maybeScheduleCompaction() {
         assert this.mutex.isHeldByCurrentThread();
 
-        if (bgCompactionScheduled) {
-            // already scheduled
-            return false;
-        } else if (shuttingDown.get()) {
+        applySeekStats();
+        if (shuttingDown.get()) {
             // DB is being deleted; no more background compactions
             return false;
         } else if (bgError.isNotOk()) {
             // Already got an error; no more changes
             return false;
-        } else if (this.immutableMemtable == null && this.manualCompaction == null && !this.versions.needCompaction()) {
+        }
+
+        boolean scheduled = false;
+        if (isFlushLaneEnabled() && !this.immutableMemtables.isEmpty() && !this.bgFlushScheduled) {
+            this.bgFlushScheduled = true;
+            scheduleFlush();
+            scheduled = true;
+        }
+
+        if (this.bgCompactionScheduled >= this.options.getMaxBackgroundCompactions()) {
+            // already scheduled
+        } else if (!needBackgroundCompaction()) {
             // No work to be done
-            return false;
         } else {
-            bgCompactionScheduled = true;
+            this.bgCompactionScheduled++;
             schedule();
+            scheduled = true;
+        }
+        return scheduled;
+    }
+
+    // Whether a newly scheduled compaction thread would find work to do
+    boolean needBackgroundCompaction() {
+        if (!this.immutableMemtables.isEmpty() && !isFlushLaneEnabled() && !this.flushInProgress) {
             return true;
+        } else if (this.manualCompaction != null) {
+            // A manual compaction runs alone, the running compactions
+            // reschedule it when they finish
+            return this.versions.getRunningCompactions().isEmpty();
+        } else {
+            return this.versions.needCompaction();
         }
     }
 
+    boolean isFlushLaneEnabled() {
+        return this.options.getMaxBackgroundFlushes() > 0;
+    }
+
     boolean backgroundCall() {
         try {
             mutex.lock();
-            assert this.bgCompactionScheduled;
+            assert this.bgCompactionScheduled > 0;
 
             boolean result = true;
             if (this.shuttingDown.get()) {
@@ -1038,7 +1839,7 @@ public class DBImpl implements DB {
                 backgroundCompaction();
             }
 
-            this.bgCompactionScheduled = false;
+            this.bgCompactionScheduled--;
             // Previous compaction may have produced too many files in a level,
             // so reschedule another compaction if needed.
             maybeScheduleCompaction();
@@ -1049,54 +1850,130 @@ public class DBImpl implements DB {
         }
     }
 
+    boolean backgroundFlushCall() {
+        try {
+            mutex.lock();
+            assert this.bgFlushScheduled;
+
+            boolean result = true;
+            if (this.shuttingDown.get() || this.bgError.isNotOk()) {
+                result = false;
+            } else if (!this.immutableMemtables.isEmpty() && !this.flushInProgress) {
+                compactMemtable();
+            }
+
+            this.bgFlushScheduled = false;
+            // A new level-0 file may call for a compaction
+            maybeScheduleCompaction();
+            this.bgCondition.signalAll();
+            return result;
+        } finally {
+            mutex.unlock();
+        }
+    }
+
     void compactMemtable() {
         assert this.mutex.isHeldByCurrentThread();
-        assert this.immutableMemtable != null;
-
+        assert !this.immutableMemtables.isEmpty();
+        assert !this.flushInProgress;
+
+        // The mutex is released while the table is written and while the
+        // edit is logged, keep other threads off these memtables meanwhile
+        this.flushInProgress = true;
+        List<MemtableList.Entry> flushing = this.immutableMemtables.pickToFlush();
+        MemtableList.Entry newest = flushing.get(flushing.size() - 1);
         VersionEdit edit = new VersionEdit();
-        Version base = this.versions.getCurrent();
-        base.ref();
-        Status status = writeLevel0Table(this.immutableMemtable, edit, base);
-        base.unref();
+        try {
+            List<IMemtable> memtables = new ArrayList<>();
+            for (MemtableList.Entry entry : flushing) {
+                memtables.add(entry.getMemtable());
+            }
 
-        if (status.isOk() && this.shuttingDown.get()) {
-            status = Status.IOError("Deleting DB during memtable compaction");
-        }
+            Version base = this.versions.getCurrent();
+            base.ref();
+            Status status = writeLevel0Table(memtables, edit, base);
+            base.unref();
 
-        // Replace immutable memtable with the generated Table
-        if (status.isOk()) {
-            edit.setPrevLogNumber(0);
-            edit.setLogNumber(this.logFileNumber); // Earlier logs no longer needed
-            status = logAndApply(edit);
-        }
+            if (status.isOk() && this.shuttingDown.get()) {
+                status = Status.IOError("Deleting DB during memtable compaction");
+            }
 
-        if (status.isOk()) {
-            this.immutableMemtable = null;
-            this.hasImmutableMemtable.set(false);
-            this.deleteObsoleteFiles();
-        } else {
-            recordBackgroundError(status);
+            // Replace immutable memtable with the generated Table
+            if (status.isOk()) {
+                edit.setPrevLogNumber(0);
+                edit.setLogNumber(newest.getNextLogNumber()); // Earlier logs no longer needed
+                status = logAndApply(edit);
+            }
+
+            if (status.isOk()) {
+                this.immutableMemtables.removeFlushed(flushing);
+                this.hasImmutableMemtable.set(!this.immutableMemtables.isEmpty());
+                this.walSyncer.oldLogsFlushed(newest.getLastSequence());
+                installSuperVersion();
+                if (reportMemtableUsage()) {
+                    scheduleMemtableSwitch();
+                }
+                this.deleteObsoleteFiles();
+            } else {
+                recordBackgroundError(status);
+            }
+        } finally {
+            for (Pair<Integer, FileMetaData> pair : edit.getNewFiles()) {
+                this.pendingOutputs.remove(pair.getValue().getFileNumber());
+            }
+            this.flushInProgress = false;
         }
     }
 
     Status logAndApply(VersionEdit edit) {
-        return this.versions.logAndApply(edit, this.mutex);
+        assert this.mutex.isHeldByCurrentThread();
+
+        // Background jobs take turns, every edit has to be applied on top
+        // of the version installed by the previous one
+        while (this.manifestWriting) {
+            this.bgCondition.awaitUninterruptibly();
+        }
+
+        this.manifestWriting = true;
+        try {
+            Status status = this.versions.logAndApply(edit, this.mutex);
+            if (status.isOk() && this.superVersion.get() != null) {
+                installSuperVersion();
+            }
+            return status;
+        } finally {
+            this.manifestWriting = false;
+            this.bgCondition.signalAll();
+        }
     }
 
     void backgroundCompaction() {
         assert this.mutex.isHeldByCurrentThread();
 
-        if (this.immutableMemtable != null) {
+        if (!this.immutableMemtables.isEmpty() && !isFlushLaneEnabled() && !this.flushInProgress) {
             this.compactMemtable();
             return;
         }
 
         boolean isManual = isManualCompaction();
+        if (isManual && !this.versions.getRunningCompactions().isEmpty()) {
+            // A manual compaction runs alone
+            return;
+        }
+
         Pair<Compaction, InternalKey> pair = pickCompaction(isManual);
         Compaction compaction = pair.getKey();
         InternalKey manualEnd = pair.getValue();
 
+        if (compaction != null && !isManual) {
+            // Inputs are taken now, another thread may pick up what is left
+            maybeScheduleCompaction();
+        }
+
         Status status = doBackgroundCompaction(isManual, compaction);
+        if (compaction != null) {
+            this.versions.releaseCompaction(compaction);
+        }
 
         if (status.isOk()) {
             // Done
@@ -1166,6 +2043,7 @@ public class DBImpl implements DB {
 
             this.manualCompaction.setDone(compaction == null);
             if (compaction != null) {
+                compaction.setManual(true);
                 manualEnd = compaction.input(0, compaction.numInputFiles(0) - 1).getLargest();
             }
             Options.Logger.log(this.options.getInfoLog(), String.format("Manual compaction at level-%d from %s .. %s; will stop at %s",
@@ -1289,12 +2167,34 @@ public class DBImpl implements DB {
 
     Status actualCompact(CompactionState compact, long startMicros, CompactionStats stats) {
         assert !this.mutex.isHeldByCurrentThread();
-        Iterator<String, String> input = makeInputIterator(compact);
+        List<String> boundaries = subcompactionBoundaries(compact.getCompaction());
 
-        Pair<Status, Long> pair = iterateInput(input, compact);
+        Pair<Status, Long> pair;
+        if (boundaries.isEmpty()) {
+            pair = processCompaction(compact, makeInputIterator(compact));
+        } else {
+            pair = processSubcompactions(compact, boundaries);
+        }
         Status status = pair.getKey();
         Long immutableMemtableMicros = pair.getValue();
 
+        stats.setMicros(System.currentTimeMillis() - startMicros - immutableMemtableMicros);
+        for (int which = 0; which < 2; which++) {
+            for (int i = 0; i < compact.getCompaction().numInputFiles(which); i++) {
+                stats.setBytesRead(stats.getBytesRead() + compact.getCompaction().input(which, i).getFileSize());
+            }
+        }
+
+        for (int i = 0; i < compact.getOutputs().size(); i++) {
+            stats.setBytesWritten(stats.getBytesWritten() + compact.getOutputs().get(i).getFileSize());
+        }
+        return status;
+    }
+
+    Pair<Status, Long> processCompaction(CompactionState compact, Iterator<String, String> input) {
+        Pair<Status, Long> pair = iterateInput(input, compact);
+        Status status = pair.getKey();
+
         if (status.isOk() && this.shuttingDown.get()) {
             status = Status.IOError("Deleting DB during compaction");
         }
@@ -1304,18 +2204,136 @@ public class DBImpl implements DB {
         if (status.isOk()) {
             status = input.status();
         }
+        return new Pair<>(status, pair.getValue());
+    }
 
-        stats.setMicros(System.currentTimeMillis() - startMicros - immutableMemtableMicros);
-        for (int which = 0; which < 2; which++) {
-            for (int i = 0; i < compact.getCompaction().numInputFiles(which); i++) {
-                stats.setBytesRead(stats.getBytesRead() + compact.getCompaction().input(which, i).getFileSize());
+    // Split points for a level-0 or manual compaction: largest user keys of
+    // input files, picked so the shards read about the same number of bytes.
+    // Shard i covers the user keys in (boundaries[i-1], boundaries[i]].
+    List<String> subcompactionBoundaries(Compaction compaction) {
+        List<String> boundaries = new ArrayList<>();
+        int shards = this.options.getMaxSubcompactions();
+        if (shards <= 1 || (compaction.getLevel() != 0 && !compaction.isManual())) {
+            return boundaries;
+        }
+
+        List<FileMetaData> files = new ArrayList<>();
+        files.addAll(compaction.getInputs()[0]);
+        files.addAll(compaction.getInputs()[1]);
+        if (files.size() < 2) {
+            return boundaries;
+        }
+
+        Comparator userComparator = this.internalKeyComparator.getUserComparator();
+        files.sort((a, b) -> userComparator.compare(
+                a.getLargest().userKey().toCharArray(), b.getLargest().userKey().toCharArray()));
+        char[] largest = files.get(files.size() - 1).getLargest().userKey().toCharArray();
+
+        long total = 0;
+        for (FileMetaData metaData : files) {
+            total += metaData.getFileSize();
+        }
+
+        long accumulated = 0;
+        for (FileMetaData metaData : files) {
+            accumulated += metaData.getFileSize();
+            if (boundaries.size() + 1 >= shards) {
+                break;
+            }
+
+            String key = metaData.getLargest().userKey();
+            if (accumulated * shards >= total * (boundaries.size() + 1) &&
+                    userComparator.compare(key.toCharArray(), largest) < 0 &&
+                    (boundaries.isEmpty() || userComparator.compare(key.toCharArray(), boundaries.get(boundaries.size() - 1).toCharArray()) > 0)) {
+                boundaries.add(key);
             }
         }
+        return boundaries;
+    }
+
+    // Run one shard per key range, the first on this thread and the others
+    // in the env pool of compactions, then collect their outputs into
+    // "compact" so they are installed by one edit.  Shards the pool has not
+    // started by the time this thread is done with its own run here too, and
+    // only the shards a pool thread did start are waited for, so a pool
+    // whose threads are all busy never holds this one up.
+    Pair<Status, Long> processSubcompactions(CompactionState compact, List<String> boundaries) {
+        int shards = boundaries.size() + 1;
+        List<CompactionState> states = new ArrayList<>(shards);
+        List<Pair<Status, Long>> results = new ArrayList<>(shards);
+        List<AtomicBoolean> started = new ArrayList<>(shards);
+        List<CountDownLatch> done = new ArrayList<>(shards);
+        List<Runnable> runnables = new ArrayList<>(shards);
+        List<Future> futures = new ArrayList<>(shards);
+        Comparator userComparator = this.internalKeyComparator.getUserComparator();
+
+        for (int i = 0; i < shards; i++) {
+            CompactionState state = new CompactionState(new Compaction(compact.getCompaction()));
+            state.setSmallestSnapshot(compact.getSmallestSnapshot());
+            states.add(state);
+            results.add(null);
+            started.add(new AtomicBoolean(false));
+            done.add(new CountDownLatch(1));
+
+            final int shard = i;
+            runnables.add(new Runnable() {
+                @Override
+                public void run() {
+                    if (!started.get(shard).compareAndSet(false, true)) {
+                        return;
+                    }
 
-        for (int i = 0; i < compact.getOutputs().size(); i++) {
-            stats.setBytesWritten(stats.getBytesWritten() + compact.getOutputs().get(i).getFileSize());
+                    Pair<Status, Long> result;
+                    try {
+                        CompactionState state = states.get(shard);
+                        Iterator<String, String> input = new SubcompactionIterator(makeInputIterator(state), userComparator,
+                                shard == 0 ? null : boundaries.get(shard - 1),
+                                shard == shards - 1 ? null : boundaries.get(shard));
+                        result = processCompaction(state, input);
+                    } catch (Throwable e) {
+                        result = new Pair<>(Status.Corruption("subcompaction failed", String.valueOf(e)), 0L);
+                    }
+                    results.set(shard, result);
+                    done.get(shard).countDown();
+                }
+            });
         }
-        return status;
+
+        futures.add(null);
+        for (int i = 1; i < shards; i++) {
+            futures.add(this.env.schedule(runnables.get(i), Env.Priority.kLow));
+        }
+        for (int i = 0; i < shards; i++) {
+            // claims the shard unless the pool did
+            runnables.get(i).run();
+        }
+        for (int i = 1; i < shards; i++) {
+            // a no-op by now if the pool did not start it, so it is skipped
+            futures.get(i).cancel(false);
+        }
+        for (int i = 0; i < shards; i++) {
+            Uninterruptibles.awaitUninterruptibly(done.get(i));
+        }
+
+        Status status = Status.OK();
+        long immutableMemtableMicros = 0;
+        for (int i = 0; i < shards; i++) {
+            CompactionState state = states.get(i);
+            Pair<Status, Long> result = results.get(i);
+            if (status.isOk() && result.getKey().isNotOk()) {
+                status = result.getKey();
+            }
+            immutableMemtableMicros = Math.max(immutableMemtableMicros, result.getValue());
+
+            if (state.getBuilder() != null) {
+                // the shard stopped early, see cleanupCompaction
+                state.getBuilder().abandon();
+            }
+            compact.getOutputs().addAll(state.getOutputs());
+            compact.addBytes(state.getTotalBytes());
+        }
+        Options.Logger.log(this.options.getInfoLog(), String.format("Compaction split into %d subcompactions", shards));
+        return new Pair<>(status, immutableMemtableMicros);
     }
 
     Iterator<String, String> makeInputIterator(CompactionState compact) {
@@ -1432,11 +2450,11 @@ public class DBImpl implements DB {
 
     // used during disk file compaction
     long compactMemtableFirst() {
-        if (this.hasImmutableMemtable.get()) {
+        if (this.hasImmutableMemtable.get() && !isFlushLaneEnabled()) {
             long immutableMemtableStart = System.currentTimeMillis();
             try {
                 this.mutex.lock();
-                if (this.immutableMemtable != null) {
+                if (!this.immutableMemtables.isEmpty() && !this.flushInProgress) {
                     this.compactMemtable();
                     bgCondition.signalAll();
                 }
@@ -1526,13 +2544,17 @@ public class DBImpl implements DB {
         String filename = FileName.tableFileName(this.dbname, fileNumber);
         Pair<Status, WritableFile> pair = newWritableFile(filename);
         if (pair.getKey().isOk()) {
-            compact.setOutfile(pair.getValue());
+            compact.setOutfile(RateLimitedWritableFile.wrap(pair.getValue(), this.options.getRateLimiter()));
             compact.setBuilder(new TableBuilder(this.options, compact.getOutfile()));
         }
         return pair.getKey();
     }
 
+    // A compaction output, kept out of the page cache if so configured
     Pair<Status, WritableFile> newWritableFile(String filename) {
+        if (this.options.isUseDirectIOForFlushAndCompaction()) {
+            return env.newDirectWritableFile(filename);
+        }
         return env.newWritableFile(filename);
     }
 
@@ -1615,6 +2637,15 @@ public class DBImpl implements DB {
             public void run() {
                 backgroundCall();
             }
-        });
+        }, Env.Priority.kLow);
+    }
+
+    void scheduleFlush() {
+        env.schedule(new Runnable() {
+            @Override
+            public void run() {
+                backgroundFlushCall();
+            }
+        }, Env.Priority.kHigh);
     }
 }
@@ -3,7 +3,7 @@ package com.farmerworking.leveldb.in.java.data.structure.db;
 import com.farmerworking.leveldb.in.java.api.Status;
 import com.farmerworking.leveldb.in.java.data.structure.log.ILogReader;
 import com.farmerworking.leveldb.in.java.data.structure.log.LogReader;
-import com.farmerworking.leveldb.in.java.data.structure.memory.Memtable;
+import com.farmerworking.leveldb.in.java.data.structure.memory.IMemtable;
 import com.farmerworking.leveldb.in.java.data.structure.version.VersionEdit;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.MemTableInserter;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.WriteBatch;
@@ -11,6 +11,8 @@ import com.farmerworking.leveldb.in.java.file.SequentialFile;
 import javafx.util.Pair;
 import lombok.Data;
 
+import java.util.Collections;
+
 @Data
 public class Log2MemtableReader {
     private DBImpl db;
@@ -21,13 +23,13 @@ public class Log2MemtableReader {
     private long maxSequence;
     private boolean saveManifest;
     private int compactions;
-    private Memtable memtable;
+    private IMemtable memtable;
     private WriteBatch batch;
 
 
     public Log2MemtableReader() {}
 
-    public Log2MemtableReader(DBImpl db, VersionEdit edit, String filename, SequentialFile file) {
+    public Log2MemtableReader(DBImpl db, VersionEdit edit, String filename, SequentialFile file, long logNumber) {
         this.db = db;
         this.edit = edit;
 
@@ -45,7 +47,7 @@ public class Log2MemtableReader {
         // paranoid_checks==false so that corruptions cause entire commits
         // to be skipped instead of propagating bad information (like overly
         // large sequence numbers).
-        this.logReader = new LogReader(file, logReporter, true, 0);
+        this.logReader = new LogReader(file, logReporter, true, 0, logNumber);
     }
 
     public Log2MemtableReader invoke() {
@@ -62,7 +64,7 @@ public class Log2MemtableReader {
 
             batch.decode(read.getValue().toCharArray());
             if (memtable == null) {
-                memtable = new Memtable(db.getInternalKeyComparator());
+                memtable = db.newMemtable();
             }
 
             MemTableInserter memTableInserter = new MemTableInserter(batch.getSequence(), memtable);
@@ -92,6 +94,13 @@ public class Log2MemtableReader {
         return this;
     }
 
+    // Appending to a recycled log, or to a preallocated one, would put the
+    // new records after the older log or the zeros it still holds, where a
+    // reader never gets to them
+    boolean isAppendable() {
+        return !logReader.isRecycled() && !logReader.isZeroFilled();
+    }
+
     Pair<Boolean, String> readLogRecord(ILogReader logReader) {
         return logReader.readRecord();
     }
@@ -105,6 +114,6 @@ public class Log2MemtableReader {
     }
 
     Status writeLevel0Table() {
-        return db.writeLevel0Table(memtable, edit, null);
+        return db.writeLevel0Table(Collections.singletonList(memtable), edit, null);
     }
 }
@@ -0,0 +1,76 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.data.structure.memory.IMemtable;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+// The immutable memtables of a db, waiting to be flushed, oldest first.
+// Writers add the memtable they switch away from, a flush writes the
+// oldest ones to a table and removes them.  Readers consult them newest
+// first.
+//
+// Each memtable remembers the number of the log that was started after
+// it, which the manifest records as the log number once the memtable is
+// flushed, and the last sequence written to its own log.
+//
+// REQUIRES: db mutex held for all methods
+class MemtableList {
+    @Data
+    static class Entry {
+        private final IMemtable memtable;
+        private final long nextLogNumber;
+        private final long lastSequence;
+    }
+
+    private final LinkedList<Entry> entries = new LinkedList<>();
+
+    void add(IMemtable memtable, long nextLogNumber, long lastSequence) {
+        this.entries.addLast(new Entry(memtable, nextLogNumber, lastSequence));
+    }
+
+    boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    // The memtables newest first, the order reads go through them
+    List<IMemtable> newestFirst() {
+        List<IMemtable> result = new ArrayList<>(this.entries.size());
+        for (Entry entry : this.entries) {
+            result.add(entry.memtable);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // The memtables for a flush to write into one table, oldest first.
+    // That is all of them: several memtables flushed together make one
+    // level-0 file instead of several.
+    List<Entry> pickToFlush() {
+        return new ArrayList<>(this.entries);
+    }
+
+    // Remove what pickToFlush() returned once it is in a table.  More
+    // memtables may have been added since.
+    void removeFlushed(List<Entry> flushed) {
+        for (Entry entry : flushed) {
+            Entry oldest = this.entries.removeFirst();
+            assert oldest == entry;
+        }
+    }
+
+    int approximateMemoryUsage() {
+        int result = 0;
+        for (Entry entry : this.entries) {
+            result += entry.memtable.approximateMemoryUsage();
+        }
+        return result;
+    }
+}
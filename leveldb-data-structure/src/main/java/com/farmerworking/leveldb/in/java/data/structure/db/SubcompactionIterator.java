@@ -0,0 +1,125 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.api.Comparator;
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.ICoding;
+import com.farmerworking.leveldb.in.java.data.structure.iterator.AbstractIterator;
+import com.farmerworking.leveldb.in.java.data.structure.memory.InternalKey;
+import com.farmerworking.leveldb.in.java.data.structure.memory.ValueType;
+
+// Restricts a compaction input iterator to the user keys in (start, end].
+// A null start or end leaves that side unbounded.  Every entry of a user key
+// falls into the same shard, so dropping hidden entries works per shard.
+public class SubcompactionIterator extends AbstractIterator<String, String> {
+    private static ICoding coding = ICoding.getInstance();
+
+    private final Iterator<String, String> input;
+    private final Comparator userComparator;
+    private final String start;
+    private final String end;
+    private boolean valid;
+
+    public SubcompactionIterator(Iterator<String, String> input, Comparator userComparator, String start, String end) {
+        this.input = input;
+        this.userComparator = userComparator;
+        this.start = start;
+        this.end = end;
+        this.valid = false;
+    }
+
+    @Override
+    public boolean valid() {
+        return valid;
+    }
+
+    @Override
+    public void seekToFirst() {
+        if (start == null) {
+            input.seekToFirst();
+        } else {
+            input.seek(new InternalKey(start, InternalKey.kMaxSequenceNumber, ValueType.kValueTypeForSeek).encode());
+        }
+        skipToRange();
+    }
+
+    @Override
+    public void seekToLast() {
+        if (end == null) {
+            input.seekToLast();
+        } else {
+            // the last entry "end" may have, or else the first one past it
+            input.seek(new InternalKey(end, 0L, ValueType.kTypeDeletion).encode());
+            if (!input.valid()) {
+                input.seekToLast();
+            }
+        }
+        skipBackToRange();
+    }
+
+    @Override
+    public void seek(String target) {
+        input.seek(target);
+        skipToRange();
+    }
+
+    @Override
+    public void next() {
+        assert valid;
+        input.next();
+        skipToRange();
+    }
+
+    @Override
+    public void prev() {
+        assert valid;
+        input.prev();
+        skipBackToRange();
+    }
+
+    @Override
+    public String key() {
+        assert valid;
+        return input.key();
+    }
+
+    @Override
+    public String value() {
+        assert valid;
+        return input.value();
+    }
+
+    @Override
+    public Status status() {
+        return input.status();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        input.close();
+    }
+
+    private void skipToRange() {
+        while (input.valid() && start != null && compareUserKey(input.key(), start, 1) <= 0) {
+            input.next();
+        }
+        valid = input.valid() && (end == null || compareUserKey(input.key(), end, -1) <= 0);
+    }
+
+    private void skipBackToRange() {
+        while (input.valid() && end != null && compareUserKey(input.key(), end, -1) > 0) {
+            input.prev();
+        }
+        valid = input.valid() && (start == null || compareUserKey(input.key(), start, 1) > 0);
+    }
+
+    // "corrupted" is the answer for keys too short to hold a user key, so
+    // that they stay in whatever shard they show up in
+    private int compareUserKey(String internalKey, String userKey, int corrupted) {
+        if (internalKey.length() < coding.getFixed64Length()) {
+            return corrupted;
+        }
+        return userComparator.compare(InternalKey.extractUserKey(internalKey.toCharArray()), userKey.toCharArray());
+    }
+}
@@ -0,0 +1,58 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.data.structure.memory.IMemtable;
+import com.farmerworking.leveldb.in.java.data.structure.version.Version;
+import lombok.Data;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The memtable, the immutable memtables and the current version as one
+// unit, so readers can pin all of them without taking the db mutex.  The db
+// holds a reference while the super version is installed and the super
+// version holds a reference on its version.
+@Data
+public class SuperVersion {
+    private final IMemtable memtable;
+    // Newest first
+    private final List<IMemtable> immutableMemtables;
+    private final Version version;
+    private final AtomicInteger refs;
+
+    // REQUIRES: db mutex is held
+    public SuperVersion(IMemtable memtable, List<IMemtable> immutableMemtables, Version version) {
+        this.memtable = memtable;
+        this.immutableMemtables = immutableMemtables;
+        this.version = version;
+        this.refs = new AtomicInteger(1);
+        this.version.ref();
+    }
+
+    // Take a reference unless the last one is already gone, in which case
+    // the caller has to look for the super version that replaced this one.
+    public boolean tryRef() {
+        while (true) {
+            int count = this.refs.get();
+            if (count == 0) {
+                return false;
+            }
+            if (this.refs.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Returns true if the last reference is gone and cleanup() has to be
+    // called.
+    public boolean unref() {
+        int count = this.refs.decrementAndGet();
+        assert count >= 0;
+        return count == 0;
+    }
+
+    // REQUIRES: db mutex is held
+    public void cleanup() {
+        assert this.refs.get() == 0;
+        this.version.unref();
+    }
+}
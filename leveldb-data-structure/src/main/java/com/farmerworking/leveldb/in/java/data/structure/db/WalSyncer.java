@@ -0,0 +1,292 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Keeps track of how much of the log is durable and syncs it on behalf of
+// writers.  Whoever needs a sync while none is running does it for everyone
+// waiting, the others wait for it to finish, so concurrent waiters share one
+// fsync.
+//
+// In deferred mode a background thread also syncs the log every
+// "periodMillis" or once "bytesPerSync" bytes were logged since the last
+// sync, whichever comes first, and sync writes wait for that instead of
+// syncing while they hold the log.
+//
+// Lock order: the db mutex before the lock of this class.
+class WalSyncer {
+    private final ReentrantLock lock;
+    private final Condition condition;
+    private final long periodMillis;
+    private final long bytesPerSync;
+    // Told about failed syncs, called without the lock held
+    private final Consumer<Status> errorHandler;
+
+    private WritableFile file;
+    // Logs switched away from that still hold records which are not durable
+    // yet, together with the last sequence in each
+    private final List<OldLog> oldLogs;
+
+    private long loggedSequence;
+    private long durableSequence;
+    private long unsyncedBytes;
+    private boolean syncing;
+    private Status error;
+
+    private Thread thread;
+    private boolean closed;
+
+    // Statistics
+    private long syncCount;
+
+    WalSyncer(long periodMillis, long bytesPerSync, Consumer<Status> errorHandler) {
+        this.lock = new ReentrantLock();
+        this.condition = this.lock.newCondition();
+        this.periodMillis = periodMillis;
+        this.bytesPerSync = bytesPerSync;
+        this.errorHandler = errorHandler;
+        this.oldLogs = new ArrayList<>();
+        this.error = Status.OK();
+    }
+
+    boolean isDeferred() {
+        return this.periodMillis > 0 || this.bytesPerSync > 0;
+    }
+
+    // Start the background thread of deferred mode
+    void start() {
+        if (isDeferred() && this.thread == null) {
+            this.thread = new Thread(this::run, "leveldb-wal-syncer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    // Stop the background thread and sync what it has not got to yet
+    void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.condition.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (this.thread != null) {
+            boolean interrupted = false;
+            while (this.thread.isAlive()) {
+                try {
+                    this.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            waitForDurable(Long.MAX_VALUE);
+        }
+    }
+
+    // The log moves on to "newFile".  Records still unsynced in the current
+    // file are synced along with the next sync.
+    //
+    // REQUIRES: nobody is appending to the log
+    void switchFile(WritableFile newFile) {
+        this.lock.lock();
+        try {
+            if (this.file != null && this.loggedSequence > this.durableSequence) {
+                this.oldLogs.add(new OldLog(this.file, this.loggedSequence));
+            }
+            this.file = newFile;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // The memtables of the logs up to the one whose last record was at
+    // "lastSequence" are in tables now, the records of those logs are
+    // durable without syncing them.
+    void oldLogsFlushed(long lastSequence) {
+        this.lock.lock();
+        try {
+            for (OldLog oldLog : this.oldLogs) {
+                if (oldLog.lastSequence <= lastSequence) {
+                    this.durableSequence = Math.max(this.durableSequence, oldLog.lastSequence);
+                }
+            }
+            this.oldLogs.removeIf(oldLog -> oldLog.lastSequence <= lastSequence);
+            this.condition.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // A record ending at "sequence" and "bytes" long was added to the log
+    void logged(long sequence, long bytes) {
+        this.lock.lock();
+        try {
+            this.loggedSequence = Math.max(this.loggedSequence, sequence);
+            this.unsyncedBytes += bytes;
+            if (this.bytesPerSync > 0 && this.unsyncedBytes >= this.bytesPerSync) {
+                this.condition.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // The writer holding the log synced it after logging "sequence"
+    void synced(long sequence) {
+        this.lock.lock();
+        try {
+            if (this.oldLogs.isEmpty()) {
+                this.durableSequence = Math.max(this.durableSequence, sequence);
+                this.unsyncedBytes = 0;
+                this.condition.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Block until everything up to "sequence" is durable, syncing the log
+    // if nobody else is.  A sequence that was not logged yet stands for
+    // everything logged so far.
+    Status waitForDurable(long sequence) {
+        this.lock.lock();
+        try {
+            sequence = Math.min(sequence, this.loggedSequence);
+            while (this.durableSequence < sequence) {
+                if (this.error.isNotOk()) {
+                    return this.error;
+                }
+
+                if (this.syncing) {
+                    this.condition.awaitUninterruptibly();
+                } else {
+                    sync();
+                }
+            }
+            return Status.OK();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    long getLoggedSequence() {
+        this.lock.lock();
+        try {
+            return this.loggedSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    long getDurableSequence() {
+        this.lock.lock();
+        try {
+            return this.durableSequence;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    long getSyncCount() {
+        this.lock.lock();
+        try {
+            return this.syncCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Sync everything logged so far.  The lock is released during the sync
+    // so that more records can be logged meanwhile.
+    //
+    // REQUIRES: lock held, no sync running
+    private void sync() {
+        assert this.lock.isHeldByCurrentThread() && !this.syncing;
+        this.syncing = true;
+        long sequence = this.loggedSequence;
+        List<OldLog> oldLogs = new ArrayList<>(this.oldLogs);
+        WritableFile file = this.file;
+        this.unsyncedBytes = 0;
+
+        this.lock.unlock();
+        Status status = Status.OK();
+        for (OldLog oldLog : oldLogs) {
+            status = oldLog.file.sync();
+            if (status.isNotOk()) {
+                break;
+            }
+        }
+        if (status.isOk() && file != null) {
+            status = file.sync();
+        }
+        if (status.isNotOk()) {
+            // The log may or may not hold the records when the db is
+            // reopened, the db stops taking writes
+            this.errorHandler.accept(status);
+        }
+        this.lock.lock();
+
+        this.syncing = false;
+        this.syncCount++;
+        if (status.isOk()) {
+            this.oldLogs.removeAll(oldLogs);
+            this.durableSequence = Math.max(this.durableSequence, sequence);
+        } else if (this.error.isOk()) {
+            this.error = status;
+        }
+        this.condition.signalAll();
+    }
+
+    private void run() {
+        this.lock.lock();
+        try {
+            long nextSync = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.periodMillis);
+            while (!this.closed && this.error.isOk()) {
+                boolean due = this.periodMillis > 0 && System.nanoTime() - nextSync >= 0;
+                boolean full = this.bytesPerSync > 0 && this.unsyncedBytes >= this.bytesPerSync;
+                if (this.syncing) {
+                    // a writer is syncing, that counts as ours
+                    this.condition.await();
+                    nextSync = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.periodMillis);
+                } else if (due || full) {
+                    if (this.loggedSequence > this.durableSequence) {
+                        sync();
+                    } else {
+                        this.unsyncedBytes = 0;
+                    }
+                    nextSync = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.periodMillis);
+                } else if (this.periodMillis > 0) {
+                    this.condition.awaitNanos(Math.max(1, nextSync - System.nanoTime()));
+                } else {
+                    this.condition.await();
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop syncing, close() syncs whatever is left
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static class OldLog {
+        private final WritableFile file;
+        private final long lastSequence;
+
+        OldLog(WritableFile file, long lastSequence) {
+            this.file = file;
+            this.lastSequence = lastSequence;
+        }
+    }
+}
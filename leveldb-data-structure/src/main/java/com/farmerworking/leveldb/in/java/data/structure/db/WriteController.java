@@ -0,0 +1,88 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import lombok.Data;
+
+// Token bucket that throttles writers while compactions fall behind, so
+// write latency goes up gradually instead of writes stopping all at once.
+//
+// Not thread safe: every call is made while holding the db mutex.
+@Data
+public class WriteController {
+    static final long kMicrosPerSecond = 1000000;
+
+    // The bucket holds at most this many micros worth of writes, which is
+    // also the shortest delay handed out.
+    static final long kMicrosPerRefill = 1000;
+
+    // However close the db is to stopping writes, it still accepts this
+    // many bytes per second.
+    static final long kMinDelayedWriteRate = 16 * 1024;
+
+    private final long maxDelayedWriteRate;
+
+    // Bytes per second writers are throttled to, 0 when they are not
+    private long delayedWriteRate;
+
+    // Time until which the writes let through so far have used up the
+    // bucket.  Lagging behind the clock means there is credit left.
+    private long bucketEmptyTime;
+
+    // Statistics
+    private long delayCount;
+    private long delayMicros;
+    private long stallCount;
+    private long stallMicros;
+
+    public WriteController(long maxDelayedWriteRate) {
+        this.maxDelayedWriteRate = Math.max(kMinDelayedWriteRate, maxDelayedWriteRate);
+        this.delayedWriteRate = 0;
+        this.bucketEmptyTime = 0;
+    }
+
+    // Throttle writers.  "pressure" is how far the db has come from the
+    // point where writes start being delayed (0) to the point where they
+    // are stopped (1).
+    public void delay(double pressure) {
+        pressure = Math.min(1, Math.max(0, pressure));
+        long rate = (long) (maxDelayedWriteRate * (1 - pressure));
+        delayedWriteRate = Math.max(kMinDelayedWriteRate, rate);
+    }
+
+    public void clearDelay() {
+        delayedWriteRate = 0;
+        bucketEmptyTime = 0;
+    }
+
+    public boolean isDelayed() {
+        return delayedWriteRate > 0;
+    }
+
+    // Return how many micros a writer has to sleep before writing "bytes"
+    // at time "nowMicros".  The bytes are charged right away, so the writer
+    // should not ask again after sleeping.
+    public long getDelay(long nowMicros, long bytes) {
+        if (!isDelayed()) {
+            return 0;
+        }
+
+        // Credit earned while nobody was writing is capped by the bucket size
+        bucketEmptyTime = Math.max(bucketEmptyTime, nowMicros - kMicrosPerRefill);
+        bucketEmptyTime += bytes * kMicrosPerSecond / delayedWriteRate;
+
+        if (bucketEmptyTime <= nowMicros) {
+            return 0;
+        }
+        // Never wake a writer up more than once per refill interval
+        return Math.max(kMicrosPerRefill, bucketEmptyTime - nowMicros);
+    }
+
+    public void recordDelay(long micros) {
+        delayCount++;
+        delayMicros += micros;
+    }
+
+    public void recordStall(long micros) {
+        stallCount++;
+        stallMicros += micros;
+    }
+}
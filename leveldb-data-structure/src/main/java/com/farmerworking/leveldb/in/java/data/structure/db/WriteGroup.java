@@ -0,0 +1,78 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.data.structure.memory.IMemtable;
+import com.farmerworking.leveldb.in.java.data.structure.writebatch.MemTableInserter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Writers whose batches were logged together and are now inserted into the
+// memtable in parallel, each one with the sequence range assigned to it by
+// the leader. A writer's batch is inserted exactly once, either by its own
+// thread or by the leader when the owner has not picked it up yet.
+public class WriteGroup {
+    private final List<Writer> writers;
+    private final IMemtable memtable;
+    private final ReentrantLock mutex;
+    private final Condition condition; // Signalled when the last batch is inserted
+    private final AtomicInteger pending;
+    private final AtomicReference<Status> status; // first error, null if none
+    private long lastSequence; // pipelined write: published once the group is inserted
+
+    public WriteGroup(List<Writer> writers, IMemtable memtable, ReentrantLock mutex) {
+        this.writers = writers;
+        this.memtable = memtable;
+        this.mutex = mutex;
+        this.condition = mutex.newCondition();
+        this.pending = new AtomicInteger(writers.size());
+        this.status = new AtomicReference<>(null);
+    }
+
+    public List<Writer> getWriters() {
+        return writers;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+    // REQUIRES: mutex not held
+    void insert(Writer writer) {
+        assert !mutex.isHeldByCurrentThread();
+        if (!writer.getMemtableClaimed().compareAndSet(false, true)) {
+            return;
+        }
+
+        Status s = writer.getBatch().iterate(new MemTableInserter(writer.getSequence(), memtable, true));
+        if (s.isNotOk()) {
+            status.compareAndSet(null, s);
+        }
+
+        if (pending.decrementAndGet() == 0) {
+            mutex.lock();
+            try {
+                condition.signalAll();
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+
+    // REQUIRES: mutex held
+    Status await() {
+        assert mutex.isHeldByCurrentThread();
+        while (pending.get() > 0) {
+            condition.awaitUninterruptibly();
+        }
+        Status s = status.get();
+        return s == null ? Status.OK() : s;
+    }
+}
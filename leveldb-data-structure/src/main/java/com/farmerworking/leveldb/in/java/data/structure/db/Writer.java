@@ -4,6 +4,7 @@ import com.farmerworking.leveldb.in.java.api.Status;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.WriteBatch;
 import lombok.Data;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
@@ -15,6 +16,14 @@ public class Writer {
     private boolean done;
     private Condition condition;
 
+    // concurrent memtable write: first sequence of this writer's batch and
+    // the group it belongs to, set by the leader once the group is logged
+    private long sequence;
+    private WriteGroup writeGroup;
+    private final AtomicBoolean memtableClaimed = new AtomicBoolean(false);
+    // pipelined write: batch is in the log, waiting for the memtable stage
+    private boolean logged;
+
     public Writer(Lock lock) {
         this.condition = lock.newCondition();
     }
@@ -6,4 +6,12 @@ public interface ILogReader {
     long lastRecordOffset();
 
     Pair<Boolean, String> readRecord();
+
+    // Were records in the recyclable format read, so that the file may
+    // hold an older log after this one?
+    boolean isRecycled();
+
+    // Did the log end at zeros, such as those of a preallocated file, so
+    // that the file goes on after the last record?
+    boolean isZeroFilled();
 }
@@ -23,12 +23,26 @@ public class LogReader implements ILogReader {
     private long endOfBufferOffset;
     // Offset at which to start looking for the first record to return
     private long initialOffset;
+    // Number of the log, recyclable records of other logs are left overs
+    // of an earlier use of the file
+    private long logNumber;
+    // Recyclable records were read, the file may be a recycled one
+    private boolean recycled;
+    // The log ended at zeros, the file may have been preallocated
+    private boolean zeroFilled;
 
     public LogReader(SequentialFile file, ILogReporter reporter, boolean checksum, long initialOffset) {
+        this(file, reporter, checksum, initialOffset, 0);
+    }
+
+    public LogReader(SequentialFile file, ILogReporter reporter, boolean checksum, long initialOffset, long logNumber) {
         this.file = file;
         this.reporter = reporter;
         this.checksum = checksum;
         this.initialOffset = initialOffset;
+        this.logNumber = logNumber;
+        this.recycled = false;
+        this.zeroFilled = false;
 
         this.eof = false;
         this.lastRecordOffset = 0;
@@ -78,7 +92,7 @@ public class LogReader implements ILogReader {
     //                    kUnknown LogicalRecord
     //
     private Pair<Boolean, String> LogicalRecord(Pair<RecordType, String> physicalRecord) {
-        long recordOffset = endOfBufferOffset - buffer.remain() - RecordType.kHeaderSize - physicalRecord.getValue()
+        long recordOffset = endOfBufferOffset - buffer.remain() - headerSize() - physicalRecord.getValue()
                 .length();
         switch (physicalRecord.getKey()) {
             case kFullType:
@@ -172,7 +186,7 @@ public class LogReader implements ILogReader {
     // Return type, or one of the preceding special values
     private Pair<RecordType, String> readPhysicalRecord() {
         while(true) {
-            if (buffer.remain() < RecordType.kHeaderSize) {
+            if (buffer.remain() < headerSize()) {
                 if (eof) {
                     // if buffer is non-empty, we have a truncated header at the
                     // end of the file, which can be caused by the writer crashing in the
@@ -202,14 +216,17 @@ public class LogReader implements ILogReader {
             Pair<Integer, RecordType> parseResult = parseHeader(header);
             int length = parseResult.getKey();
             RecordType type = parseResult.getValue();
-            if (RecordType.kHeaderSize + length > buffer.remain()) {
+            int headerSize = type.isRecyclable() ? RecordType.kRecyclableHeaderSize : RecordType.kHeaderSize;
+            if (headerSize + length > buffer.remain()) {
                 int dropSize = buffer.remain();
                 buffer.clear();
 
-                if (eof) {
+                if (eof || recycled) {
                     // If the end of the file has been reached without reading |length| bytes
                     // of payload, assume the writer died in the middle of writing the record.
                     // Don't report a corruption.
+                    // In a recycled file the log ends where the old contents
+                    // start, those need not line up with a record.
                     return new Pair<>(RecordType.kEof, "");
                 } else {
                     reportCorruption(dropSize, "bad record length");
@@ -221,12 +238,13 @@ public class LogReader implements ILogReader {
                 // Skip zero length record without reporting any drops since
                 // such records are produced by the mmap based writing code in
                 // env_posix.cc that preallocates file regions.
+                zeroFilled = true;
                 buffer.clear();
                 return new Pair<>(RecordType.kEof, "");
             }
 
-            // check crc
-            char[] payload = buffer.getChars(RecordType.kHeaderSize - 1, length + 1);
+            // check crc, over type, log number if any and data
+            char[] payload = buffer.getChars(RecordType.kHeaderSize - 1, headerSize - RecordType.kHeaderSize + length + 1);
             if (checksum) {
                 int expectedCrc = ICRC32C.getInstance().unmask(ICoding.getInstance().decodeFixed32(header, 0));
                 byte[] bytes = ByteUtils.toByteArray(payload, 0, payload.length);
@@ -238,21 +256,46 @@ public class LogReader implements ILogReader {
                     // like a valid log record.
                     int dropSize = buffer.remain();
                     buffer.clear();
+                    if (recycled) {
+                        // most likely a record of this log that was cut
+                        // short and the old contents that follow it
+                        return new Pair<>(RecordType.kEof, "");
+                    }
                     reportCorruption(dropSize, "checksum mismatch");
                     return new Pair<>(RecordType.kBadRecord, "");
                 }
             }
 
-            buffer.seek(RecordType.kHeaderSize + length);
+            if (type.isRecyclable()) {
+                int number = ICoding.getInstance().decodeFixed32(payload, 1);
+                if (number != (int) logNumber) {
+                    // left over from an earlier use of the file, this log
+                    // ends here
+                    buffer.clear();
+                    return new Pair<>(RecordType.kEof, "");
+                }
+                recycled = true;
+                type = type.toPlain();
+            } else if (recycled) {
+                // a recycled log only has recyclable records
+                buffer.clear();
+                return new Pair<>(RecordType.kEof, "");
+            }
+
+            buffer.seek(headerSize + length);
 
             if (skipRecordsBeforeInitialOffset) {
                 continue;
             }
 
-            return new Pair<>(type, new String(payload, 1, length));
+            return new Pair<>(type, new String(payload, headerSize - RecordType.kHeaderSize + 1, length));
         }
     }
 
+    private int headerSize() {
+        return recycled ? RecordType.kRecyclableHeaderSize : RecordType.kHeaderSize;
+    }
+
     private Pair<Integer, RecordType> parseHeader(char[] header) {
         int a = header[4] & 0xff;
         int b = header[5] & 0xff;
@@ -8,9 +8,9 @@ import com.farmerworking.leveldb.in.java.file.WritableFile;
 
 public class LogWriter implements ILogWriter {
     // used for padding
-    private static char[] paddingBuffer = new char[RecordType.kHeaderSize - 1];
+    private static char[] paddingBuffer = new char[RecordType.kRecyclableHeaderSize - 1];
     static {
-        for (int i = 0; i < RecordType.kHeaderSize - 1; i++) {
+        for (int i = 0; i < RecordType.kRecyclableHeaderSize - 1; i++) {
             paddingBuffer[i] = '\0';
         }
     }
@@ -18,13 +18,27 @@ public class LogWriter implements ILogWriter {
     // Current offset in block
     private int blockOffset;
     private WritableFile dest;
-    private char[] header = new char[RecordType.kHeaderSize];
+    // Number of the log, written into recyclable records
+    private long logNumber;
+    private boolean recycleLog;
+    private int headerSize;
+    private char[] header = new char[RecordType.kRecyclableHeaderSize];
 
     // Create a writer that will append data to "dest".
     // "dest" must be initially empty.
     public LogWriter(WritableFile dest) {
+        this(dest, 0, false);
+    }
+
+    // Create a writer that will write log "logNumber" from the start of
+    // "dest".  With "recycleLog", records are written in the recyclable
+    // format and "dest" may hold an older log after them.
+    public LogWriter(WritableFile dest, long logNumber, boolean recycleLog) {
         this.dest = dest;
         this.blockOffset = 0;
+        this.logNumber = logNumber;
+        this.recycleLog = recycleLog;
+        this.headerSize = recycleLog ? RecordType.kRecyclableHeaderSize : RecordType.kHeaderSize;
     }
 
     // Create a writer that will append data to "dest".
@@ -32,6 +46,7 @@ public class LogWriter implements ILogWriter {
     public LogWriter(WritableFile dest, long destLength) {
         this.dest = dest;
         this.blockOffset = (int) (destLength % RecordType.kBlockSize);
+        this.headerSize = RecordType.kHeaderSize;
     }
 
     public Status addRecord(String data) {
@@ -42,15 +57,15 @@ public class LogWriter implements ILogWriter {
         do {
             int leftOver = RecordType.kBlockSize - blockOffset;
             assert leftOver >= 0;
-            if (leftOver < RecordType.kHeaderSize) {
+            if (leftOver < this.headerSize) {
                 // Switch to a new block
                 paddingIfNeed(leftOver);
                 blockOffset = 0;
             }
 
             // Invariant: we never leave < kHeaderSize bytes in a block.
-            assert RecordType.kBlockSize - blockOffset - RecordType.kHeaderSize >= 0;
-            int availabe = RecordType.kBlockSize - blockOffset - RecordType.kHeaderSize;
+            assert RecordType.kBlockSize - blockOffset - this.headerSize >= 0;
+            int availabe = RecordType.kBlockSize - blockOffset - this.headerSize;
             int fragmentLength = data.length() < availabe ? data.length() : availabe;
             RecordType type = getRecordType(begin, data.length() == fragmentLength);
 
@@ -82,10 +97,18 @@ public class LogWriter implements ILogWriter {
 
     private Status emitPhysicalRecord(RecordType type, String data) {
         assert data.length() <= RecordType.kMaxPayloadLength;
-        assert blockOffset + RecordType.kHeaderSize + data.length() <= RecordType.kBlockSize;
+        assert blockOffset + this.headerSize + data.length() <= RecordType.kBlockSize;
+
+        if (this.recycleLog) {
+            type = type.toRecyclable();
+            ICoding.getInstance().encodeFixed32(header, RecordType.kHeaderSize, (int) this.logNumber);
+        }
+
+        // type
+        header[6] = type.getValue();
 
-        // checksum
-        char[] chars = String.valueOf(type.getValue()).concat(data).toCharArray();
+        // checksum, over type, log number and data
+        char[] chars = new String(header, 6, this.headerSize - 6).concat(data).toCharArray();
         byte[] bytes = ByteUtils.toByteArray(chars, 0, chars.length);
         int crc = ICRC32C.getInstance().mask(ICRC32C.getInstance().value(bytes, 0, bytes.length));
         ICoding.getInstance().encodeFixed32(header, 0, crc);
@@ -94,10 +117,7 @@ public class LogWriter implements ILogWriter {
         header[4] = (char) (data.length() & 0xff);
         header[5] = (char) (data.length() >> 8);
 
-        // type
-        header[6] = type.getValue();
-
-        Status status = dest.append(new String(header));
+        Status status = dest.append(new String(header, 0, this.headerSize));
         if (status.isOk()) {
             status = dest.append(data);
 
@@ -107,7 +127,7 @@ public class LogWriter implements ILogWriter {
             }
         }
 
-        blockOffset = blockOffset + RecordType.kHeaderSize + data.length();
+        blockOffset = blockOffset + this.headerSize + data.length();
         return status;
     }
 }
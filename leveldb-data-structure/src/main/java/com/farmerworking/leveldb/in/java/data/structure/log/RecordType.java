@@ -12,13 +12,21 @@ public enum RecordType {
     kMiddleType(3),
     kLastType(4),
 
-    kEof(5),
+    // For recycled log files.  These records also carry the number of the
+    // log they were written to, so that records left over from an earlier
+    // use of the file are not taken for new ones.
+    kRecyclableFullType(5),
+    kRecyclableFirstType(6),
+    kRecyclableMiddleType(7),
+    kRecyclableLastType(8),
+
+    kEof(9),
 
     // Returned whenever we find an invalid physical record.
     // Currently there are two situations in which this happens:
     // * The record has an invalid CRC (ReadPhysicalRecord reports a drop)
     // * The record is a wrong-length record (No drop is reported)
-    kBadRecord(6);
+    kBadRecord(10);
 
     // 32 * 1024, 32kb
     public static final int kBlockSize = 1024 * 32;
@@ -26,6 +34,9 @@ public enum RecordType {
     // Header is checksum (4 bytes), length (2 bytes), type (1 byte).
     public static final int kHeaderSize = 4 + 2 + 1;
 
+    // Recyclable header also has the log number (4 bytes).
+    public static final int kRecyclableHeaderSize = kHeaderSize + 4;
+
     // binary expression: 1111111111111111, length 16, since only 2 bytes to store payload length
     public static final int kMaxPayloadLength = 65535;
 
@@ -50,6 +61,14 @@ public enum RecordType {
             return kMiddleType;
         } else if (type == kLastType.value) {
             return kLastType;
+        } else if (type == kRecyclableFullType.value) {
+            return kRecyclableFullType;
+        } else if (type == kRecyclableFirstType.value) {
+            return kRecyclableFirstType;
+        } else if (type == kRecyclableMiddleType.value) {
+            return kRecyclableMiddleType;
+        } else if (type == kRecyclableLastType.value) {
+            return kRecyclableLastType;
         } else if (type == kEof.value) {
             return kEof;
         } else if (type == kBadRecord.value) {
@@ -58,4 +77,41 @@ public enum RecordType {
             return kUnknown;
         }
     }
+
+    public boolean isRecyclable() {
+        return this == kRecyclableFullType || this == kRecyclableFirstType ||
+                this == kRecyclableMiddleType || this == kRecyclableLastType;
+    }
+
+    // The recyclable type of a full/first/middle/last type
+    public RecordType toRecyclable() {
+        switch (this) {
+            case kFullType:
+                return kRecyclableFullType;
+            case kFirstType:
+                return kRecyclableFirstType;
+            case kMiddleType:
+                return kRecyclableMiddleType;
+            case kLastType:
+                return kRecyclableLastType;
+            default:
+                return this;
+        }
+    }
+
+    // The plain type of a recyclable type
+    public RecordType toPlain() {
+        switch (this) {
+            case kRecyclableFullType:
+                return kFullType;
+            case kRecyclableFirstType:
+                return kFirstType;
+            case kRecyclableMiddleType:
+                return kMiddleType;
+            case kRecyclableLastType:
+                return kLastType;
+            default:
+                return this;
+        }
+    }
 }
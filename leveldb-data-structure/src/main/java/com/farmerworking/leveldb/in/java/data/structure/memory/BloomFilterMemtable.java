@@ -0,0 +1,59 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Status;
+import javafx.util.Pair;
+
+// Memtable that keeps a bloom filter of the user keys added to another
+// memtable.  A get() for a key the filter rules out returns without
+// searching the memtable, which is most of the gets of keys that are not
+// there.
+public class BloomFilterMemtable implements IMemtable {
+    // Probes per key, as in a filter of about 10 bits per key
+    static final int kProbes = 6;
+
+    private final IMemtable memtable;
+    private final DynamicBloom bloom;
+
+    public BloomFilterMemtable(IMemtable memtable, int bloomBytes) {
+        this.memtable = memtable;
+        this.bloom = new DynamicBloom(bloomBytes * 8, kProbes);
+    }
+
+    @Override
+    public Iterator<String, String> iterator() {
+        return this.memtable.iterator();
+    }
+
+    @Override
+    public void add(long sequence, ValueType type, String key, String value) {
+        // Into the filter first: a get() that finds the entry must not have
+        // been ruled out by the filter.
+        this.bloom.add(key);
+        this.memtable.add(sequence, type, key, value);
+    }
+
+    @Override
+    public void addConcurrently(long sequence, ValueType type, String key, String value) {
+        this.bloom.add(key);
+        this.memtable.addConcurrently(sequence, type, key, value);
+    }
+
+    @Override
+    public Pair<Boolean, Pair<Status, String>> get(LookupKey key) {
+        if (!this.bloom.mayContain(key.memtableKey(), key.userKeyOffset(), key.userKeyLength())) {
+            return new Pair<>(false, null);
+        }
+        return this.memtable.get(key);
+    }
+
+    @Override
+    public void markImmutable() {
+        this.memtable.markImmutable();
+    }
+
+    @Override
+    public int approximateMemoryUsage() {
+        return this.memtable.approximateMemoryUsage() + this.bloom.memoryUsage();
+    }
+}
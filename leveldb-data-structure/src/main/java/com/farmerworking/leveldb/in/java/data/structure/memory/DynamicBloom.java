@@ -0,0 +1,79 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.common.IHash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bloom filter that keys are added to one at a time, for a memtable that
+// does not know in advance how many keys it will hold.  All the probes of
+// a key fall in one block of 512 bits, the size of a cache line, so a
+// lookup touches a single cache line.
+//
+// Keys may be added concurrently and looked up while they are added.
+class DynamicBloom {
+    private static final int kBlockBits = 512;
+    private static final int kBlockWords = kBlockBits / 64;
+    private static final int kSeed = 0xbc9f1d34;
+
+    private final IHash hash;
+    private final AtomicLongArray words;
+    private final int blocks;
+    private final int probes;
+
+    DynamicBloom(int totalBits, int probes) {
+        assert probes > 0;
+        this.hash = IHash.getInstance();
+        this.blocks = Math.max(1, (totalBits + kBlockBits - 1) / kBlockBits);
+        this.words = new AtomicLongArray(this.blocks * kBlockWords);
+        this.probes = probes;
+    }
+
+    void add(String key) {
+        int h = bloomHash(key);
+        int base = blockBase(h);
+        int delta = (h >>> 17) | (h << 15);  // Rotate right 17 bits
+        for (int i = 0; i < probes; i++) {
+            int bitpos = h & (kBlockBits - 1);
+            int index = base + bitpos / 64;
+            long mask = 1L << (bitpos & 63);
+            if ((words.get(index) & mask) == 0) {
+                words.getAndAccumulate(index, mask, (a, b) -> a | b);
+            }
+            h += delta;
+        }
+    }
+
+    boolean mayContain(String key) {
+        return mayContain(key.toCharArray(), 0, key.length());
+    }
+
+    // Same as mayContain() of the key in data[offset, offset + length)
+    boolean mayContain(char[] data, int offset, int length) {
+        int h = hash.hash(data, offset, length, kSeed);
+        int base = blockBase(h);
+        int delta = (h >>> 17) | (h << 15);  // Rotate right 17 bits
+        for (int i = 0; i < probes; i++) {
+            int bitpos = h & (kBlockBits - 1);
+            int index = base + bitpos / 64;
+            if ((words.get(index) & (1L << (bitpos & 63))) == 0) {
+                return false;
+            }
+            h += delta;
+        }
+        return true;
+    }
+
+    int memoryUsage() {
+        return words.length() * 8;
+    }
+
+    private int blockBase(int h) {
+        // the high bits of a remix, the probes start from the low bits
+        long remix = (h * 0x9e3779b9) & 0xffffffffL;
+        return (int) ((remix * blocks) >>> 32) * kBlockWords;
+    }
+
+    private int bloomHash(String key) {
+        return hash.hash(key.toCharArray(), kSeed);
+    }
+}
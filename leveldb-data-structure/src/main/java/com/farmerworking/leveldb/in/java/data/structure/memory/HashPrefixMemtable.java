@@ -0,0 +1,141 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.PrefixExtractor;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.data.structure.skiplist.SortedArrayIterator;
+import javafx.util.Pair;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Memtable made of a fixed number of buckets, each a skiplist of the
+// entries whose user key prefix hashes to it.  A get() only searches the
+// skiplist of its bucket, which is much smaller than a skiplist of the whole
+// memtable, so this suits workloads of point lookups.  Adds may run
+// concurrently.
+//
+// Reading in order has to sort the entries of all buckets together.  An
+// iterator does that when it is created, on the entries there are at that
+// time.  After markImmutable(), the first iterator does it once for all
+// the iterators after it.
+public class HashPrefixMemtable implements IMemtable {
+    // Bytes a skiplist node and its index levels take on top of the entry
+    private static final int kEntryOverhead = 48;
+    // Bytes of an empty skiplist and its slot in the bucket array
+    private static final int kBucketOverhead = 64;
+
+    private final MemtableEntryComparator comparator;
+    private final PrefixExtractor prefixExtractor;
+    private final AtomicReferenceArray<ConcurrentSkipListSet<char[]>> buckets;
+    private final AtomicInteger memoryUsage;
+    private final AtomicInteger count;
+    private volatile boolean immutable;
+    // All entries in order, set by the first iterator after markImmutable()
+    private volatile char[][] sorted;
+
+    public HashPrefixMemtable(InternalKeyComparator comparator, PrefixExtractor prefixExtractor, int bucketCount) {
+        assert prefixExtractor != null;
+        assert bucketCount > 0;
+        this.comparator = new MemtableEntryComparator(comparator);
+        this.prefixExtractor = prefixExtractor;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        // Only the buckets in use count, so that a memtable with many
+        // buckets is not full before its first add with a small write buffer
+        this.memoryUsage = new AtomicInteger(0);
+        this.count = new AtomicInteger(0);
+        this.immutable = false;
+        this.sorted = null;
+    }
+
+    @Override
+    public Iterator<String, String> iterator() {
+        char[][] entries = this.immutable ? sorted() : sortedEntries();
+        return new MemtableIterator(new SortedArrayIterator<>(entries, entries.length, comparator));
+    }
+
+    @Override
+    public void add(long sequence, ValueType type, String key, String value) {
+        assert !this.immutable;
+        char[] entry = MemtableEntry.encode(sequence, type, key, value);
+        bucket(key, true).add(entry);
+        this.memoryUsage.addAndGet(entry.length + kEntryOverhead);
+        this.count.incrementAndGet();
+    }
+
+    @Override
+    public void addConcurrently(long sequence, ValueType type, String key, String value) {
+        add(sequence, type, key, value);
+    }
+
+    @Override
+    public Pair<Boolean, Pair<Status, String>> get(LookupKey key) {
+        ConcurrentSkipListSet<char[]> bucket = bucket(key.userKey(), false);
+        char[] entry = bucket == null ? null : bucket.ceiling(key.memtableKey());
+        if (entry == null) {
+            return new Pair<>(false, null);
+        }
+        return MemtableEntry.lookup(entry, 0, key, comparator.comparator.userComparator);
+    }
+
+    @Override
+    public void markImmutable() {
+        this.immutable = true;
+    }
+
+    @Override
+    public int approximateMemoryUsage() {
+        return this.memoryUsage.get();
+    }
+
+    // The bucket of "userKey", created if "create" is set, else null if there
+    // is none yet
+    private ConcurrentSkipListSet<char[]> bucket(String userKey, boolean create) {
+        String prefix = this.prefixExtractor.transform(userKey);
+        int index = (prefix.hashCode() & Integer.MAX_VALUE) % this.buckets.length();
+        ConcurrentSkipListSet<char[]> bucket = this.buckets.get(index);
+        if (bucket == null && create) {
+            if (this.buckets.compareAndSet(index, null, new ConcurrentSkipListSet<>(comparator))) {
+                this.memoryUsage.addAndGet(kBucketOverhead);
+            }
+            bucket = this.buckets.get(index);
+        }
+        return bucket;
+    }
+
+    private char[][] sorted() {
+        if (this.sorted == null) {
+            synchronized (this) {
+                if (this.sorted == null) {
+                    this.sorted = sortedEntries();
+                }
+            }
+        }
+        return this.sorted;
+    }
+
+    private char[][] sortedEntries() {
+        char[][] entries = new char[this.count.get()][];
+        int size = 0;
+        for (int i = 0; i < this.buckets.length(); i++) {
+            ConcurrentSkipListSet<char[]> bucket = this.buckets.get(i);
+            if (bucket == null) {
+                continue;
+            }
+            for (char[] entry : bucket) {
+                if (size == entries.length) {
+                    // added since the count was read
+                    entries = Arrays.copyOf(entries, size * 2 + 1);
+                }
+                entries[size++] = entry;
+            }
+        }
+
+        entries = size == entries.length ? entries : Arrays.copyOf(entries, size);
+        // every bucket is a sorted run already
+        Arrays.parallelSort(entries, comparator);
+        return entries;
+    }
+}
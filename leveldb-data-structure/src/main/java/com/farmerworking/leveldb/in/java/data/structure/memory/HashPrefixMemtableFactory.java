@@ -0,0 +1,32 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.PrefixExtractor;
+
+// Memtables hashed by key prefix for point lookups, see HashPrefixMemtable
+public class HashPrefixMemtableFactory implements MemtableFactory {
+    public static final int kDefaultBucketCount = 1 << 16;
+
+    private final PrefixExtractor prefixExtractor;
+    private final int bucketCount;
+
+    public HashPrefixMemtableFactory(PrefixExtractor prefixExtractor) {
+        this(prefixExtractor, kDefaultBucketCount);
+    }
+
+    public HashPrefixMemtableFactory(PrefixExtractor prefixExtractor, int bucketCount) {
+        assert prefixExtractor != null;
+        assert bucketCount > 0;
+        this.prefixExtractor = prefixExtractor;
+        this.bucketCount = bucketCount;
+    }
+
+    @Override
+    public String name() {
+        return "HashPrefixMemtableFactory(" + prefixExtractor.name() + ", " + bucketCount + ")";
+    }
+
+    @Override
+    public IMemtable newMemtable(InternalKeyComparator comparator) {
+        return new HashPrefixMemtable(comparator, prefixExtractor, bucketCount);
+    }
+}
@@ -18,11 +18,29 @@ public interface IMemtable {
     // Typically value will be empty if type==kTypeDeletion.
     void add(long sequence, ValueType type, String key, String value);
 
+    // Same as add(), but may be called by several writer threads at once.
+    default void addConcurrently(long sequence, ValueType type, String key, String value) {
+        synchronized (this) {
+            add(sequence, type, key, value);
+        }
+    }
+
     // If memtable contains a value for key, store it in value and return true.
     // If memtable contains a deletion for key, store a NotFound() error
     // in status and return true.
     // Else, return false.
-    Pair<Boolean, Pair<Status, String>> get(String userKey, long sequence);
+    Pair<Boolean, Pair<Status, String>> get(LookupKey key);
+
+    default Pair<Boolean, Pair<Status, String>> get(String userKey, long sequence) {
+        return get(new LookupKey(userKey, sequence));
+    }
+
+    // Called once nothing is going to be added any more, before the
+    // memtable is flushed.  It is called with the db mutex held, so it must
+    // be cheap: representations that defer work until the entries are read
+    // in order do it on the first iterator() after, which the flush creates
+    // outside the mutex.
+    default void markImmutable() {}
 
     // Returns an estimate of the number of bytes of data in use by this
     // data structure. It is safe to call when MemTable is being modified.
@@ -20,10 +20,18 @@ public class InternalKeyComparator implements Comparator{
     //    increasing user key (according to user-supplied comparator)
     //    decreasing sequence number
     public int compare(char[] a, char[] b) {
-        int result = userComparator.compare(InternalKey.extractUserKey(a), InternalKey.extractUserKey(b));
+        return compare(a, 0, a.length, b, 0, b.length);
+    }
+
+    // Compares in place, without extracting the user keys
+    @Override
+    public int compare(char[] a, int aOffset, int aLength, char[] b, int bOffset, int bLength) {
+        int aUserKeyLength = aLength - coding.getFixed64Length();
+        int bUserKeyLength = bLength - coding.getFixed64Length();
+        int result = userComparator.compare(a, aOffset, aUserKeyLength, b, bOffset, bUserKeyLength);
         if (result == 0) {
-            long aSequence = coding.decodeFixed64(a, a.length - coding.getFixed64Length());
-            long bSequence = coding.decodeFixed64(b, b.length - coding.getFixed64Length());
+            long aSequence = coding.decodeFixed64(a, aOffset + aUserKeyLength);
+            long bSequence = coding.decodeFixed64(b, bOffset + bUserKeyLength);
 
             if (aSequence > bSequence) {
                 return -1;
@@ -0,0 +1,58 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.common.ICoding;
+
+// A helper class useful for IMemtable.get().  Holds the key to look up
+// encoded as a memtable entry without value, which sorts before every
+// entry of the user key visible at the sequence number.  set() reuses the
+// buffer, so one LookupKey can serve a series of lookups.
+//
+// The buffer is laid out as:
+//    internal_key_size : varint32 of internal_key.size()
+//    user key          : char[user key.size()]
+//    tag               : fixed64 of sequence and kValueTypeForSeek
+// and may be longer than the encoded key.
+public class LookupKey {
+    private static ICoding coding = ICoding.getInstance();
+
+    private String userKey;
+    private char[] rep;
+    private int userKeyOffset;
+
+    public LookupKey(String userKey, long sequence) {
+        this.rep = new char[0];
+        set(userKey, sequence);
+    }
+
+    public void set(String userKey, long sequence) {
+        int internalKeySize = userKey.length() + coding.getFixed64Length();
+        int needed = coding.varintLength(internalKeySize) + internalKeySize;
+        if (this.rep.length < needed) {
+            this.rep = new char[Math.max(needed, this.rep.length * 2)];
+        }
+
+        this.userKey = userKey;
+        this.userKeyOffset = coding.encodeVarint32(this.rep, 0, internalKeySize);
+        userKey.getChars(0, userKey.length(), this.rep, this.userKeyOffset);
+        coding.encodeFixed64(this.rep, this.userKeyOffset + userKey.length(),
+                InternalKey.packSequenceAndType(sequence, ValueType.kValueTypeForSeek));
+    }
+
+    // The key to seek a memtable to, at offset 0
+    public char[] memtableKey() {
+        return this.rep;
+    }
+
+    public String userKey() {
+        return this.userKey;
+    }
+
+    // The user key is rep[userKeyOffset(), userKeyOffset() + userKeyLength())
+    public int userKeyOffset() {
+        return this.userKeyOffset;
+    }
+
+    public int userKeyLength() {
+        return this.userKey.length();
+    }
+}
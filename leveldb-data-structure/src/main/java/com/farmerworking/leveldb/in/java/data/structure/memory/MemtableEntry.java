@@ -0,0 +1,91 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.Comparator;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.ICoding;
+import javafx.util.Pair;
+
+// Format of an entry shared by the memtable representations:
+//    internal_key_size : varint32 of internal_key.size()
+//    internal_key      : user key followed by the fixed64 of sequence and type
+//    value_size        : varint32 of value.size()
+//    value             : value
+// Entries compare with MemtableEntryComparator and are read back by
+// MemtableIterator.
+final class MemtableEntry {
+    private static ICoding coding = ICoding.getInstance();
+
+    private MemtableEntry() {
+    }
+
+    static int encodedSize(String key, String value) {
+        int internalKeySize = key.length() + coding.getFixed64Length();
+        return coding.varintLength(internalKeySize) + internalKeySize + coding.varintLength(value.length()) + value.length();
+    }
+
+    // Encode an entry into "buffer" at "offset", return the offset past it
+    static int encode(char[] buffer, int offset, long sequence, ValueType type, String key, String value) {
+        int keySize = key.length();
+        int valueSize = value.length();
+        offset += coding.encodeVarint32(buffer, offset, keySize + coding.getFixed64Length());
+        key.getChars(0, keySize, buffer, offset);
+        offset += keySize;
+        coding.encodeFixed64(buffer, offset, InternalKey.packSequenceAndType(sequence, type));
+        offset += coding.getFixed64Length();
+        offset += coding.encodeVarint32(buffer, offset, valueSize);
+        value.getChars(0, valueSize, buffer, offset);
+        return offset + valueSize;
+    }
+
+    static char[] encode(long sequence, ValueType type, String key, String value) {
+        char[] buffer = new char[encodedSize(key, value)];
+        int offset = encode(buffer, 0, sequence, type, key, value);
+        assert offset == buffer.length;
+        return buffer;
+    }
+
+    // Length of the internal key of the entry at "offset", decoded in place
+    static int internalKeyLength(char[] entry, int offset) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            int c = entry[offset++];
+            result |= (c & 0x7f) << shift;
+            if ((c & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    // Offset of the internal key of the entry at "offset", past its length
+    static int internalKeyOffset(char[] entry, int offset) {
+        while ((entry[offset] & 0x80) != 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+
+    // The result of IMemtable.get for "key" given the entry at "offset"
+    // of "entry", the first one at or after its memtable key
+    static Pair<Boolean, Pair<Status, String>> lookup(char[] entry, int offset, LookupKey key, Comparator userComparator) {
+        // Check that it belongs to same user key.  We do not check the
+        // sequence number since the seek should have skipped all entries
+        // with overly large sequence numbers.
+        int internalKeyLength = internalKeyLength(entry, offset);
+        int userKeyStartOffset = internalKeyOffset(entry, offset);
+        int userKeyLength = internalKeyLength - coding.getFixed64Length();
+
+        if (userComparator.compare(entry, userKeyStartOffset, userKeyLength,
+                key.memtableKey(), key.userKeyOffset(), key.userKeyLength()) != 0) {
+            return new Pair<>(false, null);
+        }
+
+        long tag = coding.decodeFixed64(entry, userKeyStartOffset + userKeyLength);
+        ValueType type = ValueType.valueOf((int) tag & 0xff);
+        if (type == ValueType.kTypeValue) {
+            Pair<String, Integer> value = coding.getLengthPrefixedString(entry, userKeyStartOffset + internalKeyLength);
+            return new Pair<>(true, new Pair<>(Status.OK(), value.getKey()));
+        } else {
+            return new Pair<>(true, new Pair<>(Status.NotFound(""), ""));
+        }
+    }
+}
@@ -1,13 +1,10 @@
 package com.farmerworking.leveldb.in.java.data.structure.memory;
 
-import com.farmerworking.leveldb.in.java.common.ICoding;
-import javafx.util.Pair;
+import com.farmerworking.leveldb.in.java.data.structure.skiplist.IEntryComparator;
 
 import java.util.Comparator;
 
-public class MemtableEntryComparator implements Comparator<char[]> {
-    private static ICoding coding = ICoding.getInstance();
-
+public class MemtableEntryComparator implements Comparator<char[]>, IEntryComparator {
     InternalKeyComparator comparator;
 
     public MemtableEntryComparator(InternalKeyComparator comparator) {
@@ -16,9 +13,14 @@ public class MemtableEntryComparator implements Comparator<char[]> {
 
     @Override
     public int compare(char[] o1, char[] o2) {
-        Pair<char[], Integer> pair1 = coding.getLengthPrefixedChars(o1, 0);
-        Pair<char[], Integer> pair2 = coding.getLengthPrefixedChars(o2, 0);
+        return compare(o1, 0, o2, 0);
+    }
 
-        return comparator.compare(pair1.getKey(), pair2.getKey());
+    // Compares the internal keys of the entries in place
+    @Override
+    public int compare(char[] a, int aOffset, char[] b, int bOffset) {
+        return comparator.compare(
+                a, MemtableEntry.internalKeyOffset(a, aOffset), MemtableEntry.internalKeyLength(a, aOffset),
+                b, MemtableEntry.internalKeyOffset(b, bOffset), MemtableEntry.internalKeyLength(b, bOffset));
     }
 }
@@ -0,0 +1,9 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+// Creates the memtables of a db, see Options.memtableFactory
+public interface MemtableFactory {
+    // Return the name of this factory, for the info log.
+    String name();
+
+    IMemtable newMemtable(InternalKeyComparator comparator);
+}
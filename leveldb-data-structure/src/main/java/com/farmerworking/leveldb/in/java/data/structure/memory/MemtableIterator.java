@@ -13,7 +13,12 @@ public class MemtableIterator extends AbstractIterator<String, String> {
     private ISkipListIterator<char[]> iter;
 
     public MemtableIterator(ISkipList<char[]> skipList) {
-        this.iter = skipList.iterator();
+        this(skipList.iterator());
+    }
+
+    // over entries in the MemtableEntry format
+    public MemtableIterator(ISkipListIterator<char[]> iter) {
+        this.iter = iter;
     }
 
     @Override
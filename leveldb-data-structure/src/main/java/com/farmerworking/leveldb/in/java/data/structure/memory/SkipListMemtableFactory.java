@@ -0,0 +1,14 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+// The default: one skiplist of all entries, see Memtable
+public class SkipListMemtableFactory implements MemtableFactory {
+    @Override
+    public String name() {
+        return "SkipListMemtableFactory";
+    }
+
+    @Override
+    public IMemtable newMemtable(InternalKeyComparator comparator) {
+        return new Memtable(comparator);
+    }
+}
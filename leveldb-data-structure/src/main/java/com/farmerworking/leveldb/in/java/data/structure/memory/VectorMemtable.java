@@ -0,0 +1,109 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.data.structure.skiplist.SortedArrayIterator;
+import javafx.util.Pair;
+
+import java.util.Arrays;
+
+// Memtable that appends its entries to an array and sorts them only once
+// they are read in order, for bulk loads that read nothing before the
+// flush.  add() does not compare keys at all.
+//
+// Until markImmutable() a get() looks at every entry and an iterator sorts
+// a copy of the entries, taken when it is created.  After it, the first
+// get() or iterator sorts the entries once, on all cores, and every one
+// after that uses that order.
+//
+// All methods synchronize on the memtable, except approximateMemoryUsage().
+public class VectorMemtable implements IMemtable {
+    private static final int kInitialCapacity = 1024;
+
+    private final MemtableEntryComparator comparator;
+    private char[][] entries;
+    private int size;
+    // The first "size" entries in order, null if there were adds since it
+    // was last needed
+    private char[][] sorted;
+    private boolean immutable;
+    private volatile int memoryUsage;
+
+    public VectorMemtable(InternalKeyComparator comparator) {
+        this.comparator = new MemtableEntryComparator(comparator);
+        this.entries = new char[kInitialCapacity][];
+        this.size = 0;
+        this.sorted = null;
+        this.immutable = false;
+        this.memoryUsage = kInitialCapacity * 8;
+    }
+
+    @Override
+    public synchronized Iterator<String, String> iterator() {
+        char[][] order = sorted();
+        return new MemtableIterator(new SortedArrayIterator<>(order, order.length, comparator));
+    }
+
+    @Override
+    public synchronized void add(long sequence, ValueType type, String key, String value) {
+        assert !immutable;
+        if (size == entries.length) {
+            memoryUsage += entries.length * 8;
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        char[] entry = MemtableEntry.encode(sequence, type, key, value);
+        entries[size++] = entry;
+        sorted = null;
+        memoryUsage += entry.length;
+    }
+
+    @Override
+    public synchronized Pair<Boolean, Pair<Status, String>> get(LookupKey key) {
+        char[] seekKey = key.memtableKey();
+        char[] found = null;
+        if (immutable) {
+            sorted();
+        }
+        if (sorted != null) {
+            SortedArrayIterator<char[]> iter = new SortedArrayIterator<>(sorted, sorted.length, comparator);
+            iter.seek(seekKey);
+            found = iter.valid() ? iter.key() : null;
+        } else {
+            // the smallest entry at or after seekKey, as a seek would find
+            for (int i = 0; i < size; i++) {
+                char[] entry = entries[i];
+                if (comparator.compare(entry, seekKey) >= 0 && (found == null || comparator.compare(entry, found) < 0)) {
+                    found = entry;
+                }
+            }
+        }
+
+        if (found == null) {
+            return new Pair<>(false, null);
+        }
+        return MemtableEntry.lookup(found, 0, key, comparator.comparator.userComparator);
+    }
+
+    @Override
+    public synchronized void markImmutable() {
+        immutable = true;
+    }
+
+    @Override
+    public int approximateMemoryUsage() {
+        return memoryUsage;
+    }
+
+    private char[][] sorted() {
+        if (sorted == null) {
+            char[][] copy = Arrays.copyOf(entries, size);
+            Arrays.parallelSort(copy, comparator);
+            sorted = copy;
+            if (immutable) {
+                // the order is all that is needed from now on
+                entries = copy;
+            }
+        }
+        return sorted;
+    }
+}
@@ -0,0 +1,14 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+// Unsorted memtables for bulk loads, see VectorMemtable
+public class VectorMemtableFactory implements MemtableFactory {
+    @Override
+    public String name() {
+        return "VectorMemtableFactory";
+    }
+
+    @Override
+    public IMemtable newMemtable(InternalKeyComparator comparator) {
+        return new VectorMemtable(comparator);
+    }
+}
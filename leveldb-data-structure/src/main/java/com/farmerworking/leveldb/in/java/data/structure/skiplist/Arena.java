@@ -0,0 +1,100 @@
+package com.farmerworking.leveldb.in.java.data.structure.skiplist;
+
+// chunked char storage for skiplist entries, modeled on the c++ leveldb Arena.
+// every allocation is addressed by a handle packing (block index, offset), so
+// a memtable holds a few large arrays instead of one small array per entry.
+//
+// allocation is single threaded; readers only look at blocks reachable through
+// handles that were published after the block was installed.
+public class Arena {
+    static final int kBlockSize = 4096;
+
+    private volatile char[][] blocks;
+    private int blockCount;
+
+    // allocation state
+    private int currentIndex;
+    private int allocPosition;
+    private int allocRemaining;
+
+    // Total memory usage of the arena, in chars.
+    private volatile long memoryUsage;
+
+    public Arena() {
+        this.blocks = new char[16][];
+        this.blockCount = 0;
+        this.currentIndex = -1;
+        this.allocPosition = 0;
+        this.allocRemaining = 0;
+        this.memoryUsage = 0;
+    }
+
+    // Return a handle to a newly allocated memory block of "n" chars.
+    public long allocate(int n) {
+        // The semantics of what to return are a bit messy if we allow
+        // 0-byte allocations, so we disallow them here (we don't need
+        // them for our internal use).
+        assert n > 0;
+        if (n <= allocRemaining) {
+            long result = handle(currentIndex, allocPosition);
+            allocPosition += n;
+            allocRemaining -= n;
+            return result;
+        }
+        return allocateFallback(n);
+    }
+
+    public char[] block(long handle) {
+        return blocks[blockIndex(handle)];
+    }
+
+    public char[] block(int index) {
+        return blocks[index];
+    }
+
+    // Returns an estimate of the total memory usage of data allocated
+    // by the arena, in chars like the allocations.
+    public long memoryUsage() {
+        return memoryUsage;
+    }
+
+    public static int blockIndex(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    public static int offset(long handle) {
+        return (int) handle;
+    }
+
+    static long handle(int blockIndex, int offset) {
+        return ((long) blockIndex << 32) | (offset & 0xffffffffL);
+    }
+
+    private long allocateFallback(int n) {
+        if (n > kBlockSize / 4) {
+            // Object is more than a quarter of our block size.  Allocate it separately
+            // to avoid wasting too much space in leftover bytes.
+            return handle(newBlock(n), 0);
+        }
+
+        // We waste the remaining space in the current block.
+        currentIndex = newBlock(kBlockSize);
+        allocPosition = n;
+        allocRemaining = kBlockSize - n;
+        return handle(currentIndex, 0);
+    }
+
+    private int newBlock(int size) {
+        char[] block = new char[size];
+        if (blockCount == blocks.length) {
+            char[][] grown = new char[blocks.length * 2][];
+            System.arraycopy(blocks, 0, grown, 0, blockCount);
+            blocks = grown;
+        }
+
+        // install the block before any handle into it is handed out
+        blocks[blockCount] = block;
+        memoryUsage += size;
+        return blockCount ++;
+    }
+}
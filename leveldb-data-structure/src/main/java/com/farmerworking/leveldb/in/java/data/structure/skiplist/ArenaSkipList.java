@@ -0,0 +1,373 @@
+package com.farmerworking.leveldb.in.java.data.structure.skiplist;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Skiplist whose entries are copied into an Arena and whose towers live in
+// large int blocks, so inserting an entry does not create any per-node object.
+//
+// Thread safety
+// -------------
+//
+// Writes require external synchronization, most likely a mutex, unless
+// they go through insertConcurrently(), which links nodes with CAS and may
+// run in several threads at once.
+// Reads require a guarantee that the ArenaSkipList will not be destroyed
+// while the read is in progress.  Apart from that, reads progress
+// without any internal locking or synchronization.
+//
+// Invariants:
+//
+// (1) Allocated nodes are never deleted until the ArenaSkipList is
+// destroyed.  This is trivially guaranteed by the code since we
+// never delete any skip list nodes.
+//
+// (2) The contents of a node except for the next pointers are
+// immutable after the node has been linked into the ArenaSkipList.
+// Only insert() modifies the list, and it is careful to initialize
+// a node and use release-stores to publish the nodes in one or
+// more lists.
+public class ArenaSkipList implements ISkipList<char[]> {
+    static final int kMaxHeight = 12;
+    static final int kBranching = 4;
+
+    // a node is a run of ints inside one tower block:
+    // [entry block index, entry offset, entry length, height, next_0 .. next_{height-1}]
+    static final int kTowerBlockSize = 1 << 12;
+    static final int kBlockIndex = 0;
+    static final int kOffset = 1;
+    static final int kLength = 2;
+    static final int kHeight = 3;
+    static final int kNext = 4;
+
+    // node 0 is the head, nothing ever links to it, so 0 doubles as null
+    static final int kHead = 0;
+    static final int kNull = 0;
+
+    private final IEntryComparator comparator;
+    private final Arena arena;
+
+    private volatile AtomicIntegerArray[] towers;
+    private int towerCount;
+    private int towerPosition;
+    private int towerRemaining;
+
+    // Height of the entire list.  Modified only by insert().  Read racily
+    // by readers, but stale values are ok.
+    private final AtomicInteger maxHeight;
+
+    public ArenaSkipList(IEntryComparator comparator) {
+        this.comparator = comparator;
+        this.arena = new Arena();
+        this.towers = new AtomicIntegerArray[16];
+        this.towerCount = 0;
+        this.towerPosition = 0;
+        this.towerRemaining = 0;
+        this.maxHeight = new AtomicInteger(1);
+
+        int head = newNode(Arena.handle(0, 0), 0, kMaxHeight);
+        assert head == kHead;
+    }
+
+    @Override
+    public void insert(char[] key) {
+        long handle = allocate(key.length);
+        System.arraycopy(key, 0, arena.block(handle), Arena.offset(handle), key.length);
+        insert(handle, key.length);
+    }
+
+    // Reserve room for an entry of "length" chars inside the arena, the caller
+    // encodes the entry in place and then links it with insert(handle, length)
+    public long allocate(int length) {
+        synchronized (arena) {
+            return arena.allocate(length);
+        }
+    }
+
+    public char[] block(long handle) {
+        return arena.block(handle);
+    }
+
+    // REQUIRES: external synchronization against other inserters
+    public void insert(long handle, int length) {
+        char[] key = arena.block(handle);
+        int keyOffset = Arena.offset(handle);
+
+        int[] prev = new int[kMaxHeight];
+        int x = findGreaterOrEqual(key, keyOffset, prev);
+
+        // Our data structure does not allow duplicate insertion
+        assert x == kNull || !equal(x, key, keyOffset);
+
+        int height = randomHeight();
+        int max = maxHeight.get();
+        if (height > max) {
+            for (int i = max; i < height; i++) {
+                prev[i] = kHead;
+            }
+            // It is ok to mutate maxHeight without any synchronization
+            // with concurrent readers.  A concurrent reader that observes
+            // the new value of maxHeight will see either the old value of
+            // new level pointers from head (kNull), or a new value set in
+            // the loop below.  In the former case the reader will
+            // immediately drop to the next level since kNull sorts after all
+            // keys.  In the latter case the reader will use the new node.
+            maxHeight.set(height);
+        }
+
+        x = newNode(handle, length, height);
+        for (int i = 0; i < height; i++) {
+            // noBarrierSetNext() suffices since we will add a barrier when
+            // we publish a pointer to "x" in prev[i].
+            noBarrierSetNext(x, i, noBarrierNext(prev[i], i));
+            setNext(prev[i], i, x);
+        }
+    }
+
+    // Like insert(handle, length), but may be called by several threads at
+    // the same time as each other and as readers. Every level is linked with
+    // a CAS on the predecessor and the splice is recomputed for that level
+    // whenever another inserter won the race.
+    public void insertConcurrently(long handle, int length) {
+        char[] key = arena.block(handle);
+        int keyOffset = Arena.offset(handle);
+
+        int height = randomHeight();
+        int max = maxHeight.get();
+        while (height > max) {
+            if (maxHeight.compareAndSet(max, height)) {
+                max = height;
+                break;
+            }
+            max = maxHeight.get();
+        }
+
+        int[] prev = new int[kMaxHeight];
+        int[] next = new int[kMaxHeight];
+        // new levels above the old max height start out as [head, kNull],
+        // the search fills in everything below
+        int x = kHead;
+        for (int level = max - 1; level >= 0; level--) {
+            x = findSpliceForLevel(key, keyOffset, x, level, prev, next);
+        }
+
+        x = newNode(handle, length, height);
+        for (int i = 0; i < height; i++) {
+            while (true) {
+                // Our data structure does not allow duplicate insertion
+                assert next[i] == kNull || !equal(next[i], key, keyOffset);
+
+                noBarrierSetNext(x, i, next[i]);
+                if (casNext(prev[i], i, next[i], x)) {
+                    break;
+                }
+                // CAS failed, we need to recompute prev and next. It is unlikely
+                // to be helpful to try to use a different level as we redo the
+                // search, because it should be unlikely that lots of nodes have
+                // been inserted between prev[i] and next[i]. No point in using
+                // next[i] as the after hint, because we know it is stale.
+                findSpliceForLevel(key, keyOffset, prev[i], i, prev, next);
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(char[] key) {
+        int x = findGreaterOrEqual(key, 0, null);
+        return x != kNull && equal(x, key, 0);
+    }
+
+    @Override
+    public ArenaSkipListIterator iterator() {
+        return new ArenaSkipListIterator(this);
+    }
+
+    @Override
+    public int approximateMemoryUsage() {
+        // in bytes, the arena counts chars
+        return (int) (arena.memoryUsage() * Character.BYTES + (long) towerCount * kTowerBlockSize * Integer.BYTES);
+    }
+
+    // node accessors, used by the iterator
+    char[] keyBlock(int node) {
+        return arena.block(field(node, kBlockIndex));
+    }
+
+    int keyOffset(int node) {
+        return field(node, kOffset);
+    }
+
+    int keyLength(int node) {
+        return field(node, kLength);
+    }
+
+    int next(int node, int level) {
+        return tower(node).get(slot(node) + kNext + level);
+    }
+
+    // Return the earliest node that comes at or after key.
+    // Return kNull if there is no such node.
+    //
+    // If prev is non-null, fills prev[level] with pointer to previous
+    // node at "level" for every level in [0..maxHeight-1].
+    int findGreaterOrEqual(char[] key, int keyOffset, int[] prev) {
+        int x = kHead;
+        int level = maxHeight.get() - 1;
+        while (true) {
+            int next = next(x, level);
+            if (keyIsAfterNode(key, keyOffset, next)) {
+                // Keep searching in this list
+                x = next;
+            } else {
+                if (prev != null) {
+                    prev[level] = x;
+                }
+                if (level == 0) {
+                    return next;
+                } else {
+                    // Switch to next list
+                    level--;
+                }
+            }
+        }
+    }
+
+    // Return the latest node with a key < key.
+    // Return kHead if there is no such node.
+    int findLessThan(char[] key, int keyOffset) {
+        int x = kHead;
+        int level = maxHeight.get() - 1;
+        while (true) {
+            assert x == kHead || compare(x, key, keyOffset) < 0;
+            int next = next(x, level);
+            if (next == kNull || compare(next, key, keyOffset) >= 0) {
+                if (level == 0) {
+                    return x;
+                } else {
+                    // Switch to next list
+                    level--;
+                }
+            } else {
+                x = next;
+            }
+        }
+    }
+
+    // Return the last node in the list.
+    // Return kHead if list is empty.
+    int findLast() {
+        int x = kHead;
+        int level = maxHeight.get() - 1;
+        while (true) {
+            int next = next(x, level);
+            if (next == kNull) {
+                if (level == 0) {
+                    return x;
+                } else {
+                    // Switch to next list
+                    level--;
+                }
+            } else {
+                x = next;
+            }
+        }
+    }
+
+    // Find prev[level] and next[level] around key starting the search at
+    // "before", which must sort before key. Returns prev[level].
+    private int findSpliceForLevel(char[] key, int keyOffset, int before, int level, int[] prev, int[] next) {
+        int x = before;
+        while (true) {
+            int after = next(x, level);
+            if (keyIsAfterNode(key, keyOffset, after)) {
+                x = after;
+            } else {
+                prev[level] = x;
+                next[level] = after;
+                return x;
+            }
+        }
+    }
+
+    private boolean keyIsAfterNode(char[] key, int keyOffset, int node) {
+        // kNull is considered infinite
+        return node != kNull && compare(node, key, keyOffset) < 0;
+    }
+
+    private boolean equal(int node, char[] key, int keyOffset) {
+        return compare(node, key, keyOffset) == 0;
+    }
+
+    private int compare(int node, char[] key, int keyOffset) {
+        return comparator.compare(keyBlock(node), keyOffset(node), key, keyOffset);
+    }
+
+    private int randomHeight() {
+        // Increase height with probability 1 in kBranching
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int height = 1;
+        while (height < kMaxHeight && random.nextInt(kBranching) == 0) {
+            height++;
+        }
+        assert height > 0;
+        assert height <= kMaxHeight;
+        return height;
+    }
+
+    private synchronized int newNode(long handle, int length, int height) {
+        int size = kNext + height;
+        if (size > towerRemaining) {
+            // towers never straddle two blocks
+            if (towerCount == towers.length) {
+                AtomicIntegerArray[] grown = new AtomicIntegerArray[towers.length * 2];
+                System.arraycopy(towers, 0, grown, 0, towerCount);
+                towers = grown;
+            }
+            towers[towerCount] = new AtomicIntegerArray(kTowerBlockSize);
+            towerPosition = towerCount * kTowerBlockSize;
+            towerRemaining = kTowerBlockSize;
+            towerCount ++;
+        }
+
+        int node = towerPosition;
+        towerPosition += size;
+        towerRemaining -= size;
+
+        AtomicIntegerArray tower = tower(node);
+        int slot = slot(node);
+        tower.lazySet(slot + kBlockIndex, Arena.blockIndex(handle));
+        tower.lazySet(slot + kOffset, Arena.offset(handle));
+        tower.lazySet(slot + kLength, length);
+        tower.lazySet(slot + kHeight, height);
+        return node;
+    }
+
+    private int field(int node, int field) {
+        return tower(node).get(slot(node) + field);
+    }
+
+    private int noBarrierNext(int node, int level) {
+        return tower(node).get(slot(node) + kNext + level);
+    }
+
+    private void noBarrierSetNext(int node, int level, int next) {
+        tower(node).lazySet(slot(node) + kNext + level, next);
+    }
+
+    private void setNext(int node, int level, int next) {
+        tower(node).set(slot(node) + kNext + level, next);
+    }
+
+    private boolean casNext(int node, int level, int expected, int next) {
+        return tower(node).compareAndSet(slot(node) + kNext + level, expected, next);
+    }
+
+    private AtomicIntegerArray tower(int node) {
+        return towers[node / kTowerBlockSize];
+    }
+
+    private static int slot(int node) {
+        return node % kTowerBlockSize;
+    }
+}
@@ -0,0 +1,84 @@
+package com.farmerworking.leveldb.in.java.data.structure.skiplist;
+
+import java.util.Arrays;
+
+public class ArenaSkipListIterator implements ISkipListIterator<char[]> {
+    private final ArenaSkipList list;
+    private int node;
+    // copy of the current entry, made on first key() call
+    private char[] current;
+
+    public ArenaSkipListIterator(ArenaSkipList list) {
+        this.list = list;
+        this.node = ArenaSkipList.kNull;
+        this.current = null;
+    }
+
+    @Override
+    public boolean valid() {
+        return node != ArenaSkipList.kNull;
+    }
+
+    // Returns a copy of the entry at the current position.
+    // Use keyBlock()/keyOffset()/keyLength() to read it in place.
+    @Override
+    public char[] key() {
+        assert valid();
+        if (current == null) {
+            int offset = keyOffset();
+            current = Arrays.copyOfRange(keyBlock(), offset, offset + keyLength());
+        }
+        return current;
+    }
+
+    public char[] keyBlock() {
+        assert valid();
+        return list.keyBlock(node);
+    }
+
+    public int keyOffset() {
+        assert valid();
+        return list.keyOffset(node);
+    }
+
+    public int keyLength() {
+        assert valid();
+        return list.keyLength(node);
+    }
+
+    @Override
+    public void next() {
+        assert valid();
+        moveTo(list.next(node, 0));
+    }
+
+    @Override
+    public void prev() {
+        // Instead of using explicit "prev" links, we just search for the
+        // last node that falls before key.
+        assert valid();
+        int x = list.findLessThan(keyBlock(), keyOffset());
+        moveTo(x == ArenaSkipList.kHead ? ArenaSkipList.kNull : x);
+    }
+
+    @Override
+    public void seekToFirst() {
+        moveTo(list.next(ArenaSkipList.kHead, 0));
+    }
+
+    @Override
+    public void seekToLast() {
+        int x = list.findLast();
+        moveTo(x == ArenaSkipList.kHead ? ArenaSkipList.kNull : x);
+    }
+
+    @Override
+    public void seek(char[] target) {
+        moveTo(list.findGreaterOrEqual(target, 0, null));
+    }
+
+    private void moveTo(int node) {
+        this.node = node;
+        this.current = null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.farmerworking.leveldb.in.java.data.structure.skiplist;
+
+// compares two entries that live inside larger arrays (e.g. arena blocks)
+// without copying them out first
+public interface IEntryComparator {
+    int compare(char[] a, int aOffset, char[] b, int bOffset);
+}
@@ -0,0 +1,71 @@
+package com.farmerworking.leveldb.in.java.data.structure.skiplist;
+
+import java.util.Comparator;
+
+// Iterates over the first "size" keys of an array sorted by "comparator",
+// which must not change while the iterator is in use.  next and prev are
+// O(1), seek is a binary search.
+public class SortedArrayIterator<T> implements ISkipListIterator<T> {
+    private final T[] keys;
+    private final int size;
+    private final Comparator<T> comparator;
+    private int index;
+
+    public SortedArrayIterator(T[] keys, int size, Comparator<T> comparator) {
+        assert size <= keys.length;
+        this.keys = keys;
+        this.size = size;
+        this.comparator = comparator;
+        this.index = size;
+    }
+
+    @Override
+    public boolean valid() {
+        return index >= 0 && index < size;
+    }
+
+    @Override
+    public T key() {
+        assert valid();
+        return keys[index];
+    }
+
+    @Override
+    public void next() {
+        assert valid();
+        index++;
+    }
+
+    @Override
+    public void prev() {
+        assert valid();
+        // before the first key is not valid either
+        index = index == 0 ? size : index - 1;
+    }
+
+    @Override
+    public void seekToFirst() {
+        index = 0;
+    }
+
+    @Override
+    public void seekToLast() {
+        index = size == 0 ? 0 : size - 1;
+    }
+
+    // First key at or after "target"
+    @Override
+    public void seek(T target) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(keys[mid], target) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        index = low;
+    }
+}
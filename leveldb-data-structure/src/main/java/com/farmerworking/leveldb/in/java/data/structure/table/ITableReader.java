@@ -6,6 +6,8 @@ import com.farmerworking.leveldb.in.java.api.ReadOptions;
 import com.farmerworking.leveldb.in.java.api.Status;
 import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
 
+import java.util.List;
+
 public interface ITableReader {
     // Returns a new iterator over the table contents.
     // The result of iterator() is initially invalid (caller must
@@ -26,6 +28,20 @@ public interface ITableReader {
 
     Status internalGet(ReadOptions readOptions, String internalKey, GetSaver saver);
 
+    // Look up sorted "internalKeys" at once, the result of each goes to the
+    // saver at the same position.  Keys that share a data block read it
+    // only once.
+    default Status multiGet(ReadOptions readOptions, List<String> internalKeys, List<GetSaver> savers) {
+        assert internalKeys.size() == savers.size();
+        for (int i = 0; i < internalKeys.size(); i++) {
+            Status status = internalGet(readOptions, internalKeys.get(i), savers.get(i));
+            if (status.isNotOk()) {
+                return status;
+            }
+        }
+        return Status.OK();
+    }
+
     public static ITableReader getDefaultImpl() {
         return new TableReader();
     }
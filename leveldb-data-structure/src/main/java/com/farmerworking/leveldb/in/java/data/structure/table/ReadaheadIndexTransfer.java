@@ -0,0 +1,200 @@
+package com.farmerworking.leveldb.in.java.data.structure.table;
+
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.ReadOptions;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.data.structure.two.level.iterator.IndexTransfer;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Index transfer of a single table iterator.  Once the iterator reads data
+// blocks one after the other, the bytes that follow the current block are
+// fetched in the background with large reads, so the next blocks are in
+// memory by the time the iterator moves on to them.
+//
+// Not safe for concurrent use, like the iterator it belongs to.
+class ReadaheadIndexTransfer implements IndexTransfer<String> {
+    // Automatic readahead starts after this many blocks were read in order,
+    // with kInitialAutoReadaheadSize bytes, and doubles on every prefetch up
+    // to kMaxAutoReadaheadSize.
+    static final int kAutoReadaheadThreshold = 2;
+    static final long kInitialAutoReadaheadSize = 8 * 1024;
+    static final long kMaxAutoReadaheadSize = 256 * 1024;
+
+    // Number of prefetches in flight ahead of the iterator
+    private static final int kMaxPrefetches = 2;
+
+    private final TableIndexTransfer transfer;
+    private final RandomAccessFile file;
+    private final Env env;
+    // Data blocks end here, nothing after it is worth prefetching
+    private final long dataEnd;
+    private final long fixedReadaheadSize;
+
+    private long readaheadSize;
+    private int sequentialReads;
+    // Offset right after the last block handed out
+    private long nextOffset;
+    private final Deque<Prefetch> prefetches;
+
+    ReadaheadIndexTransfer(TableIndexTransfer transfer, RandomAccessFile file, Env env, long dataEnd, long readaheadSize) {
+        this.transfer = transfer;
+        this.file = file;
+        this.env = env;
+        this.dataEnd = dataEnd;
+        this.fixedReadaheadSize = readaheadSize;
+
+        this.readaheadSize = readaheadSize > 0 ? readaheadSize : kInitialAutoReadaheadSize;
+        this.sequentialReads = 0;
+        this.nextOffset = -1;
+        this.prefetches = new ArrayDeque<>();
+    }
+
+    @Override
+    public Iterator<String, String> transfer(ReadOptions options, String value) {
+        BlockHandle handle = new BlockHandle();
+        if (handle.decodeFrom(value.toCharArray(), 0).getKey().isNotOk()) {
+            return this.transfer.transfer(options, value);
+        }
+
+        long offset = handle.getOffset();
+        int n = handle.getSize().intValue() + TableBuilder.kBlockTrailerSize;
+
+        Iterator<String, String> iter = this.transfer.cachedIterator(handle);
+        if (iter == null) {
+            Pair<Status, String> contents = takePrefetched(offset, n);
+            if (contents == null) {
+                contents = this.file.read(offset, n);
+            }
+            iter = this.transfer.blockIterator(handle, TableReader.decodeBlock(options, handle, contents));
+        }
+
+        if (offset == this.nextOffset) {
+            this.sequentialReads++;
+        } else {
+            // a seek or a step backwards, start over
+            cancel();
+            this.sequentialReads = 1;
+            if (this.fixedReadaheadSize == 0) {
+                this.readaheadSize = kInitialAutoReadaheadSize;
+            }
+        }
+        this.nextOffset = offset + n;
+
+        if (this.fixedReadaheadSize > 0 || this.sequentialReads >= kAutoReadaheadThreshold) {
+            prefetch();
+        }
+        return iter;
+    }
+
+    // Drop all prefetches, for when the iterator goes away or jumps
+    void cancel() {
+        for (Prefetch prefetch : this.prefetches) {
+            prefetch.future.cancel(false);
+        }
+        this.prefetches.clear();
+    }
+
+    // Keep kMaxPrefetches reads in flight past the current block
+    private void prefetch() {
+        long from = this.prefetches.isEmpty() ? this.nextOffset : this.prefetches.peekLast().end();
+        while (this.prefetches.size() < kMaxPrefetches && from < this.dataEnd) {
+            int length = (int) Math.min(this.readaheadSize, this.dataEnd - from);
+            this.prefetches.addLast(new Prefetch(from, length));
+            from += length;
+
+            if (this.fixedReadaheadSize == 0) {
+                this.readaheadSize = Math.min(kMaxAutoReadaheadSize, this.readaheadSize * 2);
+            }
+        }
+    }
+
+    // The "n" bytes at "offset" if prefetches cover them, else null
+    private Pair<Status, String> takePrefetched(long offset, int n) {
+        // forget whatever the iterator has already moved past
+        while (!this.prefetches.isEmpty() && this.prefetches.peekFirst().end() <= offset) {
+            this.prefetches.pollFirst().future.cancel(false);
+        }
+        if (this.prefetches.isEmpty() || this.prefetches.peekFirst().offset > offset) {
+            return null;
+        }
+
+        // the block may continue in the following prefetch, they are
+        // contiguous
+        StringBuilder builder = new StringBuilder(n);
+        long position = offset;
+        for (Prefetch prefetch : this.prefetches) {
+            if (position >= offset + n) {
+                break;
+            }
+            Pair<Status, String> contents = prefetch.get();
+            if (contents == null || contents.getKey().isNotOk()) {
+                cancel();
+                return null;
+            }
+
+            int from = (int) (position - prefetch.offset);
+            int to = (int) (Math.min(prefetch.end(), offset + n) - prefetch.offset);
+            if (to > contents.getValue().length()) {
+                return null; // short read
+            }
+            builder.append(contents.getValue(), from, to);
+            position = prefetch.offset + to;
+        }
+
+        if (builder.length() != n) {
+            return null;
+        }
+        return new Pair<>(Status.OK(), builder.toString());
+    }
+
+    private class Prefetch {
+        private final long offset;
+        private final int length;
+        private final AtomicBoolean started;
+        private final Future future;
+        private volatile Pair<Status, String> contents;
+
+        Prefetch(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+            this.started = new AtomicBoolean(false);
+            this.future = env.schedule(() -> {
+                if (this.started.compareAndSet(false, true)) {
+                    this.contents = file.read(this.offset, this.length);
+                }
+            }, Env.Priority.kIO);
+        }
+
+        long end() {
+            return this.offset + this.length;
+        }
+
+        // Wait for the read if it is under way.  One that has not started
+        // yet is abandoned, reading directly is faster than queueing.
+        Pair<Status, String> get() {
+            if (this.started.compareAndSet(false, true)) {
+                this.future.cancel(false);
+                return null;
+            }
+
+            try {
+                this.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                return null;
+            }
+            return this.contents;
+        }
+    }
+}
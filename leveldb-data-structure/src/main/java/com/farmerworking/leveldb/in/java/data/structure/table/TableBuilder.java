@@ -138,7 +138,7 @@ public class TableBuilder implements ITableBuilder {
                 try {
                     byte[] bytes = Snappy.compress(ByteUtils.toByteArray(content, 0, content.length()));
                     if (bytes.length < content.length() - (content.length() / 8)) {
-                        content = new String(ByteUtils.toCharArray(bytes, 0, bytes.length));
+                        content = ByteUtils.toString(bytes);
                     } else {
                         type = CompressionType.kNoCompression;
                     }
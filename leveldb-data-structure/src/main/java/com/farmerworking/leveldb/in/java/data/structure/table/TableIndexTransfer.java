@@ -8,6 +8,10 @@ import com.farmerworking.leveldb.in.java.data.structure.two.level.iterator.Index
 import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
 import javafx.util.Pair;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class TableIndexTransfer implements IndexTransfer<String> {
     private final Options options;
     private final RandomAccessFile file;
@@ -23,46 +27,73 @@ public class TableIndexTransfer implements IndexTransfer<String> {
 
     @Override
     public Iterator<String, String> transfer(ReadOptions options, String value) {
-        BlockHandle handle = new BlockHandle();
-        Pair<Status, Integer> decodeStatus = handle.decodeFrom(value.toCharArray(), 0);
-        Status status = decodeStatus.getKey();
+        return transfer(options, Collections.singletonList(value)).get(0);
+    }
 
-        IBlockReader blockReader = null;
-        CacheHandle cacheHandle = null;
-        if (status.isOk()) {
-            String cacheKey = null;
-            if (this.options.getBlockCache() != null) {
-                cacheKey = buildCacheKey(handle.getOffset());
-                cacheHandle = this.options.getBlockCache().lookup(cacheKey);
+    // Iterators over the blocks of several index values.  The blocks missing
+    // from the block cache are fetched with one vectored read.
+    public List<Iterator<String, String>> transfer(ReadOptions options, List<String> values) {
+        List<Iterator<String, String>> result = new ArrayList<>(Collections.nCopies(values.size(), null));
 
-                if (cacheHandle != null) {
-                    blockReader = (IBlockReader) this.options.getBlockCache().value(cacheHandle);
-                }
+        List<Integer> misses = new ArrayList<>();
+        List<BlockHandle> missHandles = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            BlockHandle handle = new BlockHandle();
+            Pair<Status, Integer> decodeStatus = handle.decodeFrom(values.get(i).toCharArray(), 0);
+            if (decodeStatus.getKey().isNotOk()) {
+                result.set(i, new EmptyIterator(decodeStatus.getKey()));
+                continue;
             }
 
-            if (blockReader == null) { // no cache or cache miss
-                Pair<Status, String> pair = TableReader.readBlock(file, options, handle);
-                status = pair.getKey();
-                if (status.isOk()) {
-                    blockReader = IBlockReader.getDefaultImpl(pair.getValue());
-
-                    if (this.options.getBlockCache() != null) {
-                        cacheHandle = this.options.getBlockCache().insert(cacheKey, blockReader, blockReader.memoryUsage(), deleter);
-                    }
-                }
+            Iterator<String, String> iter = cachedIterator(handle);
+            if (iter != null) {
+                result.set(i, iter);
+            } else { // no cache or cache miss
+                misses.add(i);
+                missHandles.add(handle);
             }
         }
 
-        Iterator<String, String> iter = null;
-        if (blockReader != null) {
-            iter = blockReader.iterator(this.options.getComparator());
-            if (cacheHandle != null) {
-                iter.registerCleanup(new CacheHandleReleaser(cacheHandle, this.options.getBlockCache()));
+        if (!misses.isEmpty()) {
+            List<Pair<Status, String>> contents = TableReader.readBlocks(file, options, missHandles);
+            for (int j = 0; j < misses.size(); j++) {
+                result.set(misses.get(j), blockIterator(missHandles.get(j), contents.get(j)));
             }
-        } else {
-            iter = new EmptyIterator(status);
         }
+        return result;
+    }
+
+    // Iterator over the block of "handle" if it is in the block cache, else null
+    Iterator<String, String> cachedIterator(BlockHandle handle) {
+        if (this.options.getBlockCache() == null) {
+            return null;
+        }
+
+        CacheHandle cacheHandle = this.options.getBlockCache().lookup(buildCacheKey(handle.getOffset()));
+        if (cacheHandle == null) {
+            return null;
+        }
+
+        IBlockReader blockReader = (IBlockReader) this.options.getBlockCache().value(cacheHandle);
+        Iterator<String, String> iter = blockReader.iterator(this.options.getComparator());
+        iter.registerCleanup(new CacheHandleReleaser(cacheHandle, this.options.getBlockCache()));
+        return iter;
+    }
 
+    // Iterator over "block", the contents just read for "handle", which are
+    // added to the block cache
+    Iterator<String, String> blockIterator(BlockHandle handle, Pair<Status, String> block) {
+        if (block.getKey().isNotOk()) {
+            return new EmptyIterator(block.getKey());
+        }
+
+        IBlockReader blockReader = IBlockReader.getDefaultImpl(block.getValue());
+        Iterator<String, String> iter = blockReader.iterator(this.options.getComparator());
+        if (this.options.getBlockCache() != null) {
+            CacheHandle cacheHandle = this.options.getBlockCache().insert(
+                    buildCacheKey(handle.getOffset()), blockReader, blockReader.memoryUsage(), deleter);
+            iter.registerCleanup(new CacheHandleReleaser(cacheHandle, this.options.getBlockCache()));
+        }
         return iter;
     }
 
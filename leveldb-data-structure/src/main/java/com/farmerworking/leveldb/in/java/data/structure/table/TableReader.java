@@ -15,6 +15,9 @@ import javafx.util.Pair;
 import org.xerial.snappy.Snappy;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 
 public class TableReader implements ITableReader {
@@ -71,10 +74,14 @@ public class TableReader implements ITableReader {
 
     @Override
     public Iterator<String, String> iterator(ReadOptions readOptions) {
-        return new TwoLevelIterator<>(
+        ReadaheadIndexTransfer readahead = new ReadaheadIndexTransfer(indexTransfer, this.file,
+                this.options.getEnv(), this.metaIndexHandle.getOffset(), readOptions.getReadaheadSize());
+        Iterator<String, String> iter = new TwoLevelIterator<>(
                 this.indexBlockReader.iterator(this.options.getComparator()),
                 readOptions,
-                indexTransfer);
+                readahead);
+        iter.registerCleanup(readahead::cancel);
+        return iter;
     }
 
     // for unit test only
@@ -151,6 +158,72 @@ public class TableReader implements ITableReader {
         return status;
     }
 
+    @Override
+    public Status multiGet(ReadOptions readOptions, List<String> internalKeys, List<GetSaver> savers) {
+        assert internalKeys.size() == savers.size();
+        Status status = Status.OK();
+
+        // Find the data block of every key first, so that all blocks can be
+        // fetched with one vectored read.  Keys are sorted, so keys of the
+        // same block are next to each other.
+        Iterator<String, String> indexIterator = this.indexBlockReader.iterator(this.options.getComparator());
+        List<String> blockHandleValues = new ArrayList<>();
+        int[] blockOfKey = new int[internalKeys.size()];
+        Arrays.fill(blockOfKey, -1);
+        for (int i = 0; i < internalKeys.size(); i++) {
+            String internalKey = internalKeys.get(i);
+
+            indexIterator.seek(internalKey);
+            if (!indexIterator.valid()) {
+                break; // this and all larger keys are past the last block
+            }
+
+            BlockHandle blockHandle = new BlockHandle();
+            Pair<Status, Integer> pair = blockHandle.decodeFrom(indexIterator.value().toCharArray(), 0);
+            if (this.filter != null && pair.getKey().isOk() && !filter.keyMayMatch(blockHandle.getOffset(), internalKey)) {
+                continue; // Not found
+            }
+
+            int last = blockHandleValues.size() - 1;
+            if (last < 0 || !indexIterator.value().equals(blockHandleValues.get(last))) {
+                blockHandleValues.add(indexIterator.value());
+                last++;
+            }
+            blockOfKey[i] = last;
+        }
+        status = indexIterator.status();
+
+        List<Iterator<String, String>> blockIterators = indexTransfer.transfer(readOptions, blockHandleValues);
+        for (int i = 0; i < internalKeys.size() && status.isOk(); i++) {
+            if (blockOfKey[i] < 0) {
+                continue;
+            }
+
+            String internalKey = internalKeys.get(i);
+            GetSaver saver = savers.get(i);
+            Iterator<String, String> blockIterator = blockIterators.get(blockOfKey[i]);
+            blockIterator.seek(internalKey);
+            if (blockIterator.valid()) {
+                Pair<Boolean, ParsedInternalKey> tmp = InternalKey.parseInternalKey(blockIterator.key());
+                if (!tmp.getKey()) {
+                    saver.setState(GetState.kCorrupt);
+                } else if (saver.getUserComparator().compare(tmp.getValue().getUserKeyChar(), saver.getUserKey().toCharArray()) == 0) {
+                    saver.setState(tmp.getValue().getValueType() == ValueType.kTypeValue ? GetState.kFound : GetState.kDeleted);
+
+                    if (saver.getState() == GetState.kFound) {
+                        saver.setValue(blockIterator.value());
+                    }
+                }
+            }
+            status = blockIterator.status();
+        }
+
+        for (Iterator<String, String> blockIterator : blockIterators) {
+            blockIterator.close();
+        }
+        return status;
+    }
+
     @Override
     public Status status() {
         return status;
@@ -206,6 +279,27 @@ public class TableReader implements ITableReader {
     static Pair<Status, String> readBlock(RandomAccessFile file, ReadOptions options, BlockHandle blockHandle) {
         int size = blockHandle.getSize().intValue();
         Pair<Status, String> pair = file.read(blockHandle.getOffset(), size + TableBuilder.kBlockTrailerSize);
+        return decodeBlock(options, blockHandle, pair);
+    }
+
+    // Read several blocks with one vectored read of "file"
+    static List<Pair<Status, String>> readBlocks(RandomAccessFile file, ReadOptions options, List<BlockHandle> blockHandles) {
+        List<Pair<Long, Integer>> ranges = new ArrayList<>(blockHandles.size());
+        for (BlockHandle blockHandle : blockHandles) {
+            ranges.add(new Pair<>(blockHandle.getOffset(), blockHandle.getSize().intValue() + TableBuilder.kBlockTrailerSize));
+        }
+
+        List<Pair<Status, String>> contents = file.multiRead(ranges);
+        List<Pair<Status, String>> result = new ArrayList<>(blockHandles.size());
+        for (int i = 0; i < blockHandles.size(); i++) {
+            result.add(decodeBlock(options, blockHandles.get(i), contents.get(i)));
+        }
+        return result;
+    }
+
+    // Check and uncompress the raw contents read for "blockHandle"
+    static Pair<Status, String> decodeBlock(ReadOptions options, BlockHandle blockHandle, Pair<Status, String> pair) {
+        int size = blockHandle.getSize().intValue();
         if (pair.getKey().isNotOk()) {
             return pair;
         }
@@ -233,7 +327,7 @@ public class TableReader implements ITableReader {
                 byte[] bytes = ByteUtils.toByteArray(chars, 0, size);
                 try {
                     byte[] uncompressedBytes = Snappy.uncompress(bytes);
-                    return new Pair<>(Status.OK(), new String(ByteUtils.toCharArray(uncompressedBytes, 0, uncompressedBytes.length)));
+                    return new Pair<>(Status.OK(), ByteUtils.toString(uncompressedBytes));
                 } catch (IOException e) {
                     return new Pair<>(Status.Corruption("corrupted compressed block contents"), null);
                 }
@@ -44,6 +44,9 @@ public class Compaction {
     // require: grandparent files is immutable during usage
     Vector<FileMetaData> grandparents;
 
+    // Was this compaction requested through compactRange?
+    private boolean manual;
+
     public Compaction(Options options, int level) {
         this.level = level;
         this.maxOutputFileSize = VersionUtils.maxFileSizeForLevel(options, level);
@@ -63,6 +66,22 @@ public class Compaction {
         }
     }
 
+    // A compaction over the same inputs that keeps its own iteration state,
+    // so one key range shard of a split compaction can run on its own thread.
+    // Shares the input version without taking another reference.
+    public Compaction(Compaction compaction) {
+        this.level = compaction.level;
+        this.maxOutputFileSize = compaction.maxOutputFileSize;
+        this.inputVersion = compaction.inputVersion;
+        this.grandparentIndex = 0;
+        this.seenKey = false;
+        this.overlappedBytes = 0;
+        this.grandparents = compaction.grandparents;
+        this.edit = compaction.edit;
+        this.inputs = compaction.inputs;
+        this.manual = compaction.manual;
+    }
+
     // Return the level that is being compacted.  Inputs from "level"
     // and "level+1" will be merged to produce a set of "level+1" files.
     public int getLevel() {
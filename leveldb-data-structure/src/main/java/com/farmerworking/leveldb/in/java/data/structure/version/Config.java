@@ -4,7 +4,7 @@ public class Config {
     public static int kNumLevels = 7;
 
     // Level-0 compaction is started when we hit this many files.
-    static int kL0_CompactionTrigger = 4;
+    public static int kL0_CompactionTrigger = 4;
 
     // Soft limit on number of level-0 files.  We slow down writes at this point.
     public static int kL0_SlowdownWritesTrigger = 8;
@@ -12,9 +12,16 @@ import java.nio.charset.StandardCharsets;
 
 public class TableCacheIndexTransfer implements IndexTransfer<Pair<Long, Long>> {
     private final TableCache tableCache;
+    // Tables are opened for a compaction, see TableCache.compactionIterator
+    private final boolean forCompaction;
 
     public TableCacheIndexTransfer(TableCache tableCache) {
+        this(tableCache, false);
+    }
+
+    public TableCacheIndexTransfer(TableCache tableCache, boolean forCompaction) {
         this.tableCache = tableCache;
+        this.forCompaction = forCompaction;
     }
 
     @Override
@@ -22,6 +29,8 @@ public class TableCacheIndexTransfer implements IndexTransfer<Pair<Long, Long>>
         if (value == null || value.getKey() == null || value.getValue() == null) {
             return new EmptyIterator(
                     Status.Corruption("FileReader invoked with unexpected value"));
+        } else if (this.forCompaction) {
+            return tableCache.compactionIterator(options, value.getKey(), value.getValue());
         } else {
             return tableCache.iterator(options, value.getKey(), value.getValue()).getKey();
         }
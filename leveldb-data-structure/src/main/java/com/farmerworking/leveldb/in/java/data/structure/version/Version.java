@@ -11,10 +11,17 @@ import com.farmerworking.leveldb.in.java.data.structure.memory.ValueType;
 import com.farmerworking.leveldb.in.java.data.structure.table.GetSaver;
 import com.farmerworking.leveldb.in.java.data.structure.table.GetState;
 import com.farmerworking.leveldb.in.java.data.structure.two.level.iterator.TwoLevelIterator;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import javafx.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 
 public class Version {
@@ -22,6 +29,7 @@ public class Version {
     final Options options;
     private final TableCache tableCache;
     private final List<Version> dummyVersions;
+    private final VersionSet versionSet;
 
     // Number of live refs to this version
     int refs;
@@ -41,6 +49,10 @@ public class Version {
     double compactionScore;
     int compactionLevel;
 
+    // Bytes that compactions have to rewrite before every level is back
+    // within its size budget.  Initialized by Finalize().
+    long estimatedPendingCompactionBytes;
+
     FileRangeHelper fileRangeHelper;
 
     public static int DEFAULT_COMPACTION_SCORE = -1;
@@ -51,6 +63,7 @@ public class Version {
         this.options = versionSetBelongTo.getOptions();
         this.tableCache = versionSetBelongTo.getTableCache();
         this.dummyVersions = versionSetBelongTo.getDummyVersions();
+        this.versionSet = versionSetBelongTo;
 
         this.refs = 0;
         this.fileToCompact = null;
@@ -141,6 +154,156 @@ public class Version {
         return new Pair<>(Status.NotFound(""), null);
     }
 
+    // Like get() for every key of "internalKeys", which must be sorted.  The
+    // keys are grouped by the table they have to probe, so every table is
+    // searched once per level, and tables of the same level are searched in
+    // parallel in the kIO pool of the env.  "stats" receives the seek stats
+    // of every key.
+    public List<Pair<Status, String>> multiGet(ReadOptions options, List<InternalKey> internalKeys, List<GetStats> stats) {
+        int n = internalKeys.size();
+        List<Pair<Status, String>> results = new ArrayList<>(Collections.nCopies(n, null));
+        FileMetaData[] lastFilesRead = new FileMetaData[n];
+        int[] lastFilesReadLevel = new int[n];
+        for (int i = 0; i < n; i++) {
+            stats.add(new GetStats());
+            stats.get(i).setSeekFileLevel(-1);
+        }
+
+        for (int level = 0; level < Config.kNumLevels; level++) {
+            // Group the keys still being looked up by the table to search,
+            // keeping them sorted.  Level-0 tables overlap, so a key may have
+            // to search several of them, newest first.
+            Map<FileMetaData, List<Integer>> groups = new IdentityHashMap<>();
+            for (int i = 0; i < n; i++) {
+                if (results.get(i) == null) {
+                    for (FileMetaData fileMetaData : getFilesToSearchForLevel(level, internalKeys.get(i))) {
+                        groups.computeIfAbsent(fileMetaData, k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+
+            if (level == 0) {
+                List<FileMetaData> level0Files = new ArrayList<>(groups.keySet());
+                Collections.sort(level0Files, new NewestFileComparator());
+                for (FileMetaData fileMetaData : level0Files) {
+                    multiGetFromFile(options, 0, fileMetaData, groups.get(fileMetaData),
+                            internalKeys, results, stats, lastFilesRead, lastFilesReadLevel);
+                }
+            } else {
+                final int currentLevel = level;
+                // every key is in at most one table of the level
+                List<Runnable> searches = new ArrayList<>(groups.size());
+                for (Map.Entry<FileMetaData, List<Integer>> entry : groups.entrySet()) {
+                    searches.add(() -> multiGetFromFile(options, currentLevel, entry.getKey(), entry.getValue(),
+                            internalKeys, results, stats, lastFilesRead, lastFilesReadLevel));
+                }
+                runInParallel(searches);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (results.get(i) == null) {
+                results.set(i, new Pair<>(Status.NotFound(""), null));
+            }
+        }
+        return results;
+    }
+
+    // Run "tasks" in the kIO pool of the env and on this thread, whichever
+    // gets to a task first, and return once all of them are done.  Only the
+    // tasks a pool thread started are waited for, the others run here.
+    private void runInParallel(List<Runnable> tasks) {
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+            return;
+        }
+
+        List<Runnable> claimed = new ArrayList<>(tasks.size());
+        List<CountDownLatch> done = new ArrayList<>(tasks.size());
+        List<Future> futures = new ArrayList<>(tasks.size());
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (Runnable task : tasks) {
+            AtomicBoolean started = new AtomicBoolean(false);
+            CountDownLatch latch = new CountDownLatch(1);
+            done.add(latch);
+            claimed.add(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        for (int i = 1; i < claimed.size(); i++) {
+            futures.add(this.options.getEnv().schedule(claimed.get(i), Env.Priority.kIO));
+        }
+        for (Runnable task : claimed) {
+            task.run();
+        }
+        for (Future future : futures) {
+            future.cancel(false);
+        }
+        for (CountDownLatch latch : done) {
+            Uninterruptibles.awaitUninterruptibly(latch);
+        }
+
+        if (error.get() != null) {
+            Throwables.throwIfUnchecked(error.get());
+            throw new RuntimeException(error.get());
+        }
+    }
+
+    private void multiGetFromFile(ReadOptions options, int level, FileMetaData fileMetaData, List<Integer> keyIndexes,
+                                  List<InternalKey> internalKeys, List<Pair<Status, String>> results,
+                                  List<GetStats> stats, FileMetaData[] lastFilesRead, int[] lastFilesReadLevel) {
+        List<Integer> indexes = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<GetSaver> savers = new ArrayList<>();
+        for (Integer i : keyIndexes) {
+            // a newer level-0 table may already have the answer
+            if (results.get(i) != null) {
+                continue;
+            }
+
+            if (lastFilesRead[i] != null && stats.get(i).getSeekFile() == null) {
+                // We have had more than one seek for this read.  Charge the 1st file.
+                stats.get(i).setSeekFile(lastFilesRead[i]);
+                stats.get(i).setSeekFileLevel(lastFilesReadLevel[i]);
+            }
+            lastFilesRead[i] = fileMetaData;
+            lastFilesReadLevel[i] = level;
+
+            indexes.add(i);
+            keys.add(internalKeys.get(i).encode());
+            savers.add(newGetSaver(internalKeys.get(i).userKey()));
+        }
+
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        Status status = tableCache.multiGet(options, fileMetaData.getFileNumber(), fileMetaData.getFileSize(), keys, savers);
+        for (int j = 0; j < indexes.size(); j++) {
+            int i = indexes.get(j);
+            GetSaver saver = savers.get(j);
+            if (status.isNotOk()) {
+                results.set(i, new Pair<>(status, null));
+            } else if (saver.getState().equals(GetState.kFound)) {
+                results.set(i, new Pair<>(status, saver.getValue()));
+            } else if (saver.getState().equals(GetState.kDeleted)) {
+                results.set(i, new Pair<>(Status.NotFound(""), null));
+            } else if (saver.getState().equals(GetState.kCorrupt)) {
+                results.set(i, new Pair<>(Status.Corruption("corrupted key for " + saver.getUserKey()), null));
+            }
+        }
+    }
+
     // Adds "stats" into the current state.  Returns true if a new compaction may need to be triggered, false otherwise.
     // REQUIRES: lock is held
     public boolean updateStats(GetStats stats) {
@@ -224,7 +387,8 @@ public class Version {
         assert this.refs >= 1;
         this.refs --;
 
-        if (this.refs == 0) {
+        // current stays live until it is replaced, see VersionSet.appendVersion
+        if (this.refs == 0 && this != this.versionSet.getCurrent()) {
             this.dummyVersions.remove(this);
         }
     }
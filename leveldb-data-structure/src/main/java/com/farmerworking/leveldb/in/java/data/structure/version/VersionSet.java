@@ -1,6 +1,7 @@
 package com.farmerworking.leveldb.in.java.data.structure.version;
 
 import com.farmerworking.leveldb.in.java.api.*;
+import com.farmerworking.leveldb.in.java.api.Comparator;
 import com.farmerworking.leveldb.in.java.api.Iterator;
 import com.farmerworking.leveldb.in.java.data.structure.cache.TableCache;
 import com.farmerworking.leveldb.in.java.data.structure.log.ILogReporter;
@@ -25,7 +26,7 @@ public class VersionSet {
     private String dbname;
     private long nextFileNumber;
     private long manifestFileNumber;
-    private long lastSequence;
+    private volatile long lastSequence;
     private long logNumber;
 
     // 0 or backing store for memtable being compacted
@@ -48,6 +49,11 @@ public class VersionSet {
     // Either an empty string, or a valid InternalKey.
     String[] compactPointer = new String[Config.kNumLevels];
 
+    // Compactions handed out by pickCompaction() or compactRange() that are
+    // not released yet, and the numbers of the files they are working on.
+    private Set<Compaction> runningCompactions = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Set<Long> compactingFiles = new HashSet<>();
+
     public VersionSet() {}
 
     public VersionSet(String dbname, Options options, TableCache tableCache, InternalKeyComparator comparator) {
@@ -378,6 +384,29 @@ public class VersionSet {
         return VersionUtils.totalFileSize(current.files.get(level));
     }
 
+    // Adds the seek stats of a read, which may have used an older version,
+    // into the current version.  Returns true if a new compaction may need
+    // to be triggered.  Stats of files that are gone are dropped.
+    // REQUIRES: lock is held
+    public boolean updateStats(GetStats stats) {
+        FileMetaData metaData = stats.getSeekFile();
+        if (metaData == null) {
+            return false;
+        }
+
+        for (FileMetaData file : current.files.get(stats.getSeekFileLevel())) {
+            if (file == metaData) {
+                return current.updateStats(stats);
+            }
+        }
+        return false;
+    }
+
+    // Return the bytes compactions are estimated to be behind.
+    public long estimatedPendingCompactionBytes() {
+        return current.estimatedPendingCompactionBytes;
+    }
+
     public void setLastSequence(long lastSequence) {
         assert lastSequence >= this.lastSequence;
         this.lastSequence = lastSequence;
@@ -387,42 +416,75 @@ public class VersionSet {
     // Returns NULL if there is no compaction to be done.
     // Otherwise returns a pointer to a heap-allocated object that
     // describes the compaction.  Caller should delete the result.
+    //
+    // Files and key ranges of running compactions are skipped, so the
+    // result can run concurrently with them.  The caller must hand the
+    // result back through releaseCompaction() once it is done.
     public Compaction pickCompaction() {
+        Compaction compaction = chooseCompaction();
+        if (compaction != null) {
+            updateCompactPointer(compaction);
+            registerCompaction(compaction);
+        }
+        return compaction;
+    }
+
+    private Compaction chooseCompaction() {
         // We prefer compactions triggered by too much data in a level over
         // the compactions triggered by seeks.
-        boolean sizeCompaction = current.compactionScore >= 1;
-        boolean seekCompaction = current.fileToCompact != null;
-
-        int level;
-        Compaction compaction;
-        if (sizeCompaction) {
-            level = current.compactionLevel;
-            assert level >= 0;
-            assert level + 1 < Config.kNumLevels;
-            compaction = new Compaction(this.options, level);
-
-            // Pick the first file that comes after compact_pointer_[level]
-            for (int i = 0; i < current.files.get(level).size(); i++) {
-                FileMetaData metaData = current.files.get(level).get(i);
-                if (StringUtils.isEmpty(this.compactPointer[level]) ||
-                        this.internalKeyComparator.compare(metaData.getLargest().getRep(), compactPointer[level].toCharArray()) > 0) {
-                    compaction.inputs[0].add(metaData);
-                    break;
+        Compaction compaction = null;
+        if (current.compactionScore >= 1) {
+            compaction = pickSizeCompaction(current.compactionLevel);
+
+            // The best level is busy, try the other levels that need it too
+            for (int level = 0; compaction == null && level + 1 < Config.kNumLevels; level++) {
+                if (level != current.compactionLevel && levelScore(current, level) >= 1) {
+                    compaction = pickSizeCompaction(level);
                 }
             }
+        }
+
+        if (compaction == null && current.fileToCompact != null &&
+                !compactingFiles.contains(current.fileToCompact.getFileNumber())) {
+            compaction = newCompaction(current.fileToCompactLevel, current.fileToCompact);
+        }
+        return compaction;
+    }
+
+    private Compaction pickSizeCompaction(int level) {
+        assert level >= 0;
+        assert level + 1 < Config.kNumLevels;
+        Vector<FileMetaData> files = current.files.get(level);
+
+        // Pick the first file that comes after compact_pointer_[level]
+        int start = 0;
+        if (!StringUtils.isEmpty(this.compactPointer[level])) {
+            while (start < files.size() &&
+                    this.internalKeyComparator.compare(files.get(start).getLargest().getRep(), compactPointer[level].toCharArray()) <= 0) {
+                start++;
+            }
+        }
 
-            if (compaction.inputs[0].isEmpty()) {
-                // Wrap-around to the beginning of the key space
-                compaction.inputs[0].add(current.files.get(level).get(0));
+        // Wrap-around to the beginning of the key space, skipping files
+        // some running compaction already works on
+        for (int i = 0; i < files.size(); i++) {
+            FileMetaData metaData = files.get((start + i) % files.size());
+            if (compactingFiles.contains(metaData.getFileNumber())) {
+                continue;
+            }
+
+            Compaction compaction = newCompaction(level, metaData);
+            if (compaction != null || level == 0) {
+                // all overlapping level-0 files are picked together anyway
+                return compaction;
             }
-        } else if (seekCompaction) {
-            level = current.fileToCompactLevel;
-            compaction = new Compaction(this.options, level);
-            compaction.inputs[0].add(current.fileToCompact);
-        } else {
-            return null;
         }
+        return null;
+    }
 
+    private Compaction newCompaction(int level, FileMetaData metaData) {
+        Compaction compaction = new Compaction(this.options, level);
+        compaction.inputs[0].add(metaData);
         compaction.inputVersion = current;
         compaction.inputVersion.ref();
 
@@ -436,10 +498,81 @@ public class VersionSet {
             assert !compaction.inputs[0].isEmpty();
         }
 
-        setupOtherInputs(compaction);
+        expandInputs(compaction);
+        if (isConflicting(compaction)) {
+            compaction.releaseInputs();
+            return null;
+        }
         return compaction;
     }
 
+    // Two compactions collide if they share a file, if both read level-0,
+    // or if they touch a common level with overlapping key ranges.
+    boolean isConflicting(Compaction compaction) {
+        for (int which = 0; which < 2; which++) {
+            for (FileMetaData metaData : compaction.inputs[which]) {
+                if (compactingFiles.contains(metaData.getFileNumber())) {
+                    return true;
+                }
+            }
+        }
+
+        Pair<InternalKey, InternalKey> range = getRange2(compaction.inputs[0], compaction.inputs[1]);
+        for (Compaction running : runningCompactions) {
+            if (running.getLevel() == 0 && compaction.getLevel() == 0) {
+                return true;
+            }
+
+            if (Math.abs(running.getLevel() - compaction.getLevel()) <= 1) {
+                Pair<InternalKey, InternalKey> runningRange = getRange2(running.inputs[0], running.inputs[1]);
+                if (userRangesOverlap(range, runningRange.getKey().userKey(), runningRange.getValue().userKey())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Returns true iff some running compaction below "level" overlaps the
+    // user key range [smallest, largest].  A new file must not be placed
+    // at "level" then, the compaction output would land above it.
+    public boolean rangeOverlapsRunningCompaction(int level, String smallest, String largest) {
+        for (Compaction running : runningCompactions) {
+            if (running.getLevel() < level &&
+                    userRangesOverlap(getRange2(running.inputs[0], running.inputs[1]), smallest, largest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean userRangesOverlap(Pair<InternalKey, InternalKey> range, String smallest, String largest) {
+        Comparator userComparator = this.internalKeyComparator.getUserComparator();
+        return userComparator.compare(range.getKey().userKey().toCharArray(), largest.toCharArray()) <= 0 &&
+                userComparator.compare(smallest.toCharArray(), range.getValue().userKey().toCharArray()) <= 0;
+    }
+
+    void registerCompaction(Compaction compaction) {
+        runningCompactions.add(compaction);
+        for (int which = 0; which < 2; which++) {
+            for (FileMetaData metaData : compaction.inputs[which]) {
+                compactingFiles.add(metaData.getFileNumber());
+            }
+        }
+    }
+
+    // Hand back a compaction returned by pickCompaction() or compactRange()
+    public void releaseCompaction(Compaction compaction) {
+        if (runningCompactions.remove(compaction)) {
+            for (int which = 0; which < 2; which++) {
+                for (FileMetaData metaData : compaction.inputs[which]) {
+                    compactingFiles.remove(metaData.getFileNumber());
+                }
+            }
+        }
+        compaction.releaseInputs();
+    }
+
     // Return a compaction object for compacting the range [begin,end] in
     // the specified level.  Returns NULL if there is nothing in that
     // level that overlaps the specified range.  Caller should delete
@@ -471,6 +604,7 @@ public class VersionSet {
         compaction.inputVersion.ref();
         compaction.inputs[0] = inputs;
         setupOtherInputs(compaction);
+        registerCompaction(compaction);
         return compaction;
     }
 
@@ -500,6 +634,7 @@ public class VersionSet {
     public Iterator<String, String> makeInputIterator(Compaction compaction) {
         ReadOptions readOptions = new ReadOptions();
         readOptions.setVerifyChecksums(options.isParanoidChecks());
+        readOptions.setReadaheadSize(options.getCompactionReadaheadSize());
 
         // Level-0 files have to be merged together.  For other levels,
         // we will make a concatenating iterator per level.
@@ -512,17 +647,17 @@ public class VersionSet {
                 if (compaction.getLevel() + which == 0) {
                     Vector<FileMetaData> files = compaction.inputs[which];
                     for (int i = 0; i < files.size(); i++) {
-                        list.add(num ++, tableCache.iterator(
+                        list.add(num ++, tableCache.compactionIterator(
                                 readOptions,
                                 files.get(i).getFileNumber(),
-                                files.get(i).getFileSize()).getKey());
+                                files.get(i).getFileSize()));
                     }
                 } else {
                     // Create concatenating iterator for the files from this level
                     list.add(num ++, new TwoLevelIterator<>(
                             new LevelFileNumIterator(internalKeyComparator, compaction.inputs[which]),
                             readOptions,
-                            new TableCacheIndexTransfer(tableCache)));
+                            new TableCacheIndexTransfer(tableCache, true)));
                 }
             }
         }
@@ -530,10 +665,19 @@ public class VersionSet {
         return MergingIterator.newMergingIterator(internalKeyComparator, list);
     }
 
-    // Returns true iff some level needs a compaction.
+    // Returns true iff some level needs a compaction that can start
+    // next to the running ones.
     public boolean needCompaction() {
         Version version = current;
-        return version.compactionScore >= 1 || version.fileToCompact != null;
+        if (runningCompactions.isEmpty()) {
+            return version.compactionScore >= 1 || version.fileToCompact != null;
+        }
+
+        Compaction compaction = chooseCompaction();
+        if (compaction != null) {
+            compaction.releaseInputs();
+        }
+        return compaction != null;
     }
 
     // Return a human-readable short (single-line) summary of the number
@@ -641,25 +785,7 @@ public class VersionSet {
         double bestScore = -1;
 
         for (int level = 0; level < Config.kNumLevels; level++) {
-            double score;
-
-            if (level == 0) {
-                // We treat level-0 specially by bounding the number of files
-                // instead of number of bytes for two reasons:
-                //
-                // (1) With larger write-buffer sizes, it is nice not to do too
-                // many level-0 compactions.
-                //
-                // (2) The files in level-0 are merged on every read and
-                // therefore we wish to avoid too many files when the individual
-                // file size is small (perhaps because of a small write-buffer
-                // setting, or very high compression ratios, or lots of
-                // overwrites/deletions).
-                score = version.files.get(level).size() / (double)Config.kL0_CompactionTrigger;
-            } else {
-                long levelBytes = VersionUtils.totalFileSize(version.files.get(level));
-                score = (double)levelBytes / maxBytesForLevel(this.options, level);
-            }
+            double score = levelScore(version, level);
 
             if (score > bestScore) {
                 bestLevel = level;
@@ -669,6 +795,45 @@ public class VersionSet {
 
         version.compactionLevel = bestLevel;
         version.compactionScore = bestScore;
+        version.estimatedPendingCompactionBytes = pendingCompactionBytes(version);
+    }
+
+    // Level-0 counts in full once it reaches the compaction trigger, every
+    // other level by the bytes it holds above its budget.
+    long pendingCompactionBytes(Version version) {
+        long result = 0;
+        if (version.files.get(0).size() >= Config.kL0_CompactionTrigger) {
+            result += VersionUtils.totalFileSize(version.files.get(0));
+        }
+
+        for (int level = 1; level < Config.kNumLevels - 1; level++) {
+            long levelBytes = VersionUtils.totalFileSize(version.files.get(level));
+            result += Math.max(0, levelBytes - maxBytesForLevel(this.options, level));
+        }
+        return result;
+    }
+
+    double levelScore(Version version, int level) {
+        double score;
+
+        if (level == 0) {
+            // We treat level-0 specially by bounding the number of files
+            // instead of number of bytes for two reasons:
+            //
+            // (1) With larger write-buffer sizes, it is nice not to do too
+            // many level-0 compactions.
+            //
+            // (2) The files in level-0 are merged on every read and
+            // therefore we wish to avoid too many files when the individual
+            // file size is small (perhaps because of a small write-buffer
+            // setting, or very high compression ratios, or lots of
+            // overwrites/deletions).
+            score = version.files.get(level).size() / (double)Config.kL0_CompactionTrigger;
+        } else {
+            long levelBytes = VersionUtils.totalFileSize(version.files.get(level));
+            score = (double)levelBytes / maxBytesForLevel(this.options, level);
+        }
+        return score;
     }
 
     long maxBytesForLevel(Options options, int level) {
@@ -687,8 +852,15 @@ public class VersionSet {
     protected void appendVersion(Version version) {
         assert version != this.current;
 
+        Version previous = this.current;
         this.current = version;
         dummyVersions.add(version);
+
+        // current is kept live without a reference, drop the replaced one
+        // unless somebody is still reading it
+        if (previous != null && previous.refs == 0) {
+            dummyVersions.remove(previous);
+        }
     }
 
     Pair<InternalKey, InternalKey> getRange(Collection<FileMetaData> inputs) {
@@ -719,6 +891,11 @@ public class VersionSet {
     }
 
     protected void setupOtherInputs(Compaction compaction) {
+        expandInputs(compaction);
+        updateCompactPointer(compaction);
+    }
+
+    void expandInputs(Compaction compaction) {
         int level = compaction.getLevel();
         Pair<InternalKey, InternalKey> pair = getRange(compaction.inputs[0]);
         InternalKey smallest = pair.getKey();
@@ -772,6 +949,11 @@ public class VersionSet {
             Options.Logger.log(this.options.getInfoLog(), String.format("Compacting %d '%s' .. '%s'",
                     level, smallest.toString(), largest.toString()));
         }
+    }
+
+    void updateCompactPointer(Compaction compaction) {
+        int level = compaction.getLevel();
+        InternalKey largest = getRange(compaction.inputs[0]).getValue();
 
         // Update the place where we will do the next compaction for this level.
         // We update this immediately instead of waiting for the VersionEdit
@@ -6,21 +6,36 @@ import com.farmerworking.leveldb.in.java.data.structure.memory.ValueType;
 public class MemTableInserter implements WriteBatchIterateHandler{
     private long sequence;
     private IMemtable memtable;
+    // other writers may be inserting into the same memtable at the same time
+    private boolean concurrent;
 
     public MemTableInserter(long sequence, IMemtable memtable) {
+        this(sequence, memtable, false);
+    }
+
+    public MemTableInserter(long sequence, IMemtable memtable, boolean concurrent) {
         this.sequence = sequence;
         this.memtable = memtable;
+        this.concurrent = concurrent;
     }
 
     @Override
     public void put(String key, String value) {
-        memtable.add(sequence, ValueType.kTypeValue, key, value);
+        add(ValueType.kTypeValue, key, value);
         sequence ++;
     }
 
     @Override
     public void delete(String key) {
-        memtable.add(sequence, ValueType.kTypeDeletion, key, "");
+        add(ValueType.kTypeDeletion, key, "");
         sequence ++;
     }
+
+    private void add(ValueType type, String key, String value) {
+        if (concurrent) {
+            memtable.addConcurrently(sequence, type, key, value);
+        } else {
+            memtable.add(sequence, type, key, value);
+        }
+    }
 }
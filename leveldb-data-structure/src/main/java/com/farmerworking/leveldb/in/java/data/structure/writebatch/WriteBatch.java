@@ -5,6 +5,7 @@ import com.farmerworking.leveldb.in.java.common.ICoding;
 import com.farmerworking.leveldb.in.java.data.structure.memory.ValueType;
 import javafx.util.Pair;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class WriteBatch {
@@ -48,6 +49,38 @@ public class WriteBatch {
         coding.putLengthPrefixedString(this.builder, key);
     }
 
+    // The bytes are widened to one char each as they are appended, without
+    // a String of them in between
+    public void put(byte[] key, byte[] value) {
+        put(ByteBuffer.wrap(key), ByteBuffer.wrap(value));
+    }
+
+    public void delete(byte[] key) {
+        delete(ByteBuffer.wrap(key));
+    }
+
+    // The remaining bytes of "key" and "value", their positions are left
+    // untouched
+    public void put(ByteBuffer key, ByteBuffer value) {
+        setCount(getCount() + 1);
+        this.builder.append((char) ValueType.kTypeValue.getValue());
+        putLengthPrefixedBytes(key);
+        putLengthPrefixedBytes(value);
+    }
+
+    public void delete(ByteBuffer key) {
+        setCount(getCount() + 1);
+        this.builder.append((char) ValueType.kTypeDeletion.getValue());
+        putLengthPrefixedBytes(key);
+    }
+
+    private void putLengthPrefixedBytes(ByteBuffer value) {
+        coding.putVarint32(this.builder, value.remaining());
+        for (int i = value.position(); i < value.limit(); i++) {
+            this.builder.append((char) Byte.toUnsignedInt(value.get(i)));
+        }
+    }
+
     public void append(WriteBatch writeBatch) {
         setCount(getCount() + writeBatch.getCount());
         this.builder.append(writeBatch.getBuilder());
@@ -10,12 +10,49 @@ import java.util.List;
 import java.util.concurrent.Future;
 
 public interface Env {
+    // Background thread pools, work scheduled at kHigh never queues behind
+    // work scheduled at kLow.  kIO is for short reads done ahead of time,
+    // such as block prefetches, which must not queue behind compactions.
+    // kUser is for work done on behalf of writers, such as a memtable
+    // switch, which may wait for kHigh work and so must not hold up a kHigh
+    // thread while it does.
+    enum Priority {
+        kLow,
+        kHigh,
+        kIO,
+        kUser
+    }
+
     Pair<Status, WritableFile> newWritableFile(String filename) ;
 
     Pair<Status, WritableFile> newAppendableFile(String filename) ;
 
+    // Rename "oldFilename" to "filename" and open it for writing from the
+    // start, without truncating it.  Writing over a file whose blocks are
+    // already allocated spares the file system the metadata updates of a
+    // growing file.
+    default Pair<Status, WritableFile> reuseWritableFile(String filename, String oldFilename) {
+        Status status = renameFile(oldFilename, filename);
+        if (status.isNotOk()) {
+            return new Pair<>(status, null);
+        }
+        return newWritableFile(filename);
+    }
+
     Pair<Status, RandomAccessFile> newRandomAccessFile(String filename);
 
+    // Like newWritableFile and newRandomAccessFile, but the data does not go
+    // through the OS page cache where the env can manage that, for files of
+    // background work that would only push out what user reads need.  Envs
+    // that cannot do that open regular files.
+    default Pair<Status, WritableFile> newDirectWritableFile(String filename) {
+        return newWritableFile(filename);
+    }
+
+    default Pair<Status, RandomAccessFile> newDirectRandomAccessFile(String filename) {
+        return newRandomAccessFile(filename);
+    }
+
     Pair<Status, SequentialFile> newSequentialFile(String filename);
 
     Pair<Status, String> getTestDirectory();
@@ -38,6 +75,17 @@ public interface Env {
 
     Future schedule(Runnable runnable);
 
+    // Arrange to run "runnable" once in the background thread pool of the
+    // given priority.
+    default Future schedule(Runnable runnable, Priority priority) {
+        return schedule(runnable);
+    }
+
+    // Grow the thread pool of the given priority to at least "number"
+    // threads.  Pools are shared by every db using this env, so they are
+    // never shrunk.
+    default void incBackgroundThreadsIfNeeded(int number, Priority priority) {}
+
     Status unlockFile(String lockFileName, FileLock fileLock);
 
     static Pair<Status, String> readFileToString(Env env, String fname) {
@@ -3,6 +3,9 @@ package com.farmerworking.leveldb.in.java.file;
 import com.farmerworking.leveldb.in.java.api.Status;
 import javafx.util.Pair;
 
+import java.util.ArrayList;
+import java.util.List;
+
 // A file abstraction for randomly reading the contents of a file.
 public interface RandomAccessFile {
     // Read up to "n" bytes from the file starting at "offset".
@@ -10,4 +13,20 @@ public interface RandomAccessFile {
     //
     // Safe for concurrent use by multiple threads.
     Pair<Status, String> read(long offset, int n);
+
+    // Read several (offset, n) ranges in one call, the i-th result belongs to
+    // the i-th range.  Implementations may fetch nearby ranges together.
+    //
+    // Safe for concurrent use by multiple threads.
+    default List<Pair<Status, String>> multiRead(List<Pair<Long, Integer>> ranges) {
+        List<Pair<Status, String>> result = new ArrayList<>(ranges.size());
+        for (Pair<Long, Integer> range : ranges) {
+            result.add(read(range.getKey(), range.getValue()));
+        }
+        return result;
+    }
+
+    // Release the resources held by the file.  No read may be in progress
+    // or issued afterwards.
+    default void close() {}
 }
@@ -15,4 +15,11 @@ public interface WritableFile {
     Status close();
 
     Status sync();
+
+    // Make sure the file has room for "size" bytes without growing, for
+    // files that are going to be written over again and again.  Appends
+    // still start at the current position.
+    default Status preallocate(long size) {
+        return Status.OK();
+    }
 }
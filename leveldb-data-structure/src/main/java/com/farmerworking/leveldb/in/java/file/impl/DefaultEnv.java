@@ -16,25 +16,52 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class DefaultEnv implements Env {
+    // Table files are read through memory mappings as long as no more than
+    // this many bytes are mapped in total, and with positional reads after
+    // that.  Zero disables mmap reads.  The mapping of a deleted table is
+    // only released once it is garbage collected, so the cap is off by
+    // default.
+    public static final long kDefaultMaxMappedBytes = 0;
+
+    private final Limiter mmapLimiter;
+    // Bytes a writable file collects in memory before it writes them out
+    private final int writableFileBufferSize;
     private Set<String> locks = new HashSet<>();
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ThreadPoolExecutor lowPriorityPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+    private ThreadPoolExecutor highPriorityPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+    private ThreadPoolExecutor ioPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+    private ThreadPoolExecutor userPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+
+    public DefaultEnv() {
+        this(kDefaultMaxMappedBytes);
+    }
+
+    public DefaultEnv(long maxMappedBytes) {
+        this(maxMappedBytes, DefaultWritableFile.kDefaultBufferSize);
+    }
+
+    public DefaultEnv(long maxMappedBytes, int writableFileBufferSize) {
+        this.mmapLimiter = new Limiter(maxMappedBytes);
+        this.writableFileBufferSize = writableFileBufferSize;
+    }
 
     @Override
     public Pair<Status, WritableFile> newWritableFile(String filename) {
         try {
             FileOutputStream fileOutputStream = new FileOutputStream(filename, false);
-            return new Pair<>(Status.OK(), new DefaultWritableFile(fileOutputStream));
+            return new Pair<>(Status.OK(), new DefaultWritableFile(fileOutputStream.getChannel(), this.writableFileBufferSize));
         } catch (IOException e) {
             return new Pair<>(Status.IOError(e.getMessage()), null);
         }
@@ -44,17 +71,43 @@ public class DefaultEnv implements Env {
     public Pair<Status, WritableFile> newAppendableFile(String filename) {
         try {
             FileOutputStream fileOutputStream = new FileOutputStream(filename, true);
-            return new Pair<>(Status.OK(), new DefaultWritableFile(fileOutputStream));
+            return new Pair<>(Status.OK(), new DefaultWritableFile(fileOutputStream.getChannel(), this.writableFileBufferSize));
         } catch (IOException e) {
             return new Pair<>(Status.IOError(e.getMessage()), null);
         }
     }
 
+    @Override
+    public Pair<Status, WritableFile> reuseWritableFile(String filename, String oldFilename) {
+        Status status = renameFile(oldFilename, filename);
+        if (status.isNotOk()) {
+            return new Pair<>(status, null);
+        }
+
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+            return new Pair<>(Status.OK(), new DefaultWritableFile(channel, this.writableFileBufferSize));
+        } catch (IOException e) {
+            return new Pair<>(Status.IOError(filename, e.getMessage()), null);
+        }
+    }
+
     @Override
     public Pair<Status, RandomAccessFile> newRandomAccessFile(String filename) {
         try {
             java.io.RandomAccessFile randomAccessFile = new java.io.RandomAccessFile(filename, "r");
-            return new Pair<>(Status.OK(), new DefaultRandomAccessFile(randomAccessFile));
+            long size = randomAccessFile.length();
+            if (!this.mmapLimiter.acquire(size)) {
+                return new Pair<>(Status.OK(), new PreadRandomAccessFile(filename, randomAccessFile.getChannel()));
+            }
+
+            // The mapping stays valid after the file itself is closed
+            try (java.io.RandomAccessFile file = randomAccessFile) {
+                return new Pair<>(Status.OK(), new MmapRandomAccessFile(filename, file.getChannel(), this.mmapLimiter));
+            } catch (IOException e) {
+                this.mmapLimiter.release(size);
+                throw e;
+            }
         } catch (FileNotFoundException e) {
             return new Pair<>(Status.NotFound(e.getMessage()), null);
         } catch (IOException e) {
@@ -62,6 +115,50 @@ public class DefaultEnv implements Env {
         }
     }
 
+    // O_DIRECT where the JDK and the file system support it, see DirectIO
+    @Override
+    public Pair<Status, WritableFile> newDirectWritableFile(String filename) {
+        Path path = Paths.get(filename);
+        try {
+            FileChannel channel = DirectIO.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            if (channel == null) {
+                return newWritableFile(filename);
+            }
+
+            try {
+                return new Pair<>(Status.OK(), new DirectWritableFile(channel, DirectIO.blockSize(path), this.writableFileBufferSize));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            return new Pair<>(Status.IOError(filename, e.getMessage()), null);
+        }
+    }
+
+    @Override
+    public Pair<Status, RandomAccessFile> newDirectRandomAccessFile(String filename) {
+        Path path = Paths.get(filename);
+        try {
+            FileChannel channel = DirectIO.open(path, StandardOpenOption.READ);
+            if (channel == null) {
+                return newRandomAccessFile(filename);
+            }
+
+            try {
+                return new Pair<>(Status.OK(), new DirectRandomAccessFile(filename, channel, DirectIO.blockSize(path)));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (NoSuchFileException e) {
+            return new Pair<>(Status.NotFound(filename), null);
+        } catch (IOException e) {
+            return new Pair<>(Status.IOError(filename, e.getMessage()), null);
+        }
+    }
+
     @Override
     public Pair<Status, SequentialFile> newSequentialFile(String filename) {
         try {
@@ -187,7 +284,34 @@ public class DefaultEnv implements Env {
 
     @Override
     public Future schedule(Runnable runnable) {
-        return executorService.submit(runnable);
+        return schedule(runnable, Priority.kLow);
+    }
+
+    @Override
+    public Future schedule(Runnable runnable, Priority priority) {
+        return pool(priority).submit(runnable);
+    }
+
+    @Override
+    public synchronized void incBackgroundThreadsIfNeeded(int number, Priority priority) {
+        ThreadPoolExecutor pool = pool(priority);
+        if (number > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(number);
+            pool.setCorePoolSize(number);
+        }
+    }
+
+    private ThreadPoolExecutor pool(Priority priority) {
+        switch (priority) {
+            case kHigh:
+                return highPriorityPool;
+            case kIO:
+                return ioPool;
+            case kUser:
+                return userPool;
+            default:
+                return lowPriorityPool;
+        }
     }
 
     @Override
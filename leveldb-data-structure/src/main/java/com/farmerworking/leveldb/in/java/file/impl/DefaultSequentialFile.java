@@ -23,7 +23,7 @@ public class DefaultSequentialFile implements SequentialFile {
             if (count == -1) {
                 return new Pair<>(Status.OK(), "");
             } else {
-                return new Pair<>(Status.OK(), new String(ByteUtils.toCharArray(bytes, 0, count)));
+                return new Pair<>(Status.OK(), ByteUtils.toString(bytes, 0, count));
             }
         } catch (IOException e) {
             return new Pair<>(Status.IOError(e.getMessage()), null);
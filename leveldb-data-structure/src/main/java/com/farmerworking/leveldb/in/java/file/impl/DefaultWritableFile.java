@@ -1,23 +1,55 @@
 package com.farmerworking.leveldb.in.java.file.impl;
 
 import com.farmerworking.leveldb.in.java.api.Status;
-import com.farmerworking.leveldb.in.java.common.ByteUtils;
 import com.farmerworking.leveldb.in.java.file.WritableFile;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+// Collects appends in a direct buffer and hands it to the channel only when
+// it is full or on flush(), so a log record or a block with its trailer
+// costs one write instead of one per fragment.
+//
+// sync() may be called by another thread than the one appending, the log
+// is synced in the background that way.
 public class DefaultWritableFile implements WritableFile {
-    private final FileOutputStream fileOutputStream;
+    public static final int kDefaultBufferSize = 64 * 1024;
 
-    public DefaultWritableFile(FileOutputStream fileOutputStream) {
-        this.fileOutputStream = fileOutputStream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    // staging area to turn chars into bytes in bulk before they are put
+    // into the direct buffer
+    private final byte[] scratch;
+
+    public DefaultWritableFile(FileChannel channel) {
+        this(channel, kDefaultBufferSize);
+    }
+
+    public DefaultWritableFile(FileChannel channel, int bufferSize) {
+        assert bufferSize > 0;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.scratch = new byte[Math.min(bufferSize, 8 * 1024)];
     }
 
     @Override
-    public Status append(String data) {
+    @SuppressWarnings("deprecation")
+    public synchronized Status append(String data) {
         try {
-            fileOutputStream.write(ByteUtils.toByteArray(data));
+            int offset = 0;
+            while (offset < data.length()) {
+                if (!this.buffer.hasRemaining()) {
+                    flushBuffer();
+                }
+
+                int n = Math.min(data.length() - offset, Math.min(this.buffer.remaining(), this.scratch.length));
+                // high byte of every char is 0, see ByteUtils.toString
+                data.getBytes(offset, offset + n, this.scratch, 0);
+                this.buffer.put(this.scratch, 0, n);
+                offset += n;
+            }
             return Status.OK();
         } catch (IOException e) {
             return Status.IOError(e.getMessage());
@@ -25,32 +57,80 @@ public class DefaultWritableFile implements WritableFile {
     }
 
     @Override
-    public Status close() {
+    public synchronized Status close() {
+        Status status = flush();
         try {
-            fileOutputStream.close();
+            channel.close();
+        } catch (IOException e) {
+            if (status.isOk()) {
+                status = Status.IOError(e.getMessage());
+            }
+        }
+        return status;
+    }
+
+    @Override
+    public synchronized Status flush() {
+        try {
+            flushBuffer();
             return Status.OK();
         } catch (IOException e) {
             return Status.IOError(e.getMessage());
         }
     }
 
+    // fdatasync is enough: it skips timestamps but still persists the file
+    // size, which is all a reader needs to find the appended data.
     @Override
-    public Status flush() {
+    public Status sync() {
         try {
-            fileOutputStream.flush();
+            synchronized (this) {
+                flushBuffer();
+            }
+            // appends can go on while the data is forced out
+            channel.force(false);
             return Status.OK();
         } catch (IOException e) {
             return Status.IOError(e.getMessage());
         }
     }
 
+    // The zeros are really written, a sparse file would still have its
+    // blocks allocated on the first write to them.  Readers of the log take
+    // zeros for its end.
     @Override
-    public Status sync() {
+    public Status preallocate(long size) {
         try {
-            fileOutputStream.getFD().sync();
+            long position = channel.size();
+            if (position >= size) {
+                return Status.OK();
+            }
+
+            ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(size - position, kDefaultBufferSize));
+            while (position < size) {
+                ((Buffer) zeros).clear();
+                ((Buffer) zeros).limit((int) Math.min(zeros.capacity(), size - position));
+                while (zeros.hasRemaining()) {
+                    position += channel.write(zeros, position);
+                }
+            }
+            // the new size has to be durable for syncs to skip it later
+            channel.force(true);
             return Status.OK();
         } catch (IOException e) {
             return Status.IOError(e.getMessage());
         }
     }
+
+    private void flushBuffer() throws IOException {
+        ((Buffer) this.buffer).flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                channel.write(this.buffer);
+            }
+        } finally {
+            // on error the unwritten bytes are dropped, like a failed write()
+            ((Buffer) this.buffer).clear();
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+
+// Files opened with O_DIRECT, which bypass the OS page cache.  The JDK has
+// the option since 10 as com.sun.nio.file.ExtendedOpenOption.DIRECT, along
+// with what it takes to use it (FileStore.getBlockSize and aligned buffers),
+// so all of it is looked up at runtime.  On older JDKs, and on file systems
+// that refuse O_DIRECT, open() returns null and callers use a regular file.
+//
+// Reads and writes of a direct channel must start at a multiple of the
+// block size of the file store, span a multiple of it and go through a
+// direct buffer whose address is a multiple of it.
+final class DirectIO {
+    // Buffers handed out by alignedBuffer() start at a multiple of this,
+    // which covers the block size of any common file system
+    static final int kBufferAlignment = 64 * 1024;
+
+    private static final OpenOption kDirect = lookupDirect();
+    private static final MethodHandle kGetBlockSize = lookup(FileStore.class, "getBlockSize", MethodType.methodType(long.class));
+    private static final MethodHandle kAlignedSlice = lookup(ByteBuffer.class, "alignedSlice", MethodType.methodType(ByteBuffer.class, int.class));
+
+    private DirectIO() {
+    }
+
+    static boolean isSupported() {
+        return kDirect != null && kGetBlockSize != null && kAlignedSlice != null;
+    }
+
+    // A channel on "path" opened with "options" plus O_DIRECT, or null if
+    // direct I/O is not available for it.  A missing file is still reported.
+    static FileChannel open(Path path, OpenOption... options) throws NoSuchFileException {
+        if (!isSupported()) {
+            return null;
+        }
+
+        OpenOption[] directOptions = new OpenOption[options.length + 1];
+        System.arraycopy(options, 0, directOptions, 0, options.length);
+        directOptions[options.length] = kDirect;
+        try {
+            return FileChannel.open(path, directOptions);
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    // The alignment direct I/O on "path" requires, a power of two
+    static int blockSize(Path path) throws IOException {
+        FileStore store = Files.getFileStore(path);
+        try {
+            return (int) (long) kGetBlockSize.invoke(store);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException(e);
+        }
+    }
+
+    // A cleared direct buffer of "capacity" bytes starting at a multiple of
+    // "alignment", "capacity" being a multiple of it too
+    static ByteBuffer alignedBuffer(int capacity, int alignment) {
+        assert capacity % alignment == 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity + alignment - 1);
+        try {
+            ByteBuffer slice = (ByteBuffer) kAlignedSlice.invoke(buffer, alignment);
+            ((Buffer) slice).limit(capacity);
+            return slice.slice();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static long alignDown(long value, int alignment) {
+        return value & -alignment;
+    }
+
+    static long alignUp(long value, int alignment) {
+        return alignDown(value + alignment - 1, alignment);
+    }
+
+    private static OpenOption lookupDirect() {
+        try {
+            Class<?> clazz = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            for (Object constant : clazz.getEnumConstants()) {
+                if ("DIRECT".equals(((Enum<?>) constant).name())) {
+                    return (OpenOption) constant;
+                }
+            }
+        } catch (ClassNotFoundException | RuntimeException e) {
+            // not this JDK
+        }
+        return null;
+    }
+
+    private static MethodHandle lookup(Class<?> clazz, String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(clazz, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.ByteUtils;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a file opened with O_DIRECT, see DirectIO.  Every read is widened to
+// whole blocks of the file store and goes through an aligned buffer of the
+// calling thread, the bytes asked for are then cut out of it.
+public class DirectRandomAccessFile implements RandomAccessFile {
+    // Reads of up to this many bytes, once widened, go through the buffer of
+    // the calling thread, bigger ones get a buffer of their own
+    static final int kMaxThreadBufferSize = 4 << 20;
+
+    private static final ThreadLocal<ByteBuffer> threadBuffer = new ThreadLocal<>();
+
+    private final String filename;
+    private final FileChannel channel;
+    private final int alignment;
+
+    public DirectRandomAccessFile(String filename, FileChannel channel, int alignment) {
+        assert Integer.bitCount(alignment) == 1;
+        this.filename = filename;
+        this.channel = channel;
+        this.alignment = alignment;
+    }
+
+    @Override
+    public Pair<Status, String> read(long offset, int n) {
+        long start = DirectIO.alignDown(offset, this.alignment);
+        long end = DirectIO.alignUp(offset + n, this.alignment);
+        ByteBuffer buffer = buffer((int) (end - start));
+        try {
+            while (buffer.hasRemaining()) {
+                int read = this.channel.read(buffer, start + buffer.position());
+                // a short read is the end of the file, the next one could
+                // not start at a block boundary anyway
+                if (read < 0 || buffer.position() % this.alignment != 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            return new Pair<>(Status.IOError(this.filename, e.getMessage()), null);
+        }
+
+        int from = (int) (offset - start);
+        int to = Math.max(from, Math.min(buffer.position(), from + n));
+        ((Buffer) buffer).limit(to);
+        ((Buffer) buffer).position(from);
+        return new Pair<>(Status.OK(), ByteUtils.toString(buffer));
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            // ignore, nothing can be read from the file any more anyway
+        }
+    }
+
+    // A cleared aligned buffer with room for exactly "n" bytes, "n" being a
+    // multiple of the alignment
+    private ByteBuffer buffer(int n) {
+        if (n > kMaxThreadBufferSize || this.alignment > DirectIO.kBufferAlignment) {
+            return DirectIO.alignedBuffer(n, this.alignment);
+        }
+
+        ByteBuffer buffer = threadBuffer.get();
+        if (buffer == null || buffer.capacity() < n) {
+            int capacity = (int) DirectIO.alignUp(Math.max(n, buffer == null ? 0 : buffer.capacity() * 2), DirectIO.kBufferAlignment);
+            buffer = DirectIO.alignedBuffer(Math.min(kMaxThreadBufferSize, capacity), DirectIO.kBufferAlignment);
+            threadBuffer.set(buffer);
+        }
+        ((Buffer) buffer).clear();
+        ((Buffer) buffer).limit(n);
+        return buffer;
+    }
+}
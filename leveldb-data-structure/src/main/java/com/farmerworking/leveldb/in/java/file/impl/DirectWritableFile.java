@@ -0,0 +1,142 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Writes a file opened with O_DIRECT, see DirectIO.  Appends collect in an
+// aligned buffer that is written out whole once it is full.  A last partial
+// block can only be written padded with zeros: sync() does so and keeps the
+// block in the buffer to write it again once it has grown, close() cuts the
+// padding off the file.
+//
+// flush() writes nothing, a partial block written on every flush would be
+// written over and over again.  The data appended since the last sync() is
+// only in the file once the buffer is full or the file closed.
+public class DirectWritableFile implements WritableFile {
+    private final FileChannel channel;
+    private final int alignment;
+    private final ByteBuffer buffer;
+    // staging area to turn chars into bytes in bulk before they are put
+    // into the direct buffer
+    private final byte[] scratch;
+    // Offset in the file of the first byte of the buffer, a multiple of the
+    // alignment
+    private long filePosition;
+
+    public DirectWritableFile(FileChannel channel, int alignment, int bufferSize) {
+        assert Integer.bitCount(alignment) == 1;
+        assert bufferSize > 0;
+        this.channel = channel;
+        this.alignment = alignment;
+        this.buffer = DirectIO.alignedBuffer((int) DirectIO.alignUp(bufferSize, alignment), alignment);
+        this.scratch = new byte[Math.min(this.buffer.capacity(), 8 * 1024)];
+        this.filePosition = 0;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public synchronized Status append(String data) {
+        try {
+            int offset = 0;
+            while (offset < data.length()) {
+                if (!this.buffer.hasRemaining()) {
+                    writeBuffer();
+                }
+
+                int n = Math.min(data.length() - offset, Math.min(this.buffer.remaining(), this.scratch.length));
+                // high byte of every char is 0, see ByteUtils.toString
+                data.getBytes(offset, offset + n, this.scratch, 0);
+                this.buffer.put(this.scratch, 0, n);
+                offset += n;
+            }
+            return Status.OK();
+        } catch (IOException e) {
+            return Status.IOError(e.getMessage());
+        }
+    }
+
+    @Override
+    public Status flush() {
+        return Status.OK();
+    }
+
+    @Override
+    public synchronized Status sync() {
+        try {
+            writeTail();
+            this.channel.force(false);
+            return Status.OK();
+        } catch (IOException e) {
+            return Status.IOError(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized Status close() {
+        Status status = Status.OK();
+        try {
+            long size = this.filePosition + this.buffer.position();
+            writeTail();
+            this.channel.truncate(size);
+        } catch (IOException e) {
+            status = Status.IOError(e.getMessage());
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            if (status.isOk()) {
+                status = Status.IOError(e.getMessage());
+            }
+        }
+        return status;
+    }
+
+    // Write the buffer, which is full, and start over with an empty one
+    private void writeBuffer() throws IOException {
+        ((Buffer) this.buffer).flip();
+        try {
+            write(this.buffer);
+            this.filePosition += this.buffer.capacity();
+        } finally {
+            // on error the unwritten bytes are dropped, like a failed write()
+            ((Buffer) this.buffer).clear();
+        }
+    }
+
+    // Write what is in the buffer padded to whole blocks, and keep the last
+    // partial block, if any, at the start of the buffer
+    private void writeTail() throws IOException {
+        int size = this.buffer.position();
+        if (size == 0) {
+            return;
+        }
+
+        int padded = (int) DirectIO.alignUp(size, this.alignment);
+        for (int i = size; i < padded; i++) {
+            this.buffer.put(i, (byte) 0);
+        }
+        ByteBuffer blocks = this.buffer.duplicate();
+        ((Buffer) blocks).position(0);
+        ((Buffer) blocks).limit(padded);
+        write(blocks);
+
+        int done = (int) DirectIO.alignDown(size, this.alignment);
+        ((Buffer) this.buffer).position(done);
+        ((Buffer) this.buffer).limit(size);
+        this.buffer.compact();
+        this.filePosition += done;
+    }
+
+    private void write(ByteBuffer blocks) throws IOException {
+        long position = this.filePosition;
+        while (blocks.hasRemaining()) {
+            position += this.channel.write(blocks, position);
+        }
+    }
+}
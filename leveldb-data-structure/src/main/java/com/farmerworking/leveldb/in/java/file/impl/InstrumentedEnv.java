@@ -0,0 +1,405 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.Histogram;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.FileName;
+import com.farmerworking.leveldb.in.java.file.FileType;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import com.farmerworking.leveldb.in.java.file.SequentialFile;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+import javafx.util.Pair;
+
+import java.nio.channels.FileLock;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// An Env that passes everything on to another one and keeps count of the
+// I/O done on the files of a db: the number of operations, the bytes they
+// moved and their latency in micros, per file type and operation.  Files
+// whose name is not that of a db file (see FileName.parseFileName) are not
+// counted.
+//
+// Set it as Options.env to have the counts show up in the
+// "leveldb.io-stats" property.
+public class InstrumentedEnv implements Env {
+    public enum Operation {
+        kOpen,
+        kRead,
+        kAppend,
+        kFlush,
+        kSync,
+        kDelete
+    }
+
+    // Statistics of one operation on one type of file
+    public static class IOStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final Histogram micros = new Histogram();
+
+        void add(long bytes, long micros) {
+            this.count.increment();
+            this.bytes.add(bytes);
+            this.micros.add(micros);
+        }
+
+        void clear() {
+            this.count.reset();
+            this.bytes.reset();
+            this.micros.clear();
+        }
+
+        IOStats copy() {
+            IOStats result = new IOStats();
+            result.count.add(this.count.sum());
+            result.bytes.add(this.bytes.sum());
+            result.micros.merge(this.micros);
+            return result;
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getBytes() {
+            return this.bytes.sum();
+        }
+
+        // Latency in micros
+        public Histogram getMicros() {
+            return this.micros.copy();
+        }
+    }
+
+    private final Env base;
+    // Filled in once, only the statistics in it change
+    private final Map<FileType, Map<Operation, IOStats>> stats;
+
+    public InstrumentedEnv(Env base) {
+        this.base = base;
+        this.stats = new EnumMap<>(FileType.class);
+        for (FileType type : FileType.values()) {
+            Map<Operation, IOStats> operations = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                operations.put(operation, new IOStats());
+            }
+            this.stats.put(type, operations);
+        }
+    }
+
+    // A copy of the statistics so far, with every file type and operation
+    // present
+    public Map<FileType, Map<Operation, IOStats>> snapshot() {
+        Map<FileType, Map<Operation, IOStats>> result = new EnumMap<>(FileType.class);
+        for (Map.Entry<FileType, Map<Operation, IOStats>> entry : this.stats.entrySet()) {
+            Map<Operation, IOStats> operations = new EnumMap<>(Operation.class);
+            for (Map.Entry<Operation, IOStats> operation : entry.getValue().entrySet()) {
+                operations.put(operation.getKey(), operation.getValue().copy());
+            }
+            result.put(entry.getKey(), operations);
+        }
+        return result;
+    }
+
+    public IOStats getStats(FileType type, Operation operation) {
+        return this.stats.get(type).get(operation).copy();
+    }
+
+    // Start counting from zero again
+    public void reset() {
+        for (Map<Operation, IOStats> operations : this.stats.values()) {
+            for (IOStats stats : operations.values()) {
+                stats.clear();
+            }
+        }
+    }
+
+    // One line for each file type and operation that was counted
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-16s %-8s %10s %14s %12s %12s %12s\n",
+                "Type", "Op", "Count", "Bytes", "Avg(micros)", "P50(micros)", "P99(micros)"));
+        builder.append("--------------------------------------------------------------------------------------------\n");
+        for (Map.Entry<FileType, Map<Operation, IOStats>> entry : snapshot().entrySet()) {
+            for (Map.Entry<Operation, IOStats> operation : entry.getValue().entrySet()) {
+                IOStats stats = operation.getValue();
+                if (stats.getCount() == 0) {
+                    continue;
+                }
+                Histogram micros = stats.micros;
+                builder.append(String.format("%-16s %-8s %10d %14d %12.1f %12.1f %12.1f\n",
+                        entry.getKey(), operation.getKey(), stats.getCount(), stats.getBytes(),
+                        micros.average(), micros.median(), micros.percentile(99)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private void record(FileType type, Operation operation, long bytes, long startNanos) {
+        this.stats.get(type).get(operation).add(bytes, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    // The type of a db file, null for any other file
+    private static FileType fileType(String filename) {
+        Pair<Long, FileType> pair = FileName.parseFileName(filename.substring(filename.lastIndexOf('/') + 1));
+        return pair == null ? null : pair.getValue();
+    }
+
+    private Pair<Status, WritableFile> instrument(String filename, Pair<Status, WritableFile> pair, long startNanos) {
+        FileType type = fileType(filename);
+        if (type == null) {
+            return pair;
+        }
+        record(type, Operation.kOpen, 0, startNanos);
+        if (pair.getKey().isNotOk()) {
+            return pair;
+        }
+        return new Pair<>(pair.getKey(), new InstrumentedWritableFile(type, pair.getValue()));
+    }
+
+    private Pair<Status, RandomAccessFile> instrumentRandomAccess(String filename, Pair<Status, RandomAccessFile> pair, long startNanos) {
+        FileType type = fileType(filename);
+        if (type == null) {
+            return pair;
+        }
+        record(type, Operation.kOpen, 0, startNanos);
+        if (pair.getKey().isNotOk()) {
+            return pair;
+        }
+        return new Pair<>(pair.getKey(), new InstrumentedRandomAccessFile(type, pair.getValue()));
+    }
+
+    @Override
+    public Pair<Status, WritableFile> newWritableFile(String filename) {
+        long start = System.nanoTime();
+        return instrument(filename, this.base.newWritableFile(filename), start);
+    }
+
+    @Override
+    public Pair<Status, WritableFile> newAppendableFile(String filename) {
+        long start = System.nanoTime();
+        return instrument(filename, this.base.newAppendableFile(filename), start);
+    }
+
+    @Override
+    public Pair<Status, WritableFile> reuseWritableFile(String filename, String oldFilename) {
+        long start = System.nanoTime();
+        return instrument(filename, this.base.reuseWritableFile(filename, oldFilename), start);
+    }
+
+    @Override
+    public Pair<Status, WritableFile> newDirectWritableFile(String filename) {
+        long start = System.nanoTime();
+        return instrument(filename, this.base.newDirectWritableFile(filename), start);
+    }
+
+    @Override
+    public Pair<Status, RandomAccessFile> newRandomAccessFile(String filename) {
+        long start = System.nanoTime();
+        return instrumentRandomAccess(filename, this.base.newRandomAccessFile(filename), start);
+    }
+
+    @Override
+    public Pair<Status, RandomAccessFile> newDirectRandomAccessFile(String filename) {
+        long start = System.nanoTime();
+        return instrumentRandomAccess(filename, this.base.newDirectRandomAccessFile(filename), start);
+    }
+
+    @Override
+    public Pair<Status, SequentialFile> newSequentialFile(String filename) {
+        long start = System.nanoTime();
+        Pair<Status, SequentialFile> pair = this.base.newSequentialFile(filename);
+        FileType type = fileType(filename);
+        if (type == null) {
+            return pair;
+        }
+        record(type, Operation.kOpen, 0, start);
+        if (pair.getKey().isNotOk()) {
+            return pair;
+        }
+        return new Pair<>(pair.getKey(), new InstrumentedSequentialFile(type, pair.getValue()));
+    }
+
+    @Override
+    public Pair<Status, Boolean> delete(String filename) {
+        long start = System.nanoTime();
+        Pair<Status, Boolean> pair = this.base.delete(filename);
+        FileType type = fileType(filename);
+        if (type != null) {
+            record(type, Operation.kDelete, 0, start);
+        }
+        return pair;
+    }
+
+    @Override
+    public Pair<Status, String> getTestDirectory() {
+        return this.base.getTestDirectory();
+    }
+
+    @Override
+    public boolean isFileExists(String filename) {
+        return this.base.isFileExists(filename);
+    }
+
+    @Override
+    public Pair<Status, Long> getFileSize(String filename) {
+        return this.base.getFileSize(filename);
+    }
+
+    @Override
+    public Status renameFile(String from, String to) {
+        return this.base.renameFile(from, to);
+    }
+
+    @Override
+    public Status createDir(String name) {
+        return this.base.createDir(name);
+    }
+
+    @Override
+    public Pair<Status, Options.Logger> newLogger(String logFileName) {
+        return this.base.newLogger(logFileName);
+    }
+
+    @Override
+    public Pair<Status, List<String>> getChildren(String dbname) {
+        return this.base.getChildren(dbname);
+    }
+
+    @Override
+    public Pair<Status, FileLock> lockFile(String lockFileName) {
+        return this.base.lockFile(lockFileName);
+    }
+
+    @Override
+    public Status unlockFile(String lockFileName, FileLock fileLock) {
+        return this.base.unlockFile(lockFileName, fileLock);
+    }
+
+    @Override
+    public Future schedule(Runnable runnable) {
+        return this.base.schedule(runnable);
+    }
+
+    @Override
+    public Future schedule(Runnable runnable, Priority priority) {
+        return this.base.schedule(runnable, priority);
+    }
+
+    @Override
+    public void incBackgroundThreadsIfNeeded(int number, Priority priority) {
+        this.base.incBackgroundThreadsIfNeeded(number, priority);
+    }
+
+    private class InstrumentedWritableFile implements WritableFile {
+        private final FileType type;
+        private final WritableFile file;
+
+        InstrumentedWritableFile(FileType type, WritableFile file) {
+            this.type = type;
+            this.file = file;
+        }
+
+        @Override
+        public Status append(String data) {
+            long start = System.nanoTime();
+            Status status = this.file.append(data);
+            record(this.type, Operation.kAppend, data.length(), start);
+            return status;
+        }
+
+        @Override
+        public Status flush() {
+            long start = System.nanoTime();
+            Status status = this.file.flush();
+            record(this.type, Operation.kFlush, 0, start);
+            return status;
+        }
+
+        @Override
+        public Status close() {
+            return this.file.close();
+        }
+
+        @Override
+        public Status sync() {
+            long start = System.nanoTime();
+            Status status = this.file.sync();
+            record(this.type, Operation.kSync, 0, start);
+            return status;
+        }
+
+        @Override
+        public Status preallocate(long size) {
+            return this.file.preallocate(size);
+        }
+    }
+
+    private class InstrumentedRandomAccessFile implements RandomAccessFile {
+        private final FileType type;
+        private final RandomAccessFile file;
+
+        InstrumentedRandomAccessFile(FileType type, RandomAccessFile file) {
+            this.type = type;
+            this.file = file;
+        }
+
+        @Override
+        public Pair<Status, String> read(long offset, int n) {
+            long start = System.nanoTime();
+            Pair<Status, String> result = this.file.read(offset, n);
+            record(this.type, Operation.kRead, bytes(result), start);
+            return result;
+        }
+
+        // Counted as a single read, it is one call into the file
+        @Override
+        public List<Pair<Status, String>> multiRead(List<Pair<Long, Integer>> ranges) {
+            long start = System.nanoTime();
+            List<Pair<Status, String>> result = this.file.multiRead(ranges);
+            long bytes = 0;
+            for (Pair<Status, String> pair : result) {
+                bytes += bytes(pair);
+            }
+            record(this.type, Operation.kRead, bytes, start);
+            return result;
+        }
+
+        @Override
+        public void close() {
+            this.file.close();
+        }
+    }
+
+    private class InstrumentedSequentialFile implements SequentialFile {
+        private final FileType type;
+        private final SequentialFile file;
+
+        InstrumentedSequentialFile(FileType type, SequentialFile file) {
+            this.type = type;
+            this.file = file;
+        }
+
+        @Override
+        public Pair<Status, String> read(int n) {
+            long start = System.nanoTime();
+            Pair<Status, String> result = this.file.read(n);
+            record(this.type, Operation.kRead, bytes(result), start);
+            return result;
+        }
+
+        @Override
+        public Status skip(long n) {
+            return this.file.skip(n);
+        }
+    }
+
+    private static long bytes(Pair<Status, String> result) {
+        return result.getKey().isOk() && result.getValue() != null ? result.getValue().length() : 0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Helper class to limit resource usage to avoid exhaustion.
+// Currently used to limit the bytes of table files that are memory mapped.
+public class Limiter {
+    private final long maxAcquires;
+    private final AtomicLong acquiresAllowed;
+
+    // Limit maximum usage to "maxAcquires" units
+    public Limiter(long maxAcquires) {
+        assert maxAcquires >= 0;
+        this.maxAcquires = maxAcquires;
+        this.acquiresAllowed = new AtomicLong(maxAcquires);
+    }
+
+    // If another "n" units are available, take them and return true.
+    // Else return false.
+    public boolean acquire(long n) {
+        long oldAcquiresAllowed = this.acquiresAllowed.addAndGet(-n) + n;
+        if (oldAcquiresAllowed >= n) {
+            return true;
+        }
+
+        this.acquiresAllowed.addAndGet(n);
+        return false;
+    }
+
+    // Release "n" units that were successfully acquired by acquire()
+    public void release(long n) {
+        long newAcquiresAllowed = this.acquiresAllowed.addAndGet(n);
+        assert newAcquiresAllowed <= this.maxAcquires;
+    }
+}
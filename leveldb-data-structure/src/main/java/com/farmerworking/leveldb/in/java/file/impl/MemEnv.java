@@ -0,0 +1,168 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import com.farmerworking.leveldb.in.java.file.SequentialFile;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+import javafx.util.Pair;
+
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+// An env that keeps all files in memory, for databases that do not have to
+// outlive the process and for tests.  Nothing touches the disk: files are
+// heap buffers keyed by name, directories are just names that were created
+// and sync is free.  Background work still runs on the thread pools of "base".
+public class MemEnv implements Env {
+    private static final String kTestDirectory = "/test";
+
+    private final Env base;
+    private final Map<String, MemFile> files;
+    private final Set<String> directories;
+    private final Set<String> locks;
+
+    public MemEnv(Env base) {
+        this.base = base;
+        this.files = new HashMap<>();
+        this.directories = new HashSet<>();
+        this.locks = new HashSet<>();
+    }
+
+    @Override
+    public synchronized Pair<Status, WritableFile> newWritableFile(String filename) {
+        // a file that is still open keeps reading the old contents
+        MemFile file = new MemFile();
+        this.files.put(filename, file);
+        return new Pair<>(Status.OK(), new MemWritableFile(file));
+    }
+
+    @Override
+    public synchronized Pair<Status, WritableFile> newAppendableFile(String filename) {
+        MemFile file = this.files.computeIfAbsent(filename, name -> new MemFile());
+        return new Pair<>(Status.OK(), new MemWritableFile(file));
+    }
+
+    @Override
+    public synchronized Pair<Status, RandomAccessFile> newRandomAccessFile(String filename) {
+        MemFile file = this.files.get(filename);
+        if (file == null) {
+            return new Pair<>(Status.NotFound(filename, "File not found"), null);
+        }
+        return new Pair<>(Status.OK(), new MemRandomAccessFile(filename, file));
+    }
+
+    @Override
+    public synchronized Pair<Status, SequentialFile> newSequentialFile(String filename) {
+        MemFile file = this.files.get(filename);
+        if (file == null) {
+            return new Pair<>(Status.NotFound(filename, "File not found"), null);
+        }
+        return new Pair<>(Status.OK(), new MemSequentialFile(file));
+    }
+
+    @Override
+    public synchronized Pair<Status, String> getTestDirectory() {
+        this.directories.add(kTestDirectory);
+        return new Pair<>(Status.OK(), kTestDirectory);
+    }
+
+    @Override
+    public synchronized Pair<Status, Boolean> delete(String filename) {
+        boolean deleted = this.files.remove(filename) != null;
+        deleted |= this.directories.remove(filename);
+        return new Pair<>(Status.OK(), deleted);
+    }
+
+    @Override
+    public synchronized boolean isFileExists(String filename) {
+        return this.files.containsKey(filename) || this.directories.contains(filename);
+    }
+
+    @Override
+    public synchronized Pair<Status, Long> getFileSize(String filename) {
+        MemFile file = this.files.get(filename);
+        if (file == null) {
+            return new Pair<>(Status.IOError(filename, "File not found"), null);
+        }
+        return new Pair<>(Status.OK(), file.size());
+    }
+
+    @Override
+    public synchronized Status renameFile(String from, String to) {
+        MemFile file = this.files.remove(from);
+        if (file == null) {
+            return Status.IOError(from, "File not found");
+        }
+        this.files.put(to, file);
+        return Status.OK();
+    }
+
+    @Override
+    public synchronized Status createDir(String name) {
+        this.directories.add(name);
+        return Status.OK();
+    }
+
+    @Override
+    public Pair<Status, Options.Logger> newLogger(String logFileName) {
+        // nothing to keep the log in that anybody could look at
+        return new Pair<>(Status.OK(), (msg, args) -> {});
+    }
+
+    @Override
+    public synchronized Pair<Status, List<String>> getChildren(String dbname) {
+        String prefix = dbname.endsWith("/") ? dbname : dbname + "/";
+        List<String> result = new ArrayList<>();
+        for (String filename : this.files.keySet()) {
+            if (filename.startsWith(prefix) && filename.indexOf('/', prefix.length()) < 0) {
+                result.add(filename.substring(prefix.length()));
+            }
+        }
+
+        // a directory nobody created still exists while it holds files
+        if (result.isEmpty() && !this.directories.contains(dbname)) {
+            return new Pair<>(Status.IOError(dbname), null);
+        }
+        return new Pair<>(Status.OK(), result);
+    }
+
+    @Override
+    public synchronized Pair<Status, FileLock> lockFile(String lockFileName) {
+        if (!this.locks.add(lockFileName)) {
+            return new Pair<>(Status.IOError(String.format("lock %s already held by process", lockFileName)), null);
+        }
+        this.files.putIfAbsent(lockFileName, new MemFile());
+        return new Pair<>(Status.OK(), new MemFileLock());
+    }
+
+    @Override
+    public synchronized Status unlockFile(String lockFileName, FileLock fileLock) {
+        if (this.locks.remove(lockFileName)) {
+            ((MemFileLock) fileLock).release();
+        }
+        return Status.OK();
+    }
+
+    @Override
+    public Future schedule(Runnable runnable) {
+        return this.base.schedule(runnable);
+    }
+
+    @Override
+    public Future schedule(Runnable runnable, Priority priority) {
+        return this.base.schedule(runnable, priority);
+    }
+
+    @Override
+    public void incBackgroundThreadsIfNeeded(int number, Priority priority) {
+        this.base.incBackgroundThreadsIfNeeded(number, priority);
+    }
+}
@@ -0,0 +1,57 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.common.ByteUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Contents of a file of MemEnv.  Data lives in fixed size heap blocks, so
+// appending never copies what was written before.  Open files keep their
+// MemFile even after it is deleted or replaced in the env.
+class MemFile {
+    static final int kBlockSize = 8 * 1024;
+
+    private final List<byte[]> blocks = new ArrayList<>();
+    private long size = 0;
+
+    synchronized long size() {
+        return this.size;
+    }
+
+    // Up to "n" bytes starting at "offset", fewer at the end of the file.
+    // REQUIRES: offset <= size()
+    synchronized String read(long offset, int n) {
+        assert offset <= this.size;
+        n = (int) Math.min(n, this.size - offset);
+
+        byte[] bytes = new byte[n];
+        int copied = 0;
+        while (copied < n) {
+            long position = offset + copied;
+            byte[] block = this.blocks.get((int) (position / kBlockSize));
+            int blockOffset = (int) (position % kBlockSize);
+            int length = Math.min(n - copied, kBlockSize - blockOffset);
+            System.arraycopy(block, blockOffset, bytes, copied, length);
+            copied += length;
+        }
+        return ByteUtils.toString(bytes);
+    }
+
+    @SuppressWarnings("deprecation")
+    synchronized void append(String data) {
+        int offset = 0;
+        while (offset < data.length()) {
+            int blockOffset = (int) (this.size % kBlockSize);
+            if (blockOffset == 0) {
+                this.blocks.add(new byte[kBlockSize]);
+            }
+            byte[] block = this.blocks.get(this.blocks.size() - 1);
+
+            int length = Math.min(data.length() - offset, kBlockSize - blockOffset);
+            // high byte of every char is 0, see ByteUtils.toString
+            data.getBytes(offset, offset + length, block, blockOffset);
+            offset += length;
+            this.size += length;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+
+public class MemRandomAccessFile implements RandomAccessFile {
+    private final String filename;
+    private final MemFile file;
+
+    MemRandomAccessFile(String filename, MemFile file) {
+        this.filename = filename;
+        this.file = file;
+    }
+
+    @Override
+    public Pair<Status, String> read(long offset, int n) {
+        if (offset > this.file.size()) {
+            return new Pair<>(Status.IOError(this.filename, "offset greater than file size"), null);
+        }
+        return new Pair<>(Status.OK(), this.file.read(offset, n));
+    }
+}
@@ -0,0 +1,28 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.SequentialFile;
+import javafx.util.Pair;
+
+public class MemSequentialFile implements SequentialFile {
+    private final MemFile file;
+    private long position;
+
+    MemSequentialFile(MemFile file) {
+        this.file = file;
+        this.position = 0;
+    }
+
+    @Override
+    public Pair<Status, String> read(int n) {
+        String result = this.file.read(this.position, n);
+        this.position += result.length();
+        return new Pair<>(Status.OK(), result);
+    }
+
+    @Override
+    public Status skip(long n) {
+        this.position = Math.min(this.file.size(), this.position + n);
+        return Status.OK();
+    }
+}
@@ -0,0 +1,33 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+
+public class MemWritableFile implements WritableFile {
+    private final MemFile file;
+
+    MemWritableFile(MemFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public Status append(String data) {
+        this.file.append(data);
+        return Status.OK();
+    }
+
+    @Override
+    public Status flush() {
+        return Status.OK();
+    }
+
+    @Override
+    public Status close() {
+        return Status.OK();
+    }
+
+    @Override
+    public Status sync() {
+        return Status.OK();
+    }
+}
@@ -0,0 +1,97 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.ByteUtils;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a file through read-only memory mappings.  A single mapping covers
+// at most 2GB, so larger files are mapped in chunks.  Reads only copy out of
+// the mapping and never lock, so threads reading the same table do not
+// contend.
+//
+// The mapped bytes are charged to "limiter" until close().  The mappings
+// themselves go away once they are garbage collected.
+public class MmapRandomAccessFile implements RandomAccessFile {
+    static final int kMaxChunkSize = Integer.MAX_VALUE;
+
+    private final String filename;
+    private final long length;
+    private final int chunkSize;
+    private final MappedByteBuffer[] chunks;
+    private final Limiter limiter;
+    private volatile boolean closed;
+
+    public MmapRandomAccessFile(String filename, FileChannel channel, Limiter limiter) throws IOException {
+        this(filename, channel, limiter, kMaxChunkSize);
+    }
+
+    MmapRandomAccessFile(String filename, FileChannel channel, Limiter limiter, int chunkSize) throws IOException {
+        this.filename = filename;
+        this.length = channel.size();
+        this.chunkSize = chunkSize;
+        this.limiter = limiter;
+        this.closed = false;
+
+        int chunkCount = (int) ((this.length + chunkSize - 1) / chunkSize);
+        this.chunks = new MappedByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            long position = (long) i * chunkSize;
+            this.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, this.length - position));
+        }
+    }
+
+    @Override
+    public Pair<Status, String> read(long offset, int n) {
+        if (this.closed) {
+            return new Pair<>(Status.IOError(this.filename, "file closed"), null);
+        }
+        if (offset < 0 || n < 0 || offset > this.length) {
+            return new Pair<>(Status.IOError(this.filename, "invalid read range"), null);
+        }
+        n = (int) Math.min(n, this.length - offset);
+        if (n == 0) {
+            return new Pair<>(Status.OK(), "");
+        }
+
+        int chunk = (int) (offset / this.chunkSize);
+        int position = (int) (offset % this.chunkSize);
+        if (n <= this.chunkSize - position) {
+            // Usual case, the whole block lies in one mapping
+            return new Pair<>(Status.OK(), ByteUtils.toString(slice(chunk, position, n)));
+        }
+
+        byte[] bytes = new byte[n];
+        int copied = 0;
+        while (copied < n) {
+            int size = Math.min(n - copied, this.chunkSize - position);
+            slice(chunk, position, size).get(bytes, copied, size);
+            copied += size;
+            chunk++;
+            position = 0;
+        }
+        return new Pair<>(Status.OK(), ByteUtils.toString(bytes));
+    }
+
+    // Every read works on its own view, the mapping itself is never moved
+    private ByteBuffer slice(int chunk, int position, int size) {
+        ByteBuffer buffer = this.chunks[chunk].duplicate();
+        ((Buffer) buffer).limit(position + size);
+        ((Buffer) buffer).position(position);
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.limiter.release(this.length);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.ByteUtils;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Reads a file with positional reads on a FileChannel.  Unlike seek+read
+// these do not move a shared file pointer, so any number of threads can read
+// the same file at the same time without a lock.
+public class PreadRandomAccessFile implements RandomAccessFile {
+    // Reads go through a direct buffer owned by the calling thread as long as
+    // they are not larger than this, bigger ones get a buffer of their own.
+    static final int kMaxThreadBufferSize = 1 << 20;
+    private static final int kInitialThreadBufferSize = 64 * 1024;
+
+    // Ranges of a multiRead() that are at most this far apart are fetched
+    // with one read.
+    static final int kMaxCoalesceGap = 4 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> threadBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(kInitialThreadBufferSize));
+
+    private final String filename;
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    public PreadRandomAccessFile(String filename, FileChannel channel) {
+        this.filename = filename;
+        this.channel = channel;
+        this.closed = false;
+    }
+
+    @Override
+    public Pair<Status, String> read(long offset, int n) {
+        ByteBuffer buffer = buffer(n);
+        try {
+            fill(buffer, offset);
+            return new Pair<>(Status.OK(), ByteUtils.toString(buffer));
+        } catch (IOException e) {
+            return new Pair<>(Status.IOError(this.filename, e.getMessage()), null);
+        }
+    }
+
+    // Ranges are sorted by offset and neighbouring ones are merged, so blocks
+    // that sit next to each other in the file cost a single read.
+    @Override
+    public List<Pair<Status, String>> multiRead(List<Pair<Long, Integer>> ranges) {
+        List<Integer> order = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingLong(i -> ranges.get(i).getKey()));
+
+        List<Pair<Status, String>> result = new ArrayList<>(Collections.nCopies(ranges.size(), null));
+        int i = 0;
+        while (i < order.size()) {
+            long start = ranges.get(order.get(i)).getKey();
+            long end = start + ranges.get(order.get(i)).getValue();
+
+            int j = i + 1;
+            while (j < order.size()) {
+                Pair<Long, Integer> next = ranges.get(order.get(j));
+                long nextEnd = Math.max(end, next.getKey() + next.getValue());
+                if (next.getKey() > end + kMaxCoalesceGap || nextEnd - start > kMaxThreadBufferSize) {
+                    break;
+                }
+                end = nextEnd;
+                j++;
+            }
+
+            ByteBuffer buffer = buffer((int) (end - start));
+            Status status = Status.OK();
+            try {
+                fill(buffer, start);
+            } catch (IOException e) {
+                status = Status.IOError(this.filename, e.getMessage());
+            }
+
+            for (; i < j; i++) {
+                if (status.isNotOk()) {
+                    result.set(order.get(i), new Pair<>(status, null));
+                    continue;
+                }
+
+                Pair<Long, Integer> range = ranges.get(order.get(i));
+                int from = (int) Math.min(range.getKey() - start, buffer.limit());
+                int to = (int) Math.min(from + range.getValue(), buffer.limit());
+                ByteBuffer slice = buffer.duplicate();
+                ((Buffer) slice).limit(to);
+                ((Buffer) slice).position(from);
+                result.set(order.get(i), new Pair<>(Status.OK(), ByteUtils.toString(slice)));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            // ignore, nothing can be read from the file any more anyway
+        }
+    }
+
+    // A cleared buffer with room for exactly "n" bytes
+    private static ByteBuffer buffer(int n) {
+        if (n > kMaxThreadBufferSize) {
+            return ByteBuffer.allocate(n);
+        }
+
+        ByteBuffer buffer = threadBuffer.get();
+        if (buffer.capacity() < n) {
+            buffer = ByteBuffer.allocateDirect(Math.min(kMaxThreadBufferSize, Math.max(n, buffer.capacity() * 2)));
+            threadBuffer.set(buffer);
+        }
+        ((Buffer) buffer).clear();
+        ((Buffer) buffer).limit(n);
+        return buffer;
+    }
+
+    // Read from "offset" until "buffer" is full or the file ends, then flip
+    // "buffer" so that it holds what was read.
+    private void fill(ByteBuffer buffer, long offset) throws IOException {
+        boolean retried = false;
+        boolean interrupted = false;
+        try {
+            while (buffer.hasRemaining()) {
+                int read;
+                try {
+                    read = this.channel.read(buffer, offset + buffer.position());
+                } catch (ClosedChannelException e) {
+                    // An interrupt closes the channel for every reader of
+                    // this file, not just the interrupted one.  Reopen it
+                    // once and keep the interrupt for the caller.
+                    if (retried || this.closed) {
+                        throw e;
+                    }
+                    interrupted |= Thread.interrupted();
+                    reopen();
+                    retried = true;
+                    continue;
+                }
+
+                if (read < 0) {
+                    break;
+                }
+            }
+            ((Buffer) buffer).flip();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void reopen() throws IOException {
+        if (!this.channel.isOpen() && !this.closed) {
+            this.channel = FileChannel.open(Paths.get(this.filename), StandardOpenOption.READ);
+        }
+    }
+}
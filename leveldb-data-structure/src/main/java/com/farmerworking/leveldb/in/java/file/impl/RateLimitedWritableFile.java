@@ -0,0 +1,47 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.RateLimiter;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+
+// Writable file whose appends wait for the rate limiter first
+public class RateLimitedWritableFile implements WritableFile {
+    private final WritableFile file;
+    private final RateLimiter rateLimiter;
+
+    public RateLimitedWritableFile(WritableFile file, RateLimiter rateLimiter) {
+        this.file = file;
+        this.rateLimiter = rateLimiter;
+    }
+
+    // "file" itself if there is no limit
+    public static WritableFile wrap(WritableFile file, RateLimiter rateLimiter) {
+        return rateLimiter == null ? file : new RateLimitedWritableFile(file, rateLimiter);
+    }
+
+    @Override
+    public Status append(String data) {
+        this.rateLimiter.request(data.length());
+        return this.file.append(data);
+    }
+
+    @Override
+    public Status close() {
+        return this.file.close();
+    }
+
+    @Override
+    public Status flush() {
+        return this.file.flush();
+    }
+
+    @Override
+    public Status sync() {
+        return this.file.sync();
+    }
+
+    @Override
+    public Status preallocate(long size) {
+        return this.file.preallocate(size);
+    }
+}
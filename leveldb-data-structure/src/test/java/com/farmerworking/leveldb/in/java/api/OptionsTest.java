@@ -3,6 +3,7 @@ package com.farmerworking.leveldb.in.java.api;
 import com.farmerworking.leveldb.in.java.data.structure.cache.ShardedLRUCache;
 import com.farmerworking.leveldb.in.java.data.structure.filter.BloomFilterPolicy;
 import com.farmerworking.leveldb.in.java.data.structure.harness.ReverseKeyComparator;
+import com.farmerworking.leveldb.in.java.data.structure.memory.VectorMemtableFactory;
 import com.farmerworking.leveldb.in.java.file.Env;
 import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
 import com.farmerworking.leveldb.in.java.file.SequentialFile;
@@ -37,7 +38,25 @@ public class OptionsTest {
         src.setInfoLog(new LogImpl("/tmp/abc"));
         src.setReuseLogs(true);
         src.setWriteBufferSize(888);
+        src.setMaxWriteBufferNumber(4);
+        src.setWriteBufferManager(new WriteBufferManager(1 << 20));
         src.setMaxOpenFiles(999);
+        src.setAllowConcurrentMemtableWrite(true);
+        src.setEnablePipelinedWrite(true);
+        src.setMaxBackgroundCompactions(4);
+        src.setMaxBackgroundFlushes(1);
+        src.setMaxSubcompactions(4);
+        src.setDelayedWriteRate(1024);
+        src.setSoftPendingCompactionBytesLimit(2048);
+        src.setHardPendingCompactionBytesLimit(4096);
+        src.setCompactionReadaheadSize(8192);
+        src.setUseDirectIOForFlushAndCompaction(true);
+        src.setMemtableFactory(new VectorMemtableFactory());
+        src.setMemtableBloomSizeRatio(0.1);
+        src.setRateLimiter(new RateLimiter(1024));
+        src.setWalSyncPeriodMillis(100);
+        src.setWalBytesPerSync(1 << 20);
+        src.setRecycleLogFileNum(2);
 
 
         Options dst = new Options(src);
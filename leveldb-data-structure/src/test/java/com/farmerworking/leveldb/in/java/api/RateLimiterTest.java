@@ -0,0 +1,116 @@
+package com.farmerworking.leveldb.in.java.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+    // Limiter on a fake clock that moves forward by however long it sleeps
+    static class FakeClockRateLimiter extends RateLimiter {
+        long now;
+        long slept;
+
+        FakeClockRateLimiter(long bytesPerSecond, boolean autoTuned) {
+            super(bytesPerSecond, autoTuned);
+        }
+
+        @Override
+        long nowMicros() {
+            return now;
+        }
+
+        @Override
+        void sleepMicros(long micros) {
+            slept += micros;
+            now += micros;
+        }
+    }
+
+    @Test
+    public void testRequest() {
+        // 100 bytes per refill period
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter(1000, false);
+
+        // no credit yet, one byte per millisecond
+        limiter.request(50);
+        assertEquals(50 * 1000, limiter.slept);
+        assertEquals(50, limiter.getThrottledBytes());
+
+        // idle time pays for the next request, but at most one period's worth
+        limiter.now += 10 * RateLimiter.kMicrosPerSecond;
+        limiter.slept = 0;
+        limiter.request(100);
+        assertEquals(0, limiter.slept);
+        limiter.request(100);
+        assertEquals(100 * 1000, limiter.slept);
+
+        // large requests are split into periods
+        long requests = limiter.getTotalRequests();
+        limiter.slept = 0;
+        limiter.request(1000);
+        assertEquals(requests + 10, limiter.getTotalRequests());
+        assertEquals(RateLimiter.kMicrosPerSecond, limiter.slept);
+
+        assertEquals(1250, limiter.getTotalBytes());
+        assertEquals(1150, limiter.getThrottledBytes());
+        assertEquals(limiter.getThrottledMicros(), 50 * 1000 + 100 * 1000 + RateLimiter.kMicrosPerSecond);
+    }
+
+    @Test
+    public void testFractionalRefill() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter(1000, false);
+        limiter.request(100);
+
+        // a byte takes 1000 micros, the micros in between still add up
+        limiter.slept = 0;
+        for (int i = 0; i < 10; i++) {
+            limiter.now += 500;
+            limiter.request(0);
+        }
+        limiter.request(5);
+        assertEquals(0, limiter.slept);
+    }
+
+    @Test
+    public void testAutoTune() {
+        FakeClockRateLimiter limiter = new FakeClockRateLimiter(20000, true);
+        assertTrue(limiter.isAutoTuned());
+        assertEquals(20000, limiter.getMaxBytesPerSecond());
+        assertEquals(20000 / RateLimiter.kAutoTuneRatio, limiter.getBytesPerSecond());
+
+        limiter.setPressure(0.5);
+        assertEquals(10500, limiter.getBytesPerSecond());
+
+        limiter.setPressure(2);
+        assertEquals(20000, limiter.getBytesPerSecond());
+
+        limiter.setPressure(-1);
+        assertEquals(1000, limiter.getBytesPerSecond());
+
+        // a fixed limiter ignores the pressure
+        RateLimiter fixed = new FakeClockRateLimiter(20000, false);
+        fixed.setPressure(0);
+        assertEquals(20000, fixed.getBytesPerSecond());
+        fixed.setBytesPerSecond(5000);
+        assertEquals(5000, fixed.getBytesPerSecond());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws InterruptedException {
+        // 1KB per period of 100ms, the three writers have to take turns
+        RateLimiter limiter = new RateLimiter(10 * 1024);
+        Thread[] threads = new Thread[3];
+        long start = System.nanoTime();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> limiter.request(1024));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+        assertTrue(elapsedMicros >= 2 * RateLimiter.kRefillPeriodMicros);
+        assertEquals(3 * 1024, limiter.getTotalBytes());
+    }
+}
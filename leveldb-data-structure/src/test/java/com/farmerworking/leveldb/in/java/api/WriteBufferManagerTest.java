@@ -0,0 +1,124 @@
+package com.farmerworking.leveldb.in.java.api;
+
+import com.farmerworking.leveldb.in.java.data.structure.cache.ShardedLRUCache;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WriteBufferManagerTest {
+    static class CountingSwitch implements Runnable {
+        AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        WriteBufferManager manager = new WriteBufferManager(1000);
+        WriteBufferManager.Client a = manager.register(new CountingSwitch());
+        WriteBufferManager.Client b = manager.register(new CountingSwitch());
+
+        assertFalse(a.reportUsage(100, 300));
+        assertFalse(b.reportUsage(50, 50));
+        assertEquals(350, manager.memoryUsage());
+        assertEquals(150, manager.mutableMemoryUsage());
+
+        // a report replaces the previous one of the same db
+        assertFalse(a.reportUsage(10, 10));
+        assertEquals(60, manager.memoryUsage());
+        assertEquals(60, manager.mutableMemoryUsage());
+
+        b.close();
+        assertEquals(10, manager.memoryUsage());
+        assertFalse(b.reportUsage(500, 500));
+        assertEquals(10, manager.memoryUsage());
+    }
+
+    @Test
+    public void testSwitchLargest() {
+        WriteBufferManager manager = new WriteBufferManager(1000);
+        CountingSwitch switchA = new CountingSwitch();
+        CountingSwitch switchB = new CountingSwitch();
+        WriteBufferManager.Client a = manager.register(switchA);
+        WriteBufferManager.Client b = manager.register(switchB);
+
+        assertFalse(a.reportUsage(400, 400));
+        assertFalse(b.reportUsage(300, 300));
+
+        // over budget, but mostly in memtables being flushed already
+        assertFalse(b.reportUsage(50, 700));
+        assertEquals(0, switchA.count.get() + switchB.count.get());
+
+        // over budget with half of it mutable: the largest switches, through
+        // its callback if it is another db
+        assertFalse(b.reportUsage(100, 700));
+        assertEquals(1, switchA.count.get());
+        assertFalse(a.reportUsage(200, 400));
+        assertTrue(b.reportUsage(350, 700));
+        assertEquals(0, switchB.count.get());
+        assertFalse(a.reportUsage(300, 400));
+        assertEquals(1, switchB.count.get());
+        assertEquals(1, switchA.count.get());
+
+        // mutable memtables alone may not take more than 7/8 of the budget
+        assertFalse(b.reportUsage(0, 0));
+        assertFalse(a.reportUsage(875, 875));
+        assertTrue(a.reportUsage(876, 876));
+    }
+
+    @Test
+    public void testUnlimited() {
+        WriteBufferManager manager = new WriteBufferManager(0);
+        WriteBufferManager.Client a = manager.register(new CountingSwitch());
+        assertFalse(a.reportUsage(1 << 30, 1 << 30));
+        assertEquals(1 << 30, manager.memoryUsage());
+    }
+
+    @Test
+    public void testCacheCharge() {
+        Cache<String> cache = new ShardedLRUCache<>(64 * WriteBufferManager.kDummyEntrySize);
+        WriteBufferManager manager = new WriteBufferManager(0, cache);
+        WriteBufferManager.Client a = manager.register(new CountingSwitch());
+        WriteBufferManager.Client b = manager.register(new CountingSwitch());
+
+        a.reportUsage(1, 1);
+        assertEquals(1, manager.dummyEntryCount());
+        assertEquals(WriteBufferManager.kDummyEntrySize, cache.totalCharge());
+
+        b.reportUsage(0, 3 * WriteBufferManager.kDummyEntrySize);
+        assertEquals(4, manager.dummyEntryCount());
+        assertEquals(4 * WriteBufferManager.kDummyEntrySize, cache.totalCharge());
+
+        // one entry too many is kept around
+        a.reportUsage(0, 0);
+        assertEquals(4, manager.dummyEntryCount());
+        b.reportUsage(0, WriteBufferManager.kDummyEntrySize);
+        assertEquals(2, manager.dummyEntryCount());
+        assertEquals(2 * WriteBufferManager.kDummyEntrySize, cache.totalCharge());
+
+        b.close();
+        a.close();
+        assertEquals(0, manager.dummyEntryCount());
+        assertEquals(0, cache.totalCharge());
+    }
+
+    @Test
+    public void testCacheChargeEvictsBlocks() {
+        Cache<String> cache = new ShardedLRUCache<>(64 * WriteBufferManager.kDummyEntrySize);
+        for (int i = 0; i < 64; i++) {
+            cache.release(cache.insert("block" + i, "", WriteBufferManager.kDummyEntrySize / 2, null));
+        }
+
+        WriteBufferManager manager = new WriteBufferManager(0, cache);
+        WriteBufferManager.Client a = manager.register(new CountingSwitch());
+        a.reportUsage(0, 48L * WriteBufferManager.kDummyEntrySize);
+        // blocks were evicted to make room
+        assertTrue(cache.totalCharge() < 80 * WriteBufferManager.kDummyEntrySize);
+        assertEquals(48, manager.dummyEntryCount());
+    }
+}
@@ -12,4 +12,16 @@ public class ByteUtilsTest {
         char[] newChars = ByteUtils.toCharArray(bytes, 0, bytes.length);
         assertArrayEquals(chars, newChars);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStringByteArrayConvert() {
+        byte[] bytes = {0, (byte) 255, 1, 2, 3, 126, 127, (byte) 128};
+        String s = ByteUtils.toString(bytes);
+        assertEquals(bytes.length, s.length());
+        assertEquals(255, s.charAt(1));
+        assertEquals(128, s.charAt(7));
+        assertArrayEquals(bytes, ByteUtils.toByteArray(s));
+        assertArrayEquals(new byte[]{1, 2}, ByteUtils.toByteArray(ByteUtils.toString(bytes, 2, 2)));
+        assertEquals(s, ByteUtils.toString(java.nio.ByteBuffer.wrap(bytes)));
+    }
+}
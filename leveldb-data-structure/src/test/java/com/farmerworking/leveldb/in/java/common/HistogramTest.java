@@ -0,0 +1,68 @@
+package com.farmerworking.leveldb.in.java.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.min(), 0);
+        assertEquals(0, histogram.max(), 0);
+        assertEquals(0, histogram.average(), 0);
+        assertEquals(0, histogram.standardDeviation(), 0);
+        assertTrue(histogram.toString().startsWith("Count: 0  Average: 0.0000"));
+    }
+
+    @Test
+    public void testAdd() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.add(i);
+        }
+
+        assertEquals(100, histogram.count());
+        assertEquals(1, histogram.min(), 0);
+        assertEquals(100, histogram.max(), 0);
+        assertEquals(50.5, histogram.average(), 1e-9);
+        assertEquals(28.866, histogram.standardDeviation(), 1e-3);
+
+        // percentiles are only as exact as the buckets
+        assertEquals(50, histogram.median(), 5);
+        assertEquals(99, histogram.percentile(99), 5);
+        assertEquals(100, histogram.percentile(100), 0);
+    }
+
+    @Test
+    public void testLargeValues() {
+        Histogram histogram = new Histogram();
+        histogram.add(0);
+        histogram.add(1e15);
+        assertEquals(2, histogram.count());
+        assertEquals(1e15, histogram.max(), 0);
+        // beyond the last bucket the percentile stops at its limit
+        assertEquals(1e12, histogram.percentile(100), 0);
+    }
+
+    @Test
+    public void testMergeAndClear() {
+        Histogram a = new Histogram();
+        Histogram b = new Histogram();
+        a.add(1);
+        a.add(2);
+        b.add(1000);
+
+        a.merge(b);
+        assertEquals(3, a.count());
+        assertEquals(1, a.min(), 0);
+        assertEquals(1000, a.max(), 0);
+        assertEquals(1, b.count());
+
+        Histogram copy = a.copy();
+        a.clear();
+        assertEquals(0, a.count());
+        assertEquals(3, copy.count());
+    }
+}
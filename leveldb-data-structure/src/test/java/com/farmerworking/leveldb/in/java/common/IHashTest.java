@@ -36,4 +36,15 @@ public abstract class IHashTest {
         assertEquals(hash.hash(data4, 0xbc9f1d34), 0xed21633a);
         assertEquals(hash.hash(data5, 0x12345678), 0xf333dabb);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRange() {
+        char[] data = "xxhello world, hello hashyy".toCharArray();
+        IHash hash = getImpl();
+        for (int length = 0; length <= data.length - 4; length++) {
+            char[] copy = new char[length];
+            System.arraycopy(data, 2, copy, 0, length);
+            assertEquals(hash.hash(copy, 0xbc9f1d34), hash.hash(data, 2, length, 0xbc9f1d34));
+        }
+    }
+}
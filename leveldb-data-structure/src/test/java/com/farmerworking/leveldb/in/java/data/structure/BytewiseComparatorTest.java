@@ -1,6 +1,7 @@
 package com.farmerworking.leveldb.in.java.data.structure;
 
 import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
+import com.farmerworking.leveldb.in.java.data.structure.harness.ReverseKeyComparator;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -14,6 +15,32 @@ public class BytewiseComparatorTest {
         assertTrue(comparator.compare(new char[]{BytewiseComparator.UNSIGNED_CHAR_MAX_VALUE}, new char[]{BytewiseComparator.UNSIGNED_CHAR_MIN_VALUE}) > 0);
     }
 
+    @Test
+    public void testCompareRange() throws Exception {
+        BytewiseComparator comparator = new BytewiseComparator();
+        char[] a = "xxabcyy".toCharArray();
+        char[] b = "abcd".toCharArray();
+        assertEquals(0, comparator.compare(a, 2, 3, b, 0, 3));
+        assertTrue(comparator.compare(a, 2, 3, b, 0, 4) < 0);
+        assertTrue(comparator.compare(a, 2, 4, b, 0, 4) > 0);
+        assertTrue(comparator.compare(a, 0, 1, b, 0, 1) > 0);
+        assertEquals(0, comparator.compare(a, 3, 0, b, 1, 0));
+
+        // as the default of Comparator, which compares copies
+        com.farmerworking.leveldb.in.java.api.Comparator copying = new ReverseKeyComparator() {
+            @Override
+            public int compare(char[] x, char[] y) {
+                return comparator.compare(x, y);
+            }
+        };
+        for (int aLength = 0; aLength <= 5; aLength++) {
+            for (int bLength = 0; bLength <= 4; bLength++) {
+                assertEquals(Integer.signum(copying.compare(a, 2, aLength, b, 0, bLength)),
+                        Integer.signum(comparator.compare(a, 2, aLength, b, 0, bLength)));
+            }
+        }
+    }
+
     @Test
     public void testFindShortSuccessor() throws Exception {
         BytewiseComparator comparator = new BytewiseComparator();
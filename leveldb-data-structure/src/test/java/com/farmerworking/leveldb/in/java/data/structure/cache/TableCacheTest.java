@@ -59,6 +59,7 @@ public class TableCacheTest {
 
         Status status = builder.finish();
         assertTrue(status.isOk());
+        assertTrue(filePair.getValue().close().isOk());
 
         // table cache
         tableCache = new TableCache(dbname, options, 1024);
@@ -233,6 +234,7 @@ public class TableCacheTest {
 
         Status status = builder.finish();
         assertTrue(status.isOk());
+        assertTrue(filePair.getValue().close().isOk());
 
         TableCache tableCache = new TableCache(dbname, options, 1024);
         GetSaver saver = new GetSaver(userKey, userComparator);
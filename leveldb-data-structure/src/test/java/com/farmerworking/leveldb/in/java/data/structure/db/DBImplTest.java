@@ -35,9 +35,11 @@ import org.mockito.stubbing.Answer;
 import java.io.IOException;
 import java.nio.channels.FileLock;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
@@ -150,12 +152,12 @@ public class DBImplTest {
         assertFalse(db.getShuttingDown().get());
         assertNotNull(db.getBgCondition());
         assertNull(db.getMemtable());
-        assertNull(db.getImmutableMemtable());
+        assertTrue(db.getImmutableMemtables().isEmpty());
         assertNull(db.getLogFile());
         assertEquals(0, db.getLogFileNumber());
         assertNull(db.getLog());
         assertEquals(0, db.getSeed());
-        assertFalse(db.isBgCompactionScheduled());
+        assertEquals(0, db.getBgCompactionScheduled());
         assertNull(db.getManualCompaction());
         assertNotNull(db.getHasImmutableMemtable());
         assertFalse(db.getHasImmutableMemtable().get());
@@ -289,11 +291,12 @@ public class DBImplTest {
         assertTrue(db.getPendingOutputs().isEmpty());
 
         db.getMutex().lock();
-        Status status = db.writeLevel0Table(memtable, edit, version);
+        Status status = db.writeLevel0Table(Collections.singletonList(memtable), edit, version);
         assertTrue(status.isOk());
 
-        // pending outputs
-        assertTrue(db.getPendingOutputs().isEmpty());
+        // pending outputs, a flushed table stays pending until
+        // compactMemtable applied the edit
+        assertEquals(version == null, db.getPendingOutputs().isEmpty());
 
         // lock
         assertTrue(db.getMutex().isHeldByCurrentThread());
@@ -354,7 +357,7 @@ public class DBImplTest {
         doReturn(Status.Corruption("force build table error")).when(db.getBuilder()).buildTable(anyString(), any(), any(), any(), any(), any());
         VersionEdit edit = new VersionEdit();
         long before = db.getStats()[0].getBytesWritten();
-        Status status = db.writeLevel0Table(new Memtable(db.getInternalKeyComparator()), edit, null);
+        Status status = db.writeLevel0Table(Collections.singletonList(new Memtable(db.getInternalKeyComparator())), edit, null);
 
         assertTrue(status.isNotOk());
         assertEquals("force build table error", status.getMessage());
@@ -362,7 +365,7 @@ public class DBImplTest {
         assertEquals(before, db.getStats()[0].getBytesWritten());
 
         doReturn(Status.OK()).when(db.getBuilder()).buildTable(anyString(), any(), any(), any(), any(), any());
-        status = db.writeLevel0Table(new Memtable(db.getInternalKeyComparator()), edit, null);
+        status = db.writeLevel0Table(Collections.singletonList(new Memtable(db.getInternalKeyComparator())), edit, null);
         assertTrue(status.isOk());
         assertTrue(edit.getNewFiles().isEmpty());
         assertEquals(before, db.getStats()[0].getBytesWritten());
@@ -414,7 +417,7 @@ public class DBImplTest {
         doReturn(Status.OK()).when(mockReader).getStatus();
         doReturn(mock(Memtable.class)).when(mockReader).getMemtable();
         doReturn(mockReader).when(mockReader).invoke();
-        doReturn(mockReader).when(spyDB).getLog2MemtableReader(any(), anyString(), any());
+        doReturn(mockReader).when(spyDB).getLog2MemtableReader(any(), anyString(), any(), anyLong());
 
         RecoverLogFileResult result = spyDB.recoverLogFile(5L, true, null);
         assertEquals("force write level0 table error", result.getStatus().getMessage());
@@ -438,7 +441,7 @@ public class DBImplTest {
                 doReturn(new Pair<>(true, String.valueOf(batch.encode()))).doReturn(new Pair<>(false, null)).when(spyReader).readLogRecord(any());
                 return spyReader;
             }
-        }).when(spyDB).getLog2MemtableReader(any(), anyString(), any());
+        }).when(spyDB).getLog2MemtableReader(any(), anyString(), any(), anyLong());
 
         VersionEdit edit = new VersionEdit();
         RecoverLogFileResult result = spyDB.recoverLogFile(5L, true, edit);
@@ -469,7 +472,7 @@ public class DBImplTest {
                 doReturn(new Pair<>(true, String.valueOf(batch.encode()))).doReturn(new Pair<>(false, null)).when(spyReader).readLogRecord(any());
                 return spyReader;
             }
-        }).when(spyDB).getLog2MemtableReader(any(), anyString(), any());
+        }).when(spyDB).getLog2MemtableReader(any(), anyString(), any(), anyLong());
         spyDB.getOptions().setReuseLogs(true);
 
         VersionEdit edit = new VersionEdit();
@@ -493,6 +496,36 @@ public class DBImplTest {
 
         db.getOptions().setReuseLogs(true);
         assertTrue(db.shouldReuseLog(Status.OK(), true, 0));
+
+        db.getOptions().setRecycleLogFileNum(1);
+        assertFalse(db.shouldReuseLog(Status.OK(), true, 0));
+    }
+
+    @Test
+    public void testPreallocateLog() {
+        db.getOptions().setRecycleLogFileNum(2);
+        db.getMutex().lock();
+        long number = 0;
+        try {
+            // made ready in the background once there is no log to recycle
+            db.maybePreallocateLog();
+            number = db.getPreallocatingLogNumber();
+            assertNotEquals(0, number);
+            db.maybePreallocateLog();
+            assertEquals(number, db.getPreallocatingLogNumber());
+
+            while (db.getPreallocatingLogNumber() != 0) {
+                db.getBgCondition().awaitUninterruptibly();
+            }
+            assertEquals(Lists.newArrayList(number), new ArrayList<>(db.getLogsToRecycle()));
+            assertEquals(db.logPreallocateSize(), options.getEnv().getFileSize(FileName.logFileName(dbname, number)).getValue().longValue());
+
+            db.maybePreallocateLog();
+            assertEquals(0, db.getPreallocatingLogNumber());
+        } finally {
+            db.getMutex().unlock();
+            options.getEnv().delete(FileName.logFileName(dbname, number));
+        }
     }
 
     @Test(expected = AssertionError.class)
@@ -519,7 +552,7 @@ public class DBImplTest {
         doReturn(new Pair<>(Status.Corruption(""), null)).when(spyDB).getFileSize(anyString());
 
         Memtable memtable = mock(Memtable.class);
-        Memtable result = spyDB.reuseLog(0L, "", memtable);
+        IMemtable result = spyDB.reuseLog(0L, "", memtable);
 
         assertSame(result, memtable);
         assertNull(spyDB.getLogFile());
@@ -533,7 +566,7 @@ public class DBImplTest {
         doReturn(new Pair<>(Status.Corruption(""), null)).when(spyDB).getAppendableFile(anyString());
 
         Memtable memtable = mock(Memtable.class);
-        Memtable result = spyDB.reuseLog(0L, "", memtable);
+        IMemtable result = spyDB.reuseLog(0L, "", memtable);
 
         assertSame(result, memtable);
         assertNull(spyDB.getLogFile());
@@ -549,7 +582,7 @@ public class DBImplTest {
         options.getEnv().newWritableFile(filename);
 
         Memtable memtable = mock(Memtable.class);
-        Memtable result = db.reuseLog(logFileNumber, filename, memtable);
+        IMemtable result = db.reuseLog(logFileNumber, filename, memtable);
 
         assertNull(result);
         assertNotNull(db.getLog());
@@ -565,7 +598,7 @@ public class DBImplTest {
         String filename = FileName.logFileName(dbname, logFileNumber);
         options.getEnv().newWritableFile(filename);
 
-        Memtable result = db.reuseLog(logFileNumber, filename, null);
+        IMemtable result = db.reuseLog(logFileNumber, filename, null);
 
         assertNull(result);
         assertNotNull(db.getLog());
@@ -1156,13 +1189,13 @@ public class DBImplTest {
 
         assertFalse(spyDB.maybeScheduleCompaction());
 
-        spyDB.setImmutableMemtable(new Memtable(spyDB.getInternalKeyComparator()));
+        spyDB.getImmutableMemtables().add(new Memtable(spyDB.getInternalKeyComparator()), 0, 0);
         assertTrue(spyDB.maybeScheduleCompaction());
-        assertTrue(spyDB.isBgCompactionScheduled());
+        assertEquals(1, spyDB.getBgCompactionScheduled());
 
-        spyDB.setBgCompactionScheduled(true);
+        spyDB.setBgCompactionScheduled(1);
         assertFalse(spyDB.maybeScheduleCompaction());
-        spyDB.setBgCompactionScheduled(false);
+        spyDB.setBgCompactionScheduled(0);
 
         spyDB.getShuttingDown().set(true);
         assertFalse(spyDB.maybeScheduleCompaction());
@@ -1173,7 +1206,7 @@ public class DBImplTest {
         spyDB.setBgError(Status.OK());
 
         assertTrue(spyDB.maybeScheduleCompaction());
-        assertTrue(spyDB.isBgCompactionScheduled());
+        assertEquals(1, spyDB.getBgCompactionScheduled());
     }
 
     @Test(expected = AssertionError.class)
@@ -1184,14 +1217,14 @@ public class DBImplTest {
     @Test(expected = AssertionError.class)
     public void testCompactMemtableWithoutImmemtable() {
         db.getMutex().lock();
-        assertNull(db.getImmutableMemtable());
+        assertTrue(db.getImmutableMemtables().isEmpty());
         db.compactMemtable();
     }
 
     @Test
     public void testCompactMemtableExceptionCase() {
         spyDB.getMutex().lock();
-        spyDB.setImmutableMemtable(new Memtable(spyDB.getInternalKeyComparator()));
+        spyDB.getImmutableMemtables().add(new Memtable(spyDB.getInternalKeyComparator()), 0, 0);
 
         doReturn(Status.IOError("force write level 0 table error")).when(spyDB).writeLevel0Table(any(), any(), any());
 
@@ -1218,8 +1251,9 @@ public class DBImplTest {
         db.getOptions().setCreateIfMissing(true);
         db.recover(new VersionEdit());
 
-        db.setImmutableMemtable(new Memtable(db.getInternalKeyComparator()));
-        db.getImmutableMemtable().add(10L, ValueType.kTypeValue, TestUtils.randomKey(5), TestUtils.randomString(6));
+        IMemtable memtable = new Memtable(db.getInternalKeyComparator());
+        memtable.add(10L, ValueType.kTypeValue, TestUtils.randomKey(5), TestUtils.randomString(6));
+        db.getImmutableMemtables().add(memtable, 10L, 10L);
         db.getVersions().setNextFileNumber(12);
 
         String log8 = FileName.logFileName(dbname, 8);
@@ -1239,7 +1273,7 @@ public class DBImplTest {
         assertNotEquals(before, after);
         assertEquals(beforeTableCount + 1, db.getVersions().getLiveFiles().size());
         assertEquals(10, db.getVersions().getLogNumber());
-        assertNull(db.getImmutableMemtable());
+        assertTrue(db.getImmutableMemtables().isEmpty());
         assertFalse(db.getHasImmutableMemtable().get());
         assertFalse(options.getEnv().isFileExists(log8));
         assertFalse(options.getEnv().isFileExists(log9));
@@ -1247,19 +1281,19 @@ public class DBImplTest {
 
     @Test(expected = AssertionError.class)
     public void testBackgroundCall1() {
-        db.setBgCompactionScheduled(false);
+        db.setBgCompactionScheduled(0);
         db.backgroundCall();
     }
 
     @Test
     public void testBackgroundCall2() {
-        db.setBgCompactionScheduled(true);
+        db.setBgCompactionScheduled(1);
 
         db.getShuttingDown().set(true);
         assertFalse(db.backgroundCall());
         db.getShuttingDown().set(false);
 
-        db.setBgCompactionScheduled(true);
+        db.setBgCompactionScheduled(1);
         db.setBgError(Status.IOError(""));
         assertFalse(db.backgroundCall());
         db.setBgError(Status.OK());
@@ -1267,7 +1301,7 @@ public class DBImplTest {
 
     @Test
     public void testBackgroundCall3() throws InterruptedException {
-        spyDB.setBgCompactionScheduled(true);
+        spyDB.setBgCompactionScheduled(1);
 
         AtomicBoolean signal = new AtomicBoolean(false);
         AtomicBoolean goon = new AtomicBoolean(false);
@@ -1292,7 +1326,7 @@ public class DBImplTest {
 
         assertTrue(spyDB.backgroundCall());
         Thread.sleep(200);
-        assertFalse(spyDB.isBgCompactionScheduled());
+        assertEquals(0, spyDB.getBgCompactionScheduled());
         assertTrue(signal.get());
         verify(spyDB, times(1)).maybeScheduleCompaction();
         verify(spyDB, times(1)).backgroundCompaction();
@@ -1644,7 +1678,7 @@ public class DBImplTest {
         assertEquals(0, cost);
 
         spyDB.getHasImmutableMemtable().set(true);
-        spyDB.setImmutableMemtable(mock(IMemtable.class));
+        spyDB.getImmutableMemtables().add(mock(IMemtable.class), 0, 0);
         AtomicBoolean signal = new AtomicBoolean(false);
         AtomicBoolean goon = new AtomicBoolean(false);
         doAnswer(new Answer() {
@@ -1811,6 +1845,114 @@ public class DBImplTest {
         assertEquals(new InternalKey("d", 6L), compact.getOutputs().get(2).getLargest());
     }
 
+    @Test
+    public void testSubcompactionBoundaries() {
+        Compaction compaction = new Compaction(options, 0);
+        compaction.getInputs()[0].add(new FileMetaData(1L, 100L, new InternalKey("a", 1L), new InternalKey("c", 1L)));
+        compaction.getInputs()[0].add(new FileMetaData(2L, 100L, new InternalKey("b", 1L), new InternalKey("f", 1L)));
+        compaction.getInputs()[1].add(new FileMetaData(3L, 100L, new InternalKey("d", 1L), new InternalKey("h", 1L)));
+        compaction.getInputs()[1].add(new FileMetaData(4L, 100L, new InternalKey("i", 1L), new InternalKey("k", 1L)));
+
+        // disabled by default
+        assertTrue(db.subcompactionBoundaries(compaction).isEmpty());
+
+        db.getOptions().setMaxSubcompactions(2);
+        assertEquals(Lists.newArrayList("f"), db.subcompactionBoundaries(compaction));
+
+        db.getOptions().setMaxSubcompactions(4);
+        assertEquals(Lists.newArrayList("c", "f", "h"), db.subcompactionBoundaries(compaction));
+
+        // never more shards than input files
+        db.getOptions().setMaxSubcompactions(10);
+        assertEquals(Lists.newArrayList("c", "f", "h"), db.subcompactionBoundaries(compaction));
+
+        // only level-0 and manual compactions are split
+        Compaction level1 = new Compaction(options, 1);
+        level1.getInputs()[0].addAll(compaction.getInputs()[0]);
+        level1.getInputs()[1].addAll(compaction.getInputs()[1]);
+        assertTrue(db.subcompactionBoundaries(level1).isEmpty());
+        level1.setManual(true);
+        assertEquals(Lists.newArrayList("c", "f", "h"), db.subcompactionBoundaries(level1));
+    }
+
+    @Test
+    public void testSubcompactionFailure() {
+        doThrow(new IllegalStateException("boom")).when(spyDB).makeInputIterator(any(CompactionState.class));
+        CompactionState compact = new CompactionState(new Compaction(options, 0));
+
+        // a shard throwing ends up in the status instead of on its thread
+        Pair<Status, Long> result = spyDB.processSubcompactions(compact, Lists.newArrayList("c", "f", "h"));
+        assertTrue(result.getKey().isCorruption());
+        assertTrue(result.getKey().toString().contains("boom"));
+        assertTrue(compact.getOutputs().isEmpty());
+    }
+
+    @Test
+    public void testSubcompactionsWithBusyPool() {
+        // a pool whose threads are all busy never gets to the shards
+        Env spyEnv = spy(spyDB.getEnv());
+        doAnswer(invocation -> new FutureTask<>(invocation.getArgument(0), null))
+                .when(spyEnv).schedule(any(Runnable.class), eq(Env.Priority.kLow));
+        spyDB.setEnv(spyEnv);
+        doAnswer(invocation -> new EmptyIterator()).when(spyDB).makeInputIterator(any(CompactionState.class));
+        CompactionState compact = new CompactionState(new Compaction(options, 0));
+
+        Pair<Status, Long> result = spyDB.processSubcompactions(compact, Lists.newArrayList("c", "f", "h"));
+        assertTrue(result.getKey().isOk());
+        verify(spyDB, times(4)).makeInputIterator(any(CompactionState.class));
+    }
+
+    @Test
+    public void testScheduleMemtableSwitch() {
+        Env spyEnv = spy(db.getEnv());
+        doAnswer(invocation -> new FutureTask<>(invocation.getArgument(0), null))
+                .when(spyEnv).schedule(any(Runnable.class), any(Env.Priority.class));
+        db.setEnv(spyEnv);
+
+        // one at a time, in the pool meant for it
+        db.scheduleMemtableSwitch();
+        db.scheduleMemtableSwitch();
+        verify(spyEnv, times(1)).schedule(any(Runnable.class), eq(Env.Priority.kUser));
+        assertTrue(db.getMemtableSwitchScheduled().get());
+    }
+
+    @Test
+    public void testUpdateWriteController() {
+        VersionSet versionSet = mock(VersionSet.class);
+        db.setVersions(versionSet);
+        db.getOptions().setDelayedWriteRate(1000000);
+        db.getOptions().setSoftPendingCompactionBytesLimit(1000);
+        db.getOptions().setHardPendingCompactionBytesLimit(3000);
+        db.setWriteController(new WriteController(1000000));
+
+        db.getMutex().lock();
+        try {
+            when(versionSet.numLevelFiles(0)).thenReturn(Config.kL0_SlowdownWritesTrigger - 1);
+            assertFalse(db.updateWriteController());
+
+            when(versionSet.numLevelFiles(0)).thenReturn(Config.kL0_SlowdownWritesTrigger);
+            assertTrue(db.updateWriteController());
+            assertEquals(1000000, db.getWriteController().getDelayedWriteRate());
+
+            // halfway to the stop trigger
+            when(versionSet.numLevelFiles(0)).thenReturn((Config.kL0_SlowdownWritesTrigger + Config.kL0_StopWritesTrigger) / 2);
+            assertTrue(db.updateWriteController());
+            assertEquals(500000, db.getWriteController().getDelayedWriteRate());
+
+            // the larger of the two pressures wins
+            when(versionSet.estimatedPendingCompactionBytes()).thenReturn(2500L);
+            assertTrue(db.updateWriteController());
+            assertEquals(250000, db.getWriteController().getDelayedWriteRate());
+
+            when(versionSet.numLevelFiles(0)).thenReturn(0);
+            when(versionSet.estimatedPendingCompactionBytes()).thenReturn(999L);
+            assertFalse(db.updateWriteController());
+            assertEquals(0, db.getWriteController().getDelayedWriteRate());
+        } finally {
+            db.getMutex().unlock();
+        }
+    }
+
     @Test(expected = AssertionError.class)
     public void testActualCompactShouldDoInLockReleaseStateForPerformance() {
         db.getMutex().lock();
@@ -2127,7 +2269,7 @@ public class DBImplTest {
     @Test
     public void testBackgroundCompactionMemtableCompact() {
         spyDB.getMutex().lock();
-        spyDB.setImmutableMemtable(mock(Memtable.class));
+        spyDB.getImmutableMemtables().add(mock(Memtable.class), 0, 0);
         doNothing().when(spyDB).compactMemtable();
 
         spyDB.backgroundCompaction();
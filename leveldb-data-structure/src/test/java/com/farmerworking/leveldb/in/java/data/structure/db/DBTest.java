@@ -1,13 +1,16 @@
 package com.farmerworking.leveldb.in.java.data.structure.db;
 
 import java.nio.channels.FileLock;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.farmerworking.leveldb.in.java.api.CompressionType;
 import com.farmerworking.leveldb.in.java.api.FilterPolicy;
+import com.farmerworking.leveldb.in.java.api.FixedPrefixExtractor;
 import com.farmerworking.leveldb.in.java.api.Iterator;
 import com.farmerworking.leveldb.in.java.api.Options;
 import com.farmerworking.leveldb.in.java.api.Options.Logger;
@@ -15,6 +18,8 @@ import com.farmerworking.leveldb.in.java.api.ReadOptions;
 import com.farmerworking.leveldb.in.java.api.Status;
 import com.farmerworking.leveldb.in.java.api.WriteOptions;
 import com.farmerworking.leveldb.in.java.data.structure.filter.BloomFilterPolicy;
+import com.farmerworking.leveldb.in.java.data.structure.memory.HashPrefixMemtableFactory;
+import com.farmerworking.leveldb.in.java.data.structure.memory.VectorMemtableFactory;
 import com.farmerworking.leveldb.in.java.file.Env;
 import com.farmerworking.leveldb.in.java.file.FileName;
 import com.farmerworking.leveldb.in.java.file.FileType;
@@ -55,12 +60,33 @@ public class DBTest {
         return count;
     }
 
+    public Set<Long> logFiles() {
+        Pair<Status, List<String>> pair = this.env.getChildren(this.dbname);
+        assertTrue(pair.getKey().isOk());
+        Set<Long> result = new HashSet<>();
+        for (String filename : pair.getValue()) {
+            Pair<Long, FileType> pair2 = FileName.parseFileName(filename);
+            if (pair2 != null && pair2.getValue().equals(FileType.kLogFile)) {
+                result.add(pair2.getKey());
+            }
+        }
+        return result;
+    }
+
     enum OptionConfig {
         kDefault(0),
         kReuse(1),
         kFilter(2),
         kUncompressed(3),
-        kEnd(4);
+        kConcurrentMemtableWrite(4),
+        kPipelinedWrite(5),
+        kBackgroundThreads(6),
+        kMmapReads(7),
+        kDeferredWalSync(8),
+        kDirectIO(9),
+        kVectorMemtable(10),
+        kHashPrefixMemtable(11),
+        kEnd(12);
 
         private int value;
 
@@ -82,6 +108,22 @@ public class DBTest {
             } else if (value == 3) {
                 return OptionConfig.kUncompressed;
             } else if (value == 4) {
+                return OptionConfig.kConcurrentMemtableWrite;
+            } else if (value == 5) {
+                return OptionConfig.kPipelinedWrite;
+            } else if (value == 6) {
+                return OptionConfig.kBackgroundThreads;
+            } else if (value == 7) {
+                return OptionConfig.kMmapReads;
+            } else if (value == 8) {
+                return OptionConfig.kDeferredWalSync;
+            } else if (value == 9) {
+                return OptionConfig.kDirectIO;
+            } else if (value == 10) {
+                return OptionConfig.kVectorMemtable;
+            } else if (value == 11) {
+                return OptionConfig.kHashPrefixMemtable;
+            } else if (value == 12) {
                 return OptionConfig.kEnd;
             } else {
                 return null;
@@ -147,6 +189,11 @@ public class DBTest {
                 }
                 return this.base.sync();
             }
+
+            @Override
+            public Status preallocate(long size) {
+                return this.base.preallocate(size);
+            }
         }
 
         class ManifestFile implements WritableFile {
@@ -205,6 +252,19 @@ public class DBTest {
             return pair;
         }
 
+        @Override
+        public Pair<Status, WritableFile> reuseWritableFile(String filename, String oldFilename) {
+            if (this.nonWritable.get()) {
+                return new Pair<>(Status.IOError("simulated write error"), null);
+            }
+
+            Pair<Status, WritableFile> pair = this.env.reuseWritableFile(filename, oldFilename);
+            if (pair.getKey().isOk()) {
+                return new Pair<>(pair.getKey(), new DataFile(this, pair.getValue()));
+            }
+            return pair;
+        }
+
         @Override
         public Pair<Status, WritableFile> newAppendableFile(String filename) {
             return this.env.newAppendableFile(filename);
@@ -224,6 +284,11 @@ public class DBTest {
                 this.counter.incrementAndGet();
                 return this.randomAccessFile.read(offset, n);
             }
+
+            @Override
+            public void close() {
+                this.randomAccessFile.close();
+            }
         }
 
         @Override
@@ -290,6 +355,16 @@ public class DBTest {
             return this.env.schedule(runnable);
         }
 
+        @Override
+        public Future schedule(Runnable runnable, Priority priority) {
+            return this.env.schedule(runnable, priority);
+        }
+
+        @Override
+        public void incBackgroundThreadsIfNeeded(int number, Priority priority) {
+            this.env.incBackgroundThreadsIfNeeded(number, priority);
+        }
+
         @Override
         public Status unlockFile(String lockFileName, FileLock fileLock) {
             return this.env.unlockFile(lockFileName, fileLock);
@@ -301,7 +376,7 @@ public class DBTest {
     String dbname;
     Options lastOptions;
     private FilterPolicy filterPolicy;
-    private OptionConfig optionConfig;
+    OptionConfig optionConfig;
 
     public DBTest() {
         this.optionConfig = OptionConfig.kDefault;
@@ -395,10 +470,37 @@ public class DBTest {
                 break;
             case kFilter:
                 options.setFilterPolicy(this.filterPolicy);
+                options.setMemtableBloomSizeRatio(0.1);
                 break;
             case kUncompressed:
                 options.setCompression(CompressionType.kNoCompression);
                 break;
+            case kConcurrentMemtableWrite:
+                options.setAllowConcurrentMemtableWrite(true);
+                break;
+            case kPipelinedWrite:
+                options.setEnablePipelinedWrite(true);
+                break;
+            case kBackgroundThreads:
+                options.setMaxBackgroundCompactions(4);
+                options.setMaxBackgroundFlushes(1);
+                break;
+            case kMmapReads:
+                options.setEnv(new DefaultEnv(1L << 30));
+                break;
+            case kDeferredWalSync:
+                options.setWalSyncPeriodMillis(10);
+                options.setWalBytesPerSync(64 * 1024);
+                break;
+            case kDirectIO:
+                options.setUseDirectIOForFlushAndCompaction(true);
+                break;
+            case kVectorMemtable:
+                options.setMemtableFactory(new VectorMemtableFactory());
+                break;
+            case kHashPrefixMemtable:
+                options.setMemtableFactory(new HashPrefixMemtableFactory(new FixedPrefixExtractor(1)));
+                break;
             default:
                 break;
         }
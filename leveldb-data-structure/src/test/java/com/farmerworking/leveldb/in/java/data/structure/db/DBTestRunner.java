@@ -1,8 +1,13 @@
 package com.farmerworking.leveldb.in.java.data.structure.db;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
@@ -10,8 +15,10 @@ import com.farmerworking.leveldb.in.java.api.Comparator;
 import com.farmerworking.leveldb.in.java.api.CompressionType;
 import com.farmerworking.leveldb.in.java.api.Iterator;
 import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.api.RateLimiter;
 import com.farmerworking.leveldb.in.java.api.ReadOptions;
 import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteBufferManager;
 import com.farmerworking.leveldb.in.java.api.WriteOptions;
 import com.farmerworking.leveldb.in.java.common.TestUtils;
 import com.farmerworking.leveldb.in.java.data.structure.cache.ShardedLRUCache;
@@ -21,6 +28,7 @@ import com.farmerworking.leveldb.in.java.data.structure.memory.ParsedInternalKey
 import com.farmerworking.leveldb.in.java.data.structure.memory.ValueType;
 import com.farmerworking.leveldb.in.java.data.structure.version.Config;
 import com.farmerworking.leveldb.in.java.data.structure.writebatch.WriteBatch;
+import com.farmerworking.leveldb.in.java.file.FileName;
 import com.google.common.collect.Lists;
 import javafx.util.Pair;
 import org.apache.commons.lang3.StringUtils;
@@ -74,6 +82,401 @@ public class DBTestRunner {
         } while(dbTest.changeOptions());
     }
 
+    @Test
+    public void testBinaryReadWrite() {
+        do {
+            byte[] key = {0, (byte) 0xff, 'k', (byte) 0x80};
+            byte[] value = {(byte) 0xfe, 1, 2, 'v'};
+            assertTrue(dbTest.db.put(new WriteOptions(), key, value).isOk());
+            assertTrue(dbTest.db.put(new WriteOptions(), new byte[]{'a'}, new byte[]{'b'}).isOk());
+
+            Pair<Status, byte[]> pair = dbTest.db.get(new ReadOptions(), key);
+            assertTrue(pair.getKey().isOk());
+            assertArrayEquals(value, pair.getValue());
+
+            BinaryIterator iter = dbTest.db.binaryIterator(new ReadOptions());
+            iter.seek(ByteBuffer.wrap(new byte[]{0}));
+            assertTrue(iter.valid());
+            assertArrayEquals(key, iter.key());
+            assertArrayEquals(value, iter.value());
+            iter.next();
+            assertTrue(iter.valid());
+            assertArrayEquals(new byte[]{'a'}, iter.key());
+            iter.close();
+
+            assertTrue(dbTest.db.delete(new WriteOptions(), key).isOk());
+            assertTrue(dbTest.db.get(new ReadOptions(), key).getKey().isNotFound());
+        } while(dbTest.changeOptions());
+    }
+
+    @Test
+    public void testConcurrentMemtableWrite() throws InterruptedException {
+        Options options = dbTest.currentOptions();
+        options.setAllowConcurrentMemtableWrite(true);
+        concurrentWrite(options);
+    }
+
+    @Test
+    public void testPipelinedWrite() throws InterruptedException {
+        Options options = dbTest.currentOptions();
+        options.setEnablePipelinedWrite(true);
+        concurrentWrite(options);
+
+        options = dbTest.currentOptions();
+        options.setEnablePipelinedWrite(true);
+        options.setAllowConcurrentMemtableWrite(true);
+        concurrentWrite(options);
+    }
+
+    @Test
+    public void testParallelCompactions() throws InterruptedException {
+        Options options = dbTest.currentOptions();
+        options.setMaxBackgroundCompactions(4);
+        options.setMaxBackgroundFlushes(1);
+        concurrentWrite(options);
+    }
+
+    @Test
+    public void testSubcompactions() {
+        Options options = dbTest.currentOptions();
+        options.setMaxSubcompactions(4);
+        dbTest.reopen(options);
+
+        // overlapping tables with different largest keys
+        int kFiles = 3;
+        int kKeys = 600;
+        for (int file = 0; file < kFiles; file++) {
+            for (int i = file * 300; i < file * 300 + kKeys; i++) {
+                assertTrue(dbTest.put(String.format("%06d", i), String.format("v%d.%d", file, i)).isOk());
+            }
+            dbTest.db.TEST_compactMemtable();
+        }
+
+        // small enough for a single output table unless it is split
+        dbTest.db.compactRange(null, null);
+        int tables = 0;
+        for (int level = 0; level < Config.kNumLevels; level++) {
+            tables += dbTest.numTableFilesAtLevel(level);
+        }
+        assertTrue(tables > 1);
+
+        int last = (kFiles - 1) * 300 + kKeys;
+        for (int i = 0; i < last; i++) {
+            int file = Math.min(i / 300, kFiles - 1);
+            assertEquals(String.format("v%d.%d", file, i), dbTest.get(String.format("%06d", i)));
+        }
+        assertEquals("NOT_FOUND", dbTest.get(String.format("%06d", last)));
+    }
+
+    @Test
+    public void testRateLimiter() {
+        Options options = dbTest.currentOptions();
+        // 100KB per refill period, well below what is written below
+        RateLimiter rateLimiter = new RateLimiter(1 << 20);
+        options.setRateLimiter(rateLimiter);
+        dbTest.reopen(options);
+
+        // two overlapping tables that are compacted into one
+        List<String> values = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            values.clear();
+            for (int i = 0; i < 2000; i++) {
+                values.add(TestUtils.randomString(100));
+                assertTrue(dbTest.put(String.format("%06d", i), values.get(i)).isOk());
+            }
+            dbTest.db.TEST_compactMemtable();
+        }
+        dbTest.db.compactRange(null, null);
+
+        assertTrue(rateLimiter.getTotalBytes() > 3 * 2000 * 100);
+        assertTrue(rateLimiter.getThrottledBytes() > 0);
+        assertEquals(String.valueOf(rateLimiter.getThrottledBytes()),
+                dbTest.db.getProperty("leveldb.rate-limit-throttled-bytes").getValue());
+        assertEquals(String.valueOf(1 << 20), dbTest.db.getProperty("leveldb.rate-limit-bytes-per-second").getValue());
+
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(values.get(i), dbTest.get(String.format("%06d", i)));
+        }
+    }
+
+    @Test
+    public void testDeferredWalSync() {
+        Options options = dbTest.currentOptions();
+        // long enough for the background thread to never get to it
+        options.setWalSyncPeriodMillis(TimeUnit.HOURS.toMillis(1));
+        dbTest.reopen(options);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(dbTest.put(String.format("%06d", i), "v" + i).isOk());
+        }
+        assertEquals("0", dbTest.db.getProperty("leveldb.wal-sync-count").getValue());
+
+        // one sync covers all of them
+        assertTrue(dbTest.db.waitForDurable(dbTest.db.getLatestSequenceNumber()).isOk());
+        assertEquals("1", dbTest.db.getProperty("leveldb.wal-sync-count").getValue());
+        assertTrue(dbTest.db.syncWAL().isOk());
+        assertTrue(dbTest.db.waitForDurable(50).isOk());
+        assertEquals("1", dbTest.db.getProperty("leveldb.wal-sync-count").getValue());
+
+        // a sync write waits for a sync of its own
+        WriteOptions writeOptions = new WriteOptions();
+        writeOptions.setSync(true);
+        assertTrue(dbTest.db.put(writeOptions, "sync", "v").isOk());
+        assertEquals("2", dbTest.db.getProperty("leveldb.wal-sync-count").getValue());
+
+        dbTest.reopen(options);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, dbTest.get(String.format("%06d", i)));
+        }
+        assertEquals("v", dbTest.get("sync"));
+    }
+
+    @Test
+    public void testRecycleLogFiles() {
+        Options options = dbTest.currentOptions();
+        options.setRecycleLogFileNum(2);
+        dbTest.reopen(options);
+        DBImpl db = (DBImpl) dbTest.db;
+
+        // Later rounds log less than earlier ones, so a recycled log still
+        // holds records of its earlier use after its own
+        Set<Long> logs = null;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 1000 - round * 100; i++) {
+                assertTrue(dbTest.put(String.format("%d-%06d", round, i), TestUtils.randomString(100)).isOk());
+            }
+
+            logs = dbTest.logFiles();
+            assertTrue(dbTest.db.TEST_compactMemtable().isOk());
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(dbTest.put(String.format("%d-%06d", 5, i), "v" + i).isOk());
+        }
+
+        // every log is recycled as soon as it is obsolete, the current one
+        // took the place of one kept before the last switch, and the others
+        // are kept for the next switches
+        db.getMutex().lock();
+        try {
+            while (db.getPreallocatingLogNumber() != 0) {
+                db.getBgCondition().awaitUninterruptibly();
+            }
+            Set<Long> current = dbTest.logFiles();
+            assertTrue(current.remove(db.getLogFileNumber()));
+            assertFalse(logs.contains(db.getLogFileNumber()));
+            assertEquals(current, new HashSet<>(db.getLogsToRecycle()));
+            assertTrue(current.size() <= 2);
+        } finally {
+            db.getMutex().unlock();
+        }
+
+        dbTest.reopen(options);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("v" + i, dbTest.get(String.format("%d-%06d", 5, i)));
+        }
+        int count = 0;
+        Iterator<String, String> iter = dbTest.db.iterator(new ReadOptions());
+        for (iter.seekToFirst(); iter.valid(); iter.next()) {
+            count++;
+        }
+        assertEquals(1000 + 900 + 800 + 700 + 600 + 10, count);
+    }
+
+    @Test
+    public void testReuseLogsWithRecycling() {
+        // logs created for recycling are preallocated, appending to one
+        // would put the new records after its zeros
+        Options options = dbTest.currentOptions();
+        options.setReuseLogs(true);
+        options.setRecycleLogFileNum(2);
+        options.setCreateIfMissing(true);
+        dbTest.destroyAndReopon(options);
+        dbTest.reopen(options);
+        WriteOptions writeOptions = new WriteOptions();
+        writeOptions.setSync(true);
+        assertTrue(dbTest.db.put(writeOptions, "k1", "v1").isOk());
+        dbTest.reopen(options);
+        assertEquals("v1", dbTest.get("k1"));
+
+        // not even once recycling is off again
+        options.setRecycleLogFileNum(0);
+        dbTest.reopen(options);
+        assertTrue(dbTest.db.put(writeOptions, "k2", "v2").isOk());
+        dbTest.reopen(options);
+        assertEquals("v1", dbTest.get("k1"));
+        assertEquals("v2", dbTest.get("k2"));
+    }
+
+    @Test
+    public void testWriteControllerProperties() {
+        do {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(dbTest.put(String.format("%06d", i), "v").isOk());
+            }
+
+            // nothing is behind, so no write was delayed or stalled
+            for (String property : new String[]{"delayed-write-rate", "write-delay-count", "write-delay-micros",
+                    "write-stall-count", "write-stall-micros", "estimate-pending-compaction-bytes"}) {
+                Pair<Boolean, String> pair = dbTest.db.getProperty("leveldb." + property);
+                assertTrue(property, pair.getKey());
+                assertEquals(property, "0", pair.getValue());
+            }
+            assertFalse(dbTest.db.getProperty("leveldb.write-delay").getKey());
+        } while (dbTest.changeOptions());
+    }
+
+    @Test
+    public void testWriteBufferManager() throws InterruptedException {
+        // memtables far below writeBufferSize, but over the shared budget
+        WriteBufferManager manager = new WriteBufferManager(1 << 20);
+        Options options = dbTest.currentOptions();
+        options.setWriteBufferSize(8 << 20);
+        options.setWriteBufferManager(manager);
+        dbTest.reopen(options);
+
+        String otherName = dbTest.dbname + "_other";
+        DB.destroyDB(otherName, new Options());
+        Options otherOptions = new Options(options);
+        otherOptions.setCreateIfMissing(true);
+        Pair<Status, DB> pair = DB.open(otherOptions, otherName);
+        assertTrue(pair.getKey().isOk());
+        DB other = pair.getValue();
+
+        String value = StringUtils.repeat('v', 10000);
+        for (int i = 0; i < 30; i++) {
+            assertTrue(other.put(new WriteOptions(), key(i), value).isOk());
+        }
+        assertTrue(other.put(new WriteOptions(), "last", "v").isOk());
+        assertEquals(0, totalTableFiles(other));
+
+        // the other db, idle by now, has the largest memtable once the
+        // budget runs out: it is switched first
+        for (int i = 0; i < 100; i++) {
+            assertTrue(dbTest.put(key(i), value).isOk());
+        }
+        for (int i = 0; i < 100 && totalTableFiles(other) == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, totalTableFiles(other));
+
+        // then this one
+        for (int i = 0; i < 100 && (totalTableFiles() == 0 || manager.memoryUsage() >= 1 << 20); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(totalTableFiles() > 0);
+        assertTrue(manager.memoryUsage() < 1 << 20);
+        assertEquals(value, dbTest.get(key(99)));
+        assertEquals(value, other.get(new ReadOptions(), key(0)).getValue());
+
+        other.close();
+        DB.destroyDB(otherName, new Options());
+    }
+
+    @Test
+    public void testConcurrentGetDuringWrites() throws InterruptedException {
+        Options options = dbTest.currentOptions();
+        options.setWriteBufferSize(64 << 10); // switch memtables while reading
+        dbTest.reopen(options);
+
+        int kNumKeys = 100;
+        int kRounds = 30;
+        for (int i = 0; i < kNumKeys; i++) {
+            assertTrue(dbTest.put(String.format("%06d", i), "0").isOk());
+        }
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(new Thread(() -> {
+                // a key never goes back to an older round
+                int[] lastSeen = new int[kNumKeys];
+                while (!done.get() && !failed.get()) {
+                    for (int i = 0; i < kNumKeys; i++) {
+                        Pair<Status, String> pair = dbTest.db.get(new ReadOptions(), String.format("%06d", i));
+                        if (pair.getKey().isNotOk()) {
+                            failed.set(true);
+                            break;
+                        }
+                        int round = Integer.parseInt(pair.getValue().split("\\.")[0]);
+                        if (round < lastSeen[i]) {
+                            failed.set(true);
+                            break;
+                        }
+                        lastSeen[i] = round;
+                    }
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+
+        String padding = StringUtils.repeat('x', 100);
+        for (int round = 1; round <= kRounds && !failed.get(); round++) {
+            for (int i = 0; i < kNumKeys; i++) {
+                String key = String.format("%06d", i);
+                String value = round + "." + padding;
+                assertTrue(dbTest.put(key, value).isOk());
+                assertEquals(value, dbTest.get(key));
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertFalse(failed.get());
+    }
+
+    private void concurrentWrite(Options options) throws InterruptedException {
+        options.setCreateIfMissing(true);
+        options.setWriteBufferSize(64 << 10); // switch memtables while writing
+        dbTest.destroyAndReopon(options);
+
+        int kThreads = 8;
+        int kNumKeys = 500;
+        List<Thread> threads = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        for (int t = 0; t < kThreads; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < kNumKeys; i++) {
+                    WriteBatch batch = new WriteBatch();
+                    batch.put(String.format("%d.%d", id, i), String.format("v%d", i));
+                    batch.put(String.format("%d.%d.x", id, i), String.format("x%d", i));
+                    if (dbTest.db.write(new WriteOptions(), batch).isNotOk()) {
+                        failed.set(true);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed.get());
+
+        for (int t = 0; t < kThreads; t++) {
+            for (int i = 0; i < kNumKeys; i++) {
+                assertEquals(String.format("v%d", i), dbTest.get(String.format("%d.%d", t, i)));
+                assertEquals(String.format("x%d", i), dbTest.get(String.format("%d.%d.x", t, i)));
+            }
+        }
+
+        // every write got its own sequence range
+        Iterator<String, String> iter = dbTest.db.TEST_newInternalIterator();
+        Set<Long> sequences = new HashSet<>();
+        for (iter.seekToFirst(); iter.valid(); iter.next()) {
+            Pair<Boolean, ParsedInternalKey> parse = InternalKey.parseInternalKey(iter.key());
+            assertTrue(parse.getKey());
+            assertTrue(sequences.add(parse.getValue().getSequence()));
+        }
+        iter.close();
+        assertEquals(kThreads * kNumKeys * 2, sequences.size());
+    }
+
     @Test
     public void testGetFromImmutableLayer() {
         do {
@@ -93,6 +496,118 @@ public class DBTestRunner {
         } while(dbTest.changeOptions());
     }
 
+    @Test
+    public void testMultipleImmutableMemtables() {
+        do {
+            Options options = dbTest.currentOptions();
+            options.setEnv(dbTest.env);
+            options.setWriteBufferSize(100000);
+            options.setMaxWriteBufferNumber(4);
+            dbTest.reopen(options);
+
+            assertTrue(dbTest.put("foo", "v1").isOk());
+
+            // the flush of the first memtable hangs, writes go on into
+            // more memtables instead of waiting for it
+            dbTest.env.delayDataSync.set(true);
+            assertTrue(dbTest.put("k1", StringUtils.repeat('x', 100000)).isOk());
+            assertTrue(dbTest.put("k2", StringUtils.repeat('y', 100000)).isOk());
+            assertTrue(dbTest.put("foo", "v2").isOk());
+            assertTrue(dbTest.put("k3", StringUtils.repeat('z', 100000)).isOk());
+            assertEquals("2", dbTest.db.getProperty("leveldb.num-immutable-mem-table").getValue());
+
+            // the newest memtable holding a key wins
+            assertEquals("v2", dbTest.get("foo"));
+            assertEquals(StringUtils.repeat('x', 100000), dbTest.get("k1"));
+            assertEquals(StringUtils.repeat('y', 100000), dbTest.get("k2"));
+            dbTest.env.delayDataSync.set(false);
+
+            assertTrue(dbTest.db.TEST_compactMemtable().isOk());
+            assertEquals("0", dbTest.db.getProperty("leveldb.num-immutable-mem-table").getValue());
+            dbTest.reopen(options);
+            assertEquals("v2", dbTest.get("foo"));
+            assertEquals(StringUtils.repeat('z', 100000), dbTest.get("k3"));
+        } while(dbTest.changeOptions());
+    }
+
+    @Test
+    public void testMultiGetAcrossTables() {
+        // enough data for several tables in the same level, searched in
+        // parallel
+        String value = StringUtils.repeat('v', 1000);
+        for (int i = 0; i < 4000; i++) {
+            assertTrue(dbTest.put(String.format("%06d", i), value + i).isOk());
+        }
+        dbTest.db.compactRange(null, null);
+        int maxTablesInLevel = 0;
+        for (int level = 1; level < Config.kNumLevels; level++) {
+            maxTablesInLevel = Math.max(maxTablesInLevel, dbTest.numTableFilesAtLevel(level));
+        }
+        assertTrue(maxTablesInLevel > 1);
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 4100; i += 7) {
+            keys.add(String.format("%06d", i));
+        }
+        List<Pair<Status, String>> result = dbTest.db.multiGet(new ReadOptions(), keys);
+        for (int i = 0; i < keys.size(); i++) {
+            int key = Integer.parseInt(keys.get(i));
+            if (key < 4000) {
+                assertEquals(value + key, result.get(i).getValue());
+            } else {
+                assertTrue(result.get(i).getKey().isNotFound());
+            }
+        }
+    }
+
+    @Test
+    public void testMultiGet() {
+        do {
+            // values spread over deeper levels, level-0 and the memtable
+            for (int i = 0; i < 100; i++) {
+                assertTrue(dbTest.put(String.format("%06d", i), "v1." + i).isOk());
+            }
+            dbTest.db.compactRange(null, null);
+            for (int i = 0; i < 100; i += 2) {
+                assertTrue(dbTest.put(String.format("%06d", i), "v2." + i).isOk());
+            }
+            dbTest.db.TEST_compactMemtable();
+
+            Snapshot snapshot = dbTest.db.getSnapshot();
+            for (int i = 0; i < 100; i += 3) {
+                assertTrue(dbTest.put(String.format("%06d", i), "v3." + i).isOk());
+            }
+            for (int i = 0; i < 100; i += 5) {
+                assertTrue(dbTest.delete(String.format("%06d", i)).isOk());
+            }
+
+            List<String> keys = new ArrayList<>();
+            for (int i = 120; i >= 0; i -= 1) {
+                keys.add(String.format("%06d", i));
+            }
+            keys.add(String.format("%06d", 7)); // asked twice
+            keys.add("");
+
+            ReadOptions atSnapshot = new ReadOptions();
+            atSnapshot.setSnapshot(snapshot);
+            for (ReadOptions readOptions : Lists.newArrayList(new ReadOptions(), atSnapshot)) {
+                List<Pair<Status, String>> result = dbTest.db.multiGet(readOptions, keys);
+                assertEquals(keys.size(), result.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    Pair<Status, String> expected = dbTest.db.get(readOptions, keys.get(i));
+                    assertEquals(keys.get(i), expected.getKey().isOk(), result.get(i).getKey().isOk());
+                    assertEquals(keys.get(i), expected.getKey().isNotFound(), result.get(i).getKey().isNotFound());
+                    assertEquals(keys.get(i), expected.getValue(), result.get(i).getValue());
+                }
+            }
+
+            assertEquals("v2.10", dbTest.db.multiGet(atSnapshot, Lists.newArrayList(String.format("%06d", 10))).get(0).getValue());
+            assertTrue(dbTest.db.multiGet(new ReadOptions(), Lists.newArrayList(String.format("%06d", 10))).get(0).getKey().isNotFound());
+            assertTrue(dbTest.db.multiGet(new ReadOptions(), new ArrayList<>()).isEmpty());
+            dbTest.db.releaseSnapshot(snapshot);
+        } while (dbTest.changeOptions());
+    }
+
     @Test
     public void testGetFromVersions() {
         do {
@@ -477,9 +992,13 @@ public class DBTestRunner {
     }
 
     private int totalTableFiles() {
+        return totalTableFiles(dbTest.db);
+    }
+
+    private int totalTableFiles(DB db) {
         int result = 0;
         for (int i = 0; i < Config.kNumLevels; i++) {
-            result += dbTest.db.numLevelFiles(i);
+            result += db.numLevelFiles(i);
         }
         return result;
     }
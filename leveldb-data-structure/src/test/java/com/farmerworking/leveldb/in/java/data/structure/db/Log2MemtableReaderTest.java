@@ -33,7 +33,7 @@ public class Log2MemtableReaderTest {
         db = new DBImpl(options, dbname);
         edit = new VersionEdit();
 
-        reader = new Log2MemtableReader(db, edit, "", null);
+        reader = new Log2MemtableReader(db, edit, "", null, 0);
     }
 
     @Test(expected = AssertionError.class)
@@ -0,0 +1,69 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.data.structure.memory.IMemtable;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MemtableListTest {
+    @Test
+    public void testOrder() {
+        MemtableList list = new MemtableList();
+        assertTrue(list.isEmpty());
+        assertTrue(list.newestFirst().isEmpty());
+
+        IMemtable first = mock(IMemtable.class);
+        IMemtable second = mock(IMemtable.class);
+        IMemtable third = mock(IMemtable.class);
+        list.add(first, 5, 100);
+        list.add(second, 6, 200);
+        list.add(third, 7, 300);
+
+        assertFalse(list.isEmpty());
+        assertEquals(3, list.size());
+        assertEquals(Lists.newArrayList(third, second, first), list.newestFirst());
+
+        List<MemtableList.Entry> picked = list.pickToFlush();
+        assertEquals(3, picked.size());
+        assertSame(first, picked.get(0).getMemtable());
+        assertSame(third, picked.get(2).getMemtable());
+        assertEquals(7, picked.get(2).getNextLogNumber());
+        assertEquals(300, picked.get(2).getLastSequence());
+    }
+
+    @Test
+    public void testRemoveFlushed() {
+        MemtableList list = new MemtableList();
+        IMemtable first = mock(IMemtable.class);
+        IMemtable second = mock(IMemtable.class);
+        list.add(first, 5, 100);
+        List<MemtableList.Entry> picked = list.pickToFlush();
+
+        // switched while the flush was running
+        list.add(second, 6, 200);
+        list.removeFlushed(picked);
+        assertEquals(1, list.size());
+        assertEquals(Lists.newArrayList(second), list.newestFirst());
+
+        list.removeFlushed(list.pickToFlush());
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void testApproximateMemoryUsage() {
+        MemtableList list = new MemtableList();
+        assertEquals(0, list.approximateMemoryUsage());
+
+        IMemtable first = mock(IMemtable.class);
+        IMemtable second = mock(IMemtable.class);
+        when(first.approximateMemoryUsage()).thenReturn(1000);
+        when(second.approximateMemoryUsage()).thenReturn(24);
+        list.add(first, 5, 100);
+        list.add(second, 6, 200);
+        assertEquals(1024, list.approximateMemoryUsage());
+    }
+}
@@ -87,6 +87,21 @@ public class ModelDB implements DB {
         return null;
     }
 
+    @Override
+    public Status syncWAL() {
+        return Status.OK();
+    }
+
+    @Override
+    public Status waitForDurable(long sequence) {
+        return Status.OK();
+    }
+
+    @Override
+    public long getLatestSequenceNumber() {
+        return 0;
+    }
+
     @Override
     public int numLevelFiles(int level) {
         return 0;
@@ -0,0 +1,77 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.data.structure.memory.InternalKey;
+import com.farmerworking.leveldb.in.java.data.structure.memory.InternalKeyComparator;
+import com.farmerworking.leveldb.in.java.data.structure.utils.SimpleIterator;
+import com.google.common.collect.Lists;
+import javafx.util.Pair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SubcompactionIteratorTest {
+    private InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+
+    private Iterator<String, String> input() {
+        return new SimpleIterator(Lists.newArrayList(
+                new Pair<>(new InternalKey("a", 1L).encode(), "a1"),
+                new Pair<>(new InternalKey("b", 3L).encode(), "b3"),
+                new Pair<>(new InternalKey("b", 2L).encode(), "b2"),
+                new Pair<>(new InternalKey("c", 4L).encode(), "c4"),
+                new Pair<>(new InternalKey("d", 5L).encode(), "d5")
+        ), comparator);
+    }
+
+    private List<String> values(String start, String end) {
+        Iterator<String, String> iter = new SubcompactionIterator(input(), comparator.getUserComparator(), start, end);
+        List<String> result = new ArrayList<>();
+        for (iter.seekToFirst(); iter.valid(); iter.next()) {
+            result.add(iter.value());
+        }
+        return result;
+    }
+
+    @Test
+    public void testUnbounded() {
+        assertEquals(Lists.newArrayList("a1", "b3", "b2", "c4", "d5"), values(null, null));
+    }
+
+    @Test
+    public void testShards() {
+        // every version of "b" stays in the shard that ends at "b"
+        assertEquals(Lists.newArrayList("a1", "b3", "b2"), values(null, "b"));
+        assertEquals(Lists.newArrayList("c4"), values("b", "c"));
+        assertEquals(Lists.newArrayList("d5"), values("c", null));
+    }
+
+    @Test
+    public void testEmptyShard() {
+        assertTrue(values("bb", "bc").isEmpty());
+        assertTrue(values("d", null).isEmpty());
+    }
+
+    private List<String> reversedValues(String start, String end) {
+        Iterator<String, String> iter = new SubcompactionIterator(input(), comparator.getUserComparator(), start, end);
+        List<String> result = new ArrayList<>();
+        for (iter.seekToLast(); iter.valid(); iter.prev()) {
+            result.add(iter.value());
+        }
+        return result;
+    }
+
+    @Test
+    public void testBackward() {
+        assertEquals(Lists.newArrayList("d5", "c4", "b2", "b3", "a1"), reversedValues(null, null));
+        assertEquals(Lists.newArrayList("b2", "b3", "a1"), reversedValues(null, "b"));
+        assertEquals(Lists.newArrayList("c4"), reversedValues("b", "c"));
+        assertEquals(Lists.newArrayList("d5"), reversedValues("c", null));
+        assertEquals(Lists.newArrayList("d5", "c4"), reversedValues("b", "e"));
+        assertTrue(reversedValues("bb", "bc").isEmpty());
+        assertTrue(reversedValues(null, "0").isEmpty());
+    }
+}
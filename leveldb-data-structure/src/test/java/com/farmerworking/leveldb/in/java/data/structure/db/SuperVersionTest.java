@@ -0,0 +1,33 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.data.structure.memory.IMemtable;
+import com.farmerworking.leveldb.in.java.data.structure.version.Version;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SuperVersionTest {
+    @Test
+    public void testRef() {
+        Version version = mock(Version.class);
+        SuperVersion superVersion = new SuperVersion(mock(IMemtable.class), Collections.emptyList(), version);
+        verify(version).ref();
+
+        assertTrue(superVersion.tryRef());
+        assertEquals(2, superVersion.getRefs().get());
+
+        assertFalse(superVersion.unref());
+        assertTrue(superVersion.unref());
+        verify(version, never()).unref();
+
+        // released, readers have to pick up its replacement
+        assertFalse(superVersion.tryRef());
+        assertEquals(0, superVersion.getRefs().get());
+
+        superVersion.cleanup();
+        verify(version).unref();
+    }
+}
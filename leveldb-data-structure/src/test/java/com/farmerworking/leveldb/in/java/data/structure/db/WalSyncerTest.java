@@ -0,0 +1,220 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class WalSyncerTest {
+    @Test
+    public void testWaitForDurable() {
+        WritableFile file = mock(WritableFile.class);
+        when(file.sync()).thenReturn(Status.OK());
+        WalSyncer syncer = new WalSyncer(0, 0, status -> fail());
+        assertFalse(syncer.isDeferred());
+        syncer.switchFile(file);
+
+        // nothing logged, nothing to sync
+        assertTrue(syncer.waitForDurable(Long.MAX_VALUE).isOk());
+        verify(file, never()).sync();
+
+        syncer.logged(10, 100);
+        assertTrue(syncer.waitForDurable(5).isOk());
+        assertEquals(10, syncer.getDurableSequence());
+        assertTrue(syncer.waitForDurable(10).isOk());
+        verify(file, times(1)).sync();
+
+        // a writer that synced the log itself
+        syncer.logged(20, 100);
+        syncer.synced(20);
+        assertTrue(syncer.waitForDurable(20).isOk());
+        verify(file, times(1)).sync();
+        assertEquals(1, syncer.getSyncCount());
+    }
+
+    @Test
+    public void testSwitchFile() {
+        WritableFile file1 = mock(WritableFile.class);
+        WritableFile file2 = mock(WritableFile.class);
+        WritableFile file3 = mock(WritableFile.class);
+        when(file1.sync()).thenReturn(Status.OK());
+        when(file2.sync()).thenReturn(Status.OK());
+        when(file3.sync()).thenReturn(Status.OK());
+        WalSyncer syncer = new WalSyncer(0, 0, status -> fail());
+
+        syncer.switchFile(file1);
+        syncer.logged(10, 100);
+        syncer.switchFile(file2);
+        syncer.logged(20, 100);
+
+        // a sync of the new log can not cover the old one
+        syncer.synced(20);
+        assertEquals(0, syncer.getDurableSequence());
+
+        assertTrue(syncer.waitForDurable(20).isOk());
+        verify(file1).sync();
+        verify(file2).sync();
+
+        // once the memtable of the old log is in a table its records are
+        // durable without a sync
+        syncer.logged(30, 100);
+        syncer.switchFile(file3);
+        syncer.oldLogsFlushed(30);
+        assertEquals(30, syncer.getDurableSequence());
+        assertTrue(syncer.waitForDurable(30).isOk());
+        verify(file2, times(1)).sync();
+        verify(file3, never()).sync();
+    }
+
+    @Test
+    public void testOnlyFlushedLogsAreDurable() {
+        WritableFile file1 = mock(WritableFile.class);
+        WritableFile file2 = mock(WritableFile.class);
+        WritableFile file3 = mock(WritableFile.class);
+        when(file2.sync()).thenReturn(Status.OK());
+        when(file3.sync()).thenReturn(Status.OK());
+        WalSyncer syncer = new WalSyncer(0, 0, status -> fail());
+
+        // two old logs, of two immutable memtables
+        syncer.switchFile(file1);
+        syncer.logged(10, 100);
+        syncer.switchFile(file2);
+        syncer.logged(20, 100);
+        syncer.switchFile(file3);
+        syncer.logged(25, 100);
+
+        // the older memtable is flushed, the newer one still needs its log
+        syncer.oldLogsFlushed(10);
+        assertEquals(10, syncer.getDurableSequence());
+        assertTrue(syncer.waitForDurable(25).isOk());
+        verify(file1, never()).sync();
+        verify(file2).sync();
+        verify(file3).sync();
+    }
+
+    @Test
+    public void testSyncError() {
+        WritableFile file = mock(WritableFile.class);
+        when(file.sync()).thenReturn(Status.IOError("sync error"));
+        List<Status> errors = new ArrayList<>();
+        WalSyncer syncer = new WalSyncer(0, 0, errors::add);
+        syncer.switchFile(file);
+
+        syncer.logged(10, 100);
+        Status status = syncer.waitForDurable(10);
+        assertTrue(status.isIOError());
+        assertEquals(1, errors.size());
+        assertEquals(0, syncer.getDurableSequence());
+
+        // the error sticks
+        when(file.sync()).thenReturn(Status.OK());
+        assertTrue(syncer.waitForDurable(10).isIOError());
+        verify(file, times(1)).sync();
+    }
+
+    @Test
+    public void testSharedSync() throws InterruptedException {
+        CountDownLatch syncStarted = new CountDownLatch(1);
+        CountDownLatch finishSync = new CountDownLatch(1);
+        AtomicInteger syncs = new AtomicInteger();
+        WritableFile file = mock(WritableFile.class);
+        when(file.sync()).then(invocation -> {
+            syncs.incrementAndGet();
+            syncStarted.countDown();
+            finishSync.await();
+            return Status.OK();
+        });
+        WalSyncer syncer = new WalSyncer(0, 0, status -> fail());
+        syncer.switchFile(file);
+
+        syncer.logged(1, 100);
+        Thread first = new Thread(() -> assertTrue(syncer.waitForDurable(1).isOk()));
+        first.start();
+        assertTrue(syncStarted.await(10, TimeUnit.SECONDS));
+
+        // everybody logging while the first sync runs shares the next one
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 2; i <= 10; i++) {
+            long sequence = i;
+            syncer.logged(sequence, 100);
+            Thread thread = new Thread(() -> assertTrue(syncer.waitForDurable(sequence).isOk()));
+            thread.start();
+            threads.add(thread);
+        }
+        finishSync.countDown();
+
+        first.join();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10, syncer.getDurableSequence());
+        assertEquals(2, syncs.get());
+    }
+
+    @Test
+    public void testBackgroundSync() throws InterruptedException {
+        WritableFile file = mock(WritableFile.class);
+        when(file.sync()).thenReturn(Status.OK());
+
+        // by period
+        WalSyncer syncer = new WalSyncer(10, 0, status -> fail());
+        assertTrue(syncer.isDeferred());
+        syncer.switchFile(file);
+        syncer.start();
+        syncer.logged(10, 100);
+        waitForDurable(syncer, 10);
+        syncer.close();
+
+        // by bytes, an hour is never up in this test
+        syncer = new WalSyncer(TimeUnit.HOURS.toMillis(1), 1000, status -> fail());
+        syncer.switchFile(file);
+        syncer.start();
+        syncer.logged(20, 999);
+        Thread.sleep(50);
+        assertEquals(0, syncer.getDurableSequence());
+        syncer.logged(30, 1);
+        waitForDurable(syncer, 30);
+
+        // close syncs what is left
+        syncer.logged(40, 1);
+        syncer.close();
+        assertEquals(40, syncer.getDurableSequence());
+    }
+
+    @Test
+    public void testBackgroundSyncError() throws InterruptedException {
+        WritableFile file = mock(WritableFile.class);
+        when(file.sync()).thenReturn(Status.IOError("sync error"));
+        AtomicReference<Status> error = new AtomicReference<>();
+        WalSyncer syncer = new WalSyncer(1, 0, error::set);
+        syncer.switchFile(file);
+        syncer.start();
+        syncer.logged(10, 100);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (error.get() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(error.get().isIOError());
+        assertTrue(syncer.waitForDurable(10).isIOError());
+        syncer.close();
+    }
+
+    // Wait for the background thread without syncing
+    private static void waitForDurable(WalSyncer syncer, long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (syncer.getDurableSequence() < sequence && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(sequence, syncer.getDurableSequence());
+    }
+}
@@ -0,0 +1,63 @@
+package com.farmerworking.leveldb.in.java.data.structure.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WriteControllerTest {
+    @Test
+    public void testDelayedWriteRate() {
+        WriteController controller = new WriteController(1000000);
+        assertFalse(controller.isDelayed());
+        assertEquals(0, controller.getDelayedWriteRate());
+
+        controller.delay(0);
+        assertTrue(controller.isDelayed());
+        assertEquals(1000000, controller.getDelayedWriteRate());
+
+        controller.delay(0.5);
+        assertEquals(500000, controller.getDelayedWriteRate());
+
+        controller.delay(1);
+        assertEquals(WriteController.kMinDelayedWriteRate, controller.getDelayedWriteRate());
+
+        controller.delay(-1);
+        assertEquals(1000000, controller.getDelayedWriteRate());
+
+        controller.clearDelay();
+        assertFalse(controller.isDelayed());
+
+        assertEquals(WriteController.kMinDelayedWriteRate, new WriteController(0).getMaxDelayedWriteRate());
+    }
+
+    @Test
+    public void testGetDelay() {
+        WriteController controller = new WriteController(1000000);
+        assertEquals(0, controller.getDelay(10000, 1 << 20));
+
+        // one byte per micro
+        controller.delay(0);
+
+        // the bucket holds a refill interval worth of writes
+        assertEquals(0, controller.getDelay(10000, 500));
+        assertEquals(WriteController.kMicrosPerRefill, controller.getDelay(10000, 1000));
+        assertEquals(2500, controller.getDelay(10000, 2000));
+
+        // credit earned while idle is capped
+        assertEquals(0, controller.getDelay(100000, 1000));
+        assertEquals(WriteController.kMicrosPerRefill, controller.getDelay(100000, 1));
+    }
+
+    @Test
+    public void testStatistics() {
+        WriteController controller = new WriteController(1000000);
+        controller.recordDelay(10);
+        controller.recordDelay(20);
+        controller.recordStall(100);
+
+        assertEquals(2, controller.getDelayCount());
+        assertEquals(30, controller.getDelayMicros());
+        assertEquals(1, controller.getStallCount());
+        assertEquals(100, controller.getStallMicros());
+    }
+}
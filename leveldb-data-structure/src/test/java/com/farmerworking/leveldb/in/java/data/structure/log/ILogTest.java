@@ -27,6 +27,10 @@ public abstract class ILogTest {
 
     protected abstract ILogWriter getLogWriterImpl(WritableFile writableFile, long offset);
 
+    protected abstract ILogReader getLogReaderImpl(SequentialFile sequentialFile, ILogReporter logReporter, boolean checksum, long initialOffset, long logNumber);
+
+    protected abstract ILogWriter getLogWriterImpl(WritableFile writableFile, long logNumber, boolean recycleLog);
+
     public static int[] initialOffsetRecordSizes = {
             10000, // Two sizable records in first block
             10000,
@@ -83,6 +87,8 @@ public abstract class ILogTest {
     private boolean reading;
     private ILogWriter writer;
     private ILogReader reader;
+    // What an earlier use of the file left in it, see recycleLog
+    private String recycledContents;
 
     public ILogTest() {
         dest = new StringDest();
@@ -92,6 +98,7 @@ public abstract class ILogTest {
         reading = false;
         writer = getLogWriterImpl(dest);
         reader = getLogReaderImpl(source, report, true, 0);
+        recycledContents = "";
     }
 
     public void reopenForAppend() {
@@ -106,7 +113,11 @@ public abstract class ILogTest {
     public String read() {
         if (!reading) {
             reading = true;
-            source.setContents(dest.getContent());
+            String contents = dest.getContent();
+            if (recycledContents.length() > contents.length()) {
+                contents = contents + recycledContents.substring(contents.length());
+            }
+            source.setContents(contents);
         }
 
         Pair<Boolean, String> readResult = reader.readRecord();
@@ -172,6 +183,19 @@ public abstract class ILogTest {
         }
     }
 
+    // Write log "logNumber" in the recyclable format
+    void startRecyclableLog(long logNumber) {
+        writer = getLogWriterImpl(dest, logNumber, true);
+        reader = getLogReaderImpl(source, report, true, 0, logNumber);
+    }
+
+    // Write log "logNumber" over what has been written so far
+    void recycleLog(long logNumber) {
+        recycledContents = dest.getContent();
+        dest.setContent("");
+        startRecyclableLog(logNumber);
+    }
+
     void startReadingAt(int initial_offset) {
         reader = getLogReaderImpl(source, report, true/*checksum*/, initial_offset);
     }
@@ -310,6 +334,25 @@ public abstract class ILogTest {
         assertEquals(RecordType.kBlockSize + RecordType.kHeaderSize + 4, writtenBytes());
     }
 
+    @Test
+    public void testZeroFilledTail() throws Exception {
+        // a preallocated file goes on with zeros after the last record
+        write("foo");
+        dest.setContent(dest.getContent() + StringUtils.repeat((char) 0, 1000));
+        assertEquals("foo", read());
+        assertEquals("EOF", read());
+        assertTrue(reader.isZeroFilled());
+        assertFalse(reader.isRecycled());
+    }
+
+    @Test
+    public void testNotZeroFilled() throws Exception {
+        write("foo");
+        assertEquals("foo", read());
+        assertEquals("EOF", read());
+        assertFalse(reader.isZeroFilled());
+    }
+
     @Test
     public void testOpenForAppend() throws Exception {
         write("hello");
@@ -606,4 +649,84 @@ public abstract class ILogTest {
     public void testReadPastEnd() throws Exception {
         checkOffsetPastEndReturnsNoRecords(5);
     }
+
+    //========== recycled log ==========
+    @Test
+    public void testRecyclableRecords() throws Exception {
+        startRecyclableLog(1);
+        write("foo");
+        write(bigString("bar", 3 * RecordType.kBlockSize));
+        write("");
+        assertEquals("foo", read());
+        assertEquals(bigString("bar", 3 * RecordType.kBlockSize), read());
+        assertEquals("", read());
+        assertEquals("EOF", read());
+        assertEquals(0, droppedBytes());
+    }
+
+    @Test
+    public void testRecyclableBlockPadding() throws Exception {
+        // leave more than a plain header but less than a recyclable one at
+        // the end of the block
+        startRecyclableLog(1);
+        write(bigString("foo", RecordType.kBlockSize - 2 * RecordType.kRecyclableHeaderSize + 2));
+        write("bar");
+        assertEquals(RecordType.kBlockSize + RecordType.kRecyclableHeaderSize + 3, writtenBytes());
+        assertEquals(bigString("foo", RecordType.kBlockSize - 2 * RecordType.kRecyclableHeaderSize + 2), read());
+        assertEquals("bar", read());
+        assertEquals("EOF", read());
+        assertEquals(0, droppedBytes());
+    }
+
+    @Test
+    public void testRecycledLogEndsAtOldRecord() throws Exception {
+        startRecyclableLog(1);
+        for (int i = 0; i < 1000; i++) {
+            write(bigString(numberString(i), 100));
+        }
+
+        // records line up with those of the old log
+        recycleLog(2);
+        for (int i = 0; i < 10; i++) {
+            write(bigString("new" + i, 100));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(bigString("new" + i, 100), read());
+        }
+        assertEquals("EOF", read());
+        assertEquals(0, droppedBytes());
+        assertEquals("", reportMessage());
+    }
+
+    @Test
+    public void testRecycledLogEndsInsideOldRecord() throws Exception {
+        startRecyclableLog(1);
+        for (int i = 0; i < 1000; i++) {
+            write(bigString(numberString(i), 100));
+        }
+
+        recycleLog(2);
+        write("foo");
+        write(bigString("bar", RecordType.kBlockSize));
+        assertEquals("foo", read());
+        assertEquals(bigString("bar", RecordType.kBlockSize), read());
+        assertEquals("EOF", read());
+        assertEquals(0, droppedBytes());
+        assertEquals("", reportMessage());
+    }
+
+    @Test
+    public void testRecycledLogEndsAtPlainRecord() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            write(bigString(numberString(i), 100));
+        }
+
+        // the record ends where a record of the old log starts
+        recycleLog(2);
+        int length = RecordType.kHeaderSize + 100 - RecordType.kRecyclableHeaderSize;
+        write(bigString("foo", length));
+        assertEquals(bigString("foo", length), read());
+        assertEquals("EOF", read());
+        assertEquals(0, droppedBytes());
+    }
 }
@@ -30,4 +30,14 @@ public class LogTest extends ILogTest {
     protected ILogWriter getLogWriterImpl(WritableFile writableFile, long offset) {
         return new LogWriter(writableFile, offset);
     }
+
+    @Override
+    protected ILogReader getLogReaderImpl(SequentialFile sequentialFile, ILogReporter logReporter, boolean checksum, long initialOffset, long logNumber) {
+        return new LogReader(sequentialFile, logReporter, checksum, initialOffset, logNumber);
+    }
+
+    @Override
+    protected ILogWriter getLogWriterImpl(WritableFile writableFile, long logNumber, boolean recycleLog) {
+        return new LogWriter(writableFile, logNumber, recycleLog);
+    }
 }
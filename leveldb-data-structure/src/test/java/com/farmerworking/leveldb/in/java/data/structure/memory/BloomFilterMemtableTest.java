@@ -0,0 +1,72 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import com.farmerworking.leveldb.in.java.api.Status;
+import javafx.util.Pair;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterMemtableTest extends IMemtableTest {
+    @Override
+    protected IMemtable getImpl() {
+        InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+        return new BloomFilterMemtable(new Memtable(comparator), 4096);
+    }
+
+    // Memtable that counts the gets that reach it
+    static class CountingMemtable extends Memtable {
+        int gets = 0;
+
+        CountingMemtable() {
+            super(new InternalKeyComparator(new BytewiseComparator()));
+        }
+
+        @Override
+        public Pair<Boolean, Pair<Status, String>> get(LookupKey key) {
+            gets++;
+            return super.get(key);
+        }
+    }
+
+    @Test
+    public void testMissesSkipMemtable() {
+        CountingMemtable base = new CountingMemtable();
+        IMemtable memtable = new BloomFilterMemtable(base, 16 << 10);
+        for (int i = 0; i < 1000; i++) {
+            memtable.add(i + 1, ValueType.kTypeValue, "key" + i, "value" + i);
+        }
+        memtable.add(1001, ValueType.kTypeDeletion, "key7", "");
+
+        for (int i = 0; i < 1000; i++) {
+            Pair<Boolean, Pair<Status, String>> result = memtable.get("key" + i, 1000);
+            assertTrue(result.getKey());
+            assertEquals("value" + i, result.getValue().getValue());
+        }
+        assertTrue(memtable.get("key7", 1001).getValue().getKey().isNotFound());
+        assertEquals(1001, base.gets);
+
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(memtable.get("missing" + i, 1001).getKey());
+        }
+        // nearly all misses stopped at the filter
+        assertTrue(base.gets - 1001 < 20);
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+        Memtable base = new Memtable(comparator);
+        IMemtable memtable = new BloomFilterMemtable(base, 16 << 10);
+        assertEquals(base.approximateMemoryUsage() + (16 << 10), memtable.approximateMemoryUsage());
+
+        memtable.add(1L, ValueType.kTypeValue, "key", "value");
+        memtable.markImmutable();
+        assertEquals(base.approximateMemoryUsage() + (16 << 10), memtable.approximateMemoryUsage());
+
+        Iterator<String, String> iter = memtable.iterator();
+        iter.seekToFirst();
+        assertEquals("value", iter.value());
+    }
+}
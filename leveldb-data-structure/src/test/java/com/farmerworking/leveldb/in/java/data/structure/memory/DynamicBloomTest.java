@@ -0,0 +1,87 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DynamicBloomTest {
+    private static String key(int i) {
+        return String.format("key%08d", i);
+    }
+
+    @Test
+    public void testEmpty() {
+        DynamicBloom bloom = new DynamicBloom(1024, 6);
+        assertFalse(bloom.mayContain("hello"));
+        assertFalse(bloom.mayContain(""));
+        assertEquals(1024 / 8, bloom.memoryUsage());
+    }
+
+    @Test
+    public void testSmall() {
+        DynamicBloom bloom = new DynamicBloom(100, 6);
+        // at least one block
+        assertEquals(64, bloom.memoryUsage());
+
+        bloom.add("hello");
+        bloom.add("world");
+        assertTrue(bloom.mayContain("hello"));
+        assertTrue(bloom.mayContain("world"));
+        assertFalse(bloom.mayContain("x"));
+        assertFalse(bloom.mayContain("foo"));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        for (int length = 1000; length <= 100000; length *= 10) {
+            DynamicBloom bloom = new DynamicBloom(length * 10, BloomFilterMemtable.kProbes);
+            for (int i = 0; i < length; i++) {
+                bloom.add(key(i));
+            }
+            for (int i = 0; i < length; i++) {
+                assertTrue(bloom.mayContain(key(i)));
+            }
+
+            int falsePositives = 0;
+            for (int i = 0; i < 10000; i++) {
+                if (bloom.mayContain(key(i + 1000000000))) {
+                    falsePositives++;
+                }
+            }
+            System.out.println(String.format("False positives: %f @ length = %d", falsePositives / 10000.0, length));
+            assertTrue(falsePositives / 10000.0 <= 0.02);   // Must not be over 2%
+        }
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final int kThreads = 4;
+        final int kNumKeys = 20000;
+        DynamicBloom bloom = new DynamicBloom(kThreads * kNumKeys * 10, BloomFilterMemtable.kProbes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(kThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < kThreads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = thread; i < kThreads * kNumKeys; i += kThreads) {
+                    bloom.add(key(i));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < kThreads * kNumKeys; i++) {
+            assertTrue(bloom.mayContain(key(i)));
+        }
+    }
+}
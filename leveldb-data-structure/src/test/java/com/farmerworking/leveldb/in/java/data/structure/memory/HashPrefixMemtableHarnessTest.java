@@ -0,0 +1,10 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.FixedPrefixExtractor;
+
+public class HashPrefixMemtableHarnessTest extends IMemtableHarnessTest {
+    @Override
+    protected MemtableFactory getFactory() {
+        return new HashPrefixMemtableFactory(new FixedPrefixExtractor(2), 16);
+    }
+}
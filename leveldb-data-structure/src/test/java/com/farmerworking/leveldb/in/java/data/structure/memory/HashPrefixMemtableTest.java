@@ -0,0 +1,73 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
+import com.farmerworking.leveldb.in.java.api.FixedPrefixExtractor;
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HashPrefixMemtableTest extends IMemtableTest {
+    @Override
+    protected IMemtable getImpl() {
+        return newMemtable(1024);
+    }
+
+    private IMemtable newMemtable(int bucketCount) {
+        InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+        return new HashPrefixMemtable(comparator, new FixedPrefixExtractor(3), bucketCount);
+    }
+
+    @Test
+    public void testBuckets() {
+        // one bucket holds every prefix, many buckets one each
+        for (int bucketCount : new int[]{1, 7, 1024}) {
+            IMemtable memtable = newMemtable(bucketCount);
+            int sequence = 1;
+            for (int i = 0; i < 50; i++) {
+                for (int j = 0; j < 20; j++) {
+                    memtable.add(sequence++, ValueType.kTypeValue, String.format("p%02d-%02d", i, j), "v" + i + "-" + j);
+                }
+            }
+            memtable.add(sequence, ValueType.kTypeDeletion, "p07-03", "");
+
+            assertEquals("v7-3", memtable.get("p07-03", sequence - 1).getValue().getValue());
+            assertTrue(memtable.get("p07-03", sequence).getValue().getKey().isNotFound());
+            assertEquals("v49-19", memtable.get("p49-19", sequence).getValue().getValue());
+            assertFalse(memtable.get("p07-20", sequence).getKey());
+            assertFalse(memtable.get("q", sequence).getKey());
+
+            Iterator<String, String> iter = memtable.iterator();
+            iter.seek(new InternalKey("p10-05", sequence, ValueType.kValueTypeForSeek).encode());
+            assertEquals("p10-05", InternalKey.extractUserKey(iter.key()));
+            iter.prev();
+            assertEquals("p10-04", InternalKey.extractUserKey(iter.key()));
+
+            int count = 0;
+            for (iter.seekToFirst(); iter.valid(); iter.next()) {
+                count++;
+            }
+            assertEquals(1001, count);
+        }
+    }
+
+    @Test
+    public void testMarkImmutable() {
+        IMemtable memtable = getImpl();
+        memtable.add(1L, ValueType.kTypeValue, "abc1", "1");
+        memtable.add(2L, ValueType.kTypeValue, "xyz1", "2");
+        memtable.add(3L, ValueType.kTypeValue, "abc2", "3");
+        memtable.markImmutable();
+
+        Iterator<String, String> iter = memtable.iterator();
+        iter.seekToFirst();
+        assertEquals("1", iter.value());
+        iter.next();
+        assertEquals("3", iter.value());
+        iter.next();
+        assertEquals("2", iter.value());
+        iter.next();
+        assertFalse(iter.valid());
+        assertEquals("3", memtable.get("abc2", 3L).getValue().getValue());
+    }
+}
@@ -17,8 +17,12 @@ public class IMemtableHarnessTest extends HarnessTest {
         );
     }
 
+    protected MemtableFactory getFactory() {
+        return new SkipListMemtableFactory();
+    }
+
     @Override
     protected Constructor getConstructor(Comparator comparator) {
-        return new MemtableConstructor(comparator);
+        return new MemtableConstructor(comparator, getFactory());
     }
 }
@@ -41,6 +41,20 @@ public class InternalKeyComparatorTest {
                 IKey("a", 2L, ValueType.kTypeValue)) > 0);
     }
 
+    @Test
+    public void testCompareRange() {
+        char[] a = ("xx" + IKey("a", 5L, ValueType.kTypeValue).encode() + "yy").toCharArray();
+        char[] b = IKey("a", 7L, ValueType.kTypeValue).encode().toCharArray();
+        char[] c = ("x" + IKey("ab", 1L, ValueType.kTypeValue).encode()).toCharArray();
+        int aLength = a.length - 4;
+
+        assertEquals(0, comparator.compare(a, 2, aLength, a, 2, aLength));
+        assertTrue(comparator.compare(a, 2, aLength, b, 0, b.length) > 0);
+        assertTrue(comparator.compare(b, 0, b.length, a, 2, aLength) < 0);
+        assertTrue(comparator.compare(a, 2, aLength, c, 1, c.length - 1) < 0);
+        assertTrue(comparator.compare(c, 1, c.length - 1, b, 0, b.length) > 0);
+    }
+
     @Test
     public void testInternalKeyShortestSuccessor() throws Exception {
         assertEquals(IKey("g", InternalKey.kMaxSequenceNumber, ValueType.kTypeValue),
@@ -0,0 +1,77 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LookupKeyTest {
+    private static MemtableEntryComparator comparator =
+            new MemtableEntryComparator(new InternalKeyComparator(new BytewiseComparator()));
+
+    private static String userKey(LookupKey key) {
+        return new String(key.memtableKey(), key.userKeyOffset(), key.userKeyLength());
+    }
+
+    @Test
+    public void testEncoding() {
+        LookupKey key = new LookupKey("foo", 100L);
+        assertEquals("foo", key.userKey());
+        assertEquals("foo", userKey(key));
+        assertEquals(1, key.userKeyOffset());
+        assertEquals(3 + 8, MemtableEntry.internalKeyLength(key.memtableKey(), 0));
+        assertEquals(1, MemtableEntry.internalKeyOffset(key.memtableKey(), 0));
+
+        // the internal key size takes two bytes
+        String longKey = new String(new char[200]).replace('\0', 'k');
+        key = new LookupKey(longKey, 100L);
+        assertEquals(2, key.userKeyOffset());
+        assertEquals(200 + 8, MemtableEntry.internalKeyLength(key.memtableKey(), 0));
+        assertEquals(2, MemtableEntry.internalKeyOffset(key.memtableKey(), 0));
+        assertEquals(longKey, userKey(key));
+    }
+
+    @Test
+    public void testOrder() {
+        LookupKey key = new LookupKey("foo", 100L);
+        // the newest visible entry of the key is the first one at or after it
+        assertTrue(comparator.compare(key.memtableKey(), MemtableEntry.encode(101L, ValueType.kTypeValue, "foo", "v")) > 0);
+        assertEquals(0, comparator.compare(key.memtableKey(), MemtableEntry.encode(100L, ValueType.kTypeValue, "foo", "v")));
+        assertTrue(comparator.compare(key.memtableKey(), MemtableEntry.encode(100L, ValueType.kTypeDeletion, "foo", "")) < 0);
+        assertTrue(comparator.compare(key.memtableKey(), MemtableEntry.encode(1L, ValueType.kTypeValue, "fo", "v")) > 0);
+        assertTrue(comparator.compare(key.memtableKey(), MemtableEntry.encode(1000L, ValueType.kTypeValue, "fooa", "v")) < 0);
+    }
+
+    @Test
+    public void testSet() {
+        LookupKey key = new LookupKey("a long user key", 5L);
+        char[] rep = key.memtableKey();
+
+        // a shorter key reuses the buffer, what is left of the longer one
+        // past its end does not matter
+        key.set("short", 7L);
+        assertSame(rep, key.memtableKey());
+        assertEquals("short", key.userKey());
+        assertEquals("short", userKey(key));
+        assertEquals(0, comparator.compare(key.memtableKey(), new LookupKey("short", 7L).memtableKey()));
+
+        key.set("a much longer user key than before", 9L);
+        assertNotSame(rep, key.memtableKey());
+        assertEquals("a much longer user key than before", userKey(key));
+        assertEquals(0, comparator.compare(key.memtableKey(), new LookupKey("a much longer user key than before", 9L).memtableKey()));
+    }
+
+    @Test
+    public void testLookup() {
+        char[] entry = MemtableEntry.encode(10L, ValueType.kTypeValue, "key", "value");
+        LookupKey key = new LookupKey("key", 20L);
+        assertTrue(MemtableEntry.lookup(entry, 0, key, new BytewiseComparator()).getKey());
+        assertEquals("value", MemtableEntry.lookup(entry, 0, key, new BytewiseComparator()).getValue().getValue());
+
+        key.set("kez", 20L);
+        assertFalse(MemtableEntry.lookup(entry, 0, key, new BytewiseComparator()).getKey());
+
+        entry = MemtableEntry.encode(10L, ValueType.kTypeDeletion, "kez", "");
+        assertTrue(MemtableEntry.lookup(entry, 0, key, new BytewiseComparator()).getValue().getKey().isNotFound());
+    }
+}
@@ -11,10 +11,12 @@ import java.util.Map;
 import java.util.TreeMap;
 
 class MemtableConstructor extends Constructor {
+    private final MemtableFactory factory;
     private IMemtable memtable;
 
-    public MemtableConstructor(Comparator comparator) {
+    public MemtableConstructor(Comparator comparator, MemtableFactory factory) {
         super(comparator);
+        this.factory = factory;
     }
 
     @Override
@@ -24,7 +26,7 @@ class MemtableConstructor extends Constructor {
 
     @Override
     public Status finishImpl(Options options, Map<String, String> data) {
-        memtable = IMemtable.getDefaultImpl(comparator);
+        memtable = factory.newMemtable(new InternalKeyComparator(comparator));
         int seq = 1;
         for(String key : data.keySet()) {
             memtable.add(seq++, ValueType.kTypeValue, key, data.get(key));
@@ -0,0 +1,8 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+public class VectorMemtableHarnessTest extends IMemtableHarnessTest {
+    @Override
+    protected MemtableFactory getFactory() {
+        return new VectorMemtableFactory();
+    }
+}
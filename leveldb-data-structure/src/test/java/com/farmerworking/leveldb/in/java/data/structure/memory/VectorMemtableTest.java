@@ -0,0 +1,64 @@
+package com.farmerworking.leveldb.in.java.data.structure.memory;
+
+import com.farmerworking.leveldb.in.java.api.BytewiseComparator;
+import com.farmerworking.leveldb.in.java.api.Iterator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VectorMemtableTest extends IMemtableTest {
+    @Override
+    protected IMemtable getImpl() {
+        InternalKeyComparator comparator = new InternalKeyComparator(new BytewiseComparator());
+        return new VectorMemtable(comparator);
+    }
+
+    @Test
+    public void testIteratorSeesEntriesAtCreation() {
+        IMemtable memtable = getImpl();
+        memtable.add(2L, ValueType.kTypeValue, "b", "b2");
+        memtable.add(1L, ValueType.kTypeValue, "a", "a1");
+        Iterator<String, String> iter = memtable.iterator();
+
+        memtable.add(3L, ValueType.kTypeValue, "a", "a3");
+        iter.seekToFirst();
+        assertEquals("a1", iter.value());
+        iter.next();
+        assertEquals("b2", iter.value());
+        iter.next();
+        assertFalse(iter.valid());
+
+        iter = memtable.iterator();
+        iter.seekToFirst();
+        assertEquals("a3", iter.value());
+        iter.next();
+        assertEquals("a1", iter.value());
+    }
+
+    @Test
+    public void testMarkImmutable() {
+        IMemtable memtable = getImpl();
+        for (int i = 0; i < 5000; i++) {
+            memtable.add(i + 1, ValueType.kTypeValue, String.format("key%05d", (i * 7919) % 5000), "v" + i);
+        }
+        memtable.add(5001, ValueType.kTypeDeletion, "key00001", "");
+
+        assertEquals("v0", memtable.get("key00000", 5001).getValue().getValue());
+        assertTrue(memtable.get("key00001", 5001).getValue().getKey().isNotFound());
+        memtable.markImmutable();
+        assertEquals("v0", memtable.get("key00000", 5001).getValue().getValue());
+        assertTrue(memtable.get("key00001", 5001).getValue().getKey().isNotFound());
+        assertFalse(memtable.get("key5", 5001).getKey());
+
+        Iterator<String, String> iter = memtable.iterator();
+        int count = 0;
+        String last = null;
+        for (iter.seekToFirst(); iter.valid(); iter.next()) {
+            String userKey = InternalKey.extractUserKey(iter.key());
+            assertTrue(last == null || last.compareTo(userKey) <= 0);
+            last = userKey;
+            count++;
+        }
+        assertEquals(5001, count);
+    }
+}
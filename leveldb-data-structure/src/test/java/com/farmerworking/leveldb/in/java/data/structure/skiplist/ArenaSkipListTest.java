@@ -0,0 +1,237 @@
+package com.farmerworking.leveldb.in.java.data.structure.skiplist;
+
+import com.farmerworking.leveldb.in.java.common.ICoding;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ArenaSkipListTest {
+    private static ICoding coding = ICoding.getInstance();
+
+    // entries are fixed64 encoded longs
+    class TmpComparator implements IEntryComparator {
+        @Override
+        public int compare(char[] a, int aOffset, char[] b, int bOffset) {
+            return Long.compare(coding.decodeFixed64(a, aOffset), coding.decodeFixed64(b, bOffset));
+        }
+    }
+
+    private char[] encode(long value) {
+        char[] buffer = new char[coding.getFixed64Length()];
+        coding.encodeFixed64(buffer, 0, value);
+        return buffer;
+    }
+
+    private long decode(char[] buffer) {
+        return coding.decodeFixed64(buffer, 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        ArenaSkipList list = new ArenaSkipList(new TmpComparator());
+        assertFalse(list.contains(encode(10)));
+
+        ISkipListIterator<char[]> iter = list.iterator();
+        assertFalse(iter.valid());
+        iter.seekToFirst();
+        assertFalse(iter.valid());
+        iter.seek(encode(100));
+        assertFalse(iter.valid());
+        iter.seekToLast();
+        assertFalse(iter.valid());
+    }
+
+    @Test
+    public void testInsertAndLookup() {
+        int N = 2000;
+        int R = 5000;
+        SortedSet<Long> keys = new TreeSet<>();
+
+        Random random = new Random();
+        ArenaSkipList list = new ArenaSkipList(new TmpComparator());
+        for (int i = 0; i < N; i++) {
+            long key = random.nextInt(R);
+            if (keys.add(key)) {
+                list.insert(encode(key));
+            }
+        }
+
+        for (int i = 0; i < R; i++) {
+            assertEquals(keys.contains((long) i), list.contains(encode(i)));
+        }
+
+        ISkipListIterator<char[]> iter = list.iterator();
+        iter.seekToFirst();
+        assertTrue(iter.valid());
+        assertEquals((long) keys.first(), decode(iter.key()));
+        iter.seekToLast();
+        assertTrue(iter.valid());
+        assertEquals((long) keys.last(), decode(iter.key()));
+
+        // Forward iteration test
+        for (int i = 0; i < R; i++) {
+            iter = list.iterator();
+            iter.seek(encode(i));
+
+            java.util.Iterator<Long> model = keys.tailSet((long) i).iterator();
+            for (int j = 0; j < 3; j++) {
+                if (model.hasNext()) {
+                    assertTrue(iter.valid());
+                    assertEquals((long) model.next(), decode(iter.key()));
+                    iter.next();
+                } else {
+                    assertFalse(iter.valid());
+                    break;
+                }
+            }
+        }
+
+        // Backward iteration test
+        iter = list.iterator();
+        iter.seekToLast();
+        List<Long> reverse = new ArrayList<>(keys);
+        Collections.reverse(reverse);
+        for (Long key : reverse) {
+            assertTrue(iter.valid());
+            assertEquals((long) key, decode(iter.key()));
+            iter.prev();
+        }
+        assertFalse(iter.valid());
+    }
+
+    @Test
+    public void testInPlaceInsert() {
+        ArenaSkipList list = new ArenaSkipList(new TmpComparator());
+        long handle = list.allocate(coding.getFixed64Length());
+        coding.encodeFixed64(list.block(handle), Arena.offset(handle), 7L);
+        list.insert(handle, coding.getFixed64Length());
+
+        ArenaSkipListIterator iter = list.iterator();
+        iter.seekToFirst();
+        assertTrue(iter.valid());
+        assertEquals(7L, coding.decodeFixed64(iter.keyBlock(), iter.keyOffset()));
+        assertEquals(coding.getFixed64Length(), iter.keyLength());
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        ArenaSkipList list = new ArenaSkipList(new TmpComparator());
+        int empty = list.approximateMemoryUsage();
+        assertTrue(empty > 0); // head tower
+
+        list.insert(encode(1));
+        int one = list.approximateMemoryUsage();
+        assertTrue(one > empty);
+
+        // small entries share one arena block
+        for (int i = 2; i < 100; i++) {
+            list.insert(encode(i));
+        }
+        assertEquals(one, list.approximateMemoryUsage());
+
+        // large entries get a block of their own
+        char[] large = new char[Arena.kBlockSize];
+        coding.encodeFixed64(large, 0, 1000L);
+        list.insert(large);
+        assertTrue(list.approximateMemoryUsage() >= one + Arena.kBlockSize * Character.BYTES);
+    }
+
+    @Test
+    public void testArenaAllocate() {
+        Arena arena = new Arena();
+        assertEquals(0, arena.memoryUsage());
+
+        Set<Long> handles = new HashSet<>();
+        long bytes = 0;
+        Random random = new Random(301);
+        for (int i = 0; i < 1000; i++) {
+            int size = i % 100 == 0 ? random.nextInt(6000) + 1 : random.nextInt(20) + 1;
+            long handle = arena.allocate(size);
+            assertTrue(handles.add(handle));
+
+            // fill the allocated memory with a known pattern
+            char[] block = arena.block(handle);
+            int offset = Arena.offset(handle);
+            assertTrue(offset + size <= block.length);
+            Arrays.fill(block, offset, offset + size, (char) (i % 256));
+            bytes += size;
+            assertTrue(arena.memoryUsage() >= bytes);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadWhileWriting() throws Exception {
+        ArenaSkipList list = new ArenaSkipList(new TmpComparator());
+        AtomicBoolean done = new AtomicBoolean(false);
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    ISkipListIterator<char[]> iter = list.iterator();
+                    long last = -1;
+                    for (iter.seekToFirst(); iter.valid(); iter.next()) {
+                        long current = decode(iter.key());
+                        assertTrue(current > last);
+                        last = current;
+                    }
+                }
+            } catch (Throwable t) {
+                errors.add(t);
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < 20000; i++) {
+            list.insert(encode((i * 7919L) % 20011));
+        }
+        done.set(true);
+        reader.join();
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentInsert() throws Exception {
+        ArenaSkipList list = new ArenaSkipList(new TmpComparator());
+        int kThreads = 4;
+        int N = 5000;
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < kThreads; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < N; i++) {
+                        // interleave the key space between threads
+                        char[] key = encode((long) i * kThreads + id);
+                        long handle = list.allocate(key.length);
+                        System.arraycopy(key, 0, list.block(handle), Arena.offset(handle), key.length);
+                        list.insertConcurrently(handle, key.length);
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty());
+
+        ISkipListIterator<char[]> iter = list.iterator();
+        iter.seekToFirst();
+        for (long i = 0; i < (long) N * kThreads; i++) {
+            assertTrue(iter.valid());
+            assertEquals(i, decode(iter.key()));
+            iter.next();
+        }
+        assertFalse(iter.valid());
+    }
+}
@@ -0,0 +1,141 @@
+package com.farmerworking.leveldb.in.java.data.structure.table;
+
+import com.farmerworking.leveldb.in.java.api.*;
+import com.farmerworking.leveldb.in.java.common.TestUtils;
+import com.farmerworking.leveldb.in.java.data.structure.two.level.iterator.TwoLevelIterator;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReadaheadIndexTransferTest {
+    private TableReader tableReader;
+    private RandomAccessFile source;
+    private Map<String, String> data;
+    private List<String> keys;
+    private long dataEnd;
+
+    // reads the iterator waits for, prefetches excluded
+    private int directReads;
+    private boolean inPrefetch;
+
+    @Before
+    public void setUp() {
+        Options options = new Options();
+        options.setBlockSize(256);
+        options.setCompression(CompressionType.kNoCompression);
+        TableConstructor constructor = new TableConstructor(new BytewiseComparator(), options);
+        for (int i = 0; i < 2000; i++) {
+            constructor.add(String.format("%06d", i), TestUtils.randomString(20));
+        }
+        keys = constructor.finish(options);
+        data = constructor.getData();
+        tableReader = (TableReader) constructor.getItableReader();
+        source = constructor.getSource();
+        dataEnd = constructor.approximateOffsetOf("999999");
+
+        directReads = 0;
+        inPrefetch = false;
+    }
+
+    // Runs prefetches right away, so that they are always done in time
+    private Env inlineEnv() {
+        Env env = mock(Env.class);
+        when(env.schedule(any(Runnable.class), eq(Env.Priority.kIO))).thenAnswer(invocation -> {
+            inPrefetch = true;
+            ((Runnable) invocation.getArgument(0)).run();
+            inPrefetch = false;
+            return CompletableFuture.completedFuture(null);
+        });
+        return env;
+    }
+
+    private Iterator<String, String> iterator(Env env, long readaheadSize) {
+        RandomAccessFile file = (offset, n) -> {
+            if (!inPrefetch) {
+                directReads++;
+            }
+            return source.read(offset, n);
+        };
+        ReadaheadIndexTransfer transfer = new ReadaheadIndexTransfer(tableReader.indexTransfer, file, env, dataEnd, readaheadSize);
+        return new TwoLevelIterator<>(tableReader.indexBlockReader.iterator(new BytewiseComparator()), new ReadOptions(), transfer);
+    }
+
+    private void checkScan(Iterator<String, String> iter, int from) {
+        for (int i = from; i < keys.size(); i++) {
+            assertTrue(iter.valid());
+            assertEquals(keys.get(i), iter.key());
+            assertEquals(data.get(keys.get(i)), iter.value());
+            iter.next();
+        }
+        assertFalse(iter.valid());
+        assertTrue(iter.status().isOk());
+    }
+
+    @Test
+    public void testAutoReadahead() {
+        Iterator<String, String> iter = iterator(inlineEnv(), 0);
+        iter.seekToFirst();
+        checkScan(iter, 0);
+        // the first blocks are read one by one until the scan is detected
+        assertEquals(ReadaheadIndexTransfer.kAutoReadaheadThreshold, directReads);
+
+        // a seek starts over, though blocks an earlier prefetch still covers
+        // are not read again
+        directReads = 0;
+        iter.seek(keys.get(1000));
+        checkScan(iter, 1000);
+        assertTrue(directReads > 0);
+        assertTrue(directReads <= ReadaheadIndexTransfer.kAutoReadaheadThreshold);
+        iter.close();
+    }
+
+    @Test
+    public void testFixedReadahead() {
+        Env env = inlineEnv();
+        Iterator<String, String> iter = iterator(env, 64 * 1024);
+        iter.seekToFirst();
+        checkScan(iter, 0);
+        assertEquals(1, directReads);
+        // the whole table in a few large reads
+        verify(env, atMost((int) (dataEnd / (64 * 1024)) + 2)).schedule(any(Runnable.class), eq(Env.Priority.kIO));
+        iter.close();
+    }
+
+    @Test
+    public void testPrefetchNotStarted() {
+        // prefetches that never get to run are skipped, not waited for
+        Env env = mock(Env.class);
+        when(env.schedule(any(Runnable.class), eq(Env.Priority.kIO))).thenAnswer(invocation -> new FutureTask<>(invocation.getArgument(0), null));
+
+        Iterator<String, String> iter = iterator(env, 0);
+        iter.seekToFirst();
+        checkScan(iter, 0);
+        iter.close();
+    }
+
+    @Test
+    public void testBackwardScan() {
+        Iterator<String, String> iter = iterator(inlineEnv(), 0);
+        iter.seekToLast();
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            assertTrue(iter.valid());
+            assertEquals(keys.get(i), iter.key());
+            iter.prev();
+        }
+        assertFalse(iter.valid());
+        assertTrue(iter.status().isOk());
+        iter.close();
+    }
+}
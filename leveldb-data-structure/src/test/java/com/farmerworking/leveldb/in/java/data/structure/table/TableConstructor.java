@@ -10,6 +10,7 @@ import java.util.Map;
 class TableConstructor extends Constructor {
     private Options tableOptions;
     private ITableReader itableReader;
+    private StringRandomAccessSource source;
 
     public TableConstructor(Comparator comparator, Options options) {
         super(comparator);
@@ -44,7 +45,7 @@ class TableConstructor extends Constructor {
         assert status.isOk();
         assert stringDest.getContent().length() == builder.fileSize();
 
-        StringRandomAccessSource source = new StringRandomAccessSource(stringDest.getContent());
+        source = new StringRandomAccessSource(stringDest.getContent());
         itableReader = ITableReader.getDefaultImpl();
 
         if (tableOptions == null) {
@@ -56,6 +57,10 @@ class TableConstructor extends Constructor {
         return status;
     }
 
+    public StringRandomAccessSource getSource() {
+        return source;
+    }
+
     public ITableReader getItableReader() {
         return itableReader;
     }
@@ -15,9 +15,9 @@ import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 public abstract class TableInternalGetTest {
     abstract TableConstructor getTableConstructor(Comparator userComparator, Options options);
@@ -158,6 +158,51 @@ public abstract class TableInternalGetTest {
         assertEquals(GetState.kNotFound, saver.getState());
     }
 
+    @Test
+    public void testMultiGet() {
+        Options options = new Options();
+        options.setBlockSize(256);
+        Comparator userComparator = new BytewiseComparator();
+        TableConstructor constructor = getTableConstructor(userComparator, options);
+        long sequence = 1L;
+
+        for (int i = 0; i < 100; i++) {
+            InternalKey key = new InternalKey(TestUtils.randomKey(5), sequence ++, ValueType.kTypeValue);
+            constructor.add(key.encode(), TestUtils.randomString(10));
+        }
+
+        List<String> keys = constructor.finish(options);
+        Map<String, String> data = constructor.getData();
+
+        TableReader tableReader = (TableReader) constructor.getItableReader();
+        TableIndexTransfer transfer = spy((TableIndexTransfer) tableReader.indexTransfer);
+        tableReader.indexTransfer = transfer;
+
+        // every key plus one before and one after all of them
+        List<String> internalKeys = new ArrayList<>();
+        internalKeys.add(new InternalKey(new String(new char[]{0, 0, 0}), 1L, ValueType.kTypeValue).encode());
+        internalKeys.addAll(keys);
+        internalKeys.add(new InternalKey(new String(new char[]{255, 255, 255, 255, 255, 255}), 1L, ValueType.kTypeValue).encode());
+
+        List<GetSaver> savers = new ArrayList<>();
+        for (String key : internalKeys) {
+            savers.add(new GetSaver(InternalKey.extractUserKey(key), userComparator));
+        }
+
+        Status status = tableReader.multiGet(new ReadOptions(), internalKeys, savers);
+        assertTrue(status.isOk());
+        assertEquals(GetState.kNotFound, savers.get(0).getState());
+        assertEquals(GetState.kNotFound, savers.get(savers.size() - 1).getState());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(GetState.kFound, savers.get(i + 1).getState());
+            assertEquals(data.get(keys.get(i)), savers.get(i + 1).getValue());
+        }
+
+        // all blocks are fetched together, keys of the same block share it
+        verify(transfer).transfer(any(ReadOptions.class), anyList());
+        verify(transfer, never()).transfer(any(ReadOptions.class), anyString());
+    }
+
     @Test
     public void testInternalGetErrorStatus() {
         Options options = new Options();
@@ -19,6 +19,7 @@ import com.farmerworking.leveldb.in.java.file.Env;
 import com.farmerworking.leveldb.in.java.file.FileName;
 import com.farmerworking.leveldb.in.java.file.WritableFile;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import javafx.util.Pair;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
@@ -245,6 +246,32 @@ public class VersionSetTest {
         assertEquals(1, version.compactionScore, 0);
     }
 
+    @Test
+    public void testUpdateStats() {
+        VersionSet versionSet = new VersionSet("test", new Options(), null, null);
+        Version version = new Version(versionSet);
+        FileMetaData live = new FileMetaData(1L, 0L, null, null);
+        version.files.get(1).add(live);
+        versionSet.appendVersion(version);
+
+        GetStats stats = new GetStats();
+        assertFalse(versionSet.updateStats(stats));
+
+        // a file that is no longer part of the current version
+        stats.setSeekFile(new FileMetaData(1L, 0L, null, null));
+        stats.setSeekFileLevel(1);
+        stats.getSeekFile().setAllowedSeeks(1);
+        assertFalse(versionSet.updateStats(stats));
+        assertEquals(1, stats.getSeekFile().getAllowedSeeks());
+        assertNull(version.fileToCompact);
+
+        stats.setSeekFile(live);
+        live.setAllowedSeeks(1);
+        assertTrue(versionSet.updateStats(stats));
+        assertSame(live, version.fileToCompact);
+        assertEquals(1, version.fileToCompactLevel);
+    }
+
     @Test
     public void testWriteSnapshot() {
         VersionSet versionSet = new VersionSet("test", new Options(), null, new InternalKeyComparator(new BytewiseComparator()));
@@ -283,6 +310,25 @@ public class VersionSetTest {
         assertEquals(metaData, edit.getNewFiles().get(0).getValue());
     }
 
+    @Test
+    public void testCurrentVersionStaysLive() {
+        VersionSet versionSet = new VersionSet("test", new Options(), null, null);
+        Version version = new Version(versionSet);
+        version.files.get(0).add(new FileMetaData(1, 0L, null, null));
+        versionSet.appendVersion(version);
+
+        // a reader done with current does not drop it
+        version.ref();
+        version.unref();
+        assertEquals(Sets.newHashSet(1L), versionSet.getLiveFiles());
+
+        // replacing it does, nobody reads it any more
+        Version next = new Version(versionSet);
+        next.files.get(0).add(new FileMetaData(2, 0L, null, null));
+        versionSet.appendVersion(next);
+        assertEquals(Sets.newHashSet(2L), versionSet.getLiveFiles());
+    }
+
     @Test
     public void testAddLiveFiles() {
         VersionSet versionSet = new VersionSet("test", new Options(), null, null);
@@ -295,6 +341,8 @@ public class VersionSetTest {
         versionSet.appendVersion(version);
         liveFiles = versionSet.getLiveFiles();
         assertEquals(1, liveFiles.size());
+        Version first = version;
+        first.ref();
 
         version = new Version(versionSet);
         version.files.get(1).add(new FileMetaData(2, 0L, null, null));
@@ -307,6 +355,10 @@ public class VersionSetTest {
         versionSet.appendVersion(version);
         liveFiles = versionSet.getLiveFiles();
         assertEquals(2, liveFiles.size());
+
+        first.unref();
+        liveFiles = versionSet.getLiveFiles();
+        assertEquals(1, liveFiles.size());
     }
 
     @Test
@@ -372,13 +424,13 @@ public class VersionSetTest {
         List<InternalKey> internalKeys = new ArrayList<>();
         Map<String, String> data = new HashMap<>();
         for (int i = 1; i < 5; i++) {
-            ITableBuilder tableBuilder = ITableBuilder.getDefaultImpl(
-                    options,
-                    options.getEnv().newWritableFile(FileName.tableFileName(dbname, i)).getValue());
+            WritableFile file = options.getEnv().newWritableFile(FileName.tableFileName(dbname, i)).getValue();
+            ITableBuilder tableBuilder = ITableBuilder.getDefaultImpl(options, file);
             InternalKey internalKey = new InternalKey(TestUtils.randomKey(5), sequence++);
             String value = TestUtils.randomString(5);
             tableBuilder.add(internalKey.encode(), value);
             assert tableBuilder.finish().isOk();
+            assertTrue(file.close().isOk());
 
             builderList.add(tableBuilder);
             internalKeys.add(internalKey);
@@ -526,6 +578,7 @@ public class VersionSetTest {
         assertEquals(1, compaction.getLevel());
         assertEquals(1, compaction.inputs[0].size());
         assertEquals(versionSet.getCurrent().fileToCompact, compaction.inputs[0].get(0));
+        versionSet.releaseCompaction(compaction);
 
         versionSet.getCurrent().fileToCompactLevel = 0;
         compaction = versionSet.pickCompaction();
@@ -534,6 +587,7 @@ public class VersionSetTest {
         assertEquals(2, compaction.inputs[0].size());
         assertEquals(a, compaction.inputs[0].get(0));
         assertEquals(b, compaction.inputs[0].get(1));
+        versionSet.releaseCompaction(compaction);
 
         versionSet.getCurrent().compactionScore = 2;
         versionSet.getCurrent().compactionLevel = 2;
@@ -543,6 +597,7 @@ public class VersionSetTest {
         assertEquals(2, compaction.getLevel());
         assertEquals(1, compaction.inputs[0].size());
         assertEquals(c, compaction.inputs[0].get(0));
+        versionSet.releaseCompaction(compaction);
 
         assertFalse(StringUtils.isEmpty(versionSet.compactPointer[2]));
         assertEquals(c.getLargest().encode(), versionSet.compactPointer[2]);
@@ -553,6 +608,76 @@ public class VersionSetTest {
         assertEquals(d, compaction.inputs[0].get(0));
     }
 
+    @Test
+    public void testPickCompactionSkipsRunningCompactions() {
+        VersionSet versionSet = new VersionSet("", new Options(),
+                null, new InternalKeyComparator(new BytewiseComparator()));
+
+        FileMetaData a = new FileMetaData(1L, 1000L, new InternalKey("a", 1L), new InternalKey("b", 1L));
+        FileMetaData b = new FileMetaData(2L, 1000L, new InternalKey("c", 1L), new InternalKey("d", 1L));
+        FileMetaData c = new FileMetaData(3L, 1000L, new InternalKey("e", 1L), new InternalKey("f", 1L));
+        FileMetaData parent = new FileMetaData(4L, 1000L, new InternalKey("a", 1L), new InternalKey("a", 1L));
+        versionSet.getCurrent().files.get(1).add(a);
+        versionSet.getCurrent().files.get(1).add(b);
+        versionSet.getCurrent().files.get(1).add(c);
+        versionSet.getCurrent().files.get(2).add(parent);
+        versionSet.getCurrent().compactionScore = 2;
+        versionSet.getCurrent().compactionLevel = 1;
+
+        Compaction first = versionSet.pickCompaction();
+        assertEquals(a, first.inputs[0].get(0));
+        assertEquals(parent, first.inputs[1].get(0));
+        assertTrue(versionSet.needCompaction());
+
+        // "a" is taken, the next free file is picked
+        versionSet.compactPointer[1] = null;
+        Compaction second = versionSet.pickCompaction();
+        assertEquals(1, second.inputs[0].size());
+        assertEquals(b, second.inputs[0].get(0));
+
+        Compaction third = versionSet.pickCompaction();
+        assertEquals(c, third.inputs[0].get(0));
+
+        assertFalse(versionSet.needCompaction());
+        assertNull(versionSet.pickCompaction());
+        assertEquals(3, versionSet.getRunningCompactions().size());
+
+        // the range of a running compaction may not receive a memtable file below it
+        assertTrue(versionSet.rangeOverlapsRunningCompaction(2, "a", "a"));
+        assertFalse(versionSet.rangeOverlapsRunningCompaction(1, "a", "a"));
+        assertFalse(versionSet.rangeOverlapsRunningCompaction(2, "x", "z"));
+
+        versionSet.releaseCompaction(second);
+        assertTrue(versionSet.needCompaction());
+        Compaction again = versionSet.pickCompaction();
+        assertEquals(b, again.inputs[0].get(0));
+
+        versionSet.releaseCompaction(first);
+        versionSet.releaseCompaction(third);
+        versionSet.releaseCompaction(again);
+        assertTrue(versionSet.getRunningCompactions().isEmpty());
+        assertTrue(versionSet.getCompactingFiles().isEmpty());
+    }
+
+    @Test
+    public void testLevelZeroCompactionsDoNotRunTogether() {
+        VersionSet versionSet = new VersionSet("", new Options(),
+                null, new InternalKeyComparator(new BytewiseComparator()));
+
+        versionSet.getCurrent().files.get(0).add(new FileMetaData(1L, 1000L, new InternalKey("a", 1L), new InternalKey("b", 1L)));
+        versionSet.getCurrent().files.get(0).add(new FileMetaData(2L, 1000L, new InternalKey("x", 1L), new InternalKey("y", 1L)));
+        versionSet.getCurrent().compactionScore = 2;
+        versionSet.getCurrent().compactionLevel = 0;
+
+        Compaction compaction = versionSet.pickCompaction();
+        assertNotNull(compaction);
+        assertEquals(1, compaction.inputs[0].size());
+        assertNull(versionSet.pickCompaction());
+
+        versionSet.releaseCompaction(compaction);
+        assertNotNull(versionSet.pickCompaction());
+    }
+
     @Test(expected = AssertionError.class)
     public void testSetSequence() {
         VersionSet versionSet = new VersionSet("", new Options(),
@@ -268,6 +268,7 @@ public class VersionTest {
 
         Status status = builder.finish();
         assertTrue(status.isOk());
+        assertTrue(filePair.getValue().close().isOk());
 
         InternalKey largest = max(internalKeyList);
         InternalKey smallest = min(internalKeyList);
@@ -414,11 +415,13 @@ public class VersionTest {
         versionSet.setTableCache(new TableCache(dbname, versionSet.getOptions(), 1024));
 
         List<Long> fileNumberList = Lists.newArrayList(1L, 2L, 3L, 4L);
+        List<WritableFile> fileList = new ArrayList<>();
         List<ITableBuilder> builderList = new ArrayList<>();
         for(Long fileNumber : fileNumberList) {
             String fileName = FileName.tableFileName(dbname, fileNumber);
             Pair<Status, WritableFile> filePair = versionSet.getOptions().getEnv().newWritableFile(fileName);
             assertTrue(filePair.getKey().isOk());
+            fileList.add(filePair.getValue());
             builderList.add(ITableBuilder.getDefaultImpl(versionSet.getOptions(), filePair.getValue()));
         }
 
@@ -446,6 +449,9 @@ public class VersionTest {
             Status status = builder.finish();
             assertTrue(status.isOk());
         }
+        for (WritableFile file : fileList) {
+            assertTrue(file.close().isOk());
+        }
 
         Version version = new Version(versionSet);
         version.files.get(0).add(new FileMetaData(1L, builderList.get(0).fileSize(), min(internalKeyLists.get(0)), max(internalKeyLists.get(0))));
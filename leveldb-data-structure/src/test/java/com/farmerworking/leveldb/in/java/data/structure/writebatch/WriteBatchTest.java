@@ -11,6 +11,8 @@ import com.farmerworking.leveldb.in.java.data.structure.memory.Memtable;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
@@ -55,6 +57,24 @@ public class WriteBatchTest {
         return state;
     }
 
+    @Test
+    public void testBinary() {
+        WriteBatch expected = new WriteBatch();
+        expected.put("k\u00ff", "\u0000v");
+        expected.delete("\u0080");
+        expected.put("a", "b");
+
+        WriteBatch batch = new WriteBatch();
+        batch.put(new byte[]{'k', (byte) 0xff}, new byte[]{0, 'v'});
+        batch.delete(new byte[]{(byte) 0x80});
+        ByteBuffer key = ByteBuffer.wrap(new byte[]{'x', 'a', 'b'}, 1, 1);
+        ByteBuffer value = ByteBuffer.wrap(new byte[]{'x', 'a', 'b'}, 2, 1);
+        batch.put(key, value);
+        assertEquals(1, key.position());
+        assertEquals(2, value.position());
+        assertArrayEquals(expected.encode(), batch.encode());
+    }
+
     @Test
     public void testEmpty() {
         WriteBatch batch = new WriteBatch();
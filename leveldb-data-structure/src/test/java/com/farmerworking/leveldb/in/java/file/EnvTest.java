@@ -95,6 +95,37 @@ public abstract class EnvTest {
         assertTrue(filePair2.getKey().isNotFound());
     }
 
+    @Test
+    public void testDirectFiles() {
+        Pair<Status, String> pair = env.getTestDirectory();
+        assertTrue(pair.getKey().isOk());
+        String testFileName = pair.getValue() + "/direct_file";
+        env.delete(testFileName);
+
+        Pair<Status, WritableFile> filePair = env.newDirectWritableFile(testFileName);
+        assertTrue(filePair.getKey().isOk());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String s = TestUtils.randomString(1000 + i);
+            assertTrue(filePair.getValue().append(s).isOk());
+            builder.append(s);
+            if (i == 50) {
+                assertTrue(filePair.getValue().sync().isOk());
+            }
+        }
+        assertTrue(filePair.getValue().close().isOk());
+        assertEquals(builder.length(), env.getFileSize(testFileName).getValue().longValue());
+
+        Pair<Status, RandomAccessFile> filePair2 = env.newDirectRandomAccessFile(testFileName);
+        assertTrue(filePair2.getKey().isOk());
+        assertEquals(builder.substring(12345, 23456), filePair2.getValue().read(12345, 23456 - 12345).getValue());
+        assertEquals(builder.substring(builder.length() - 10), filePair2.getValue().read(builder.length() - 10, 100).getValue());
+        filePair2.getValue().close();
+        env.delete(testFileName);
+
+        assertTrue(env.newDirectRandomAccessFile(testFileName).getKey().isNotFound());
+    }
+
     @Test
     public void testReopenWritableFile() {
         Pair<Status, String> pair = env.getTestDirectory();
@@ -0,0 +1,89 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.common.TestUtils;
+import com.farmerworking.leveldb.in.java.file.Env;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DefaultWritableFileTest {
+    private Env env;
+    private String filename;
+
+    @Before
+    public void setUp() throws Exception {
+        env = new DefaultEnv();
+        filename = env.getTestDirectory().getValue() + "/default_writable_file";
+        env.delete(filename);
+    }
+
+    private FileChannel channel() throws IOException {
+        return FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Test
+    public void testAppendIsBuffered() throws IOException {
+        FileChannel channel = spy(channel());
+        DefaultWritableFile file = new DefaultWritableFile(channel, 1024);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String s = TestUtils.randomString(7);
+            assertTrue(file.append(s).isOk());
+            builder.append(s);
+        }
+        verify(channel, never()).write(any(ByteBuffer.class));
+        assertEquals(0, env.getFileSize(filename).getValue().longValue());
+
+        assertTrue(file.flush().isOk());
+        verify(channel, times(1)).write(any(ByteBuffer.class));
+        assertEquals(builder.length(), env.getFileSize(filename).getValue().longValue());
+
+        // nothing buffered, nothing written
+        assertTrue(file.flush().isOk());
+        verify(channel, times(1)).write(any(ByteBuffer.class));
+
+        assertTrue(file.append("abc").isOk());
+        assertTrue(file.sync().isOk());
+        builder.append("abc");
+        verify(channel).force(false);
+
+        assertTrue(file.close().isOk());
+        assertEquals(builder.toString(), Env.readFileToString(env, filename).getValue());
+    }
+
+    @Test
+    public void testAppendLargerThanBuffer() throws IOException {
+        FileChannel channel = spy(channel());
+        DefaultWritableFile file = new DefaultWritableFile(channel, 1024);
+
+        String s = TestUtils.randomString(10000);
+        assertTrue(file.append("x").isOk());
+        assertTrue(file.append(s).isOk());
+        // written out in buffer sized pieces as the buffer fills up
+        verify(channel, times(9)).write(any(ByteBuffer.class));
+
+        assertTrue(file.close().isOk());
+        assertEquals("x" + s, Env.readFileToString(env, filename).getValue());
+    }
+
+    @Test
+    public void testWriteError() throws IOException {
+        FileChannel channel = channel();
+        DefaultWritableFile file = new DefaultWritableFile(channel, 1024);
+
+        assertTrue(file.append("abc").isOk());
+        channel.close();
+        assertTrue(file.flush().isIOError());
+        assertTrue(file.sync().isIOError());
+    }
+}
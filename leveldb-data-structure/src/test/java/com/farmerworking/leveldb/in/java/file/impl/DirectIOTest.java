@@ -0,0 +1,146 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.TestUtils;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+import javafx.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+public class DirectIOTest {
+    private Env env;
+    private String filename;
+
+    @Before
+    public void setUp() throws Exception {
+        env = new DefaultEnv();
+        filename = env.getTestDirectory().getValue() + "/direct_io_file";
+        env.delete(filename);
+    }
+
+    private FileChannel channel(StandardOpenOption... options) throws IOException {
+        FileChannel channel = DirectIO.open(Paths.get(filename), options);
+        // no O_DIRECT with this JDK or file system
+        assumeNotNull(channel);
+        return channel;
+    }
+
+    private int blockSize() throws IOException {
+        return DirectIO.blockSize(Paths.get(filename));
+    }
+
+    @Test
+    public void testAlignedBuffer() {
+        ByteBuffer buffer = DirectIO.alignedBuffer(8192, 4096);
+        assertTrue(buffer.isDirect());
+        assertEquals(8192, buffer.capacity());
+        assertEquals(0, buffer.position());
+        assertEquals(8192, buffer.limit());
+
+        assertEquals(4096, DirectIO.alignDown(4097, 4096));
+        assertEquals(8192, DirectIO.alignUp(4097, 4096));
+        assertEquals(4096, DirectIO.alignUp(4096, 4096));
+        assertEquals(0, DirectIO.alignUp(0, 4096));
+    }
+
+    @Test
+    public void testWriteUnalignedSize() throws IOException {
+        FileChannel channel = channel(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        int blockSize = blockSize();
+        DirectWritableFile file = new DirectWritableFile(channel, blockSize, 1);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            String s = TestUtils.randomString(blockSize / 3 + i);
+            assertTrue(file.append(s).isOk());
+            builder.append(s);
+        }
+        assertTrue(file.flush().isOk());
+        assertTrue(file.close().isOk());
+
+        assertEquals(builder.length(), env.getFileSize(filename).getValue().longValue());
+        assertEquals(builder.toString(), Env.readFileToString(env, filename).getValue());
+    }
+
+    @Test
+    public void testAppendAfterSync() throws IOException {
+        FileChannel channel = channel(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        int blockSize = blockSize();
+        DirectWritableFile file = new DirectWritableFile(channel, blockSize, 4 * blockSize);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            String s = TestUtils.randomString(blockSize / 2 + 7 * i);
+            assertTrue(file.append(s).isOk());
+            builder.append(s);
+
+            // what was appended is in the file, padded to whole blocks
+            assertTrue(file.sync().isOk());
+            long size = env.getFileSize(filename).getValue();
+            assertEquals(DirectIO.alignUp(builder.length(), blockSize), size);
+            assertEquals(builder.toString(), Env.readFileToString(env, filename).getValue().substring(0, builder.length()));
+        }
+
+        assertTrue(file.close().isOk());
+        assertEquals(builder.toString(), Env.readFileToString(env, filename).getValue());
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        String data = TestUtils.randomString(3 * 4096 + 100);
+        assertTrue(Env.writeStringToFileSync(env, data, filename).isOk());
+        RandomAccessFile file = new DirectRandomAccessFile(filename, channel(StandardOpenOption.READ), blockSize());
+
+        int[][] ranges = {{0, 10}, {5, 4096}, {4095, 2}, {4096, 4096}, {1, data.length() - 1}, {data.length() - 50, 100}};
+        for (int[] range : ranges) {
+            Pair<Status, String> pair = file.read(range[0], range[1]);
+            assertTrue(pair.getKey().isOk());
+            int end = Math.min(data.length(), range[0] + range[1]);
+            assertEquals(data.substring(range[0], end), pair.getValue());
+        }
+
+        // past the end
+        Pair<Status, String> pair = file.read(data.length() + 10, 10);
+        assertTrue(pair.getKey().isOk());
+        assertEquals("", pair.getValue());
+
+        // larger than the thread buffer
+        String large = TestUtils.randomString(DirectRandomAccessFile.kMaxThreadBufferSize + 10);
+        assertTrue(Env.writeStringToFileSync(env, large, filename).isOk());
+        file.close();
+        file = new DirectRandomAccessFile(filename, channel(StandardOpenOption.READ), blockSize());
+        assertEquals(large.substring(3), file.read(3, large.length()).getValue());
+        file.close();
+    }
+
+    @Test
+    public void testEnv() throws IOException {
+        channel(StandardOpenOption.WRITE, StandardOpenOption.CREATE).close();
+
+        Pair<Status, WritableFile> writable = env.newDirectWritableFile(filename);
+        assertTrue(writable.getKey().isOk());
+        assertTrue(writable.getValue() instanceof DirectWritableFile);
+        assertTrue(writable.getValue().append("hello world").isOk());
+        assertTrue(writable.getValue().close().isOk());
+
+        Pair<Status, RandomAccessFile> random = env.newDirectRandomAccessFile(filename);
+        assertTrue(random.getKey().isOk());
+        assertTrue(random.getValue() instanceof DirectRandomAccessFile);
+        assertEquals("world", random.getValue().read(6, 100).getValue());
+        random.getValue().close();
+
+        env.delete(filename);
+        assertTrue(env.newDirectRandomAccessFile(filename).getKey().isNotFound());
+    }
+}
@@ -0,0 +1,132 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteOptions;
+import com.farmerworking.leveldb.in.java.data.structure.db.DB;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.EnvTest;
+import com.farmerworking.leveldb.in.java.file.FileName;
+import com.farmerworking.leveldb.in.java.file.FileType;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import com.farmerworking.leveldb.in.java.file.SequentialFile;
+import com.farmerworking.leveldb.in.java.file.WritableFile;
+import com.farmerworking.leveldb.in.java.file.impl.InstrumentedEnv.IOStats;
+import com.farmerworking.leveldb.in.java.file.impl.InstrumentedEnv.Operation;
+import javafx.util.Pair;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class InstrumentedEnvTest extends EnvTest {
+    private final InstrumentedEnv instrumentedEnv = new InstrumentedEnv(new DefaultEnv());
+
+    @Override
+    protected Env getImpl() {
+        return instrumentedEnv;
+    }
+
+    @Test
+    public void testCountsPerFileType() {
+        String dbname = instrumentedEnv.getTestDirectory().getValue() + "/instrumented_env_files";
+        instrumentedEnv.createDir(dbname);
+        String logFile = FileName.logFileName(dbname, 3);
+        String tableFile = FileName.tableFileName(dbname, 4);
+
+        Pair<Status, WritableFile> log = instrumentedEnv.newWritableFile(logFile);
+        assertTrue(log.getValue().append("hello").isOk());
+        assertTrue(log.getValue().append(" world").isOk());
+        assertTrue(log.getValue().sync().isOk());
+        assertTrue(log.getValue().close().isOk());
+
+        Pair<Status, WritableFile> table = instrumentedEnv.newWritableFile(tableFile);
+        assertTrue(table.getValue().append(StringUtils.repeat('x', 100)).isOk());
+        assertTrue(table.getValue().close().isOk());
+
+        Pair<Status, RandomAccessFile> random = instrumentedEnv.newRandomAccessFile(tableFile);
+        assertEquals(10, random.getValue().read(0, 10).getValue().length());
+        random.getValue().close();
+
+        Pair<Status, SequentialFile> sequential = instrumentedEnv.newSequentialFile(logFile);
+        assertEquals("hello world", sequential.getValue().read(100).getValue());
+        assertTrue(instrumentedEnv.delete(logFile).getKey().isOk());
+
+        Map<FileType, Map<Operation, IOStats>> snapshot = instrumentedEnv.snapshot();
+        Map<Operation, IOStats> logStats = snapshot.get(FileType.kLogFile);
+        assertEquals(2, logStats.get(Operation.kOpen).getCount());
+        assertEquals(2, logStats.get(Operation.kAppend).getCount());
+        assertEquals(11, logStats.get(Operation.kAppend).getBytes());
+        assertEquals(1, logStats.get(Operation.kSync).getCount());
+        assertEquals(1, logStats.get(Operation.kRead).getCount());
+        assertEquals(11, logStats.get(Operation.kRead).getBytes());
+        assertEquals(1, logStats.get(Operation.kDelete).getCount());
+        assertEquals(2, logStats.get(Operation.kAppend).getMicros().count());
+
+        Map<Operation, IOStats> tableStats = snapshot.get(FileType.kTableFile);
+        assertEquals(100, tableStats.get(Operation.kAppend).getBytes());
+        assertEquals(1, tableStats.get(Operation.kRead).getCount());
+        assertEquals(10, tableStats.get(Operation.kRead).getBytes());
+        assertEquals(0, tableStats.get(Operation.kSync).getCount());
+        assertEquals(0, snapshot.get(FileType.kDescriptorFile).get(Operation.kOpen).getCount());
+
+        // the snapshot does not move on
+        assertTrue(instrumentedEnv.delete(tableFile).getKey().isOk());
+        assertEquals(0, tableStats.get(Operation.kDelete).getCount());
+        assertEquals(1, instrumentedEnv.getStats(FileType.kTableFile, Operation.kDelete).getCount());
+
+        instrumentedEnv.reset();
+        assertEquals(0, instrumentedEnv.getStats(FileType.kLogFile, Operation.kAppend).getCount());
+    }
+
+    @Test
+    public void testOtherFilesAreNotCounted() {
+        String filename = instrumentedEnv.getTestDirectory().getValue() + "/not_a_db_file";
+        assertTrue(Env.writeStringToFileSync(instrumentedEnv, "data", filename).isOk());
+        assertTrue(instrumentedEnv.delete(filename).getKey().isOk());
+
+        for (Map<Operation, IOStats> operations : instrumentedEnv.snapshot().values()) {
+            for (IOStats stats : operations.values()) {
+                assertEquals(0, stats.getCount());
+            }
+        }
+    }
+
+    @Test
+    public void testDBProperty() {
+        Options options = new Options();
+        options.setEnv(instrumentedEnv);
+        options.setCreateIfMissing(true);
+        options.setWriteBufferSize(10000);
+        String dbname = instrumentedEnv.getTestDirectory().getValue() + "/instrumented_env_db";
+        DB.destroyDB(dbname, options);
+
+        Pair<Status, DB> pair = DB.open(options, dbname);
+        assertTrue(pair.getKey().toString(), pair.getKey().isOk());
+        DB db = pair.getValue();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(db.put(new WriteOptions(), String.format("key%06d", i), StringUtils.repeat('v', 100)).isOk());
+        }
+
+        assertTrue(instrumentedEnv.getStats(FileType.kLogFile, Operation.kAppend).getBytes() > 1000 * 100);
+        assertTrue(instrumentedEnv.getStats(FileType.kTableFile, Operation.kAppend).getBytes() > 0);
+        assertTrue(instrumentedEnv.getStats(FileType.kDescriptorFile, Operation.kSync).getCount() > 0);
+
+        Pair<Boolean, String> property = db.getProperty("leveldb.io-stats");
+        assertTrue(property.getKey());
+        assertTrue(property.getValue(), property.getValue().contains("kLogFile         kAppend"));
+        assertTrue(property.getValue(), property.getValue().contains("kTableFile       kAppend"));
+        db.close();
+        DB.destroyDB(dbname, options);
+
+        // not there without an instrumented env
+        options.setEnv(new DefaultEnv());
+        pair = DB.open(options, dbname);
+        assertTrue(pair.getKey().isOk());
+        assertFalse(pair.getValue().getProperty("leveldb.io-stats").getKey());
+        pair.getValue().close();
+        DB.destroyDB(dbname, options);
+    }
+}
@@ -0,0 +1,71 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Options;
+import com.farmerworking.leveldb.in.java.api.ReadOptions;
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.api.WriteOptions;
+import com.farmerworking.leveldb.in.java.common.TestUtils;
+import com.farmerworking.leveldb.in.java.data.structure.db.DB;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.EnvTest;
+import javafx.util.Pair;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class MemEnvTest extends EnvTest {
+    // files only live as long as the env, every test gets one
+    private final MemEnv memEnv = new MemEnv(new DefaultEnv());
+
+    @Override
+    protected Env getImpl() {
+        return memEnv;
+    }
+
+    // files of a MemEnv can not be read back through the options' env
+    @Override
+    @Test
+    public void testWriteStringToFileAndReadFileToString() {
+        String filename = memEnv.getTestDirectory().getValue() + "/" + TestUtils.randomString(5);
+
+        String s = StringUtils.repeat("abcdefg", 10000);
+        assertTrue(Env.writeStringToFileSync(memEnv, s, filename).isOk());
+
+        Pair<Status, String> pair = Env.readFileToString(memEnv, filename);
+        assertTrue(pair.getKey().toString(), pair.getKey().isOk());
+        assertEquals(s, pair.getValue());
+    }
+
+    @Test
+    public void testDB() {
+        Options options = new Options();
+        options.setEnv(memEnv);
+        options.setCreateIfMissing(true);
+        options.setWriteBufferSize(10000);
+        String dbname = memEnv.getTestDirectory().getValue() + "/memenv_db";
+
+        Pair<Status, DB> pair = DB.open(options, dbname);
+        assertTrue(pair.getKey().toString(), pair.getKey().isOk());
+        DB db = pair.getValue();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(db.put(new WriteOptions(), String.format("key%06d", i), StringUtils.repeat('v', 100)).isOk());
+        }
+        db.close();
+
+        pair = DB.open(options, dbname);
+        assertTrue(pair.getKey().toString(), pair.getKey().isOk());
+        db = pair.getValue();
+        for (int i = 0; i < 1000; i++) {
+            Pair<Status, String> value = db.get(new ReadOptions(), String.format("key%06d", i));
+            assertTrue(value.getKey().toString(), value.getKey().isOk());
+            assertEquals(StringUtils.repeat('v', 100), value.getValue());
+        }
+        db.close();
+
+        assertTrue(memEnv.getChildren(dbname).getValue().size() > 1);
+        assertFalse(new File(dbname).exists());
+    }
+}
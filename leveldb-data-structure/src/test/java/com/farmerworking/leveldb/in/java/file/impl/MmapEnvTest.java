@@ -0,0 +1,11 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.EnvTest;
+
+public class MmapEnvTest extends EnvTest {
+    @Override
+    protected Env getImpl() {
+        return new DefaultEnv(1L << 30);
+    }
+}
@@ -0,0 +1,105 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.TestUtils;
+import com.farmerworking.leveldb.in.java.file.Env;
+import com.farmerworking.leveldb.in.java.file.RandomAccessFile;
+import javafx.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MmapRandomAccessFileTest {
+    private Env env;
+    private String filename;
+    private String data;
+
+    @Before
+    public void setUp() throws Exception {
+        env = new DefaultEnv();
+        filename = env.getTestDirectory().getValue() + "/mmap_random_access_file";
+        env.delete(filename);
+
+        data = TestUtils.randomString(10000);
+        assertTrue(Env.writeStringToFileSync(env, data, filename).isOk());
+    }
+
+    private MmapRandomAccessFile open(Limiter limiter, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            assertTrue(limiter.acquire(data.length()));
+            return new MmapRandomAccessFile(filename, channel, limiter, chunkSize);
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        Limiter limiter = new Limiter(data.length());
+        // small chunks so that reads cross mapping boundaries
+        MmapRandomAccessFile file = open(limiter, 1000);
+
+        Random random = new Random();
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(data.length());
+            int n = random.nextInt(3000);
+            Pair<Status, String> pair = file.read(offset, n);
+            assertTrue(pair.getKey().isOk());
+            assertEquals(data.substring(offset, Math.min(data.length(), offset + n)), pair.getValue());
+        }
+
+        // exact chunk boundaries
+        assertEquals(data.substring(1000, 2000), file.read(1000, 1000).getValue());
+        assertEquals(data.substring(999, 2001), file.read(999, 1002).getValue());
+        assertEquals(data, file.read(0, data.length()).getValue());
+
+        // reads are clipped at the end of the file
+        assertEquals("", file.read(data.length(), 10).getValue());
+        assertTrue(file.read(data.length() + 1, 10).getKey().isIOError());
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        Limiter limiter = new Limiter(data.length());
+        MmapRandomAccessFile file = open(limiter, MmapRandomAccessFile.kMaxChunkSize);
+        assertFalse(limiter.acquire(1));
+
+        file.close();
+        assertTrue(file.read(0, 10).getKey().isIOError());
+
+        // mapped bytes are handed back exactly once
+        file.close();
+        assertTrue(limiter.acquire(data.length()));
+        assertFalse(limiter.acquire(1));
+    }
+
+    @Test
+    public void testEnvMapsWithinLimit() {
+        DefaultEnv mmapEnv = new DefaultEnv(data.length() + 1);
+
+        Pair<Status, RandomAccessFile> first = mmapEnv.newRandomAccessFile(filename);
+        assertTrue(first.getKey().isOk());
+        assertTrue(first.getValue() instanceof MmapRandomAccessFile);
+
+        // over the limit, falls back to positional reads
+        Pair<Status, RandomAccessFile> second = mmapEnv.newRandomAccessFile(filename);
+        assertTrue(second.getKey().isOk());
+        assertTrue(second.getValue() instanceof PreadRandomAccessFile);
+        assertEquals(data.substring(100, 200), second.getValue().read(100, 100).getValue());
+        second.getValue().close();
+
+        first.getValue().close();
+        Pair<Status, RandomAccessFile> third = mmapEnv.newRandomAccessFile(filename);
+        assertTrue(third.getValue() instanceof MmapRandomAccessFile);
+        assertEquals(data.substring(100, 200), third.getValue().read(100, 100).getValue());
+        third.getValue().close();
+
+        // disabled by default
+        assertTrue(env.newRandomAccessFile(filename).getValue() instanceof PreadRandomAccessFile);
+    }
+}
@@ -0,0 +1,132 @@
+package com.farmerworking.leveldb.in.java.file.impl;
+
+import com.farmerworking.leveldb.in.java.api.Status;
+import com.farmerworking.leveldb.in.java.common.TestUtils;
+import com.farmerworking.leveldb.in.java.file.Env;
+import javafx.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class PreadRandomAccessFileTest {
+    private String filename;
+    private String data;
+
+    @Before
+    public void setUp() throws Exception {
+        Env env = new DefaultEnv();
+        filename = env.getTestDirectory().getValue() + "/pread_random_access_file";
+        env.delete(filename);
+
+        data = TestUtils.randomString(3 * PreadRandomAccessFile.kMaxThreadBufferSize);
+        assertTrue(Env.writeStringToFileSync(env, data, filename).isOk());
+    }
+
+    private FileChannel channel() throws IOException {
+        return FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+    }
+
+    private String expected(long offset, int n) {
+        return data.substring((int) Math.min(offset, data.length()), (int) Math.min(offset + n, data.length()));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        PreadRandomAccessFile file = new PreadRandomAccessFile(filename, channel());
+
+        assertEquals(expected(0, 100), file.read(0, 100).getValue());
+        assertEquals(expected(12345, 4096), file.read(12345, 4096).getValue());
+        // larger than the thread buffer
+        assertEquals(expected(1, 2 * PreadRandomAccessFile.kMaxThreadBufferSize), file.read(1, 2 * PreadRandomAccessFile.kMaxThreadBufferSize).getValue());
+        // short read at the end of the file
+        assertEquals(expected(data.length() - 10, 100), file.read(data.length() - 10, 100).getValue());
+        assertEquals("", file.read(data.length() + 10, 100).getValue());
+
+        file.close();
+        assertTrue(file.read(0, 100).getKey().isIOError());
+    }
+
+    @Test
+    public void testConcurrentRead() throws Exception {
+        PreadRandomAccessFile file = new PreadRandomAccessFile(filename, channel());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+                for (int i = 0; i < 1000; i++) {
+                    int offset = random.nextInt(data.length());
+                    int n = random.nextInt(8192);
+                    Pair<Status, String> pair = file.read(offset, n);
+                    if (pair.getKey().isNotOk() || !expected(offset, n).equals(pair.getValue())) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+        executor.shutdown();
+        file.close();
+    }
+
+    @Test
+    public void testMultiRead() throws IOException {
+        FileChannel channel = spy(channel());
+        PreadRandomAccessFile file = new PreadRandomAccessFile(filename, channel);
+
+        // out of order, two neighbours, one far away and one past the end
+        List<Pair<Long, Integer>> ranges = new ArrayList<>();
+        ranges.add(new Pair<>(5000L, 100));
+        ranges.add(new Pair<>(1000L, 3000));
+        ranges.add(new Pair<>(2000000L, 500));
+        ranges.add(new Pair<>((long) data.length() - 50, 100));
+
+        List<Pair<Status, String>> result = file.multiRead(ranges);
+        assertEquals(ranges.size(), result.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertTrue(result.get(i).getKey().isOk());
+            assertEquals(expected(ranges.get(i).getKey(), ranges.get(i).getValue()), result.get(i).getValue());
+        }
+
+        // the first two are merged into a single read, the last one takes a
+        // second read to see the end of the file
+        verify(channel, times(4)).read(any(), anyLong());
+        file.close();
+    }
+
+    @Test
+    public void testReopenAfterInterrupt() throws IOException {
+        PreadRandomAccessFile file = new PreadRandomAccessFile(filename, channel());
+
+        Thread.currentThread().interrupt();
+        Pair<Status, String> pair = file.read(0, 100);
+        // the interrupt is kept for the caller
+        assertTrue(Thread.interrupted());
+
+        assertTrue(pair.getKey().isOk());
+        assertEquals(expected(0, 100), pair.getValue());
+        // and other readers keep working
+        assertEquals(expected(100, 100), file.read(100, 100).getValue());
+        file.close();
+    }
+}